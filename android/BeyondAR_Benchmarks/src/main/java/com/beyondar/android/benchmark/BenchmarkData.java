@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.beyondar.android.util.math.Distance;
+import com.beyondar.android.world.GeoObject;
+import com.beyondar.android.world.World;
+
+/**
+ * Generates the worlds and objects used by the benchmarks. A fixed seed is
+ * used so all the runs use the same data.
+ */
+public final class BenchmarkData {
+
+	public static final long SEED = 42;
+
+	public static final double CENTER_LATITUDE = 41.26533734214473;
+	public static final double CENTER_LONGITUDE = 1.925848038959814;
+
+	/** Radius (meters) of the area where the objects are placed. */
+	public static final double RADIUS_METERS = 5000;
+
+	private BenchmarkData() {
+	}
+
+	/**
+	 * Create a world positioned at the center of the area.
+	 * 
+	 * @return
+	 */
+	public static World createWorld() {
+		World world = new World(new StubContext());
+		world.setGeoPosition(CENTER_LATITUDE, CENTER_LONGITUDE);
+		return world;
+	}
+
+	/**
+	 * Create objects randomly placed in the area.
+	 * 
+	 * @param count
+	 * @param random
+	 * @return
+	 */
+	public static List<GeoObject> createGeoObjects(int count, Random random) {
+		double radius = Distance.fastConversionMetersToGeoPoints(RADIUS_METERS);
+		List<GeoObject> objects = new ArrayList<GeoObject>(count);
+		for (int i = 0; i < count; i++) {
+			GeoObject geoObject = new GeoObject(i);
+			geoObject.setGeoPosition(CENTER_LATITUDE + (random.nextDouble() * 2 - 1) * radius,
+					CENTER_LONGITUDE + (random.nextDouble() * 2 - 1) * radius, random.nextDouble() * 50);
+			geoObject.setDistanceFromUser(Distance.calculateDistanceMeters(CENTER_LONGITUDE,
+					CENTER_LATITUDE, geoObject.getLongitude(), geoObject.getLatitude()));
+			objects.add(geoObject);
+		}
+		return objects;
+	}
+}
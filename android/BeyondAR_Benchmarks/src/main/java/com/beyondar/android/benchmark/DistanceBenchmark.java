@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.beyondar.android.util.math.Distance;
+import com.beyondar.android.world.GeoObject;
+
+/**
+ * Distance from the user to every object, as done each time that the user
+ * moves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+
+	@Param({ "100", "1000", "10000", "100000" })
+	public int objectCount;
+
+	private GeoObject mCenter;
+	private GeoObject[] mObjects;
+	private double[] mLongitudes;
+	private double[] mLatitudes;
+
+	@Setup
+	public void setup() {
+		List<GeoObject> objects = BenchmarkData.createGeoObjects(objectCount, new Random(
+				BenchmarkData.SEED));
+		mObjects = objects.toArray(new GeoObject[objectCount]);
+		mLongitudes = new double[objectCount];
+		mLatitudes = new double[objectCount];
+		for (int i = 0; i < objectCount; i++) {
+			mLongitudes[i] = mObjects[i].getLongitude();
+			mLatitudes[i] = mObjects[i].getLatitude();
+		}
+		mCenter = new GeoObject(-1);
+		mCenter.setGeoPosition(BenchmarkData.CENTER_LATITUDE, BenchmarkData.CENTER_LONGITUDE);
+	}
+
+	@Benchmark
+	public double calculateDistanceMeters() {
+		double sum = 0;
+		for (int i = 0; i < mLongitudes.length; i++) {
+			sum += Distance.calculateDistanceMeters(BenchmarkData.CENTER_LONGITUDE,
+					BenchmarkData.CENTER_LATITUDE, mLongitudes[i], mLatitudes[i]);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double calculateDistanceMetersGeoObject() {
+		double sum = 0;
+		for (int i = 0; i < mObjects.length; i++) {
+			sum += Distance.calculateDistanceMeters(mCenter, mObjects[i]);
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.beyondar.android.util.cache.LruCache;
+
+/**
+ * Operations of the {@link LruCache} used by the bitmap cache. The cache can
+ * hold half of the keys, so the accesses are a mix of hits, misses and
+ * evictions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LruCacheBenchmark {
+
+	@Param({ "100", "1000", "10000", "100000" })
+	public int objectCount;
+
+	private String[] mKeys;
+	private int[] mAccessOrder;
+	private LruCache<String, Object> mCache;
+	private Object mValue;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(BenchmarkData.SEED);
+		mKeys = new String[objectCount];
+		for (int i = 0; i < objectCount; i++) {
+			mKeys[i] = "http://beyondar.com/images/" + i + ".png";
+		}
+		mAccessOrder = new int[objectCount];
+		for (int i = 0; i < objectCount; i++) {
+			mAccessOrder[i] = random.nextInt(objectCount);
+		}
+		mValue = new Object();
+		mCache = new LruCache<String, Object>(Math.max(1, objectCount / 2));
+		for (int i = 0; i < objectCount; i++) {
+			mCache.put(mKeys[i], mValue);
+		}
+	}
+
+	@Benchmark
+	public int get() {
+		int hits = 0;
+		for (int i = 0; i < mAccessOrder.length; i++) {
+			if (mCache.get(mKeys[mAccessOrder[i]]) != null) {
+				hits++;
+			}
+		}
+		return hits;
+	}
+
+	@Benchmark
+	public int getOrPut() {
+		int misses = 0;
+		for (int i = 0; i < mAccessOrder.length; i++) {
+			String key = mKeys[mAccessOrder[i]];
+			if (mCache.get(key) == null) {
+				mCache.put(key, mValue);
+				misses++;
+			}
+		}
+		return misses;
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.beyondar.android.world.BeyondarObject;
+import com.beyondar.android.world.World;
+
+/**
+ * Sorting of the objects by distance from the user. Every invocation copies
+ * the unsorted objects to the list before sorting it, so the copy (a small
+ * part of the time) is included in the results.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SortByDistanceBenchmark {
+
+	/** Amount of objects requested to the nearest objects selection. */
+	private static final int NEAREST_COUNT = 20;
+
+	@Param({ "100", "1000", "10000", "100000" })
+	public int objectCount;
+
+	private List<BeyondarObject> mUnsorted;
+	private List<BeyondarObject> mList;
+	private List<BeyondarObject> mNearest;
+
+	@Setup
+	public void setup() {
+		mUnsorted = new ArrayList<BeyondarObject>(BenchmarkData.createGeoObjects(objectCount,
+				new Random(BenchmarkData.SEED)));
+		mList = new ArrayList<BeyondarObject>(objectCount);
+		mNearest = new ArrayList<BeyondarObject>(NEAREST_COUNT);
+	}
+
+	@Benchmark
+	public List<BeyondarObject> sortGeoObjectByDistanceFromCenter() {
+		mList.clear();
+		mList.addAll(mUnsorted);
+		return World.sortGeoObjectByDistanceFromCenter(mList);
+	}
+
+	@Benchmark
+	public List<BeyondarObject> selectNearest() {
+		return World.getDistanceSorter().selectNearest(mUnsorted, NEAREST_COUNT, mNearest);
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.beyondar.android.opengl.colision.SquareMeshCollider;
+import com.beyondar.android.util.math.geom.Point3;
+import com.beyondar.android.util.math.geom.Ray;
+
+/**
+ * Ray intersection against the colliders of all the objects, as done when
+ * the user touches the screen.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SquareMeshColliderBenchmark {
+
+	/** Half of the size of the squares (GL units). */
+	private static final float HALF_SIZE = 1;
+	/** Max horizontal and vertical offset of the squares (GL units). */
+	private static final float SPREAD = 20;
+
+	@Param({ "100", "1000", "10000", "100000" })
+	public int objectCount;
+
+	private SquareMeshCollider[] mColliders;
+	private Ray mRay;
+	private Point3 mPoint;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(BenchmarkData.SEED);
+		mColliders = new SquareMeshCollider[objectCount];
+		for (int i = 0; i < objectCount; i++) {
+			// Squares facing the user placed in front of it
+			float x = (random.nextFloat() * 2 - 1) * SPREAD;
+			float y = 5 + random.nextFloat() * 100;
+			float z = (random.nextFloat() * 2 - 1) * SPREAD;
+			mColliders[i] = new SquareMeshCollider(new Point3(x - HALF_SIZE, y, z + HALF_SIZE),
+					new Point3(x - HALF_SIZE, y, z - HALF_SIZE), new Point3(x + HALF_SIZE, y, z
+							- HALF_SIZE), new Point3(x + HALF_SIZE, y, z + HALF_SIZE));
+		}
+		mRay = new Ray(0.05f, 1, 0.02f);
+		mPoint = new Point3();
+	}
+
+	@Benchmark
+	public int getIntersectionPoint() {
+		int hits = 0;
+		for (int i = 0; i < mColliders.length; i++) {
+			if (mColliders[i].getIntersectionPoint(mRay) != null) {
+				hits++;
+			}
+		}
+		return hits;
+	}
+
+	@Benchmark
+	public int getIntersectionDistance() {
+		int hits = 0;
+		for (int i = 0; i < mColliders.length; i++) {
+			if (mColliders[i].getIntersectionDistance(mRay, mPoint) >= 0) {
+				hits++;
+			}
+		}
+		return hits;
+	}
+}
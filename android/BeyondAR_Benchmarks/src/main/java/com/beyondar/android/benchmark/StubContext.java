@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.benchmark;
+
+import java.io.File;
+
+import org.objenesis.ObjenesisStd;
+
+import android.content.ContextWrapper;
+import android.content.res.Resources;
+
+/**
+ * {@link android.content.Context} that can be used in a desktop JVM. It only
+ * provides what the {@link com.beyondar.android.world.World World} needs to be
+ * created: some {@link Resources} (created without calling its constructor,
+ * that needs native code) and a cache directory.
+ */
+public class StubContext extends ContextWrapper {
+
+	private final Resources mResources;
+	private final File mCacheDir;
+
+	public StubContext() {
+		super(null);
+		mResources = new ObjenesisStd().newInstance(Resources.class);
+		mCacheDir = new File(System.getProperty("java.io.tmpdir"), "beyondar-benchmarks");
+	}
+
+	@Override
+	public Resources getResources() {
+		return mResources;
+	}
+
+	@Override
+	public File getCacheDir() {
+		return mCacheDir;
+	}
+}
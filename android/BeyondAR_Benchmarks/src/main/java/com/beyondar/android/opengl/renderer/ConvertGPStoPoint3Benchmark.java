@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.renderer;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.beyondar.android.benchmark.BenchmarkData;
+import com.beyondar.android.util.math.geom.Point3;
+import com.beyondar.android.world.GeoObject;
+
+/**
+ * Conversion of the geo positions to OpenGL coordinates done by
+ * {@link ARRenderer#convertGPStoPoint3(GeoObject, Point3)}. It is in the
+ * renderer package to be able to call the protected method.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConvertGPStoPoint3Benchmark {
+
+	@Param({ "100", "1000", "10000", "100000" })
+	public int objectCount;
+
+	/** Use the pull closer/push away distances, that need interpolation. */
+	@Param({ "false", "true" })
+	public boolean limitDistances;
+
+	private ARRenderer mRenderer;
+	private GeoObject[] mObjects;
+	private Point3 mOut;
+
+	@Setup
+	public void setup() {
+		mRenderer = new ARRenderer();
+		mRenderer.setWorld(BenchmarkData.createWorld());
+		if (limitDistances) {
+			mRenderer.setPullCloserDistance(100);
+			mRenderer.setPushAwayDistance(20);
+		}
+		List<GeoObject> objects = BenchmarkData.createGeoObjects(objectCount, new Random(
+				BenchmarkData.SEED));
+		mObjects = objects.toArray(new GeoObject[objectCount]);
+		mOut = new Point3();
+	}
+
+	@Benchmark
+	public float convertGPStoPoint3() {
+		float sum = 0;
+		for (int i = 0; i < mObjects.length; i++) {
+			mRenderer.convertGPStoPoint3(mObjects[i], mOut);
+			sum += mOut.x + mOut.y + mOut.z;
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.renderable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ShortBuffer;
+import java.util.List;
+
+import javax.microedition.khronos.opengles.GL10;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.beyondar.android.opengl.texture.Texture;
+import com.beyondar.android.opengl.util.RecordingGL;
+import com.beyondar.android.util.math.geom.Point3;
+
+public class SpriteBatchTest {
+
+	private static final float DELTA = 1e-5f;
+
+	private SpriteBatch mSpriteBatch;
+
+	@Before
+	public void setUp() {
+		mSpriteBatch = new SpriteBatch();
+		mSpriteBatch.begin();
+	}
+
+	@Test
+	public void quadWithoutRotationIsTranslated() {
+		Texture texture = new Texture(1);
+		mSpriteBatch.add(texture, new Point3(10, 20, 30), new Point3());
+
+		float[] data = mSpriteBatch.getVertexData(1);
+		float[] vertices = texture.getVertices();
+		float[] textureMap = texture.getTextureMap();
+		for (int i = 0; i < SpriteBatch.VERTICES_PER_QUAD; i++) {
+			int offset = i * SpriteBatch.VERTEX_SIZE;
+			assertEquals(vertices[i * 3] + 10, data[offset], DELTA);
+			assertEquals(vertices[i * 3 + 1] + 20, data[offset + 1], DELTA);
+			assertEquals(vertices[i * 3 + 2] + 30, data[offset + 2], DELTA);
+			assertEquals(textureMap[i * 2], data[offset + 3], 0);
+			assertEquals(textureMap[i * 2 + 1], data[offset + 4], 0);
+		}
+	}
+
+	@Test
+	public void rotationMatchesTheModelViewRotations() {
+		Texture texture = new Texture(1);
+		Point3 position = new Point3(1, 2, 3);
+		Point3 angle = new Point3(30, 45, 60);
+		mSpriteBatch.add(texture, position, angle);
+
+		float[] data = mSpriteBatch.getVertexData(1);
+		float[] vertices = texture.getVertices();
+		for (int i = 0; i < SpriteBatch.VERTICES_PER_QUAD; i++) {
+			// glTranslatef, glRotatef(x), glRotatef(y), glRotatef(z): the
+			// vertex is rotated in z first
+			double[] v = { vertices[i * 3], vertices[i * 3 + 1], vertices[i * 3 + 2] };
+			v = rotate(v, angle.z, 2);
+			v = rotate(v, angle.y, 1);
+			v = rotate(v, angle.x, 0);
+			int offset = i * SpriteBatch.VERTEX_SIZE;
+			assertEquals(v[0] + position.x, data[offset], DELTA);
+			assertEquals(v[1] + position.y, data[offset + 1], DELTA);
+			assertEquals(v[2] + position.z, data[offset + 2], DELTA);
+		}
+	}
+
+	@Test
+	public void indicesKeepTheWindingOfTheTriangleStrip() {
+		Texture texture = new Texture(1);
+		mSpriteBatch.add(texture, new Point3(), new Point3());
+		mSpriteBatch.add(texture, new Point3(5, 0, 0), new Point3());
+		RecordingGL recordingGL = new RecordingGL();
+		mSpriteBatch.flush(recordingGL.getGL());
+
+		List<RecordingGL.Call> draws = recordingGL.getCalls("glDrawElements");
+		assertEquals(1, draws.size());
+		assertEquals(GL10.GL_TRIANGLES, draws.get(0).getInt(0));
+		assertEquals(2 * SpriteBatch.INDICES_PER_QUAD, draws.get(0).getInt(1));
+		ShortBuffer indices = (ShortBuffer) draws.get(0).args[3];
+		for (int quad = 0; quad < 2; quad++) {
+			int v = quad * SpriteBatch.VERTICES_PER_QUAD;
+			// The strip v, v + 1, v + 2, v + 3 draws (v, v + 1, v + 2) and,
+			// flipping the odd triangle to keep the winding, (v + 2, v + 1,
+			// v + 3)
+			int[] expected = { v, v + 1, v + 2, v + 2, v + 1, v + 3 };
+			for (int i = 0; i < expected.length; i++) {
+				assertEquals(expected[i], indices.get(quad * SpriteBatch.INDICES_PER_QUAD + i));
+			}
+		}
+		assertEquals(GL10.GL_CW, recordingGL.getCalls("glFrontFace").get(0).getInt(0));
+	}
+
+	@Test
+	public void quadsAreGroupedByTexture() {
+		Texture first = new Texture(1);
+		Texture second = new Texture(2);
+		mSpriteBatch.add(first, new Point3(), new Point3());
+		mSpriteBatch.add(second, new Point3(), new Point3());
+		mSpriteBatch.add(first, new Point3(7, 0, 0), new Point3());
+
+		assertEquals(3, mSpriteBatch.getQuadCount());
+		assertEquals(2, mSpriteBatch.getTextureCount());
+		assertEquals(2, mSpriteBatch.getQuadCount(1));
+		assertEquals(1, mSpriteBatch.getQuadCount(2));
+		// The second quad of the first texture follows the first one
+		float[] data = mSpriteBatch.getVertexData(1);
+		int offset = SpriteBatch.VERTICES_PER_QUAD * SpriteBatch.VERTEX_SIZE;
+		assertEquals(first.getVertices()[0] + 7, data[offset], DELTA);
+
+		RecordingGL recordingGL = new RecordingGL();
+		mSpriteBatch.flush(recordingGL.getGL());
+		assertEquals(2, mSpriteBatch.getDrawCallCount());
+		List<RecordingGL.Call> binds = recordingGL.getCalls("glBindTexture");
+		assertEquals(2, binds.size());
+		assertEquals(1, binds.get(0).getInt(1));
+		assertEquals(2, binds.get(1).getInt(1));
+		List<RecordingGL.Call> draws = recordingGL.getCalls("glDrawElements");
+		assertEquals(2 * SpriteBatch.INDICES_PER_QUAD, draws.get(0).getInt(1));
+		assertEquals(SpriteBatch.INDICES_PER_QUAD, draws.get(1).getInt(1));
+	}
+
+	@Test
+	public void unusedTexturesAreReleasedOnBegin() {
+		mSpriteBatch.add(new Texture(1), new Point3(), new Point3());
+		mSpriteBatch.add(new Texture(2), new Point3(), new Point3());
+		mSpriteBatch.begin();
+		mSpriteBatch.add(new Texture(1), new Point3(), new Point3());
+		assertEquals(1, mSpriteBatch.getTextureCount());
+		assertNull(mSpriteBatch.getVertexData(2));
+		mSpriteBatch.begin();
+		mSpriteBatch.begin();
+		assertEquals(0, mSpriteBatch.getQuadCount(1));
+	}
+
+	@Test
+	public void bigBatchesAreSplitInSeveralDraws() {
+		Texture texture = new Texture(1);
+		for (int i = 0; i < SpriteBatch.MAX_QUADS_PER_DRAW + 1; i++) {
+			mSpriteBatch.add(texture, new Point3(), new Point3());
+		}
+		RecordingGL recordingGL = new RecordingGL();
+		mSpriteBatch.flush(recordingGL.getGL());
+		List<RecordingGL.Call> draws = recordingGL.getCalls("glDrawElements");
+		assertEquals(2, draws.size());
+		assertEquals(SpriteBatch.MAX_QUADS_PER_DRAW * SpriteBatch.INDICES_PER_QUAD, draws.get(0).getInt(1));
+		assertEquals(SpriteBatch.INDICES_PER_QUAD, draws.get(1).getInt(1));
+	}
+
+	/** Rotate like glRotatef around the x (0), y (1) or z (2) axis. */
+	private static double[] rotate(double[] v, double degrees, int axis) {
+		double c = Math.cos(Math.toRadians(degrees));
+		double s = Math.sin(Math.toRadians(degrees));
+		switch (axis) {
+		case 0:
+			return new double[] { v[0], c * v[1] - s * v[2], s * v[1] + c * v[2] };
+		case 1:
+			return new double[] { c * v[0] + s * v[2], v[1], -s * v[0] + c * v[2] };
+		default:
+			return new double[] { c * v[0] - s * v[1], s * v[0] + c * v[1], v[2] };
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.renderer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.beyondar.android.opengl.texture.Texture;
+import com.beyondar.android.opengl.util.RecordingGL;
+import com.beyondar.android.util.Logger;
+import com.beyondar.android.world.BeyondarObject;
+
+public class ARRendererDeclutterTest {
+
+	private ARRenderer mRenderer;
+	private RecordingGL mRecordingGL;
+	private ScreenDeclutterer mDeclutterer;
+
+	@Before
+	public void setUp() {
+		Logger.DEBUG = false;
+		mRenderer = new ARRenderer();
+		mRecordingGL = new RecordingGL();
+		mDeclutterer = new ScreenDeclutterer();
+		mDeclutterer.begin(480, 800);
+	}
+
+	@Test
+	public void keptObjectsAreDrawnAtTheirOwnPositions() {
+		BeyondarObject first = createObject(1, 10, 20, 0, 100, 100);
+		BeyondarObject second = createObject(2, -30, 5, 2, 300, 500);
+		mDeclutterer.add(first, new Texture());
+		mDeclutterer.add(second, new Texture());
+
+		// The render loop leaves the shared renderable updated with the last
+		// visited object
+		second.getOpenGLObject().update(1, 10, second);
+
+		mRenderer.renderDecluttered(mRecordingGL.getGL(), mDeclutterer, 1);
+
+		// Each quad is moved to its position and moved back after drawing it
+		List<RecordingGL.Call> translations = mRecordingGL.getCalls("glTranslatef");
+		assertEquals(4, translations.size());
+		assertEquals(2, mRecordingGL.getCalls("glDrawArrays").size());
+		assertTranslation(getDrawn(0), translations.get(0));
+		assertTranslation(getDrawn(1), translations.get(2));
+	}
+
+	@Test
+	public void suppressedObjectsAreNotDrawn() {
+		BeyondarObject first = createObject(1, 10, 20, 0, 100, 100);
+		BeyondarObject second = createObject(2, -30, 5, 2, 110, 110);
+		first.setPriority(1);
+		mDeclutterer.add(first, new Texture());
+		mDeclutterer.add(second, new Texture());
+
+		mRenderer.renderDecluttered(mRecordingGL.getGL(), mDeclutterer, 1);
+
+		List<RecordingGL.Call> translations = mRecordingGL.getCalls("glTranslatef");
+		assertEquals(2, translations.size());
+		assertTranslation(first, translations.get(0));
+	}
+
+	private BeyondarObject getDrawn(int index) {
+		return mDeclutterer.getObject(index);
+	}
+
+	private static void assertTranslation(BeyondarObject beyondarObject, RecordingGL.Call translation) {
+		assertEquals(beyondarObject.getPosition().x, translation.getFloat(0), 0);
+		assertEquals(beyondarObject.getPosition().y, translation.getFloat(1), 0);
+		assertEquals(beyondarObject.getPosition().z, translation.getFloat(2), 0);
+	}
+
+	/** Create an object with a 40x40 px quad centered on the screen point. */
+	private static BeyondarObject createObject(long id, float x, float y, float z, float screenX,
+			float screenY) {
+		BeyondarObject beyondarObject = new BeyondarObject(id);
+		beyondarObject.setPosition(x, y, z);
+		beyondarObject.getScreenPositionCenter().set(screenX, screenY, 0.5f);
+		beyondarObject.getScreenPositionTopLeft().set(screenX - 20, screenY - 20, 0.5f);
+		beyondarObject.getScreenPositionTopRight().set(screenX + 20, screenY - 20, 0.5f);
+		beyondarObject.getScreenPositionBottomLeft().set(screenX - 20, screenY + 20, 0.5f);
+		beyondarObject.getScreenPositionBottomRight().set(screenX + 20, screenY + 20, 0.5f);
+		return beyondarObject;
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.texture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class MipmapGeneratorTest {
+
+	@Test
+	public void levelSizesHalveDownToOne() {
+		assertEquals(256, MipmapGenerator.getLevelSize(256, 0));
+		assertEquals(64, MipmapGenerator.getLevelSize(256, 2));
+		assertEquals(1, MipmapGenerator.getLevelSize(256, 12));
+		assertEquals(2, MipmapGenerator.getLevelSize(5, 1));
+		assertEquals(9, MipmapGenerator.getLevelCount(256, 1));
+		assertEquals(8, MipmapGenerator.getLevelCount(200, 3));
+		assertEquals(1, MipmapGenerator.getLevelCount(1, 1));
+	}
+
+	@Test
+	public void pixelCountAddsAThirdWithMipmaps() {
+		assertEquals(256 * 256, MipmapGenerator.getPixelCount(256, 256, 0, false));
+		assertEquals(64 * 64, MipmapGenerator.getPixelCount(256, 256, 2, false));
+
+		// 4^n + 4^(n-1) + ... + 1 = (4^(n+1) - 1) / 3
+		assertEquals((4 * 256 * 256 - 1) / 3, MipmapGenerator.getPixelCount(256, 256, 0, true));
+		assertEquals((4 * 64 * 64 - 1) / 3, MipmapGenerator.getPixelCount(256, 256, 2, true));
+		// 8x2, 4x1, 2x1, 1x1
+		assertEquals(16 + 4 + 2 + 1, MipmapGenerator.getPixelCount(8, 2, 0, true));
+	}
+
+	@Test
+	public void premultiplyScalesTheColorsByTheAlpha() {
+		int[] pixels = { 0xffff8040, 0x80ff8040, 0x00ffffff };
+		MipmapGenerator.premultiply(pixels, pixels.length);
+		assertArrayEquals(new int[] { 0xffff8040, 0x80804020, 0x00000000 }, pixels);
+	}
+
+	@Test
+	public void downsampleAveragesEachBlock() {
+		int[] pixels = {
+				0xff000000, 0xff0000ff, 0xffff0000, 0xffff0000,
+				0xff0000ff, 0xff000000, 0xffff0000, 0xffff0000 };
+		int[] level = new int[2];
+		MipmapGenerator.downsample(pixels, 4, 2, level);
+		assertArrayEquals(new int[] { 0xff000080, 0xffff0000 }, level);
+	}
+
+	@Test
+	public void downsampleInPlaceKeepsTheLastRowOfOddSizes() {
+		// 3x3, the last row and column are averaged with themselves
+		int[] pixels = {
+				0xff101010, 0xff101010, 0xff808080,
+				0xff101010, 0xff101010, 0xff808080,
+				0xff404040, 0xff404040, 0xffffffff };
+		MipmapGenerator.downsample(pixels, 3, 3, pixels);
+		assertEquals(0xff101010, pixels[0]);
+	}
+
+	@Test
+	public void downsampleReachesOnePixel() {
+		int width = 16;
+		int height = 4;
+		int[] pixels = new int[width * height];
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = 0x80402010;
+		}
+		int levels = MipmapGenerator.getLevelCount(width, height);
+		for (int i = 1; i < levels; i++) {
+			MipmapGenerator.downsample(pixels, width, height, pixels);
+			width = MipmapGenerator.getLevelSize(width, 1);
+			height = MipmapGenerator.getLevelSize(height, 1);
+		}
+		assertEquals(1, width);
+		assertEquals(1, height);
+		assertEquals(0x80402010, pixels[0]);
+	}
+
+	@Test
+	public void toRGBAMovesTheAlphaToTheEnd() {
+		ByteBuffer buffer = ByteBuffer.allocate(8);
+		MipmapGenerator.toRGBA(new int[] { 0x80112233, 0xff445566 }, 2, buffer);
+		assertEquals(0, buffer.position());
+		byte[] bytes = new byte[8];
+		buffer.get(bytes);
+		assertArrayEquals(new byte[] { 0x11, 0x22, 0x33, (byte) 0x80, 0x44, 0x55, 0x66, (byte) 0xff }, bytes);
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.texture;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TextureLodTest {
+
+	@Test
+	public void defaultBandsUseFourLevels() {
+		TextureLod lod = new TextureLod();
+		assertEquals(4, lod.getLevelCount());
+		assertEquals(0, lod.getLevel(0));
+		assertEquals(0, lod.getLevel(99.9));
+		assertEquals(1, lod.getLevel(100));
+		assertEquals(2, lod.getLevel(500));
+		assertEquals(3, lod.getLevel(1000));
+		assertEquals(3, lod.getLevel(1e7));
+	}
+
+	@Test
+	public void bandsAreCopied() {
+		float[] bands = { 10, 20 };
+		TextureLod lod = new TextureLod(bands);
+		bands[0] = 1000;
+		assertEquals(0, lod.getLevel(5));
+		assertEquals(2, lod.getLevel(25));
+	}
+
+	@Test
+	public void withoutBandsTheFullImageIsUsed() {
+		TextureLod lod = new TextureLod(new float[0]);
+		assertEquals(1, lod.getLevelCount());
+		assertEquals(0, lod.getLevel(1e7));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void bandsMustBeAscending() {
+		new TextureLod(new float[] { 300, 100 });
+	}
+}
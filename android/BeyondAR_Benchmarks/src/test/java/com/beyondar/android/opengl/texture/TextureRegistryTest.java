@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.texture;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TextureRegistryTest {
+
+	@Test
+	public void memorySizeCountsTheMipmaps() {
+		TextureRegistry registry = new TextureRegistry();
+		registry.put("plain", new Texture(1).setImageSize(256, 256).setLevel(0, false), false);
+		assertEquals(256 * 256 * 4, registry.getMemorySize());
+
+		registry.put("mipmaps", new Texture(2).setImageSize(256, 256).setLevel(1, true), false);
+		int mipmapsBytes = (4 * 128 * 128 - 1) / 3 * 4;
+		assertEquals(256 * 256 * 4 + mipmapsBytes, registry.getMemorySize());
+
+		// Replacing the texture of a uri replaces its size
+		registry.put("plain", new Texture(3).setImageSize(64, 64).setLevel(0, true), false);
+		assertEquals((4 * 64 * 64 - 1) / 3 * 4 + mipmapsBytes, registry.getMemorySize());
+	}
+
+	@Test
+	public void atlasRegionsDoNotCount() {
+		TextureRegistry registry = new TextureRegistry();
+		registry.put("region", new Texture(1).setImageSize(256, 256).setTextureRegion(0, 0, 0.5f, 0.5f), false);
+		assertEquals(0, registry.getMemorySize());
+	}
+}
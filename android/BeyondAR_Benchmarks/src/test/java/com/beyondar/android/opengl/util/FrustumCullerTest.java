@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.beyondar.android.util.math.geom.Point3;
+
+public class FrustumCullerTest {
+
+	private static final float[] IDENTITY = { 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1 };
+
+	private FrustumCuller mCuller;
+
+	@Before
+	public void setUp() {
+		mCuller = new FrustumCuller();
+		// Looking to -z, 90 degrees wide: at z = -10 it goes from -10 to 10
+		assertTrue(mCuller.update(perspective(90, 1, 1, 100), IDENTITY));
+	}
+
+	@Test
+	public void sphereInsideIsVisible() {
+		assertTrue(mCuller.isSphereVisible(0, 0, -10, 0));
+		assertTrue(mCuller.isSphereVisible(new Point3(5, -5, -50), 1));
+	}
+
+	@Test
+	public void sphereOutsideIsNotVisible() {
+		// Behind the camera, before the near plane and after the far plane
+		assertFalse(mCuller.isSphereVisible(0, 0, 10, 1));
+		assertFalse(mCuller.isSphereVisible(0, 0, -0.5f, 0.1f));
+		assertFalse(mCuller.isSphereVisible(0, 0, -200, 1));
+		// Out of each side
+		assertFalse(mCuller.isSphereVisible(15, 0, -10, 1));
+		assertFalse(mCuller.isSphereVisible(-15, 0, -10, 1));
+		assertFalse(mCuller.isSphereVisible(0, 15, -10, 1));
+		assertFalse(mCuller.isSphereVisible(0, -15, -10, 1));
+	}
+
+	@Test
+	public void sphereIntersectingAPlaneIsVisible() {
+		// The center is out but it crosses the right plane
+		assertTrue(mCuller.isSphereVisible(10.5f, 0, -10, 1));
+		// 3.5 from the plane
+		assertTrue(mCuller.isSphereVisible(15, 0, -10, 4));
+		// Crossing the far plane
+		assertTrue(mCuller.isSphereVisible(0, 0, -102, 3));
+	}
+
+	@Test
+	public void marginIsAddedToTheRadius() {
+		mCuller.setMargin(3);
+		assertTrue(mCuller.isSphereVisible(15, 0, -10, 1));
+		assertFalse(mCuller.isSphereVisible(20, 0, -10, 1));
+	}
+
+	@Test
+	public void modelViewMovesTheFrustum() {
+		float[] modelView = IDENTITY.clone();
+		// Translate the world 20 units to -z
+		modelView[14] = -20;
+		assertTrue(mCuller.update(perspective(90, 1, 1, 100), modelView));
+		assertTrue(mCuller.isSphereVisible(0, 0, 10, 1));
+		assertFalse(mCuller.isSphereVisible(0, 0, 30, 1));
+	}
+
+	@Test
+	public void invalidMatricesDoNotCull() {
+		assertFalse(mCuller.update(new float[16], new float[16]));
+		assertFalse(mCuller.isValid());
+		assertTrue(mCuller.isSphereVisible(0, 0, 10, 1));
+	}
+
+	/** Same matrix as gluPerspective, column major. */
+	private static float[] perspective(float fovy, float aspect, float near, float far) {
+		float f = (float) (1 / Math.tan(Math.toRadians(fovy) / 2));
+		float[] m = new float[16];
+		m[0] = f / aspect;
+		m[5] = f;
+		m[10] = (far + near) / (near - far);
+		m[11] = -1;
+		m[14] = 2 * far * near / (near - far);
+		return m;
+	}
+}
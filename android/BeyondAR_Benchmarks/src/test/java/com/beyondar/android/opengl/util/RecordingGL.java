@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.microedition.khronos.opengles.GL10;
+
+/**
+ * {@link GL10} that does nothing but record the calls, to check what the
+ * framework sends to OpenGL without a device.
+ */
+public class RecordingGL implements InvocationHandler {
+
+	/** A recorded call. */
+	public static class Call {
+		public final String name;
+		public final Object[] args;
+
+		Call(String name, Object[] args) {
+			this.name = name;
+			this.args = args == null ? new Object[0] : args;
+		}
+
+		public float getFloat(int index) {
+			return ((Number) args[index]).floatValue();
+		}
+
+		public int getInt(int index) {
+			return ((Number) args[index]).intValue();
+		}
+	}
+
+	private final List<Call> mCalls = new ArrayList<Call>();
+	private final GL10 mGL;
+
+	public RecordingGL() {
+		mGL = (GL10) Proxy.newProxyInstance(GL10.class.getClassLoader(), new Class<?>[] { GL10.class }, this);
+	}
+
+	public GL10 getGL() {
+		return mGL;
+	}
+
+	public List<Call> getCalls() {
+		return mCalls;
+	}
+
+	/**
+	 * Get the recorded calls to a method.
+	 *
+	 * @param name
+	 * @return
+	 */
+	public List<Call> getCalls(String name) {
+		List<Call> calls = new ArrayList<Call>();
+		for (int i = 0; i < mCalls.size(); i++) {
+			if (mCalls.get(i).name.equals(name)) {
+				calls.add(mCalls.get(i));
+			}
+		}
+		return calls;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) {
+		mCalls.add(new Call(method.getName(), args));
+		Class<?> type = method.getReturnType();
+		if (type == int.class) {
+			return 0;
+		} else if (type == boolean.class) {
+			return false;
+		} else if (type == float.class) {
+			return 0f;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.sensor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Feeds the fusion with synthetic values of a device lying flat (screen up)
+ * that turns around the vertical axis, so the azimuth is the only angle
+ * that changes.
+ */
+public class OrientationFusionTest {
+
+	private static final float[] GRAVITY = { 0, 0, 9.81f };
+	/** Horizontal and down components of the magnetic field (uT). */
+	private static final float FIELD_NORTH = 20;
+	private static final float FIELD_DOWN = 40;
+	/** 100 Hz */
+	private static final long STEP = 10000000L;
+	private static final float STEP_SECONDS = STEP * 1e-9f;
+
+	private OrientationFusion mFusion;
+	private long mTimestamp;
+
+	@Before
+	public void setUp() {
+		mFusion = new OrientationFusion();
+		mTimestamp = 1000000000L;
+	}
+
+	@Test
+	public void needsTheAccelerometerAndTheMagneticField() {
+		assertFalse(mFusion.updateGyroscope(new float[3], mTimestamp));
+		assertFalse(mFusion.updateAccelerometer(GRAVITY));
+		assertFalse(mFusion.isInitialized());
+		assertFalse(mFusion.getRotationMatrix(new float[9]));
+		assertTrue(mFusion.updateMagneticField(magneticField(0.5)));
+		assertTrue(mFusion.isInitialized());
+		assertEquals(0.5, getAzimuth(), 1e-4);
+	}
+
+	@Test
+	public void followsTheGyroscope() {
+		initialize(0.3);
+		// A long time constant, so the result only depends on the gyroscope
+		mFusion.setTimeConstant(1000);
+		double azimuth = 0.3;
+		for (int i = 0; i < 100; i++) {
+			azimuth += 1 * STEP_SECONDS;
+			// The accelerometer and the magnetic field stay at the start
+			step(1, 0.3);
+		}
+		assertEquals(0, angleDifference(azimuth, getAzimuth()), 1e-3);
+	}
+
+	@Test
+	public void convergesToTheMagneticFieldWithAGyroscopeBias() {
+		initialize(1);
+		// Still device with a gyroscope that drifts 0.05 rad/s
+		for (int i = 0; i < 1000; i++) {
+			step(0.05, 1);
+		}
+		// Without the correction it would have drifted 0.5 rad, with it the
+		// error is about bias * time constant
+		double error = angleDifference(1, getAzimuth());
+		assertTrue("error " + error, Math.abs(error) < 0.04);
+	}
+
+	@Test
+	public void convergesAfterAJumpOfTheReference() {
+		initialize(0);
+		// The magnetic field says that the device has turned but the gyroscope
+		// does not, the fused value goes slowly towards the new azimuth
+		step(0, 2);
+		assertTrue(Math.abs(getAzimuth()) < 0.1);
+		// Ten time constants
+		for (int i = 0; i < 500; i++) {
+			step(0, 2);
+		}
+		assertEquals(0, angleDifference(2, getAzimuth()), 1e-3);
+	}
+
+	@Test
+	public void crossingPlusMinusPiDoesNotJump() {
+		double azimuth = Math.PI - 0.2;
+		initialize(azimuth);
+		double previous = getAzimuth();
+		// Turn 0.4 rad at 1 rad/s, crossing from +pi to -pi
+		for (int i = 0; i < 40; i++) {
+			azimuth += STEP_SECONDS;
+			step(1, azimuth);
+			double fused = getAzimuth();
+			assertEquals(0, angleDifference(azimuth, fused), 1e-3);
+			assertEquals(STEP_SECONDS, angleDifference(fused, previous), 1e-3);
+			previous = fused;
+		}
+		assertTrue(getAzimuth() < 0);
+		assertEquals(-Math.PI + 0.2, getAzimuth(), 1e-3);
+	}
+
+	@Test
+	public void correctionAcrossPlusMinusPiTakesTheShortestPath() {
+		initialize(Math.PI - 0.05);
+		// The reference is at the other side of +/-pi, 0.1 rad away
+		for (int i = 0; i < 500; i++) {
+			step(0, -Math.PI + 0.05);
+			double fused = getAzimuth();
+			// The fused value never goes through 0
+			assertTrue("azimuth " + fused, Math.abs(fused) > Math.PI - 0.06);
+		}
+		assertEquals(0, angleDifference(-Math.PI + 0.05, getAzimuth()), 1e-3);
+
+		float[] q = new float[4];
+		mFusion.getQuaternion(q);
+		assertEquals(1, q[0] * q[0] + q[1] * q[1] + q[2] * q[2] + q[3] * q[3], 1e-5);
+	}
+
+	@Test
+	public void gyroscopeGapsTakeTheReferenceAgain() {
+		initialize(0);
+		mFusion.setTimeConstant(1000);
+		step(0, 1.5);
+		assertEquals(0, getAzimuth(), 1e-3);
+
+		mTimestamp += 2000000000L;
+		assertTrue(mFusion.updateGyroscope(new float[3], mTimestamp));
+		assertEquals(1.5, getAzimuth(), 1e-4);
+	}
+
+	private void initialize(double azimuth) {
+		mFusion.updateAccelerometer(GRAVITY);
+		mFusion.updateMagneticField(magneticField(azimuth));
+		mFusion.updateGyroscope(new float[3], mTimestamp);
+		assertTrue(mFusion.isInitialized());
+		assertEquals(0, angleDifference(azimuth, getAzimuth()), 1e-4);
+	}
+
+	/**
+	 * Feed one step of values.
+	 *
+	 * @param turnSpeed
+	 *            Speed (rad/s) measured by the gyroscope, positive to increase
+	 *            the azimuth (turning clockwise seen from above).
+	 * @param azimuth
+	 *            Azimuth given by the magnetic field.
+	 */
+	private void step(double turnSpeed, double azimuth) {
+		mTimestamp += STEP;
+		mFusion.updateAccelerometer(GRAVITY);
+		mFusion.updateMagneticField(magneticField(azimuth));
+		// The gyroscope is positive counterclockwise around the z axis
+		assertTrue(mFusion.updateGyroscope(new float[] { 0, 0, (float) -turnSpeed }, mTimestamp));
+	}
+
+	private double getAzimuth() {
+		float[] R = new float[9];
+		assertTrue(mFusion.getRotationMatrix(R));
+		return SensorMath.getOrientation(R, new float[3])[0];
+	}
+
+	/** Magnetic field in the device axes when its y axis points to the azimuth. */
+	private static float[] magneticField(double azimuth) {
+		return new float[] { (float) (-FIELD_NORTH * Math.sin(azimuth)),
+				(float) (FIELD_NORTH * Math.cos(azimuth)), -FIELD_DOWN };
+	}
+
+	/** Get a - b in the range -pi to pi. */
+	private static double angleDifference(double a, double b) {
+		double difference = (a - b) % (2 * Math.PI);
+		if (difference > Math.PI) {
+			difference -= 2 * Math.PI;
+		} else if (difference < -Math.PI) {
+			difference += 2 * Math.PI;
+		}
+		return difference;
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.util.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DiskCacheTest {
+
+	@Rule
+	public TemporaryFolder mFolder = new TemporaryFolder();
+
+	private File mDirectory;
+
+	@Before
+	public void setUp() {
+		mDirectory = new File(mFolder.getRoot(), "cache");
+	}
+
+	@Test
+	public void keysAreHashedWithSha1() {
+		assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", DiskCache.hashKey("abc"));
+		assertEquals("da39a3ee5e6b4b0d3255bfef95601890afd80709", DiskCache.hashKey(""));
+
+		DiskCache cache = new DiskCache(mDirectory, 100);
+		assertTrue(cache.put("http://example.com/image.png", data(10, 1), null, null));
+		assertTrue(new File(mDirectory, DiskCache.hashKey("http://example.com/image.png")).isFile());
+	}
+
+	@Test
+	public void creatingTheCacheDoesNotAccessTheDisk() {
+		new DiskCache(mDirectory, 100);
+		assertFalse(mDirectory.exists());
+	}
+
+	@Test
+	public void storedDataIsRead() {
+		DiskCache cache = new DiskCache(mDirectory, 100);
+		assertTrue(cache.put("a", data(10, 1), "etag", "Tue, 15 Nov 1994 12:45:26 GMT"));
+		assertArrayEquals(data(10, 1), cache.get("a"));
+		assertEquals("etag", cache.getEntry("a").getETag());
+		assertEquals("Tue, 15 Nov 1994 12:45:26 GMT", cache.getEntry("a").getLastModified());
+		assertNull(cache.get("b"));
+
+		assertTrue(cache.put("a", data(5, 2), null, null));
+		assertArrayEquals(data(5, 2), cache.get("a"));
+		assertEquals(5, cache.size());
+		assertNull(cache.getEntry("a").getETag());
+
+		assertTrue(cache.remove("a"));
+		assertFalse(cache.remove("a"));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void leastRecentlyUsedEntriesAreEvicted() {
+		DiskCache cache = new DiskCache(mDirectory, 30);
+		cache.put("a", data(10, 1), null, null);
+		cache.put("b", data(10, 2), null, null);
+		cache.put("c", data(10, 3), null, null);
+		assertNotNull(cache.get("a"));
+
+		cache.put("d", data(10, 4), null, null);
+		assertEquals(3, cache.getEntryCount());
+		assertEquals(30, cache.size());
+		assertNull(cache.getEntry("b"));
+		assertFalse(new File(mDirectory, DiskCache.hashKey("b")).exists());
+		assertNotNull(cache.getEntry("a"));
+		assertNotNull(cache.getEntry("c"));
+		assertNotNull(cache.getEntry("d"));
+	}
+
+	@Test
+	public void bigEntriesAreTrimmedToTheSize() {
+		DiskCache cache = new DiskCache(mDirectory, 30);
+		cache.put("a", data(10, 1), null, null);
+		cache.put("b", data(10, 2), null, null);
+		cache.put("c", data(25, 3), null, null);
+		assertEquals(1, cache.getEntryCount());
+		assertEquals(25, cache.size());
+
+		assertFalse(cache.put("d", data(31, 4), null, null));
+		assertEquals(25, cache.size());
+	}
+
+	@Test
+	public void journalKeepsTheEntriesAndTheirOrder() {
+		DiskCache cache = new DiskCache(mDirectory, 100);
+		cache.put("a", data(10, 1), "etag", null);
+		cache.put("b", data(10, 2), null, null);
+		cache.put("c", data(10, 3), null, null);
+		cache.remove("c");
+		cache.get("a");
+		cache.close();
+
+		// Opened again with a smaller size, the least recently used is
+		// trimmed
+		DiskCache reopened = new DiskCache(mDirectory, 15);
+		assertEquals(1, reopened.getEntryCount());
+		assertNull(reopened.getEntry("b"));
+		assertArrayEquals(data(10, 1), reopened.get("a"));
+		assertEquals("etag", reopened.getEntry("a").getETag());
+	}
+
+	@Test
+	public void getInstanceSharesTheCacheOfADirectory() {
+		DiskCache cache = DiskCache.getInstance(mDirectory, 100);
+		assertSame(cache, DiskCache.getInstance(new File(mDirectory.getPath()), 200));
+		assertEquals(100, cache.getMaxSize());
+	}
+
+	private static byte[] data(int length, int value) {
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++) {
+			data[i] = (byte) (value + i);
+		}
+		return data;
+	}
+}
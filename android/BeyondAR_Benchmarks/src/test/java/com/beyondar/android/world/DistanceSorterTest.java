@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.world;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class DistanceSorterTest {
+
+	private static final double[] DISTANCES = { 30, 10, 50, 20, 10, 40 };
+
+	@Test
+	public void sortIsStable() {
+		List<BeyondarObject> objects = createObjects();
+		new DistanceSorter().sort(objects);
+		assertIds(objects, 1, 4, 3, 0, 5, 2);
+	}
+
+	@Test
+	public void selectNearestKeepsTheClosestObjects() {
+		List<BeyondarObject> out = new ArrayList<BeyondarObject>();
+		out.add(new BeyondarObject(100));
+		new DistanceSorter().selectNearest(createObjects(), 3, out);
+		assertIds(out, 1, 4, 3);
+	}
+
+	@Test
+	public void selectNearestWithMoreThanTheSizeSortsAll() {
+		List<BeyondarObject> source = createObjects();
+		List<BeyondarObject> out = new ArrayList<BeyondarObject>();
+		new DistanceSorter().selectNearest(source, 10, out);
+		assertIds(out, 1, 4, 3, 0, 5, 2);
+		// The source is not modified
+		for (int i = 0; i < source.size(); i++) {
+			assertEquals(i, source.get(i).getId());
+		}
+	}
+
+	@Test
+	public void selectNearestWithoutObjects() {
+		List<BeyondarObject> out = new ArrayList<BeyondarObject>();
+		DistanceSorter sorter = new DistanceSorter();
+		assertSame(out, sorter.selectNearest(new ArrayList<BeyondarObject>(), 3, out));
+		assertEquals(0, sorter.selectNearest(createObjects(), 0, out).size());
+	}
+
+	private static List<BeyondarObject> createObjects() {
+		List<BeyondarObject> objects = new ArrayList<BeyondarObject>();
+		for (int i = 0; i < DISTANCES.length; i++) {
+			BeyondarObject beyondarObject = new BeyondarObject(i);
+			beyondarObject.setDistanceFromUser(DISTANCES[i]);
+			objects.add(beyondarObject);
+		}
+		return objects;
+	}
+
+	private static void assertIds(List<BeyondarObject> objects, long... ids) {
+		assertEquals(ids.length, objects.size());
+		for (int i = 0; i < ids.length; i++) {
+			assertEquals(ids[i], objects.get(i).getId());
+		}
+	}
+}
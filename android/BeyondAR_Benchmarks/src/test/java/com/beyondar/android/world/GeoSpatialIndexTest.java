@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.world;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class GeoSpatialIndexTest {
+
+	// About 111 m
+	private static final double DEGREES_PER_100_METERS = 0.001;
+
+	@Test
+	public void findsTheObjectsInTheRadius() {
+		GeoSpatialIndex index = new GeoSpatialIndex();
+		GeoObject near = createGeoObject(1, 41.39, 2.17);
+		GeoObject far = createGeoObject(2, 41.39 + 10 * DEGREES_PER_100_METERS, 2.17);
+		index.add(near);
+		index.add(far);
+
+		List<GeoObject> result = index.getGeoObjectsInRadius(41.39, 2.17 + DEGREES_PER_100_METERS, 500,
+				new ArrayList<GeoObject>());
+		assertEquals(1, result.size());
+		assertTrue(result.contains(near));
+
+		result = index.getGeoObjectsInRadius(41.39, 2.17, 2000, new ArrayList<GeoObject>());
+		assertEquals(2, result.size());
+	}
+
+	@Test
+	public void radiusCanCrossTheAntimeridian() {
+		GeoSpatialIndex index = new GeoSpatialIndex();
+		GeoObject east = createGeoObject(1, 0, 179.9995);
+		GeoObject west = createGeoObject(2, 0, -179.9995);
+		index.add(east);
+		index.add(west);
+
+		List<GeoObject> result = index.getGeoObjectsInRadius(0, 180, 500, new ArrayList<GeoObject>());
+		assertEquals(2, result.size());
+	}
+
+	@Test
+	public void removedAndClearedObjectsAreNotFound() {
+		GeoSpatialIndex index = new GeoSpatialIndex();
+		GeoObject first = createGeoObject(1, 10, 10);
+		GeoObject second = createGeoObject(2, 10, 10);
+		index.add(first);
+		index.add(second);
+		index.remove(first);
+		assertEquals(1, index.size());
+
+		List<GeoObject> result = index.getGeoObjectsInRadius(10, 10, 100, new ArrayList<GeoObject>());
+		assertEquals(1, result.size());
+		assertTrue(result.contains(second));
+
+		index.clear();
+		assertEquals(0, index.size());
+		assertEquals(0, index.getGeoObjectsInRadius(10, 10, 100, new ArrayList<GeoObject>()).size());
+	}
+
+	private static GeoObject createGeoObject(long id, double latitude, double longitude) {
+		GeoObject geoObject = new GeoObject(id);
+		geoObject.setGeoPosition(latitude, longitude);
+		return geoObject;
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.world;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LongHashMapTest {
+
+	@Test
+	public void putGetAndRemove() {
+		LongHashMap<String> map = new LongHashMap<String>();
+		map.put(1L << 32, "a");
+		map.put(-1, "b");
+		map.put(0, "c");
+		map.put(0, "d");
+		assertEquals(3, map.size());
+		assertEquals("a", map.get(1L << 32));
+		assertEquals("b", map.get(-1));
+		assertEquals("d", map.get(0));
+		assertNull(map.get(1));
+
+		assertEquals("b", map.remove(-1));
+		assertNull(map.remove(-1));
+		assertNull(map.get(-1));
+		assertEquals(2, map.size());
+
+		map.clear();
+		assertEquals(0, map.size());
+		assertNull(map.get(0));
+	}
+
+	@Test
+	public void behavesLikeAHashMap() {
+		LongHashMap<Long> map = new LongHashMap<Long>();
+		Map<Long, Long> expected = new HashMap<Long, Long>();
+		Random random = new Random(42);
+		for (int i = 0; i < 100000; i++) {
+			// Few keys, so there are a lot of collisions and removals
+			long key = random.nextInt(2000) - 1000;
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(key), map.remove(key));
+			} else {
+				long value = random.nextLong();
+				expected.put(key, value);
+				map.put(key, value);
+			}
+		}
+		assertEquals(expected.size(), map.size());
+		for (long key = -1000; key < 1000; key++) {
+			assertEquals(expected.get(key), map.get(key));
+		}
+
+		int count = 0;
+		for (int i = 0; i < map.getCapacity(); i++) {
+			if (map.getValueAt(i) != null) {
+				count++;
+			}
+		}
+		assertEquals(expected.size(), count);
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.world;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.beyondar.android.benchmark.StubContext;
+import com.beyondar.android.util.Logger;
+
+public class WorldTest {
+
+	private World mWorld;
+
+	@Before
+	public void setUp() {
+		Logger.DEBUG = false;
+		mWorld = new World(new StubContext());
+	}
+
+	@Test
+	public void addBeyondarObjectsAddsEachObjectOnce() {
+		List<BeyondarObject> objects = new ArrayList<BeyondarObject>();
+		for (int i = 0; i < 100; i++) {
+			objects.add(new BeyondarObject(i));
+		}
+		objects.add(objects.get(0));
+		mWorld.addBeyondarObjects(objects);
+		mWorld.addBeyondarObject(objects.get(1));
+
+		WorldSnapshot snapshot = mWorld.getSnapshot();
+		assertEquals(100, snapshot.getObjectCount());
+		for (int i = 0; i < 100; i++) {
+			assertSame(objects.get(i), snapshot.getObject(0, i));
+		}
+	}
+
+	@Test
+	public void addBeyondarObjectsCreatesTheList() {
+		List<BeyondarObject> objects = new ArrayList<BeyondarObject>();
+		objects.add(new GeoObject(1));
+		objects.add(new BeyondarObject(2));
+		mWorld.addBeyondarObjects(objects, 3);
+
+		WorldSnapshot snapshot = mWorld.getSnapshot();
+		int listIndex = snapshot.indexOf(mWorld.getBeyondarObjectList(3));
+		assertEquals(2, snapshot.getObjectCount(listIndex));
+		assertEquals(1, snapshot.getNonGeoObjectCount(listIndex));
+		assertSame(objects.get(1), snapshot.getNonGeoObject(listIndex, 0));
+		assertEquals(3, objects.get(0).getWorldListType());
+	}
+
+	@Test
+	public void snapshotIsOnlyCreatedAfterAChange() {
+		WorldSnapshot first = mWorld.getSnapshot();
+		assertSame(first, mWorld.getSnapshot());
+
+		mWorld.addBeyondarObject(new BeyondarObject(1));
+		WorldSnapshot second = mWorld.getSnapshot();
+		assertNotSame(first, second);
+		assertEquals(0, first.getObjectCount());
+		assertEquals(1, second.getObjectCount());
+		assertSame(second, mWorld.getSnapshot());
+	}
+
+	@Test
+	public void removedObjectsLeaveTheSnapshotInOrder() {
+		BeyondarObject[] objects = new BeyondarObject[5];
+		for (int i = 0; i < objects.length; i++) {
+			objects[i] = new BeyondarObject(i);
+			mWorld.addBeyondarObject(objects[i]);
+		}
+		mWorld.remove(objects[1]);
+		mWorld.remove(objects[3]);
+		mWorld.forceProcessRemoveQueue();
+
+		WorldSnapshot snapshot = mWorld.getSnapshot();
+		assertEquals(3, snapshot.getObjectCount());
+		assertSame(objects[0], snapshot.getObject(0, 0));
+		assertSame(objects[2], snapshot.getObject(0, 1));
+		assertSame(objects[4], snapshot.getObject(0, 2));
+
+		// A removed object can be added again
+		mWorld.addBeyondarObject(objects[1]);
+		assertEquals(4, mWorld.getSnapshot().getObjectCount());
+	}
+}
@@ -27,7 +27,7 @@ import android.util.TypedValue;
 import android.widget.ImageView;
 
 import com.beyondar.android.world.BeyondarObject;
-import com.beyondar.android.world.BeyondarObjectList;
+import com.beyondar.android.world.WorldSnapshot;
 
 public class RadarView extends ImageView {
 
@@ -64,10 +64,10 @@ public class RadarView extends ImageView {
 		if (mRadarPlugin == null)
 			return;
 		double maxDistance = mRadarPlugin.getMaxDistance();
-		for (int i = 0; i < mRadarPlugin.getWorld().getBeyondarObjectLists().size(); i++) {
-			BeyondarObjectList list = mRadarPlugin.getWorld().getBeyondarObjectList(i);
-			for (int j = 0; j < list.size(); j++) {
-				BeyondarObject beyondarObject = list.get(j);
+		WorldSnapshot snapshot = mRadarPlugin.getWorld().getSnapshot();
+		for (int i = 0; i < snapshot.getListCount(); i++) {
+			for (int j = 0; j < snapshot.getObjectCount(i); j++) {
+				BeyondarObject beyondarObject = snapshot.getObject(i, j);
 				RadarPointPlugin radarPointPlugin = (RadarPointPlugin) beyondarObject
 						.getFirstPlugin(RadarPointPlugin.class);
 				if (radarPointPlugin != null) {
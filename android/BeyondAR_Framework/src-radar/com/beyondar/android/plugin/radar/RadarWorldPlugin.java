@@ -23,9 +23,7 @@ import java.util.List;
 
 import android.content.Context;
 import android.graphics.Color;
-import android.hardware.Sensor;
 import android.hardware.SensorEvent;
-import android.hardware.SensorManager;
 import android.view.Display;
 import android.view.Surface;
 import android.view.WindowManager;
@@ -35,6 +33,7 @@ import android.view.animation.RotateAnimation;
 import com.beyondar.android.plugin.WorldPlugin;
 import com.beyondar.android.sensor.BeyondarSensorListener;
 import com.beyondar.android.sensor.BeyondarSensorManager;
+import com.beyondar.android.sensor.OrientationSnapshot;
 import com.beyondar.android.world.BeyondarObject;
 import com.beyondar.android.world.BeyondarObjectList;
 import com.beyondar.android.world.GeoObject;
@@ -49,10 +48,7 @@ public class RadarWorldPlugin implements WorldPlugin, BeyondarSensorListener {
 	private World mWorld;
 	private RadarView mRadarView;
 
-	private float[] mLastAccelerometer = new float[3];
-	private float[] mLastMagnetometer = new float[3];
-	private float[] mR = new float[9];
-	private float[] mOrientation = new float[3];
+	private long mOrientationVersion = -1;
 	private float currentDegree = 0;
 	private int mRotation;
 
@@ -201,21 +197,12 @@ public class RadarWorldPlugin implements WorldPlugin, BeyondarSensorListener {
 	public void onSensorChanged(float[] filteredValues, SensorEvent event) {
 		if (mRadarView == null)
 			return;
-		switch (event.sensor.getType()) {
-		case Sensor.TYPE_ACCELEROMETER:
-			mLastAccelerometer = filteredValues;
-			break;
-		case Sensor.TYPE_MAGNETIC_FIELD:
-			mLastMagnetometer = filteredValues;
-			break;
-		}
-		if (mLastAccelerometer == null || mLastMagnetometer == null)
+		// The orientation is already calculated by the sensor manager
+		OrientationSnapshot orientation = BeyondarSensorManager.getOrientationSnapshot();
+		if (orientation == null || orientation.getVersion() == mOrientationVersion)
 			return;
-
-		boolean success = SensorManager.getRotationMatrix(mR, null, mLastAccelerometer, mLastMagnetometer);
-		SensorManager.getOrientation(mR, mOrientation);
-		if (success)
-			rotateView((float) Math.toDegrees(mOrientation[0]));
+		mOrientationVersion = orientation.getVersion();
+		rotateView((float) Math.toDegrees(orientation.getAzimuth()));
 
 	}
 
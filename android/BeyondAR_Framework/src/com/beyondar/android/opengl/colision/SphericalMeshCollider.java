@@ -76,4 +76,57 @@ public class SphericalMeshCollider implements MeshCollider {
 		return radius;
 	}
 
+	public Point3 getCenter() {
+		return center;
+	}
+
+	/**
+	 * Move the sphere. The center point is modified.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @param radius
+	 */
+	public void set(float x, float y, float z, float radius) {
+		center.x = x;
+		center.y = y;
+		center.z = z;
+		this.radius = radius;
+	}
+
+	/**
+	 * Get the distance from the start of the ray to the point where it enters
+	 * the sphere, without creating new objects.
+	 * 
+	 * @param r
+	 *            the ray
+	 * @return the distance, 0 if the ray starts inside the sphere, <b>-1</b>
+	 *         if there is no intersection
+	 */
+	public float getIntersectionDistance(Ray r) {
+		Vector3 v = r.getVector();
+		float module = v.module();
+		if (module == 0) {
+			return -1;
+		}
+		Point3 o = r.getPoint();
+		float lx = center.x - o.x;
+		float ly = center.y - o.y;
+		float lz = center.z - o.z;
+		// Distance along the ray to the closest point to the center
+		float tca = (lx * v.x + ly * v.y + lz * v.z) / module;
+		float d2 = lx * lx + ly * ly + lz * lz - tca * tca;
+		float r2 = radius * radius;
+		if (d2 > r2) {
+			return -1;
+		}
+		float thc = (float) Math.sqrt(r2 - d2);
+		if (tca + thc < 0) {
+			// Behind the ray
+			return -1;
+		}
+		return Math.max(0, tca - thc);
+	}
+
 }
@@ -19,20 +19,28 @@ import com.beyondar.android.util.math.geom.Plane;
 import com.beyondar.android.util.math.geom.Point3;
 import com.beyondar.android.util.math.geom.Ray;
 import com.beyondar.android.util.math.geom.Triangle;
+import com.beyondar.android.util.math.geom.Vector3;
 
 /**
- * A square mesh collider. It's created from four points.
+ * A square mesh collider. It's created from four points.<br>
+ * The collider can be updated with {@link #set(Point3, Point3, Point3, Point3)}
+ * and checked with {@link #getIntersectionDistance(Ray, Point3)} without
+ * creating new objects, so the same instance can be reused to pick the
+ * objects.
  * 
  */
 public class SquareMeshCollider implements MeshCollider {
 
+	private final Point3 mTopLeft, mBottomLeft, mBottomRight, mTopRight;
+
 	private Triangle t1, t2;
 
 	private Plane p;
 
 	/**
 	 * Constructs a square mesh collider from 4 points. This 4 points must be
-	 * contained for the same plane. If not, weird behavior will happen
+	 * contained for the same plane. If not, weird behavior will happen. The
+	 * points are copied.
 	 * 
 	 * @param topLeft
 	 * @param bottomLeft
@@ -40,11 +48,34 @@ public class SquareMeshCollider implements MeshCollider {
 	 * @param topRight
 	 */
 	public SquareMeshCollider(Point3 topLeft, Point3 bottomLeft, Point3 bottomRight, Point3 topRight) {
-		t1 = new Triangle(topLeft, bottomLeft, bottomRight);
-		t2 = new Triangle(topLeft, topRight, bottomRight);
+		mTopLeft = new Point3(topLeft);
+		mBottomLeft = new Point3(bottomLeft);
+		mBottomRight = new Point3(bottomRight);
+		mTopRight = new Point3(topRight);
+		t1 = new Triangle(mTopLeft, mBottomLeft, mBottomRight);
+		t2 = new Triangle(mTopLeft, mTopRight, mBottomRight);
 		p = t1.getPlane();
 	}
 
+	/**
+	 * Move the collider to the new 4 points. The points are copied.
+	 * 
+	 * @param topLeft
+	 * @param bottomLeft
+	 * @param bottomRight
+	 * @param topRight
+	 */
+	public void set(Point3 topLeft, Point3 bottomLeft, Point3 bottomRight, Point3 topRight) {
+		mTopLeft.set(topLeft);
+		mBottomLeft.set(bottomLeft);
+		mBottomRight.set(bottomRight);
+		mTopRight.set(topRight);
+		t1.update();
+		t2.update();
+		Vector3.normalVector(mTopLeft, mBottomLeft, mBottomRight, p.getNormal());
+		p.update();
+	}
+
 	@Override
 	public boolean contains(Point3 p) {
 		return t1.contains(p) || t2.contains(p);
@@ -52,15 +83,34 @@ public class SquareMeshCollider implements MeshCollider {
 
 	@Override
 	public Point3 getIntersectionPoint(Ray r) {
+		Point3 point = new Point3();
+		if (getIntersectionDistance(r, point) >= 0) {
+			return point;
+		}
+		return null;
+	}
+
+	/**
+	 * Test whether a ray intersects with the mesh collider without creating
+	 * new objects.
+	 * 
+	 * @param r
+	 *            the ray
+	 * @param outPoint
+	 *            the point where the intersection is stored. It is modified
+	 *            even if there is no intersection
+	 * @return the distance from the start of the ray to the intersection,
+	 *         <b>-1</b> if there is no intersection
+	 */
+	public float getIntersectionDistance(Ray r, Point3 outPoint) {
 		float t = p.intersects(r);
 		if (t >= 0) {
-			Point3 p = r.getPoint(t);
-			if (this.contains(p)) {
-				return p;
-			} else
-				return null;
-		} else
-			return null;
+			r.getPoint(t, outPoint);
+			if (this.contains(outPoint)) {
+				return t * r.getVector().module();
+			}
+		}
+		return -1;
 	}
 
 	@Override
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.renderable;
+
+import com.beyondar.android.opengl.texture.Texture;
+
+/**
+ * {@link com.beyondar.android.opengl.renderable.Renderable Renderable} that can
+ * be drawn using a {@link SpriteBatch}. When the batch rendering is enabled in
+ * the {@link com.beyondar.android.opengl.renderer.ARRenderer ARRenderer} this
+ * method is used instead of {@link Renderable#draw(javax.microedition.khronos.opengles.GL10, Texture)}.
+ */
+public interface BatchRenderable extends Renderable {
+
+	/**
+	 * Add the {@link com.beyondar.android.opengl.renderable.Renderable
+	 * Renderable} to the batch. It is called after
+	 * {@link Renderable#update(long, double, com.beyondar.android.world.BeyondarObject)}.
+	 * 
+	 * @param batch
+	 *            The batch to use.
+	 * @param defaultTexture
+	 *            Texture to use if the texture of the object is not loaded.
+	 */
+	public void draw(SpriteBatch batch, Texture defaultTexture);
+}
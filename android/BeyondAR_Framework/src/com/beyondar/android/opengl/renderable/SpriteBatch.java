@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.renderable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import javax.microedition.khronos.opengles.GL10;
+
+import com.beyondar.android.opengl.texture.Texture;
+import com.beyondar.android.util.math.geom.Point3;
+
+/**
+ * Collects textured quads during a frame and draws all the quads that share
+ * the same texture with a single draw call. The quads are transformed in the
+ * CPU, so the result is the same as translating and rotating the model view
+ * matrix for each of them.<br>
+ * Usage:
+ *
+ * <pre>
+ * batch.begin();
+ * batch.add(texture, position, angle);
+ * ...
+ * batch.flush(gl);
+ * </pre>
+ *
+ */
+public class SpriteBatch {
+
+	/** Floats for each vertex: x, y, z, u, v. */
+	public static final int VERTEX_SIZE = 5;
+	/** Vertices for each quad. */
+	public static final int VERTICES_PER_QUAD = 4;
+	/** Indices for each quad (two triangles). */
+	public static final int INDICES_PER_QUAD = 6;
+	/**
+	 * Max amount of quads drawn with one draw call. The indices are unsigned
+	 * shorts.
+	 */
+	public static final int MAX_QUADS_PER_DRAW = 65536 / VERTICES_PER_QUAD;
+
+	private static final int STRIDE_BYTES = VERTEX_SIZE * 4;
+	private static final int INITIAL_QUADS = 16;
+
+	private final HashMap<Integer, Batch> mBatchesMap;
+	private final ArrayList<Batch> mBatches;
+	private Batch mLastBatch;
+
+	private FloatBuffer mVertexBuffer;
+	private ShortBuffer mIndexBuffer;
+	private int mIndexBufferQuads;
+
+	private int mDrawCalls;
+	private int mQuads;
+
+	public SpriteBatch() {
+		mBatchesMap = new HashMap<Integer, Batch>();
+		mBatches = new ArrayList<Batch>();
+	}
+
+	/**
+	 * Start a new frame. The batches without any quad in the previous frame
+	 * are released.
+	 */
+	public void begin() {
+		for (int i = mBatches.size() - 1; i >= 0; i--) {
+			Batch batch = mBatches.get(i);
+			if (batch.quads == 0) {
+				mBatches.remove(i);
+				mBatchesMap.remove(batch.texturePointer);
+			}
+			batch.quads = 0;
+		}
+		mLastBatch = null;
+		mQuads = 0;
+	}
+
+	/**
+	 * Add a quad to the batch.
+	 *
+	 * @param texture
+	 *            The texture of the quad. The vertices and the texture map of
+	 *            the texture are used to build the quad.
+	 * @param position
+	 *            Position of the quad.
+	 * @param angle
+	 *            Rotation (degrees) in the x, y and z axis. Applied in the
+	 *            same order as the model view matrix would do.
+	 */
+	public void add(Texture texture, Point3 position, Point3 angle) {
+		Batch batch = getBatch(texture.getTexturePointer());
+		float[] vertices = texture.getVertices();
+		float[] textureMap = texture.getTextureMap();
+
+		float m00 = 1, m01 = 0, m02 = 0;
+		float m10 = 0, m11 = 1, m12 = 0;
+		float m20 = 0, m21 = 0, m22 = 1;
+		if (angle.x != 0 || angle.y != 0 || angle.z != 0) {
+			double ax = Math.toRadians(angle.x);
+			double ay = Math.toRadians(angle.y);
+			double az = Math.toRadians(angle.z);
+			float ca = (float) Math.cos(ax), sa = (float) Math.sin(ax);
+			float cb = (float) Math.cos(ay), sb = (float) Math.sin(ay);
+			float cc = (float) Math.cos(az), sc = (float) Math.sin(az);
+			// Rx * Ry * Rz
+			m00 = cb * cc;
+			m01 = -cb * sc;
+			m02 = sb;
+			m10 = ca * sc + sa * sb * cc;
+			m11 = ca * cc - sa * sb * sc;
+			m12 = -sa * cb;
+			m20 = sa * sc - ca * sb * cc;
+			m21 = sa * cc + ca * sb * sc;
+			m22 = ca * cb;
+		}
+
+		float[] data = batch.ensureCapacity(batch.quads + 1);
+		int offset = batch.quads * VERTICES_PER_QUAD * VERTEX_SIZE;
+		for (int i = 0; i < VERTICES_PER_QUAD; i++) {
+			float x = vertices[i * 3];
+			float y = vertices[i * 3 + 1];
+			float z = vertices[i * 3 + 2];
+			data[offset++] = m00 * x + m01 * y + m02 * z + position.x;
+			data[offset++] = m10 * x + m11 * y + m12 * z + position.y;
+			data[offset++] = m20 * x + m21 * y + m22 * z + position.z;
+			data[offset++] = textureMap[i * 2];
+			data[offset++] = textureMap[i * 2 + 1];
+		}
+		batch.quads++;
+		mQuads++;
+	}
+
+	/**
+	 * Draw all the quads added since the last call to {@link #begin()}.
+	 *
+	 * @param gl
+	 */
+	public void flush(GL10 gl) {
+		mDrawCalls = 0;
+		if (mQuads == 0) {
+			return;
+		}
+
+		gl.glEnableClientState(GL10.GL_VERTEX_ARRAY);
+		gl.glEnableClientState(GL10.GL_TEXTURE_COORD_ARRAY);
+		gl.glFrontFace(GL10.GL_CW);
+
+		for (int i = 0; i < mBatches.size(); i++) {
+			Batch batch = mBatches.get(i);
+			if (batch.quads == 0) {
+				continue;
+			}
+			FloatBuffer vertexBuffer = fillVertexBuffer(batch);
+			gl.glBindTexture(GL10.GL_TEXTURE_2D, batch.texturePointer);
+
+			for (int first = 0; first < batch.quads; first += MAX_QUADS_PER_DRAW) {
+				int quads = Math.min(MAX_QUADS_PER_DRAW, batch.quads - first);
+				ShortBuffer indexBuffer = getIndexBuffer(quads);
+				int start = first * VERTICES_PER_QUAD * VERTEX_SIZE;
+
+				vertexBuffer.position(start);
+				gl.glVertexPointer(3, GL10.GL_FLOAT, STRIDE_BYTES, vertexBuffer);
+				vertexBuffer.position(start + 3);
+				gl.glTexCoordPointer(2, GL10.GL_FLOAT, STRIDE_BYTES, vertexBuffer);
+
+				gl.glDrawElements(GL10.GL_TRIANGLES, quads * INDICES_PER_QUAD, GL10.GL_UNSIGNED_SHORT,
+						indexBuffer);
+				mDrawCalls++;
+			}
+		}
+
+		gl.glDisableClientState(GL10.GL_VERTEX_ARRAY);
+		gl.glDisableClientState(GL10.GL_TEXTURE_COORD_ARRAY);
+	}
+
+	/**
+	 * Get the amount of quads added since the last call to {@link #begin()}.
+	 *
+	 * @return
+	 */
+	public int getQuadCount() {
+		return mQuads;
+	}
+
+	/**
+	 * Get the amount of draw calls used by the last call to
+	 * {@link #flush(GL10)}.
+	 *
+	 * @return
+	 */
+	public int getDrawCallCount() {
+		return mDrawCalls;
+	}
+
+	/**
+	 * Get the amount of different textures used since the last call to
+	 * {@link #begin()}.
+	 *
+	 * @return
+	 */
+	public int getTextureCount() {
+		int count = 0;
+		for (int i = 0; i < mBatches.size(); i++) {
+			if (mBatches.get(i).quads > 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Get the vertex data (x, y, z, u, v for each vertex) added for a texture.
+	 *
+	 * @param texturePointer
+	 *            The texture pointer.
+	 * @return The data or null if there is no quad for the texture. Only the
+	 *         first {@link #getQuadCount(int)} quads are valid.
+	 */
+	public float[] getVertexData(int texturePointer) {
+		Batch batch = mBatchesMap.get(texturePointer);
+		if (batch == null || batch.quads == 0) {
+			return null;
+		}
+		return batch.data;
+	}
+
+	/**
+	 * Get the amount of quads added for a texture since the last call to
+	 * {@link #begin()}.
+	 *
+	 * @param texturePointer
+	 *            The texture pointer.
+	 * @return
+	 */
+	public int getQuadCount(int texturePointer) {
+		Batch batch = mBatchesMap.get(texturePointer);
+		return batch == null ? 0 : batch.quads;
+	}
+
+	private Batch getBatch(int texturePointer) {
+		if (mLastBatch != null && mLastBatch.texturePointer == texturePointer) {
+			return mLastBatch;
+		}
+		Batch batch = mBatchesMap.get(texturePointer);
+		if (batch == null) {
+			batch = new Batch(texturePointer);
+			mBatchesMap.put(texturePointer, batch);
+			mBatches.add(batch);
+		}
+		mLastBatch = batch;
+		return batch;
+	}
+
+	private FloatBuffer fillVertexBuffer(Batch batch) {
+		int floats = batch.quads * VERTICES_PER_QUAD * VERTEX_SIZE;
+		if (mVertexBuffer == null || mVertexBuffer.capacity() < floats) {
+			int capacity = Math.max(floats, mVertexBuffer == null ? 0 : mVertexBuffer.capacity() * 2);
+			mVertexBuffer = ByteBuffer.allocateDirect(capacity * 4).order(ByteOrder.nativeOrder())
+					.asFloatBuffer();
+		}
+		mVertexBuffer.clear();
+		mVertexBuffer.put(batch.data, 0, floats);
+		mVertexBuffer.flip();
+		return mVertexBuffer;
+	}
+
+	private ShortBuffer getIndexBuffer(int quads) {
+		if (mIndexBuffer == null || mIndexBufferQuads < quads) {
+			int size = Math.min(MAX_QUADS_PER_DRAW, Math.max(quads, mIndexBufferQuads * 2));
+			ShortBuffer indexBuffer = ByteBuffer.allocateDirect(size * INDICES_PER_QUAD * 2)
+					.order(ByteOrder.nativeOrder()).asShortBuffer();
+			// Same triangles as the triangle strip used by the textures
+			for (int i = 0; i < size; i++) {
+				int v = i * VERTICES_PER_QUAD;
+				indexBuffer.put((short) v);
+				indexBuffer.put((short) (v + 1));
+				indexBuffer.put((short) (v + 2));
+				indexBuffer.put((short) (v + 2));
+				indexBuffer.put((short) (v + 1));
+				indexBuffer.put((short) (v + 3));
+			}
+			mIndexBuffer = indexBuffer;
+			mIndexBufferQuads = size;
+		}
+		mIndexBuffer.position(0);
+		return mIndexBuffer;
+	}
+
+	private static class Batch {
+		final int texturePointer;
+		float[] data;
+		int quads;
+
+		Batch(int texturePointer) {
+			this.texturePointer = texturePointer;
+			data = new float[INITIAL_QUADS * VERTICES_PER_QUAD * VERTEX_SIZE];
+		}
+
+		float[] ensureCapacity(int quads) {
+			int needed = quads * VERTICES_PER_QUAD * VERTEX_SIZE;
+			if (data.length < needed) {
+				float[] newData = new float[Math.max(needed, data.length * 2)];
+				System.arraycopy(data, 0, newData, 0, this.quads * VERTICES_PER_QUAD * VERTEX_SIZE);
+				data = newData;
+			}
+			return data;
+		}
+	}
+}
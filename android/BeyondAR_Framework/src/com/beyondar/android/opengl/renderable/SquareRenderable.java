@@ -27,7 +27,7 @@ import com.beyondar.android.world.BeyondarObject;
  * Basic {@link com.beyondar.android.opengl.renderable.Renderable Renderable}
  * for rendering simple 2D images.
  */
-public class SquareRenderable implements Renderable {
+public class SquareRenderable implements BatchRenderable {
 
 	private static SquareRenderable mThis;
 
@@ -123,6 +123,12 @@ public class SquareRenderable implements Renderable {
 		gl.glTranslatef(-mPosition.x, -mPosition.y, -mPosition.z);
 	}
 
+	@Override
+	public void draw(SpriteBatch batch, Texture defaultTexture) {
+		mTexture = mBeyondarObject.getTexture();
+		batch.add(mTexture.isLoaded() ? mTexture : defaultTexture, mPosition, mAngle);
+	}
+
 	@Override
 	public Plane getPlane() {
 		Plane plane = new Plane(mBeyondarObject.getPosition(), new Vector3(0, -1, 0));
@@ -15,6 +15,8 @@ b * Copyright (C) 2014 BeyondAR
  */
 package com.beyondar.android.opengl.renderer;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
@@ -41,12 +43,24 @@ import android.opengl.GLU;
 import android.opengl.GLUtils;
 import android.view.Surface;
 
+import com.beyondar.android.opengl.renderable.BatchRenderable;
 import com.beyondar.android.opengl.renderable.Renderable;
+import com.beyondar.android.opengl.renderable.SpriteBatch;
+import com.beyondar.android.opengl.texture.MipmapGenerator;
 import com.beyondar.android.opengl.texture.Texture;
+import com.beyondar.android.opengl.texture.TextureAtlas;
+import com.beyondar.android.opengl.texture.TextureLod;
+import com.beyondar.android.opengl.texture.TextureRegistry;
+import com.beyondar.android.opengl.texture.TextureUploadQueue;
+import com.beyondar.android.opengl.util.FrustumCuller;
 import com.beyondar.android.opengl.util.MatrixGrabber;
+import com.beyondar.android.opengl.util.MatrixTrackingGL;
 import com.beyondar.android.plugin.GLPlugin;
 import com.beyondar.android.plugin.Plugable;
 import com.beyondar.android.sensor.BeyondarSensorListener;
+import com.beyondar.android.sensor.BeyondarSensorManager;
+import com.beyondar.android.sensor.OrientationPredictor;
+import com.beyondar.android.sensor.OrientationSnapshot;
 import com.beyondar.android.util.Logger;
 import com.beyondar.android.util.PendingBitmapsToBeLoaded;
 import com.beyondar.android.util.Utils;
@@ -59,6 +73,7 @@ import com.beyondar.android.world.BeyondarObject;
 import com.beyondar.android.world.BeyondarObjectList;
 import com.beyondar.android.world.GeoObject;
 import com.beyondar.android.world.World;
+import com.beyondar.android.world.WorldSnapshot;
 
 // Some references:
 // http://ovcharov.me/2011/01/14/android-opengl-es-ray-picking/
@@ -84,9 +99,42 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 		void onSnapshotTaken(Bitmap snapshot);
 	}
 
-	private class UriAndBitmap {
-		String uri;
-		Bitmap btm;
+	/** Uploads first the images of the nearest visible objects. */
+	private class TextureUploader implements TextureUploadQueue.Uploader {
+
+		@Override
+		public double getPriority(String uri) {
+			ArrayList<BeyondarObject> list = mPendingTextureObjects.getPendingList(uri);
+			if (list == null) {
+				TextureLevelRequest request = mTextureLevelRequests.get(uri);
+				if (request != null) {
+					// A bigger level of a loaded texture, after the missing
+					// ones
+					return UPGRADE_UPLOAD_PRIORITY + request.distance;
+				}
+				// Nothing to upload
+				return 0;
+			}
+			double priority = Double.MAX_VALUE;
+			for (int i = 0; i < list.size(); i++) {
+				BeyondarObject object = list.get(i);
+				double dst = object.getDistanceFromUser();
+				boolean visible = object.isVisible() && dst < mArViewDistance
+						&& (!mFrustumReady || mFrustumCuller.isSphereVisible(object.getPosition(),
+								CULLING_RADIUS));
+				priority = Math.min(priority, visible ? dst : NOT_VISIBLE_UPLOAD_PRIORITY + dst);
+			}
+			return priority;
+		}
+
+		@Override
+		public boolean upload(GL10 gl, String uri, Bitmap bitmap) {
+			boolean uploaded = setAllTextures(gl, uri, bitmap, mPendingTextureObjects);
+			if (mTextureLevelRequests.containsKey(uri)) {
+				uploaded |= upgradeTexture(gl, uri, bitmap);
+			}
+			return uploaded;
+		}
 	}
 	
 	/**
@@ -104,26 +152,89 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 	public static float Z_FAR = 400.0f;
 	public static final double TIMEOUT_LOAD_TEXTURE = 1500;
 
+	/**
+	 * Default extra distance (GL units) around the view frustum where the
+	 * objects are not culled.
+	 */
+	public static final float DEFAULT_FRUSTUM_CULLING_MARGIN = 1;
+
+	/**
+	 * Radius of the sphere (GL units) used to check if an object is inside the
+	 * view frustum. It contains the default square.
+	 */
+	private static final float CULLING_RADIUS = 1.5f;
+
+	/**
+	 * Added to the priority of the images whose objects are not visible, so
+	 * they are uploaded after the visible ones.
+	 */
+	private static final double NOT_VISIBLE_UPLOAD_PRIORITY = 1e9;
+
+	/**
+	 * Added to the priority of the bigger levels of the loaded textures, so
+	 * they are uploaded after the images that are not loaded at all.
+	 */
+	private static final double UPGRADE_UPLOAD_PRIORITY = 2 * NOT_VISIBLE_UPLOAD_PRIORITY;
+
+	/** A bigger level requested for a loaded texture. */
+	private static class TextureLevelRequest {
+		int level;
+		/** Distance to the nearest object that uses the texture. */
+		double distance;
+		/** Frame where the distance was set. */
+		long time;
+	}
+
 	private static final String TAG = "ARRenderer";
 
-	private float mAccelerometerValues[] = new float[3];
-	private float mMagneticValues[] = new float[3];
+	/**
+	 * Older orientations (ns) are considered to use a different clock than
+	 * {@link System#nanoTime()}, so their latency is not measured.
+	 */
+	private static final long MAX_ORIENTATION_AGE = 1000000000L;
 
 	private float mRotationMatrix[] = new float[16];
 	private float mRemappedRotationMatrix[] = new float[16];
 
+	// Filtered values received in onSensorChanged, used to calculate the
+	// orientation while the sensor manager does not have one (for instance
+	// when the events are pushed directly to the renderer)
+	private final float mAccelerometerValues[] = new float[3];
+	private final float mMagneticValues[] = new float[3];
+	private boolean mHasAccelerometerValues, mHasMagneticValues;
+	private final Object mSensorValuesLock = new Object();
+	private volatile boolean mSensorValuesChanged;
+	/** Version of the orientation snapshot used for mRemappedRotationMatrix. */
+	private long mOrientationVersion = -1;
+	private long mOrientationTimestamp;
+	private volatile OrientationPredictor mOrientationPredictor;
+
 	private MatrixGrabber mMatrixGrabber = new MatrixGrabber();
 	private int mWidth, mHeight;
 
-	private static HashMap<String, Texture> sTextureHolder = new HashMap<String, Texture>();
-	private static PendingBitmapsToBeLoaded<BeyondarObject> sPendingTextureObjects = new PendingBitmapsToBeLoaded<BeyondarObject>();
-	private static ArrayList<UriAndBitmap> sNewBitmapsLoaded = new ArrayList<UriAndBitmap>();
-	private static final float[] sInclination = new float[16];
+	private TextureRegistry mTextureRegistry;
+	/** Version of the world snapshot used to count the texture references. */
+	private long mTextureReferencesVersion;
+	private PendingBitmapsToBeLoaded<BeyondarObject> mPendingTextureObjects;
+	private volatile TextureLod mTextureLod;
+	private volatile boolean mMipmapsEnabled;
+	/** Better levels requested for the loaded textures, by uri. */
+	private HashMap<String, TextureLevelRequest> mTextureLevelRequests;
+	/** Reused to generate the mipmaps. */
+	private int[] mMipmapPixels;
+	private ByteBuffer mMipmapBuffer;
 
 	private float mArViewDistance;
 	private float mDistanceFactor;
+	/**
+	 * Version of the values used to convert the geo positions to GL points. It
+	 * changes when any of them changes.
+	 */
+	private volatile long mPositionConfigVersion;
 
 	private World mWorld;
+	/** Objects of the world used to draw the current frame. */
+	private WorldSnapshot mSnapshot;
 
 	/** List of loaded plugins. */
 	protected List<GLPlugin> plugins;
@@ -133,17 +244,22 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 	 */
 	protected Object lockPlugins = new Object();
 
-	private boolean mScreenshot;
+	private volatile boolean mScreenshot;
 	private GLSnapshotCallback mSnapshotCallback;
 
 	private int mSurfaceRotation;
 
 	private Point3 mCameraPosition;
 
-	private boolean mReloadWorldTextures;
+	private volatile boolean mReloadWorldTextures;
 
 	private boolean mRender;
 
+	/** Versions of the world drawn in the last frame, see isRenderNeeded(). */
+	private volatile long mDrawnWorldVersion = -1, mDrawnGeoPositionVersion = -1,
+			mDrawnPositionConfigVersion = -1;
+	private volatile World mDrawnWorld;
+
 	private boolean mGetFps = false;
 
 	private long mCurrentTime = System.currentTimeMillis();
@@ -161,6 +277,37 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 
 	private boolean mFillPositions;
 
+	private boolean mSpatialIndexEnabled;
+	private List<GeoObject> mNearbyGeoObjects;
+
+	private SpriteBatch mSpriteBatch;
+
+	private FrustumCuller mFrustumCuller;
+	private boolean mFrustumCullingEnabled;
+	private boolean mFrustumReady;
+	private volatile int mVisibleObjectsCount;
+	private volatile TextureAtlas mTextureAtlas;
+	/** Disabled atlases whose pages have to be deleted in the GL thread. */
+	private Queue<TextureAtlas> mReleasedTextureAtlases;
+	private TextureUploadQueue mTextureUploadQueue;
+	private TextureUploader mTextureUploader;
+
+	private FrameStats mFrameStats;
+	private FrameStats.OnFrameStatsListener mOnFrameStatsListener;
+
+	private ScreenClusterer mScreenClusterer;
+	private volatile float mClusterRadius;
+	private boolean mClusteringFrame;
+	private ScreenDeclutterer mScreenDeclutterer;
+	private volatile boolean mDeclutterEnabled;
+	private boolean mDeclutteringFrame;
+	private ScreenPicker mScreenPicker;
+	private volatile boolean mScreenPickingEnabled;
+	private boolean mScreenPickingFrame;
+	private GazeSelector mGazeSelector;
+	private volatile boolean mGazeSelectionEnabled;
+	private boolean mGazeSelectionFrame;
+
 	// This GL extension allow us to load non square textures.
 	private boolean isGL_OES_texture_npot;
 
@@ -170,6 +317,7 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 	public ARRenderer() {
 		mArViewDistance = DEFAULT_MAX_AR_VIEW_DISTANCE;
 		mDistanceFactor = DEFAULT_DISTANCE_FACTOR;
+		mPositionConfigVersion = World.nextVersion();
 		mReloadWorldTextures = false;
 		setRendering(true);
 		mCameraPosition = new Point3(0, 0, 0);
@@ -179,6 +327,30 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 
 		mFillPositions = false;
 
+		mSpatialIndexEnabled = false;
+		mNearbyGeoObjects = new ArrayList<GeoObject>();
+
+		mFrustumCuller = new FrustumCuller();
+		mFrustumCuller.setMargin(DEFAULT_FRUSTUM_CULLING_MARGIN);
+		mFrustumCullingEnabled = true;
+
+		mFrameStats = new FrameStats();
+
+		mScreenClusterer = new ScreenClusterer();
+		mScreenDeclutterer = new ScreenDeclutterer();
+		mScreenPicker = new ScreenPicker();
+		mGazeSelector = new GazeSelector(this);
+
+		mTextureRegistry = new TextureRegistry();
+		mReleasedTextureAtlases = new ConcurrentLinkedQueue<TextureAtlas>();
+		mTextureReferencesVersion = -1;
+		mPendingTextureObjects = new PendingBitmapsToBeLoaded<BeyondarObject>();
+		mTextureUploadQueue = new TextureUploadQueue();
+		mTextureUploader = new TextureUploader();
+		mTextureLod = new TextureLod();
+		mMipmapsEnabled = false;
+		mTextureLevelRequests = new HashMap<String, TextureLevelRequest>();
+
 		plugins = new ArrayList<GLPlugin>();
 	}
 
@@ -202,6 +374,7 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 	 */
 	public void setWorld(World world) {
 		mWorld = world;
+		mPositionConfigVersion = World.nextVersion();
 		mWorld.getBitmapCache().addOnExternalBitmapLoadedCahceListener(this);
 		mReloadWorldTextures = true;
 		synchronized (lockPlugins) {
@@ -260,9 +433,52 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 			return;
 		}
 		long time = System.currentTimeMillis();
+		FrameStats stats = mFrameStats;
+		stats.beginFrame();
+		mTextureRegistry.beginFrame();
+		MatrixTrackingGL trackingGL = gl instanceof MatrixTrackingGL ? (MatrixTrackingGL) gl : null;
+		if (trackingGL != null) {
+			trackingGL.resetCounters();
+		}
 
-		SensorManager.getInclination(sInclination);
-		SensorManager.getRotationMatrix(mRotationMatrix, sInclination, mAccelerometerValues, mMagneticValues);
+		stats.beginPhase(FrameStats.PHASE_SENSORS);
+		// The orientation is calculated by the sensor manager, without
+		// predictor it is only remapped when it changes. Until it is known the
+		// last one is kept
+		OrientationSnapshot orientation = BeyondarSensorManager.getOrientationSnapshot();
+		if (orientation != null) {
+			OrientationPredictor predictor = mOrientationPredictor;
+			boolean newOrientation = orientation.getVersion() != mOrientationVersion;
+			if (newOrientation) {
+				mOrientationVersion = orientation.getVersion();
+				mOrientationTimestamp = orientation.getTimestamp();
+				if (predictor != null) {
+					predictor.addSample(orientation);
+				}
+			}
+			if (predictor != null && predictor.predict(System.nanoTime(), mRotationMatrix)) {
+				stats.setLatency(FrameStats.LATENCY_ORIENTATION_PREDICTION,
+						predictor.getLastPredictionNanos());
+				SensorManager.remapCoordinateSystem(mRotationMatrix, SensorManager.AXIS_Y,
+						SensorManager.AXIS_MINUS_X, mRemappedRotationMatrix);
+			} else if (newOrientation) {
+				orientation.getRotationMatrix(mRotationMatrix);
+				SensorManager.remapCoordinateSystem(mRotationMatrix, SensorManager.AXIS_Y,
+						SensorManager.AXIS_MINUS_X, mRemappedRotationMatrix);
+			}
+		} else if (mSensorValuesChanged) {
+			mSensorValuesChanged = false;
+			boolean valid;
+			synchronized (mSensorValuesLock) {
+				valid = mHasAccelerometerValues && mHasMagneticValues
+						&& SensorManager.getRotationMatrix(mRotationMatrix, null, mAccelerometerValues,
+								mMagneticValues);
+			}
+			if (valid) {
+				SensorManager.remapCoordinateSystem(mRotationMatrix, SensorManager.AXIS_Y,
+						SensorManager.AXIS_MINUS_X, mRemappedRotationMatrix);
+			}
+		}
 
 		float rotation = 0;
 		switch (mSurfaceRotation) {
@@ -281,9 +497,6 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 		
 		gl.glRotatef(rotation, 0, 0, 1);
 
-		SensorManager.remapCoordinateSystem(mRotationMatrix, SensorManager.AXIS_Y,
-				SensorManager.AXIS_MINUS_X, mRemappedRotationMatrix);
-
 		// Clear color buffer
 		gl.glClear(GL10.GL_COLOR_BUFFER_BIT | GL10.GL_DEPTH_BUFFER_BIT);
 
@@ -291,6 +504,7 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 		gl.glMatrixMode(GL10.GL_MODELVIEW);
 		gl.glLoadIdentity();
 		gl.glLoadMatrixf(mRemappedRotationMatrix, 0);
+		stats.endPhase(FrameStats.PHASE_SENSORS);
 
 		gl.glEnableClientState(GL10.GL_VERTEX_ARRAY);
 		// gl.glEnableClientState(GL10.GL_COLOR_ARRAY);
@@ -303,25 +517,39 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 		// getCurrentProjection(gl);
 		// getCurrentModelView(gl);
 
-		if (sNewBitmapsLoaded.size() > 0) {
-			for (int i = 0; i < sNewBitmapsLoaded.size(); i++) {
-				setAllTextures(gl, sNewBitmapsLoaded.get(i).uri, sNewBitmapsLoaded.get(i).btm,
-						sPendingTextureObjects);
-			}
-			sNewBitmapsLoaded.clear();
-		}
-
 		// Store projection and modelview matrices. This is used for the
 		// collision detections
 		mMatrixGrabber.getCurrentState(gl);
+		mFrustumReady = mFrustumCuller.update(mMatrixGrabber.mProjection, mMatrixGrabber.mModelView);
+
+		// The images are loaded in other threads. Only some of them are
+		// uploaded in each frame, the rest wait for the next frames
+		stats.beginPhase(FrameStats.PHASE_TEXTURE_UPLOADS);
+		releaseTextureAtlases(gl);
+		mTextureUploadQueue.process(gl, mTextureUploader);
+		stats.endPhase(FrameStats.PHASE_TEXTURE_UPLOADS);
 
 		if (mWorld != null) {
 			if (mReloadWorldTextures) {
+				stats.beginPhase(FrameStats.PHASE_TEXTURE_UPLOADS);
 				loadWorldTextures(gl);
 				mReloadWorldTextures = false;
+				stats.endPhase(FrameStats.PHASE_TEXTURE_UPLOADS);
 			}
 			mRenderedObjects.clear();
+			mDrawnWorld = mWorld;
+			mDrawnGeoPositionVersion = mWorld.getGeoPositionVersion();
+			mDrawnPositionConfigVersion = mPositionConfigVersion;
+			mSnapshot = mWorld.getSnapshot();
+			mDrawnWorldVersion = mSnapshot.getVersion();
+			if (mSnapshot.getVersion() != mTextureReferencesVersion) {
+				// Delete the textures that are not used anymore
+				mTextureRegistry.updateReferences(gl, mSnapshot);
+				mTextureReferencesVersion = mSnapshot.getVersion();
+			}
+			stats.beginPhase(FrameStats.PHASE_RENDER_WORLD);
 			renderWorld(gl, time);
+			stats.endPhase(FrameStats.PHASE_RENDER_WORLD);
 
 			OnBeyondarObjectRenderedListener tmpTraker = mOnBeyondarObjectRenderedListener;
 			if (tmpTraker != null) {
@@ -329,20 +557,41 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 			}
 		}
 
+		stats.beginPhase(FrameStats.PHASE_PLUGINS);
 		try {
 			for (GLPlugin plugin : plugins) {
 				plugin.onFrameRendered(gl);
 			}
+			stats.add(FrameStats.COUNTER_PLUGIN_CALLS, plugins.size());
 		} catch (ConcurrentModificationException e) {
 			Logger.w("Some plugins where changed while drawing a frame");
 		}
+		stats.endPhase(FrameStats.PHASE_PLUGINS);
 
 		if (mScreenshot) {
 			mScreenshot = false;
 			if (mSnapshotCallback != null) {
+				stats.beginPhase(FrameStats.PHASE_SCREENSHOT);
 				mSnapshotCallback.onSnapshotTaken(savePixels(gl));
+				stats.endPhase(FrameStats.PHASE_SCREENSHOT);
+			}
+		}
+
+		if (trackingGL != null) {
+			stats.add(FrameStats.COUNTER_TEXTURE_BINDS, trackingGL.getTextureBindCount());
+			stats.add(FrameStats.COUNTER_DRAW_CALLS, trackingGL.getDrawCallCount());
+		}
+		if (mOrientationTimestamp != 0) {
+			long orientationAge = System.nanoTime() - mOrientationTimestamp;
+			if (orientationAge >= 0 && orientationAge <= MAX_ORIENTATION_AGE) {
+				stats.setLatency(FrameStats.LATENCY_ORIENTATION_AGE, orientationAge);
 			}
 		}
+		stats.endFrame();
+		FrameStats.OnFrameStatsListener statsListener = mOnFrameStatsListener;
+		if (statsListener != null) {
+			statsListener.onFrameStats(stats);
+		}
 
 	}
 
@@ -427,7 +676,10 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 	private static final double[] sOut = new double[3];
 
 	/**
-	 * Convert the geolocation to gl points representation.
+	 * Convert the geolocation to gl points representation. The result is
+	 * cached by the {@link com.beyondar.android.world.GeoObject GeoObject}
+	 * until its geo position, the user position or the renderer configuration
+	 * changes.
 	 * 
 	 * @param geoObject
 	 *            The {@link com.beyondar.android.world.GeoObject GeoObject} to
@@ -483,6 +735,7 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 	 */
 	public void setPullCloserDistance(float maxDistanceSize) {
 		mMaxDistanceSizePoints = (float) (maxDistanceSize / 2);
+		mPositionConfigVersion = World.nextVersion();
 		synchronized (lockPlugins) {
 			for (GLPlugin plugin : plugins) {
 				plugin.onMaxDistanceSizeChanged(mMaxDistanceSizePoints);
@@ -516,6 +769,7 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 	 */
 	public void setPushAwayDistance(float minDistanceSize) {
 		mMinDistanceSizePoints = (float) (minDistanceSize / 2);
+		mPositionConfigVersion = World.nextVersion();
 		synchronized (lockPlugins) {
 			for (GLPlugin plugin : plugins) {
 				plugin.onMaxDistanceSizeChanged(mMinDistanceSizePoints);
@@ -553,6 +807,233 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 		mOnBeyondarObjectRenderedListener = rendererTracker;
 	}
 
+	/**
+	 * Set the listener notified (in the GL thread) after each frame with the
+	 * {@link FrameStats} of the renderer.
+	 * 
+	 * @param listener
+	 *            The listener or null to remove it.
+	 */
+	public void setOnFrameStatsListener(FrameStats.OnFrameStatsListener listener) {
+		mOnFrameStatsListener = listener;
+	}
+
+	/**
+	 * Set the {@link OrientationPredictor} used to extrapolate the orientation
+	 * of the device to the time when each frame is displayed. It is used in
+	 * the GL thread, so configure it before setting it. The effect can be
+	 * measured with {@link FrameStats#LATENCY_ORIENTATION_AGE} and
+	 * {@link FrameStats#LATENCY_ORIENTATION_PREDICTION}.
+	 * 
+	 * @param predictor
+	 *            The predictor, or null to use the last orientation (default).
+	 */
+	public void setOrientationPredictor(OrientationPredictor predictor) {
+		if (predictor != null) {
+			predictor.reset();
+		}
+		mOrientationPredictor = predictor;
+	}
+
+	public OrientationPredictor getOrientationPredictor() {
+		return mOrientationPredictor;
+	}
+
+	/**
+	 * Get the timing and counters of the frames drawn. The values are
+	 * updated in the GL thread, use
+	 * {@link #setOnFrameStatsListener(FrameStats.OnFrameStatsListener)} to
+	 * read them safely.
+	 * 
+	 * @return
+	 */
+	public FrameStats getFrameStats() {
+		return mFrameStats;
+	}
+
+	/**
+	 * Set the max time spent uploading new images to the GPU in each frame.
+	 * The images of the nearest visible objects are uploaded first and the
+	 * rest wait for the next frames. At least one image is uploaded in each
+	 * frame.
+	 * 
+	 * @param milliseconds
+	 *            Time in ms, 0 for no limit. Default
+	 *            {@link TextureUploadQueue#DEFAULT_TIME_BUDGET}.
+	 */
+	public void setTextureUploadTimeBudget(float milliseconds) {
+		mTextureUploadQueue.setTimeBudget(milliseconds);
+	}
+
+	public float getTextureUploadTimeBudget() {
+		return mTextureUploadQueue.getTimeBudget();
+	}
+
+	/**
+	 * Set the max amount of bytes of new images uploaded to the GPU in each
+	 * frame. At least one image is uploaded in each frame.
+	 * 
+	 * @param bytes
+	 *            Bytes, 0 for no limit. Default
+	 *            {@link TextureUploadQueue#DEFAULT_BYTE_BUDGET}.
+	 */
+	public void setTextureUploadByteBudget(int bytes) {
+		mTextureUploadQueue.setByteBudget(bytes);
+	}
+
+	public int getTextureUploadByteBudget() {
+		return mTextureUploadQueue.getByteBudget();
+	}
+
+	/**
+	 * Set the max GPU memory (estimated from the image sizes) used by the
+	 * textures of the objects. When it is exceeded the textures that have not
+	 * been drawn for longer are deleted, and they are loaded again when their
+	 * objects are drawn. The textures packed in the texture atlas are not
+	 * included.
+	 * 
+	 * @param bytes
+	 *            Default {@link TextureRegistry#DEFAULT_MEMORY_BUDGET}.
+	 */
+	public void setTextureMemoryBudget(int bytes) {
+		mTextureRegistry.setMemoryBudget(bytes);
+	}
+
+	public int getTextureMemoryBudget() {
+		return mTextureRegistry.getMemoryBudget();
+	}
+
+	/**
+	 * Set the {@link TextureLod} used to choose the resolution of the textures
+	 * depending on the distance to their objects. The far objects use smaller
+	 * textures, and bigger ones are loaded when they approach. It is only used
+	 * when the mipmaps are enabled.
+	 * 
+	 * @param lod
+	 *            The level of detail, or null to always use the full images.
+	 */
+	public void setTextureLod(TextureLod lod) {
+		mTextureLod = lod;
+	}
+
+	public TextureLod getTextureLod() {
+		return mTextureLod;
+	}
+
+	/**
+	 * Generate mipmaps for the textures, so the far objects are drawn without
+	 * aliasing and the resolution of the textures can depend on the distance
+	 * (see {@link #setTextureLod(TextureLod)}). It is applied to the textures
+	 * loaded afterwards. Disabled by default: the levels are generated on the
+	 * CPU in the GL thread, they are uploaded as RGBA 8888 and they use a
+	 * third more of GPU memory.
+	 * 
+	 * @param enabled
+	 */
+	public void setMipmapsEnabled(boolean enabled) {
+		mMipmapsEnabled = enabled;
+	}
+
+	public boolean isMipmapsEnabled() {
+		return mMipmapsEnabled;
+	}
+
+	/**
+	 * Merge the objects that are closer than the radius on the screen. Only
+	 * the closest object of each cluster is drawn and notified to the
+	 * {@link OnBeyondarObjectRenderedListener}, use
+	 * {@link com.beyondar.android.world.BeyondarObject#getClusterSize()
+	 * BeyondarObject.getClusterSize()} to get how many objects it represents.
+	 * 
+	 * @param radius
+	 *            Radius in pixels, 0 to disable the clustering (default). See
+	 *            {@link ScreenClusterer#DEFAULT_RADIUS}.
+	 */
+	public void setClusterRadius(float radius) {
+		mClusterRadius = Math.max(0, radius);
+	}
+
+	public float getClusterRadius() {
+		return mClusterRadius;
+	}
+
+	/**
+	 * Remove the overlaps between the objects on the screen. The objects are
+	 * placed by priority (see
+	 * {@link com.beyondar.android.world.BeyondarObject#setPriority(float)
+	 * BeyondarObject.setPriority(float)}) and distance, and the ones that
+	 * collide with an object already placed are not drawn nor notified to the
+	 * {@link OnBeyondarObjectRenderedListener} (see
+	 * {@link com.beyondar.android.world.BeyondarObject#isSuppressed()
+	 * BeyondarObject.isSuppressed()}). It can be combined with
+	 * {@link #setClusterRadius(float)}, then the clusters are decluttered.
+	 * 
+	 * @param enabled
+	 *            Disabled by default.
+	 */
+	public void setDeclutterEnabled(boolean enabled) {
+		mDeclutterEnabled = enabled;
+	}
+
+	public boolean isDeclutterEnabled() {
+		return mDeclutterEnabled;
+	}
+
+	/**
+	 * Keep the screen quads of the objects drawn in each frame so they can be
+	 * picked without intersecting a ray with the world (see
+	 * {@link #getScreenPicker()}). The screen positions of the drawn objects
+	 * are filled, as with {@link #forceFillBeyondarObjectPositions(boolean)}.
+	 * 
+	 * @param enabled
+	 *            Disabled by default.
+	 */
+	public void setScreenPickingEnabled(boolean enabled) {
+		mScreenPickingEnabled = enabled;
+	}
+
+	public boolean isScreenPickingEnabled() {
+		return mScreenPickingEnabled;
+	}
+
+	/**
+	 * Get the {@link ScreenPicker} with the objects drawn in the last frame.
+	 * It is only filled if {@link #setScreenPickingEnabled(boolean)} is
+	 * enabled.
+	 * 
+	 * @return
+	 */
+	public ScreenPicker getScreenPicker() {
+		return mScreenPicker;
+	}
+
+	/**
+	 * Select the object under the center of the screen (or the point set in
+	 * the {@link GazeSelector}) in every frame. Use
+	 * {@link #getGazeSelector()} to set the
+	 * {@link GazeSelector.OnGazeListener} and the options.
+	 * 
+	 * @param enabled
+	 *            Disabled by default.
+	 */
+	public void setGazeSelectionEnabled(boolean enabled) {
+		mGazeSelectionEnabled = enabled;
+	}
+
+	public boolean isGazeSelectionEnabled() {
+		return mGazeSelectionEnabled;
+	}
+
+	/**
+	 * Get the {@link GazeSelector} used when
+	 * {@link #setGazeSelectionEnabled(boolean)} is enabled.
+	 * 
+	 * @return
+	 */
+	public GazeSelector getGazeSelector() {
+		return mGazeSelector;
+	}
+
 	/**
 	 * Render the {@link com.beyondar.android.world.World World}.
 	 * 
@@ -561,16 +1042,48 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 	 *            Time mark to be used for drawing the frame.
 	 */
 	protected void renderWorld(GL10 gl, long time) {
-		BeyondarObjectList list = null;
-		try {
-			for (int i = 0; i < mWorld.getBeyondarObjectLists().size(); i++) {
-				list = mWorld.getBeyondarObjectLists().get(i);
-				if (list != null) {
-					renderList(gl, list, time);
-				}
-			}
-		} catch (ConcurrentModificationException e) {
+		WorldSnapshot snapshot = mSnapshot;
+		SpriteBatch spriteBatch = mSpriteBatch;
+		if (spriteBatch != null) {
+			spriteBatch.begin();
 		}
+		float clusterRadius = mClusterRadius;
+		mClusteringFrame = clusterRadius > 0;
+		mScreenClusterer.begin(mWidth, mHeight, clusterRadius);
+		mDeclutteringFrame = mDeclutterEnabled;
+		mScreenDeclutterer.begin(mWidth, mHeight);
+		mScreenPickingFrame = mScreenPickingEnabled;
+		// An empty frame is published once it is disabled, so the objects
+		// are not kept
+		boolean publishPicking = mScreenPickingFrame || mScreenPicker.getObjectCount() > 0;
+		if (publishPicking) {
+			mScreenPicker.begin(mWidth, mHeight);
+		}
+		mGazeSelectionFrame = mGazeSelectionEnabled;
+		if (mGazeSelectionFrame) {
+			mGazeSelector.begin(mWidth, mHeight);
+		} else if (mGazeSelector.getTarget() != null) {
+			mGazeSelector.clear();
+		}
+		for (int i = 0; i < snapshot.getListCount(); i++) {
+			renderList(gl, snapshot, i, time);
+		}
+		if (mSpatialIndexEnabled) {
+			renderNearbyGeoObjects(gl, time);
+		}
+		if (mClusteringFrame || mDeclutteringFrame) {
+			renderScreenSpaceObjects(gl, time);
+		}
+		if (spriteBatch != null) {
+			spriteBatch.flush(gl);
+		}
+		if (publishPicking) {
+			mScreenPicker.publish();
+		}
+		if (mGazeSelectionFrame) {
+			mGazeSelector.end(time);
+		}
+		mVisibleObjectsCount = mRenderedObjects.size();
 		mWorld.forceProcessRemoveQueue();
 
 		if (mGetFps) {
@@ -589,6 +1102,22 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 		}
 	}
 
+	/**
+	 * Render a specific list.
+	 * 
+	 * @param gl
+	 * @param snapshot
+	 *            The {@link com.beyondar.android.world.WorldSnapshot
+	 *            WorldSnapshot} used for the current frame.
+	 * @param listIndex
+	 *            Index of the list to render in the snapshot.
+	 * @param time
+	 *            Time mark to be used for drawing the frame.
+	 */
+	protected void renderList(GL10 gl, WorldSnapshot snapshot, int listIndex, long time) {
+		renderList(gl, snapshot.getList(listIndex), time);
+	}
+
 	/**
 	 * Render a specific list.
 	 * 
@@ -599,29 +1128,74 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 	 *            Time mark to be used for drawing the frame.
 	 */
 	protected void renderList(GL10 gl, BeyondarObjectList list, long time) {
-
 		Texture listTexture = list.getDefaultTexture();
 
 		if (!listTexture.isLoaded()) {
-			Texture defaultTexture = sTextureHolder.get(list.getDefaultImageUri());
+			Texture defaultTexture = mTextureRegistry.get(list.getDefaultImageUri());
 			if (defaultTexture == null || !defaultTexture.isLoaded()) {
 				Logger.w("Warning!! The default texture for the list \"" + list.getType()
 						+ "\" has not been loaded. Trying to load it now...");
-				Bitmap defaultBtm = mWorld.getBitmapCache().getBitmap(list.getDefaultImageUri());
-				defaultTexture = load2DTexture(gl, defaultBtm);
+				defaultTexture = loadDefaultTexture(gl, list);
 			}
 			list.setDefaultTexture(defaultTexture == null ? null : defaultTexture.clone());
 		}
 
-		for (int j = 0; j < list.size(); j++) {
-			BeyondarObject beyondarObject = list.get(j);
-			if (beyondarObject == null) {
-				continue;
+		WorldSnapshot snapshot = mSnapshot;
+		int listIndex = snapshot == null ? -1 : snapshot.indexOf(list);
+		if (listIndex == -1) {
+			// The list is not in the snapshot of this frame
+			for (int j = 0; j < list.size(); j++) {
+				BeyondarObject beyondarObject = list.get(j);
+				if (beyondarObject == null) {
+					continue;
+				}
+				if (mSpatialIndexEnabled && beyondarObject instanceof GeoObject) {
+					// Rendered using the spatial index
+					continue;
+				}
+				renderBeyondarObject(gl, beyondarObject, listTexture, time);
+			}
+		} else if (mSpatialIndexEnabled) {
+			// The GeoObjects are rendered using the spatial index
+			for (int j = 0; j < snapshot.getNonGeoObjectCount(listIndex); j++) {
+				renderBeyondarObject(gl, snapshot.getNonGeoObject(listIndex, j), listTexture, time);
+			}
+		} else {
+			for (int j = 0; j < snapshot.getObjectCount(listIndex); j++) {
+				renderBeyondarObject(gl, snapshot.getObject(listIndex, j), listTexture, time);
 			}
-			renderBeyondarObject(gl, beyondarObject, listTexture, time);
 		}
 	}
 
+	/**
+	 * Render the {@link com.beyondar.android.world.GeoObject GeoObject}s that
+	 * the {@link com.beyondar.android.world.GeoSpatialIndex GeoSpatialIndex}
+	 * returns inside the max distance to render. The rest of the
+	 * {@link com.beyondar.android.world.GeoObject GeoObject}s are not visited.
+	 * 
+	 * @param gl
+	 * @param time
+	 *            Time mark to be used for drawing the frame.
+	 */
+	protected void renderNearbyGeoObjects(GL10 gl, long time) {
+		mNearbyGeoObjects.clear();
+		mWorld.getGeoObjectsInRadius(mArViewDistance, mNearbyGeoObjects);
+
+		WorldSnapshot snapshot = mSnapshot;
+		BeyondarObjectList list = null;
+		for (int i = 0; i < mNearbyGeoObjects.size(); i++) {
+			GeoObject geoObject = mNearbyGeoObjects.get(i);
+			if (list == null || list.getType() != geoObject.getWorldListType()) {
+				list = snapshot.getListByType(geoObject.getWorldListType());
+				if (list == null) {
+					continue;
+				}
+			}
+			renderBeyondarObject(gl, geoObject, list.getDefaultTexture(), time);
+		}
+		mNearbyGeoObjects.clear();
+	}
+
 	private float[] tmpEyeForRendering = new float[4];
 
 	/**
@@ -646,25 +1220,41 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 		if (renderable == null || !beyondarObject.isVisible()) {
 			return;
 		}
+		mFrameStats.increment(FrameStats.COUNTER_OBJECTS_VISITED);
 		double dst = 0;
 		if (beyondarObject instanceof GeoObject) {
-			dst = ((GeoObject) beyondarObject).calculateDistanceMeters(mWorld.getLongitude(),
-					mWorld.getLatitude());
-			convertGPStoPoint3((GeoObject) beyondarObject, beyondarObject.getPosition());
+			GeoObject geoObject = (GeoObject) beyondarObject;
+			long worldVersion = mWorld.getGeoPositionVersion();
+			long configVersion = mPositionConfigVersion;
+			if (geoObject.isRenderCacheValid(worldVersion, configVersion)) {
+				dst = geoObject.getDistanceFromUser();
+			} else {
+				long geoVersion = geoObject.getGeoPositionVersion();
+				dst = geoObject.calculateDistanceMeters(mWorld.getLongitude(), mWorld.getLatitude());
+				convertGPStoPoint3(geoObject, geoObject.getPosition());
+				geoObject.setDistanceFromUser(dst);
+				geoObject.setRenderCacheVersion(worldVersion, geoVersion, configVersion);
+			}
 		} else {
 			Point3 position = beyondarObject.getPosition();
 			dst = MathUtils.GLUnitsToMeters((float) Distance.calculateDistanceCoordinates(0, 0, 0,
 					position.x, position.y, position.z));
+			beyondarObject.setDistanceFromUser(dst);
 		}
 
-		beyondarObject.setDistanceFromUser(dst);
-
 		if (dst < mArViewDistance) {
 			renderObject = true;
 		}
 		
 		boolean forceDraw = renderable.update(time, (float) dst, beyondarObject);
 
+		if (renderObject && !forceDraw && mFrustumCullingEnabled && mFrustumReady
+				&& !mFrustumCuller.isSphereVisible(beyondarObject.getPosition(), CULLING_RADIUS)) {
+			// Out of the screen, skip the rest of the work
+			mFrameStats.increment(FrameStats.COUNTER_OBJECTS_CULLED);
+			renderObject = false;
+		}
+
 		if (forceDraw || renderObject) {
 			if (beyondarObject.isFacingToCamera()) {
 				MathUtils.calcAngleFaceToCamera(beyondarObject.getPosition(), mCameraPosition,
@@ -685,28 +1275,148 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 				}
 			}
 
-			getScreenCoordinates(beyondarObject.getPosition(), beyondarObject.getScreenPositionCenter(),
-					tmpEyeForRendering);
-
-			try {
-				for (GLPlugin plugin : plugins) {
-					plugin.onDrawBeyondaarObject(gl, beyondarObject, defaultTexture);
+			Texture texture = beyondarObject.getTexture();
+			if (texture.isLoaded() && texture.getLevel() > 0) {
+				int level = getTextureLevel(dst);
+				if (level < texture.getLevel()) {
+					// The object is closer, load a bigger texture
+					requestTextureLevel(beyondarObject.getImageUri(), level, dst, time);
 				}
-			} catch (ConcurrentModificationException e) {
-				Logger.w("Some plugins where changed while drawing a frame");
 			}
 
-			renderable.draw(gl, defaultTexture);
+			Point3 screenPosition = beyondarObject.getScreenPositionCenter();
+			getScreenCoordinates(beyondarObject.getPosition(), screenPosition, tmpEyeForRendering);
 
-			if (mFillPositions) {
-				fillBeyondarObjectScreenPositions(beyondarObject);
+			if ((mClusteringFrame || mDeclutteringFrame) && screenPosition.z >= 0 && screenPosition.z <= 1) {
+				// It is drawn when the screen positions of all the objects
+				// are known
+				if (mClusteringFrame) {
+					mScreenClusterer.add(beyondarObject, defaultTexture);
+				} else {
+					addToDeclutterer(beyondarObject, defaultTexture);
+				}
+			} else {
+				drawBeyondarObject(gl, beyondarObject, renderable, defaultTexture);
 			}
-			mRenderedObjects.add(beyondarObject);
 		} else {
 			renderable.onNotRendered(dst);
 		}
 	}
 
+	private void drawBeyondarObject(GL10 gl, BeyondarObject beyondarObject, Renderable renderable,
+			Texture defaultTexture) {
+		try {
+			for (GLPlugin plugin : plugins) {
+				plugin.onDrawBeyondaarObject(gl, beyondarObject, defaultTexture);
+			}
+			mFrameStats.add(FrameStats.COUNTER_PLUGIN_CALLS, plugins.size());
+		} catch (ConcurrentModificationException e) {
+			Logger.w("Some plugins where changed while drawing a frame");
+		}
+
+		SpriteBatch spriteBatch = mSpriteBatch;
+		if (spriteBatch != null && renderable instanceof BatchRenderable) {
+			((BatchRenderable) renderable).draw(spriteBatch, defaultTexture);
+		} else {
+			renderable.draw(gl, defaultTexture);
+		}
+
+		if (mFillPositions || mScreenPickingFrame) {
+			fillBeyondarObjectScreenPositions(beyondarObject);
+		}
+		if (mScreenPickingFrame) {
+			mScreenPicker.add(beyondarObject);
+		}
+		if (mGazeSelectionFrame) {
+			mGazeSelector.add(beyondarObject, mFillPositions || mScreenPickingFrame);
+		}
+		mRenderedObjects.add(beyondarObject);
+		mFrameStats.increment(FrameStats.COUNTER_OBJECTS_DRAWN);
+		if (beyondarObject.getTexture().isLoaded()) {
+			mTextureRegistry.markDrawn(beyondarObject.getImageUri());
+		}
+	}
+
+	/**
+	 * Draw an object whose drawing has been delayed. The {@link Renderable}
+	 * can be shared by many objects (like the default
+	 * {@link com.beyondar.android.opengl.renderable.SquareRenderable
+	 * SquareRenderable}) and it keeps the state of the last updated one, so
+	 * it is updated again with this object before drawing it.
+	 */
+	private void drawDelayedBeyondarObject(GL10 gl, BeyondarObject beyondarObject, Texture defaultTexture,
+			long time) {
+		Renderable renderable = beyondarObject.getOpenGLObject();
+		renderable.update(time, (float) beyondarObject.getDistanceFromUser(), beyondarObject);
+		drawBeyondarObject(gl, beyondarObject, renderable, defaultTexture);
+	}
+
+	private void addToDeclutterer(BeyondarObject beyondarObject, Texture defaultTexture) {
+		// The corners are needed to know the space used on the screen
+		fillBeyondarObjectScreenPositions(beyondarObject);
+		mScreenDeclutterer.add(beyondarObject, defaultTexture);
+	}
+
+	/**
+	 * Draw the objects whose drawing has been delayed until the screen
+	 * positions of all the objects are known. They are merged by the
+	 * {@link ScreenClusterer} and then the overlaps are removed by the
+	 * {@link ScreenDeclutterer}, if they are enabled.
+	 * 
+	 * @param gl
+	 * @param time
+	 *            Time mark to be used for drawing the frame.
+	 */
+	protected void renderScreenSpaceObjects(GL10 gl, long time) {
+		if (mClusteringFrame) {
+			renderClusters(gl, time);
+		}
+		if (mDeclutteringFrame) {
+			renderDecluttered(gl, mScreenDeclutterer, time);
+		}
+	}
+
+	/**
+	 * Remove the overlaps between the objects added to the declutterer and
+	 * draw the ones that are kept.
+	 * 
+	 * @param gl
+	 * @param declutterer
+	 * @param time
+	 *            Time mark to be used for drawing the frame.
+	 */
+	void renderDecluttered(GL10 gl, ScreenDeclutterer declutterer, long time) {
+		mFrameStats.add(FrameStats.COUNTER_OBJECTS_SUPPRESSED, declutterer.declutter());
+		for (int i = 0; i < declutterer.getObjectCount(); i++) {
+			BeyondarObject beyondarObject = declutterer.getObject(i);
+			if (beyondarObject.isSuppressed()) {
+				beyondarObject.getOpenGLObject().onNotRendered(beyondarObject.getDistanceFromUser());
+			} else {
+				drawDelayedBeyondarObject(gl, beyondarObject, declutterer.getDefaultTexture(i), time);
+			}
+		}
+	}
+
+	private void renderClusters(GL10 gl, long time) {
+		int clusters = mScreenClusterer.cluster();
+		for (int i = 0; i < clusters; i++) {
+			BeyondarObjectCluster cluster = mScreenClusterer.getCluster(i);
+			BeyondarObject representative = cluster.getRepresentative();
+			if (mDeclutteringFrame) {
+				addToDeclutterer(representative, cluster.getDefaultTexture());
+			} else {
+				drawDelayedBeyondarObject(gl, representative, cluster.getDefaultTexture(), time);
+			}
+			for (int j = 0; j < cluster.size(); j++) {
+				BeyondarObject beyondarObject = cluster.get(j);
+				if (beyondarObject != representative) {
+					beyondarObject.getOpenGLObject().onNotRendered(beyondarObject.getDistanceFromUser());
+				}
+			}
+			mFrameStats.add(FrameStats.COUNTER_OBJECTS_CLUSTERED, cluster.size() - 1);
+		}
+	}
+
 	/**
 	 * Use this method to fill all the screen positions of the
 	 * {@link com.beyondar.android.world.BeyondarObject BeyondarObject}. After
@@ -815,7 +1525,16 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 
 		gl.glClearColor(0, 0, 0, 0);
 
-		sTextureHolder.clear();
+		// The textures have been lost with the old context
+		mTextureRegistry.reset();
+		mTextureReferencesVersion = -1;
+		mTextureLevelRequests.clear();
+		TextureAtlas textureAtlas = mTextureAtlas;
+		if (textureAtlas != null) {
+			// The pages have been lost with the old context
+			textureAtlas.reset();
+		}
+		mReleasedTextureAtlases.clear();
 		Logger.d(TAG, "Loading textures...");
 		loadWorldTextures(gl);
 		loadAdditionalTextures(gl);
@@ -846,30 +1565,43 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 	 */
 	private void loadWorldTextures(GL10 gl) {
 		if (null != mWorld) {
-			try {
-				BeyondarObjectList list = null;
-				for (int i = 0; i < mWorld.getBeyondarObjectLists().size(); i++) {
-					list = mWorld.getBeyondarObjectLists().get(i);
-					if (null != list) {
-						Bitmap defaultBtm = mWorld.getBitmapCache().getBitmap(list.getDefaultImageUri());
-						Texture texture = load2DTexture(gl, defaultBtm);
-						list.setDefaultTexture(texture);
-
-						for (int j = 0; j < list.size(); j++) {
-							// loading texture
-							loadBeyondarObjectTexture(gl, list.get(j));
+			WorldSnapshot snapshot = mWorld.getSnapshot();
+			for (int i = 0; i < snapshot.getListCount(); i++) {
+				BeyondarObjectList list = snapshot.getList(i);
+				Texture texture = mTextureRegistry.get(list.getDefaultImageUri());
+				if (texture == null || !texture.isLoaded()) {
+					texture = loadDefaultTexture(gl, list);
+				}
+				list.setDefaultTexture(texture == null ? null : texture.clone());
 
-						}
-					}
+				for (int j = 0; j < snapshot.getObjectCount(i); j++) {
+					// loading texture
+					loadBeyondarObjectTexture(gl, snapshot.getObject(i, j));
 				}
-			} catch (ConcurrentModificationException e) {
-				loadWorldTextures(gl);
 			}
 			mWorld.getBitmapCache().cleanRecylcedBitmaps();
 		}
 		
 	}
 
+	/**
+	 * Load the default texture of a list. It is kept while the GL context is
+	 * alive.
+	 * 
+	 * @param gl
+	 * @param list
+	 * @return The texture or null if the image could not be loaded.
+	 */
+	private Texture loadDefaultTexture(GL10 gl, BeyondarObjectList list) {
+		String uri = list.getDefaultImageUri();
+		Bitmap defaultBtm = mWorld.getBitmapCache().getBitmap(uri);
+		Texture texture = load2DTexture(gl, defaultBtm);
+		if (texture != null && uri != null) {
+			mTextureRegistry.put(uri, texture, true);
+		}
+		return texture;
+	}
+
 	/**
 	 * Load the textures of the specified geoObject.
 	 * 
@@ -879,25 +1611,34 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 	 */
 	public void loadBeyondarObjectTexture(GL10 gl, BeyondarObject geoObject) {
 
-		Texture texture = getTexture(geoObject.getImageUri());
-
-		if (texture == null) {
-			Bitmap btm = mWorld.getBitmapCache().getBitmap(geoObject.getImageUri());
+		String uri = geoObject.getImageUri();
+		Texture texture = getTexture(uri);
 
-			texture = loadBitmapTexture(gl, btm, geoObject.getImageUri());
+		if (texture == null && uri != null) {
+			BitmapCache bitmapCache = mWorld.getBitmapCache();
+			Bitmap btm = bitmapCache.getCachedBitmap(uri);
+			if (btm != null) {
+				texture = loadBitmapTexture(gl, btm, uri, getTextureLevel(geoObject.getDistanceFromUser()));
+			}
 
 			if (texture == null || !texture.isLoaded()) {
-				sPendingTextureObjects.addObject(geoObject.getImageUri(), geoObject);
-			}
-			if (btm == null) {
-				if (Logger.DEBUG_OPENGL) {
-					Logger.e(TAG, "ERROR: the resource " + geoObject.getImageUri()
-							+ " has not been loaded. Object Name: " + geoObject.getName());
+				// The texture will be set when the image is ready, so the GL
+				// thread is never blocked loading images
+				mPendingTextureObjects.addObject(uri, geoObject);
+				if (btm == null) {
+					bitmapCache.loadBitmapAsync(uri);
+					if (Logger.DEBUG_OPENGL) {
+						Logger.d(TAG, "Loading the resource " + uri + " in background. Object Name: "
+								+ geoObject.getName());
+					}
 				}
 			}
 		}
 
 		geoObject.setTexture(texture);
+		if (texture != null && texture.isLoaded()) {
+			mTextureRegistry.acquire(uri, geoObject);
+		}
 	}
 
 	/**
@@ -913,17 +1654,30 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 	 *         object.
 	 */
 	public Texture loadBitmapTexture(GL10 gl, Bitmap btm, String uri) {
+		return loadBitmapTexture(gl, btm, uri, 0);
+	}
 
+	private Texture loadBitmapTexture(GL10 gl, Bitmap btm, String uri, int level) {
 		if (null == btm) {
 			return null;
 		}
 		Texture texture = null;
 		// Check if the texture already exist
-		texture = sTextureHolder.get(uri);
+		texture = mTextureRegistry.get(uri);
 		if (texture == null) {
-			texture = load2DTexture(gl, btm);
+			TextureAtlas textureAtlas = mTextureAtlas;
+			if (textureAtlas != null) {
+				texture = textureAtlas.add(gl, btm);
+				if (texture != null) {
+					mFrameStats.increment(FrameStats.COUNTER_TEXTURE_UPLOADS);
+				}
+			}
+			if (texture == null) {
+				texture = load2DTexture(gl, btm, level);
+			}
 
-			sTextureHolder.put(uri, texture);
+			mTextureRegistry.put(uri, texture, false);
+			mFrameStats.add(FrameStats.COUNTER_TEXTURE_EVICTIONS, mTextureRegistry.trimToBudget(gl));
 		}
 		return texture.clone();
 	}
@@ -937,8 +1691,10 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 	 * @param bitmap
 	 * @return true if it is already loaded, false otherwise.
 	 */
+	@Deprecated
 	public boolean isTextureLoaded(Bitmap bitmap) {
-		return sTextureHolder.containsValue(bitmap);
+		// The textures are registered by uri, not by bitmap
+		return false;
 	}
 
 	/**
@@ -951,7 +1707,7 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 	 * @return true if it is already loaded, false otherwise.
 	 */
 	public boolean isTextureObjectLoaded(String uri) {
-		return sTextureHolder.get(uri) != null;
+		return mTextureRegistry.contains(uri);
 	}
 
 	/**
@@ -964,7 +1720,7 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 		if (uri == null) {
 			return null;
 		}
-		Texture texture = sTextureHolder.get(uri);
+		Texture texture = mTextureRegistry.get(uri);
 		if (texture != null) {
 			texture = texture.clone();
 		}
@@ -980,6 +1736,23 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 	 * @return A new texture for the bitmap.
 	 */
 	public Texture load2DTexture(GL10 gl, Bitmap bitmap) {
+		return load2DTexture(gl, bitmap, 0);
+	}
+
+	/**
+	 * Create the texture for the specified Bitmap with a level of detail. If
+	 * the mipmaps are enabled (see {@link #setMipmapsEnabled(boolean)}) the
+	 * image is reduced to the level and the smaller levels are uploaded as
+	 * mipmaps, otherwise the level is ignored.<br>
+	 * __Important__ The method will recycle the bitmap after being used.
+	 * 
+	 * @param gl
+	 * @param bitmap
+	 * @param level
+	 *            0 for the full image, each level halves its size.
+	 * @return A new texture for the bitmap.
+	 */
+	public Texture load2DTexture(GL10 gl, Bitmap bitmap, int level) {
 		// see
 		// http://stackoverflow.com/questions/3921685/issues-with-glutils-teximage2d-and-alpha-in-textures
 		int[] tmpTexture = new int[1];
@@ -1000,8 +1773,10 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 		// ...and bind it to our array
 		gl.glBindTexture(GL10.GL_TEXTURE_2D, tmpTexture[0]);
 
-		// create nearest filtered texture
-		gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER, GL10.GL_NEAREST);
+		boolean mipmaps = mMipmapsEnabled;
+		// create nearest filtered texture, or use the closest mipmap
+		gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER,
+				mipmaps ? GL10.GL_LINEAR_MIPMAP_NEAREST : GL10.GL_NEAREST);
 		gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MAG_FILTER, GL10.GL_LINEAR);
 
 		// Different possible texture parameters, e.g.
@@ -1011,30 +1786,153 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 		//
 		// Use Android GLUtils to specify a two-dimensional
 		// texture image from our bitmap
-		GLUtils.texImage2D(GL10.GL_TEXTURE_2D, 0, bitmap, 0);
+		if (mipmaps) {
+			level = uploadMipmaps(gl, bitmap, level);
+		} else {
+			GLUtils.texImage2D(GL10.GL_TEXTURE_2D, 0, bitmap, 0);
+			level = 0;
+		}
+		mFrameStats.increment(FrameStats.COUNTER_TEXTURE_UPLOADS);
 		//
 		// Clean up
 		bitmap.recycle();
-		return new Texture(tmpTexture[0]).setImageSize(imageWidth, imageHeight);
+		return new Texture(tmpTexture[0]).setImageSize(imageWidth, imageHeight).setLevel(level, mipmaps);
+	}
+
+	/**
+	 * Upload the level of the bitmap and the smaller ones as mipmaps of the
+	 * bound texture.
+	 * 
+	 * @return The level uploaded, it can be lower than the requested one for
+	 *         small images.
+	 */
+	private int uploadMipmaps(GL10 gl, Bitmap bitmap, int level) {
+		int width = bitmap.getWidth();
+		int height = bitmap.getHeight();
+		level = Math.max(0, Math.min(level, MipmapGenerator.getLevelCount(width, height) - 1));
+		int count = width * height;
+		if (mMipmapPixels == null || mMipmapPixels.length < count) {
+			mMipmapPixels = new int[count];
+		}
+		int[] pixels = mMipmapPixels;
+		bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+		// The bitmaps are uploaded premultiplied by GLUtils as well
+		MipmapGenerator.premultiply(pixels, count);
+		for (int i = 0; i < level; i++) {
+			MipmapGenerator.downsample(pixels, width, height, pixels);
+			width = MipmapGenerator.getLevelSize(width, 1);
+			height = MipmapGenerator.getLevelSize(height, 1);
+		}
+
+		int bytes = width * height * 4;
+		if (mMipmapBuffer == null || mMipmapBuffer.capacity() < bytes) {
+			mMipmapBuffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+		}
+		ByteBuffer buffer = mMipmapBuffer;
+		int glLevel = 0;
+		while (true) {
+			MipmapGenerator.toRGBA(pixels, width * height, buffer);
+			gl.glTexImage2D(GL10.GL_TEXTURE_2D, glLevel, GL10.GL_RGBA, width, height, 0, GL10.GL_RGBA,
+					GL10.GL_UNSIGNED_BYTE, buffer);
+			if (width == 1 && height == 1) {
+				break;
+			}
+			MipmapGenerator.downsample(pixels, width, height, pixels);
+			width = MipmapGenerator.getLevelSize(width, 1);
+			height = MipmapGenerator.getLevelSize(height, 1);
+			glLevel++;
+		}
+		return level;
+	}
+
+	private int getTextureLevel(double distance) {
+		TextureLod lod = mTextureLod;
+		if (lod == null || !mMipmapsEnabled) {
+			return 0;
+		}
+		return lod.getLevel(distance);
+	}
+
+	/**
+	 * Load the image of the uri again to upload a bigger level of its texture.
+	 * It is called in every frame for each object that needs it, so the
+	 * distance of the request is the one of the nearest object.
+	 */
+	private void requestTextureLevel(String uri, int level, double distance, long time) {
+		if (uri == null || mWorld == null) {
+			return;
+		}
+		TextureLevelRequest request = mTextureLevelRequests.get(uri);
+		if (request != null) {
+			if (request.time != time) {
+				request.time = time;
+				request.distance = distance;
+			} else {
+				request.distance = Math.min(request.distance, distance);
+			}
+			if (request.level <= level) {
+				return;
+			}
+		} else {
+			request = new TextureLevelRequest();
+			request.time = time;
+			request.distance = distance;
+			mTextureLevelRequests.put(uri, request);
+		}
+		request.level = level;
+		BitmapCache bitmapCache = mWorld.getBitmapCache();
+		Bitmap btm = bitmapCache.getCachedBitmap(uri);
+		if (btm != null) {
+			mTextureUploadQueue.add(uri, btm);
+		} else {
+			// It is added to the upload queue when it is loaded
+			bitmapCache.loadBitmapAsync(uri);
+		}
+	}
+
+	/**
+	 * Replace the texture of the uri with the requested level.
+	 */
+	private boolean upgradeTexture(GL10 gl, String uri, Bitmap btm) {
+		TextureLevelRequest request = mTextureLevelRequests.remove(uri);
+		Texture current = mTextureRegistry.get(uri);
+		if (request == null || current == null || current.hasTextureRegion()
+				|| current.getLevel() <= request.level || btm == null || btm.isRecycled()) {
+			// If the bitmap has been used the level will be requested again
+			return false;
+		}
+		Texture texture = load2DTexture(gl, btm, request.level);
+		mTextureRegistry.replace(gl, uri, texture);
+		mFrameStats.add(FrameStats.COUNTER_TEXTURE_EVICTIONS, mTextureRegistry.trimToBudget(gl));
+		return true;
 
 	}
 
 	@Override
 	public void onSensorChanged(float[] filteredValues, SensorEvent event) {
+		// The orientation of the BeyondarSensorManager is used when it is
+		// available, these values are only kept for when it is not
 		if (!mRender) {
 			return;
 		}
 		switch (event.sensor.getType()) {
 		case Sensor.TYPE_ACCELEROMETER:
-			mAccelerometerValues = filteredValues;
+			synchronized (mSensorValuesLock) {
+				System.arraycopy(filteredValues, 0, mAccelerometerValues, 0, 3);
+				mHasAccelerometerValues = true;
+			}
+			mSensorValuesChanged = true;
 			break;
 		case Sensor.TYPE_MAGNETIC_FIELD:
-			mMagneticValues = filteredValues;
+			synchronized (mSensorValuesLock) {
+				System.arraycopy(filteredValues, 0, mMagneticValues, 0, 3);
+				mHasMagneticValues = true;
+			}
+			mSensorValuesChanged = true;
 			break;
 		default:
 			break;
 		}
-
 	}
 
 	// view port
@@ -1162,6 +2060,32 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 		mRender = render;
 	}
 
+	/**
+	 * Check if something has changed since the last frame that is not visible
+	 * yet: the objects of the world, the location, the values used to place
+	 * the objects, images waiting to be uploaded or a screenshot. The changes
+	 * made to a single object (position, image...) are not detected. It can be
+	 * called from any thread, it is used to render only when needed.
+	 * 
+	 * @return
+	 */
+	public boolean isRenderNeeded() {
+		if (mScreenshot || mReloadWorldTextures || mTextureUploadQueue.hasPendingUploads()
+				|| !mReleasedTextureAtlases.isEmpty() || (mGazeSelectionEnabled && mGazeSelector.isPending())) {
+			return true;
+		}
+		if (mSensorValuesChanged && BeyondarSensorManager.getOrientationSnapshot() == null) {
+			return true;
+		}
+		World world = mWorld;
+		if (world == null) {
+			return false;
+		}
+		return world != mDrawnWorld || world.getModificationVersion() != mDrawnWorldVersion
+				|| world.getGeoPositionVersion() != mDrawnGeoPositionVersion
+				|| mPositionConfigVersion != mDrawnPositionConfigVersion;
+	}
+
 	/**
 	 * Get known if the {@link ARRenderer} is rendering the world
 	 * 
@@ -1173,29 +2097,38 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 
 	@Override
 	public void onExternalBitmapLoaded(BitmapCache cache, String url, Bitmap btm) {
-		UriAndBitmap uriAndBitmap = new UriAndBitmap();
-		uriAndBitmap.uri = url;
-		uriAndBitmap.btm = btm;
-		sNewBitmapsLoaded.add(uriAndBitmap);
+		mTextureUploadQueue.add(url, btm);
 	}
 
-	private synchronized void setAllTextures(GL10 gl, String uri, Bitmap btm,
+	private synchronized boolean setAllTextures(GL10 gl, String uri, Bitmap btm,
 			PendingBitmapsToBeLoaded<BeyondarObject> pendingList) {
 		if (uri == null) {
-			return;
+			return false;
 		}
 		ArrayList<BeyondarObject> list = pendingList.getPendingList(uri);
 		if (list == null) {
-			return;
+			return false;
+		}
+		if (btm == null || btm.isRecycled()) {
+			// Evicted from the cache before being used, the objects will try
+			// to load it again
+			pendingList.removePendingList(uri);
+			return false;
 		}
 
-		Texture texture = loadBitmapTexture(gl, btm, uri);
+		int level = Integer.MAX_VALUE;
+		for (int i = 0; i < list.size(); i++) {
+			level = Math.min(level, getTextureLevel(list.get(i).getDistanceFromUser()));
+		}
+		Texture texture = loadBitmapTexture(gl, btm, uri, level);
 
 		for (int i = 0; i < list.size() && texture.isLoaded(); i++) {
 			BeyondarObject object = list.get(i);
 			object.setTexture(texture);
+			mTextureRegistry.acquire(uri, object);
 		}
 		pendingList.removePendingList(uri);
+		return true;
 	}
 
 	/**
@@ -1338,6 +2271,174 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 		}
 	}
 	
+	/**
+	 * Use the {@link com.beyondar.android.world.GeoSpatialIndex
+	 * GeoSpatialIndex} of the {@link com.beyondar.android.world.World World}
+	 * to visit only the {@link com.beyondar.android.world.GeoObject GeoObject}
+	 * s that are inside the max distance to render. When it is enabled the
+	 * far objects are not updated (distance from the user, position and
+	 * {@link com.beyondar.android.opengl.renderable.Renderable#onNotRendered(double)
+	 * Renderable.onNotRendered(double)}). Disabled by default, because the
+	 * radar plugin and the apps that read the distance of every object from
+	 * the user need it updated for all the objects.
+	 * 
+	 * @param enabled
+	 */
+	public void setSpatialIndexEnabled(boolean enabled) {
+		mSpatialIndexEnabled = enabled;
+	}
+
+	/**
+	 * Draw all the {@link com.beyondar.android.opengl.renderable.BatchRenderable
+	 * BatchRenderable}s (like the default
+	 * {@link com.beyondar.android.opengl.renderable.SquareRenderable
+	 * SquareRenderable}) with one draw call per texture at the end of the
+	 * frame instead of one draw call per object. The objects are drawn after
+	 * all the other {@link com.beyondar.android.opengl.renderable.Renderable
+	 * Renderable}s and the {@link GLPlugin}s are still notified for each
+	 * object. Disabled by default.
+	 * 
+	 * @param enabled
+	 */
+	public void setBatchRenderingEnabled(boolean enabled) {
+		if (enabled && mSpriteBatch == null) {
+			mSpriteBatch = new SpriteBatch();
+		} else if (!enabled) {
+			mSpriteBatch = null;
+		}
+	}
+
+	/**
+	 * Pack the images of the {@link com.beyondar.android.world.BeyondarObject
+	 * BeyondarObject}s into shared textures (see
+	 * {@link com.beyondar.android.opengl.texture.TextureAtlas TextureAtlas})
+	 * instead of creating one texture for each image. Small images are not
+	 * resized to a power of two and the objects that share a page can be
+	 * drawn together by the batch rendering. Only the images loaded after
+	 * calling this method are affected. Disabled by default.
+	 * 
+	 * @param enabled
+	 */
+	public void setTextureAtlasEnabled(boolean enabled) {
+		TextureAtlas textureAtlas = mTextureAtlas;
+		if (enabled && textureAtlas == null) {
+			mTextureAtlas = new TextureAtlas();
+		} else if (!enabled && textureAtlas != null) {
+			mTextureAtlas = null;
+			// The pages are deleted in the GL thread
+			mReleasedTextureAtlases.add(textureAtlas);
+		}
+	}
+
+	/**
+	 * Delete the pages of the disabled atlases. The objects that use them get
+	 * an empty texture, so their images are loaded again without the atlas.
+	 */
+	private void releaseTextureAtlases(GL10 gl) {
+		mTextureRegistry.setTextureAtlas(mTextureAtlas);
+		TextureAtlas textureAtlas;
+		while ((textureAtlas = mReleasedTextureAtlases.poll()) != null) {
+			mTextureRegistry.removeTextureAtlas(textureAtlas);
+			if (mWorld != null) {
+				WorldSnapshot snapshot = mWorld.getSnapshot();
+				for (int i = 0; i < snapshot.getListCount(); i++) {
+					for (int j = 0; j < snapshot.getObjectCount(i); j++) {
+						BeyondarObject beyondarObject = snapshot.getObject(i, j);
+						Texture texture = beyondarObject.getTexture();
+						if (texture.isLoaded() && textureAtlas.isPage(texture.getTexturePointer())) {
+							beyondarObject.setTexture(null);
+						}
+					}
+				}
+			}
+			textureAtlas.release(gl);
+		}
+	}
+
+	/**
+	 * Check if the images are packed in a texture atlas.
+	 * 
+	 * @return
+	 */
+	public boolean isTextureAtlasEnabled() {
+		return mTextureAtlas != null;
+	}
+
+	/**
+	 * Skip the objects that are outside of the view frustum before loading
+	 * their textures, calculating their screen position, notifying the
+	 * plugins and drawing them. Culled objects are notified with
+	 * {@link com.beyondar.android.opengl.renderable.Renderable#onNotRendered(double)
+	 * Renderable.onNotRendered(double)} and their screen positions are not
+	 * updated. Objects whose
+	 * {@link com.beyondar.android.opengl.renderable.Renderable Renderable}
+	 * forces the drawing are never culled. Enabled by default.
+	 * 
+	 * @param enabled
+	 */
+	public void setFrustumCullingEnabled(boolean enabled) {
+		mFrustumCullingEnabled = enabled;
+	}
+
+	public boolean isFrustumCullingEnabled() {
+		return mFrustumCullingEnabled;
+	}
+
+	/**
+	 * Set the extra distance (in GL units) around the view frustum where the
+	 * objects are still rendered. Increase it if big objects disappear before
+	 * leaving the screen.
+	 * 
+	 * @param margin
+	 */
+	public void setFrustumCullingMargin(float margin) {
+		mFrustumCuller.setMargin(margin);
+	}
+
+	public float getFrustumCullingMargin() {
+		return mFrustumCuller.getMargin();
+	}
+
+	/**
+	 * Get the amount of objects that were inside the max distance to render
+	 * but out of the view frustum in the last frame.
+	 * 
+	 * @return
+	 */
+	public int getCulledObjectsCount() {
+		return mFrameStats.getCounter(FrameStats.COUNTER_OBJECTS_CULLED);
+	}
+
+	/**
+	 * Get the amount of objects rendered in the last frame.
+	 * 
+	 * @return
+	 */
+	public int getVisibleObjectsCount() {
+		return mVisibleObjectsCount;
+	}
+
+	/**
+	 * Check if the batch rendering is enabled.
+	 * 
+	 * @return
+	 */
+	public boolean isBatchRenderingEnabled() {
+		return mSpriteBatch != null;
+	}
+
+	/**
+	 * Check if the renderer is using the
+	 * {@link com.beyondar.android.world.GeoSpatialIndex GeoSpatialIndex} to
+	 * find the {@link com.beyondar.android.world.GeoObject GeoObject}s to
+	 * render.
+	 * 
+	 * @return
+	 */
+	public boolean isSpatialIndexEnabled() {
+		return mSpatialIndexEnabled;
+	}
+
 	/**
 	 * Set the distance (in meters) which the app will draw the objects.
 	 * 
@@ -1367,6 +2468,7 @@ public class ARRenderer implements GLSurfaceView.Renderer, BeyondarSensorListene
 		if (factor <= 0)
 			return;
 		mDistanceFactor = factor;
+		mPositionConfigVersion = World.nextVersion();
 	}
 
 	/**
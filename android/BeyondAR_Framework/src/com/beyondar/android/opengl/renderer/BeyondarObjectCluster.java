@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.renderer;
+
+import java.util.ArrayList;
+
+import com.beyondar.android.opengl.texture.Texture;
+import com.beyondar.android.util.math.geom.Point3;
+import com.beyondar.android.world.BeyondarObject;
+
+/**
+ * Group of {@link com.beyondar.android.world.BeyondarObject BeyondarObject}s
+ * whose screen positions are close to each other (see {@link ScreenClusterer}
+ * ). Only the representative, the closest object to the user, is drawn.<br>
+ * The clusters are reused in each frame by the GL thread, so do not keep
+ * them. From other threads use
+ * {@link com.beyondar.android.world.BeyondarObject#getClusterSize()
+ * BeyondarObject.getClusterSize()} and
+ * {@link com.beyondar.android.world.BeyondarObject#getClusterRepresentative()
+ * BeyondarObject.getClusterRepresentative()}.
+ */
+public class BeyondarObjectCluster {
+
+	private final ArrayList<BeyondarObject> mObjects;
+	private final Point3 mScreenPositionCenter;
+	private BeyondarObject mRepresentative;
+	private Texture mDefaultTexture;
+	/** Screen position of the first object, used to add the next ones. */
+	float seedX, seedY;
+	/** Next cluster in the same cell of the {@link ScreenClusterer} grid. */
+	int nextInCell;
+
+	BeyondarObjectCluster() {
+		mObjects = new ArrayList<BeyondarObject>();
+		mScreenPositionCenter = new Point3();
+	}
+
+	void reset(BeyondarObject beyondarObject, Texture defaultTexture) {
+		mObjects.clear();
+		mObjects.add(beyondarObject);
+		mRepresentative = beyondarObject;
+		mDefaultTexture = defaultTexture;
+		Point3 screen = beyondarObject.getScreenPositionCenter();
+		seedX = screen.x;
+		seedY = screen.y;
+		mScreenPositionCenter.x = screen.x;
+		mScreenPositionCenter.y = screen.y;
+		mScreenPositionCenter.z = screen.z;
+	}
+
+	void add(BeyondarObject beyondarObject, Texture defaultTexture) {
+		Point3 screen = beyondarObject.getScreenPositionCenter();
+		int size = mObjects.size();
+		// Running average of the screen positions
+		mScreenPositionCenter.x += (screen.x - mScreenPositionCenter.x) / (size + 1);
+		mScreenPositionCenter.y += (screen.y - mScreenPositionCenter.y) / (size + 1);
+		mScreenPositionCenter.z = Math.min(mScreenPositionCenter.z, screen.z);
+		mObjects.add(beyondarObject);
+		if (beyondarObject.getDistanceFromUser() < mRepresentative.getDistanceFromUser()) {
+			mRepresentative = beyondarObject;
+			mDefaultTexture = defaultTexture;
+		}
+	}
+
+	void clear() {
+		mObjects.clear();
+		mRepresentative = null;
+		mDefaultTexture = null;
+	}
+
+	/**
+	 * Get the amount of objects in the cluster.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return mObjects.size();
+	}
+
+	/**
+	 * Get an object of the cluster.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public BeyondarObject get(int index) {
+		return mObjects.get(index);
+	}
+
+	/**
+	 * Get the object drawn for the cluster, the closest one to the user.
+	 *
+	 * @return
+	 */
+	public BeyondarObject getRepresentative() {
+		return mRepresentative;
+	}
+
+	/**
+	 * Get the average screen position of the objects of the cluster. The z is
+	 * the one of the closest object to the screen.
+	 *
+	 * @return
+	 */
+	public Point3 getScreenPositionCenter() {
+		return mScreenPositionCenter;
+	}
+
+	Texture getDefaultTexture() {
+		return mDefaultTexture;
+	}
+}
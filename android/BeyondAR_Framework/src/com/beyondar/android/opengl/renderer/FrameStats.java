@@ -0,0 +1,361 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.renderer;
+
+/**
+ * Timing and counters of the frames drawn by the {@link ARRenderer}. The time
+ * (ns) spent in each phase of the frame, the counters and the orientation
+ * latencies of the last frame are available, and the times of the last frames
+ * are kept in a ring buffer to calculate percentiles (p50, p95, p99...).<br>
+ * All the memory is allocated when the object is created, so recording the
+ * frames and reading the values does not allocate anything.<br>
+ * The class is not thread safe: the values are written in the GL thread, so
+ * they should be read from
+ * {@link FrameStats.OnFrameStatsListener#onFrameStats(FrameStats)}, that is
+ * called in the GL thread after each frame.
+ */
+public class FrameStats {
+
+	/** Rotation matrix calculation from the sensor values. */
+	public static final int PHASE_SENSORS = 0;
+	/** Upload of the textures whose images have been loaded. */
+	public static final int PHASE_TEXTURE_UPLOADS = 1;
+	/** {@link ARRenderer#renderWorld(javax.microedition.khronos.opengles.GL10, long)}. */
+	public static final int PHASE_RENDER_WORLD = 2;
+	/** {@link com.beyondar.android.plugin.GLPlugin#onFrameRendered} of the plugins. */
+	public static final int PHASE_PLUGINS = 3;
+	/** {@link ARRenderer#savePixels(javax.microedition.khronos.opengles.GL10)}. */
+	public static final int PHASE_SCREENSHOT = 4;
+	/** The whole frame. */
+	public static final int PHASE_FRAME = 5;
+	/** Amount of phases. */
+	public static final int PHASE_COUNT = 6;
+
+	/** Objects checked to be rendered. */
+	public static final int COUNTER_OBJECTS_VISITED = 0;
+	/** Objects skipped because they are out of the view frustum. */
+	public static final int COUNTER_OBJECTS_CULLED = 1;
+	/** Objects drawn. */
+	public static final int COUNTER_OBJECTS_DRAWN = 2;
+	/**
+	 * Calls to glBindTexture. Only counted if the GL is wrapped with
+	 * {@link com.beyondar.android.opengl.util.MatrixTrackingGL
+	 * MatrixTrackingGL}, as {@link com.beyondar.android.view.BeyondarGLSurfaceView
+	 * BeyondarGLSurfaceView} does.
+	 */
+	public static final int COUNTER_TEXTURE_BINDS = 3;
+	/**
+	 * Draw calls. Only counted if the GL is wrapped with
+	 * {@link com.beyondar.android.opengl.util.MatrixTrackingGL
+	 * MatrixTrackingGL}.
+	 */
+	public static final int COUNTER_DRAW_CALLS = 4;
+	/** Images uploaded to the GPU. */
+	public static final int COUNTER_TEXTURE_UPLOADS = 5;
+	/** Calls to the {@link com.beyondar.android.plugin.GLPlugin GLPlugin}s. */
+	public static final int COUNTER_PLUGIN_CALLS = 6;
+	/** Textures deleted to keep the GPU memory under the budget. */
+	public static final int COUNTER_TEXTURE_EVICTIONS = 7;
+	/**
+	 * Objects not drawn because they are merged with a closer one in a
+	 * {@link BeyondarObjectCluster}.
+	 */
+	public static final int COUNTER_OBJECTS_CLUSTERED = 8;
+	/**
+	 * Objects not drawn because they overlap with others, see
+	 * {@link ScreenDeclutterer}.
+	 */
+	public static final int COUNTER_OBJECTS_SUPPRESSED = 9;
+	/** Amount of counters. */
+	public static final int COUNTER_COUNT = 10;
+
+	/**
+	 * Time from the sensor values used to orient the frame to the end of the
+	 * frame. It is 0 if the sensors use a different clock.
+	 */
+	public static final int LATENCY_ORIENTATION_AGE = 0;
+	/**
+	 * Time that the orientation has been extrapolated by the
+	 * {@link com.beyondar.android.sensor.OrientationPredictor
+	 * OrientationPredictor}, if any. The remaining latency is
+	 * {@link #LATENCY_ORIENTATION_AGE} plus the display time minus this value.
+	 */
+	public static final int LATENCY_ORIENTATION_PREDICTION = 1;
+	/** Amount of latencies. */
+	public static final int LATENCY_COUNT = 2;
+
+	/** Default amount of frames used to calculate the percentiles. */
+	public static final int DEFAULT_HISTORY_SIZE = 120;
+
+	private final long[] mPhaseStart = new long[PHASE_COUNT];
+	private final long[] mPhaseNanos = new long[PHASE_COUNT];
+	private final long[] mLastPhaseNanos = new long[PHASE_COUNT];
+	private final int[] mCounters = new int[COUNTER_COUNT];
+	private final int[] mLastCounters = new int[COUNTER_COUNT];
+
+	private final long[] mLatencyNanos = new long[LATENCY_COUNT];
+	private final long[] mLastLatencyNanos = new long[LATENCY_COUNT];
+
+	private final long[][] mHistory;
+	private final long[][] mLatencyHistory;
+	private final long[] mScratch;
+	private final int mCapacity;
+	private int mHistoryIndex;
+	private int mHistorySize;
+	private long mFrameCount;
+
+	/**
+	 * Listener notified after each frame.
+	 */
+	public static interface OnFrameStatsListener {
+
+		/**
+		 * Called in the GL thread after each frame. Do not keep the reference
+		 * to the {@link FrameStats} or read it from other threads, the values
+		 * change every frame.
+		 *
+		 * @param stats
+		 */
+		public void onFrameStats(FrameStats stats);
+	}
+
+	public FrameStats() {
+		this(DEFAULT_HISTORY_SIZE);
+	}
+
+	/**
+	 * Create the stats.
+	 *
+	 * @param historySize
+	 *            Amount of frames used to calculate the percentiles.
+	 */
+	public FrameStats(int historySize) {
+		if (historySize <= 0) {
+			throw new IllegalArgumentException("historySize <= 0");
+		}
+		mCapacity = historySize;
+		mHistory = new long[PHASE_COUNT][historySize];
+		mLatencyHistory = new long[LATENCY_COUNT][historySize];
+		mScratch = new long[historySize];
+	}
+
+	void beginFrame() {
+		for (int i = 0; i < PHASE_COUNT; i++) {
+			mPhaseNanos[i] = 0;
+		}
+		for (int i = 0; i < LATENCY_COUNT; i++) {
+			mLatencyNanos[i] = 0;
+		}
+		mPhaseStart[PHASE_FRAME] = System.nanoTime();
+	}
+
+	void beginPhase(int phase) {
+		mPhaseStart[phase] = System.nanoTime();
+	}
+
+	void endPhase(int phase) {
+		mPhaseNanos[phase] += System.nanoTime() - mPhaseStart[phase];
+	}
+
+	void add(int counter, int value) {
+		mCounters[counter] += value;
+	}
+
+	void increment(int counter) {
+		mCounters[counter]++;
+	}
+
+	void setLatency(int latency, long nanos) {
+		mLatencyNanos[latency] = nanos;
+	}
+
+	void endFrame() {
+		mPhaseNanos[PHASE_FRAME] = System.nanoTime() - mPhaseStart[PHASE_FRAME];
+		for (int i = 0; i < PHASE_COUNT; i++) {
+			mLastPhaseNanos[i] = mPhaseNanos[i];
+			mHistory[i][mHistoryIndex] = mPhaseNanos[i];
+		}
+		for (int i = 0; i < LATENCY_COUNT; i++) {
+			mLastLatencyNanos[i] = mLatencyNanos[i];
+			mLatencyHistory[i][mHistoryIndex] = mLatencyNanos[i];
+		}
+		// The counters can be increased between frames (for instance when
+		// the surface is created), so they are reset after being stored
+		for (int i = 0; i < COUNTER_COUNT; i++) {
+			mLastCounters[i] = mCounters[i];
+			mCounters[i] = 0;
+		}
+		mHistoryIndex = (mHistoryIndex + 1) % mCapacity;
+		if (mHistorySize < mCapacity) {
+			mHistorySize++;
+		}
+		mFrameCount++;
+	}
+
+	/**
+	 * Get the time spent in a phase during the last frame.
+	 *
+	 * @param phase
+	 *            One of the PHASE_ constants.
+	 * @return Time in ns.
+	 */
+	public long getPhaseNanos(int phase) {
+		return mLastPhaseNanos[phase];
+	}
+
+	/**
+	 * Get the value of a counter in the last frame.
+	 *
+	 * @param counter
+	 *            One of the COUNTER_ constants.
+	 * @return
+	 */
+	public int getCounter(int counter) {
+		return mLastCounters[counter];
+	}
+
+	/**
+	 * Get a percentile of the time spent in a phase during the last frames
+	 * (see {@link #getHistorySize()}).
+	 *
+	 * @param phase
+	 *            One of the PHASE_ constants.
+	 * @param percentile
+	 *            Percentile between 0 and 100, for instance 95 for the p95.
+	 * @return Time in ns, 0 if no frame has been recorded.
+	 */
+	public long getPercentileNanos(int phase, float percentile) {
+		return percentile(mHistory[phase], percentile);
+	}
+
+	/**
+	 * Get a latency of the last frame.
+	 *
+	 * @param latency
+	 *            One of the LATENCY_ constants.
+	 * @return Time in ns.
+	 */
+	public long getLatencyNanos(int latency) {
+		return mLastLatencyNanos[latency];
+	}
+
+	/**
+	 * Get a percentile of a latency during the last frames (see
+	 * {@link #getHistorySize()}).
+	 *
+	 * @param latency
+	 *            One of the LATENCY_ constants.
+	 * @param percentile
+	 *            Percentile between 0 and 100, for instance 95 for the p95.
+	 * @return Time in ns, 0 if no frame has been recorded.
+	 */
+	public long getLatencyPercentileNanos(int latency, float percentile) {
+		return percentile(mLatencyHistory[latency], percentile);
+	}
+
+	private long percentile(long[] history, float percentile) {
+		int size = mHistorySize;
+		if (size == 0) {
+			return 0;
+		}
+		System.arraycopy(history, 0, mScratch, 0, size);
+		// Nearest rank
+		int rank = (int) Math.ceil(percentile / 100f * size) - 1;
+		rank = Math.max(0, Math.min(size - 1, rank));
+		return select(mScratch, size, rank);
+	}
+
+	/**
+	 * Get the amount of frames currently used to calculate the percentiles.
+	 *
+	 * @return
+	 */
+	public int getHistorySize() {
+		return mHistorySize;
+	}
+
+	/**
+	 * Get the max amount of frames used to calculate the percentiles.
+	 *
+	 * @return
+	 */
+	public int getHistoryCapacity() {
+		return mCapacity;
+	}
+
+	/**
+	 * Get the amount of frames recorded.
+	 *
+	 * @return
+	 */
+	public long getFrameCount() {
+		return mFrameCount;
+	}
+
+	/**
+	 * Remove the recorded frames.
+	 */
+	public void reset() {
+		mHistoryIndex = 0;
+		mHistorySize = 0;
+		mFrameCount = 0;
+		for (int i = 0; i < PHASE_COUNT; i++) {
+			mLastPhaseNanos[i] = 0;
+		}
+		for (int i = 0; i < COUNTER_COUNT; i++) {
+			mLastCounters[i] = 0;
+		}
+		for (int i = 0; i < LATENCY_COUNT; i++) {
+			mLastLatencyNanos[i] = 0;
+		}
+	}
+
+	/**
+	 * Find the k-th smallest value (quickselect). The array is reordered.
+	 */
+	private static long select(long[] values, int size, int k) {
+		int left = 0;
+		int right = size - 1;
+		while (left < right) {
+			long pivot = values[(left + right) >>> 1];
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (values[i] < pivot) {
+					i++;
+				}
+				while (values[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					long tmp = values[i];
+					values[i] = values[j];
+					values[j] = tmp;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) {
+				right = j;
+			} else if (k >= i) {
+				left = i;
+			} else {
+				break;
+			}
+		}
+		return values[k];
+	}
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.renderer;
+
+import com.beyondar.android.util.math.geom.Point3;
+import com.beyondar.android.world.BeyondarObject;
+
+/**
+ * Selects the {@link com.beyondar.android.world.BeyondarObject BeyondarObject}
+ * under a point of the screen (the center by default) in every frame, for
+ * head mounted displays and crosshair interfaces. It runs in the GL thread
+ * while the objects are drawn, reusing the screen positions computed for the
+ * frame:
+ * <ul>
+ * <li>While the current target is still under the point only the target is
+ * checked, so the cost is almost zero.</li>
+ * <li>Otherwise only the objects whose screen center is inside the search
+ * radius are checked with their screen corners.</li>
+ * </ul>
+ * To avoid flickering the target is kept while the point is inside its quad
+ * grown by the exit margin, and for the exit delay after it is lost. The
+ * {@link OnGazeListener} is notified when the point has been on an object
+ * for the dwell time and when it leaves it.
+ */
+public class GazeSelector {
+
+	/** Default time (ms) the point must stay on an object to select it. */
+	public static final long DEFAULT_DWELL_TIME = 500;
+	/** Default time (ms) an object is kept after the point leaves it. */
+	public static final long DEFAULT_EXIT_DELAY = 150;
+	/** Default extra space (pixels) around the target to keep it. */
+	public static final float DEFAULT_EXIT_MARGIN = 16;
+	/**
+	 * Default max distance (pixels) from the point to the screen center of
+	 * an object to check it.
+	 */
+	public static final float DEFAULT_SEARCH_RADIUS = 48;
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	/**
+	 * Listener notified by the {@link GazeSelector}. The methods are called
+	 * from the GL thread, so post any work on the views to the UI thread.
+	 */
+	public static interface OnGazeListener {
+
+		/**
+		 * The point has been on the object for the dwell time.
+		 *
+		 * @param beyondarObject
+		 */
+		public void onDwellStart(BeyondarObject beyondarObject);
+
+		/**
+		 * The point has left the object notified in
+		 * {@link #onDwellStart(BeyondarObject)}.
+		 *
+		 * @param beyondarObject
+		 */
+		public void onDwellStop(BeyondarObject beyondarObject);
+	}
+
+	private final ARRenderer mRenderer;
+
+	private volatile OnGazeListener mOnGazeListener;
+	private volatile float mGazeX = 0.5f, mGazeY = 0.5f;
+	private volatile float mSearchRadius = DEFAULT_SEARCH_RADIUS;
+	private volatile float mExitMargin = DEFAULT_EXIT_MARGIN;
+	private volatile long mDwellTime = DEFAULT_DWELL_TIME;
+	private volatile long mExitDelay = DEFAULT_EXIT_DELAY;
+
+	// Frame values
+	private float mX, mY, mRadiusSquared;
+	private boolean mTargetFound;
+	private BeyondarObject[] mCandidates;
+	private boolean[] mCandidatesFilled;
+	private int mCandidateCount;
+
+	// Selection state
+	private volatile BeyondarObject mTarget;
+	private volatile boolean mDwelling;
+	/** The selection is waiting for the dwell time or the exit delay. */
+	private volatile boolean mPending;
+	private long mTargetTime;
+	private long mLostTime;
+
+	GazeSelector(ARRenderer renderer) {
+		mRenderer = renderer;
+		mCandidates = new BeyondarObject[INITIAL_CAPACITY];
+		mCandidatesFilled = new boolean[INITIAL_CAPACITY];
+		mLostTime = -1;
+	}
+
+	public void setOnGazeListener(OnGazeListener listener) {
+		mOnGazeListener = listener;
+	}
+
+	/**
+	 * Set the point of the screen to check, relative to the size of the view.
+	 *
+	 * @param x
+	 *            From 0 (left) to 1 (right), 0.5 by default.
+	 * @param y
+	 *            From 0 (top) to 1 (bottom), 0.5 by default.
+	 */
+	public void setGazePoint(float x, float y) {
+		mGazeX = x;
+		mGazeY = y;
+	}
+
+	/**
+	 * Set the max distance (pixels) from the point to the screen center of an
+	 * object to be selected. Bigger objects are only selected if the point is
+	 * closer to their center. The screen corners of every object inside the
+	 * radius are calculated in each frame, so keep it small.
+	 *
+	 * @param radius
+	 *            {@link #DEFAULT_SEARCH_RADIUS} by default. 0 to use half of
+	 *            the smallest side of the view.
+	 */
+	public void setSearchRadius(float radius) {
+		mSearchRadius = Math.max(0, radius);
+	}
+
+	/**
+	 * Set the extra space (pixels) around the target where the point can be
+	 * without losing it.
+	 *
+	 * @param margin
+	 */
+	public void setExitMargin(float margin) {
+		mExitMargin = Math.max(0, margin);
+	}
+
+	/**
+	 * Set the time (ms) the point must stay on an object before calling
+	 * {@link OnGazeListener#onDwellStart(BeyondarObject)}.
+	 *
+	 * @param dwellTime
+	 */
+	public void setDwellTime(long dwellTime) {
+		mDwellTime = Math.max(0, dwellTime);
+	}
+
+	/**
+	 * Set the time (ms) the target is kept after the point leaves it.
+	 *
+	 * @param exitDelay
+	 */
+	public void setExitDelay(long exitDelay) {
+		mExitDelay = Math.max(0, exitDelay);
+	}
+
+	/**
+	 * Get the object under the point, even if the dwell time has not passed.
+	 *
+	 * @return The object or null.
+	 */
+	public BeyondarObject getTarget() {
+		return mTarget;
+	}
+
+	/**
+	 * Check if the dwell has started on the target.
+	 *
+	 * @return
+	 */
+	public boolean isDwelling() {
+		return mDwelling;
+	}
+
+	/**
+	 * Check if more frames are needed to know if the dwell starts or stops.
+	 *
+	 * @return
+	 */
+	boolean isPending() {
+		return mPending;
+	}
+
+	/**
+	 * Start a new frame.
+	 *
+	 * @param width
+	 *            Width of the screen (pixels).
+	 * @param height
+	 *            Height of the screen (pixels).
+	 */
+	void begin(int width, int height) {
+		mX = mGazeX * width;
+		mY = mGazeY * height;
+		float radius = mSearchRadius;
+		if (radius == 0) {
+			radius = Math.min(width, height) / 2f;
+		}
+		mRadiusSquared = radius * radius;
+		mTargetFound = false;
+		for (int i = 0; i < mCandidateCount; i++) {
+			mCandidates[i] = null;
+		}
+		mCandidateCount = 0;
+	}
+
+	/**
+	 * Check an object drawn in this frame. Its screen center must be updated.
+	 *
+	 * @param beyondarObject
+	 * @param filled
+	 *            true if its screen corners have been filled in this frame.
+	 */
+	void add(BeyondarObject beyondarObject, boolean filled) {
+		Point3 center = beyondarObject.getScreenPositionCenter();
+		if (center.z < 0 || center.z > 1) {
+			// Behind the camera
+			return;
+		}
+		if (beyondarObject == mTarget) {
+			if (!filled) {
+				mRenderer.fillBeyondarObjectScreenPositions(beyondarObject);
+			}
+			mTargetFound = isInside(beyondarObject, mExitMargin);
+			return;
+		}
+		if (mTargetFound) {
+			return;
+		}
+		float dx = center.x - mX;
+		float dy = center.y - mY;
+		if (dx * dx + dy * dy > mRadiusSquared) {
+			return;
+		}
+		if (mCandidateCount == mCandidates.length) {
+			BeyondarObject[] candidates = new BeyondarObject[mCandidateCount * 2];
+			boolean[] candidatesFilled = new boolean[mCandidateCount * 2];
+			System.arraycopy(mCandidates, 0, candidates, 0, mCandidateCount);
+			System.arraycopy(mCandidatesFilled, 0, candidatesFilled, 0, mCandidateCount);
+			mCandidates = candidates;
+			mCandidatesFilled = candidatesFilled;
+		}
+		mCandidates[mCandidateCount] = beyondarObject;
+		mCandidatesFilled[mCandidateCount] = filled;
+		mCandidateCount++;
+	}
+
+	/**
+	 * Update the selection with the objects added since
+	 * {@link #begin(int, int)} and notify the changes.
+	 *
+	 * @param time
+	 *            Time of the frame (ms).
+	 */
+	void end(long time) {
+		BeyondarObject target = mTarget;
+		if (target != null && mTargetFound) {
+			// The common case, the point is still on the target
+			mLostTime = -1;
+		} else {
+			BeyondarObject found = findCandidate();
+			if (target != null && found != target) {
+				if (mLostTime == -1) {
+					mLostTime = time;
+				}
+				if (time - mLostTime < mExitDelay) {
+					mPending = true;
+					return;
+				}
+				if (mDwelling) {
+					mDwelling = false;
+					notifyDwellStop(target);
+				}
+			}
+			mLostTime = -1;
+			if (found != target) {
+				mTarget = target = found;
+				mTargetTime = time;
+			}
+		}
+
+		if (target != null && !mDwelling && time - mTargetTime >= mDwellTime) {
+			mDwelling = true;
+			notifyDwellStart(target);
+		}
+		mPending = target != null && !mDwelling;
+	}
+
+	/**
+	 * Remove the target, notifying the end of the dwell if it has started.
+	 */
+	void clear() {
+		BeyondarObject target = mTarget;
+		mTarget = null;
+		mPending = false;
+		mLostTime = -1;
+		for (int i = 0; i < mCandidateCount; i++) {
+			mCandidates[i] = null;
+		}
+		mCandidateCount = 0;
+		if (mDwelling) {
+			mDwelling = false;
+			notifyDwellStop(target);
+		}
+	}
+
+	/** Get the closest candidate under the point. */
+	private BeyondarObject findCandidate() {
+		BeyondarObject found = null;
+		float depth = Float.MAX_VALUE;
+		for (int i = 0; i < mCandidateCount; i++) {
+			BeyondarObject beyondarObject = mCandidates[i];
+			float z = beyondarObject.getScreenPositionCenter().z;
+			if (z >= depth) {
+				continue;
+			}
+			if (!mCandidatesFilled[i]) {
+				mRenderer.fillBeyondarObjectScreenPositions(beyondarObject);
+			}
+			if (isInside(beyondarObject, 0)) {
+				found = beyondarObject;
+				depth = z;
+			}
+		}
+		return found;
+	}
+
+	/** Check if the point is inside the screen quad grown by the margin. */
+	private boolean isInside(BeyondarObject beyondarObject, float margin) {
+		Point3 topLeft = beyondarObject.getScreenPositionTopLeft();
+		Point3 topRight = beyondarObject.getScreenPositionTopRight();
+		Point3 bottomRight = beyondarObject.getScreenPositionBottomRight();
+		Point3 bottomLeft = beyondarObject.getScreenPositionBottomLeft();
+		float sign = Math.signum(cross(topLeft, topRight, bottomRight));
+		if (sign == 0) {
+			return false;
+		}
+		// Signed distances to the edges, positive inside the quad
+		return edgeDistance(topLeft, topRight, sign) >= -margin
+				&& edgeDistance(topRight, bottomRight, sign) >= -margin
+				&& edgeDistance(bottomRight, bottomLeft, sign) >= -margin
+				&& edgeDistance(bottomLeft, topLeft, sign) >= -margin;
+	}
+
+	private float edgeDistance(Point3 a, Point3 b, float sign) {
+		float dx = b.x - a.x;
+		float dy = b.y - a.y;
+		float length = (float) Math.sqrt(dx * dx + dy * dy);
+		if (length == 0) {
+			return 0;
+		}
+		return sign * (dx * (mY - a.y) - dy * (mX - a.x)) / length;
+	}
+
+	private static float cross(Point3 a, Point3 b, Point3 c) {
+		return (b.x - a.x) * (c.y - a.y) - (b.y - a.y) * (c.x - a.x);
+	}
+
+	private void notifyDwellStart(BeyondarObject beyondarObject) {
+		OnGazeListener listener = mOnGazeListener;
+		if (listener != null) {
+			listener.onDwellStart(beyondarObject);
+		}
+	}
+
+	private void notifyDwellStop(BeyondarObject beyondarObject) {
+		OnGazeListener listener = mOnGazeListener;
+		if (listener != null) {
+			listener.onDwellStop(beyondarObject);
+		}
+	}
+}
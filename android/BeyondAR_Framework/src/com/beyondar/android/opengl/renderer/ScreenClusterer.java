@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.renderer;
+
+import java.util.ArrayList;
+
+import com.beyondar.android.opengl.texture.Texture;
+import com.beyondar.android.util.math.geom.Point3;
+import com.beyondar.android.world.BeyondarObject;
+
+/**
+ * Merges the {@link com.beyondar.android.world.BeyondarObject BeyondarObject}
+ * s whose screen positions are closer than a radius (pixels) into
+ * {@link BeyondarObjectCluster}s. The screen is divided in a grid of cells of
+ * the size of the radius, so each object is only compared with the clusters
+ * of the 3x3 cells around it and the whole frame is clustered in O(n).<br>
+ * Each object joins the closest cluster whose first object is inside the
+ * radius, or starts a new cluster. The clusters and the buffers are reused
+ * between frames, so after the first frames no memory is allocated. The
+ * class is not thread safe, it is used in the GL thread.
+ */
+public class ScreenClusterer {
+
+	/** Default radius to merge the objects (pixels). */
+	public static final float DEFAULT_RADIUS = 48;
+
+	private final ArrayList<BeyondarObject> mObjects;
+	private final ArrayList<Texture> mDefaultTextures;
+	private final ArrayList<BeyondarObjectCluster> mClusters;
+	/** Objects whose cluster has been set, to clear it in the next frame. */
+	private final ArrayList<BeyondarObject> mClusteredObjects;
+	private int mClusterCount;
+
+	private float mRadius;
+	private int mColumns, mRows;
+	private int[] mCellHeads;
+
+	public ScreenClusterer() {
+		mObjects = new ArrayList<BeyondarObject>();
+		mDefaultTextures = new ArrayList<Texture>();
+		mClusters = new ArrayList<BeyondarObjectCluster>();
+		mClusteredObjects = new ArrayList<BeyondarObject>();
+		mCellHeads = new int[0];
+		mRadius = DEFAULT_RADIUS;
+	}
+
+	/**
+	 * Start a new frame. The clusters of the previous frame are removed from
+	 * their objects.
+	 *
+	 * @param width
+	 *            Width of the screen (pixels).
+	 * @param height
+	 *            Height of the screen (pixels).
+	 * @param radius
+	 *            Max distance (pixels) between the objects of a cluster.
+	 */
+	public void begin(int width, int height, float radius) {
+		for (int i = 0; i < mClusteredObjects.size(); i++) {
+			mClusteredObjects.get(i).setCluster(null);
+		}
+		mClusteredObjects.clear();
+		for (int i = 0; i < mClusterCount; i++) {
+			mClusters.get(i).clear();
+		}
+		mClusterCount = 0;
+		mObjects.clear();
+		mDefaultTextures.clear();
+
+		if (radius <= 0) {
+			return;
+		}
+		mRadius = radius;
+		mColumns = Math.max(1, (int) Math.ceil(width / radius));
+		mRows = Math.max(1, (int) Math.ceil(height / radius));
+		int cells = mColumns * mRows;
+		if (mCellHeads.length < cells) {
+			mCellHeads = new int[cells];
+		}
+	}
+
+	/**
+	 * Add an object to be clustered. Its screen position (see
+	 * {@link com.beyondar.android.world.BeyondarObject#getScreenPositionCenter()
+	 * BeyondarObject.getScreenPositionCenter()}) must be updated.
+	 *
+	 * @param beyondarObject
+	 * @param defaultTexture
+	 *            Texture to draw the object if its own is not loaded.
+	 */
+	public void add(BeyondarObject beyondarObject, Texture defaultTexture) {
+		mObjects.add(beyondarObject);
+		mDefaultTextures.add(defaultTexture);
+	}
+
+	/**
+	 * Get the amount of objects added in this frame.
+	 *
+	 * @return
+	 */
+	public int getObjectCount() {
+		return mObjects.size();
+	}
+
+	/**
+	 * Cluster the objects added since {@link #begin(int, int, float)}. The
+	 * objects of the clusters with more than one object are updated (see
+	 * {@link com.beyondar.android.world.BeyondarObject#getCluster()
+	 * BeyondarObject.getCluster()}).
+	 *
+	 * @return The amount of clusters.
+	 */
+	public int cluster() {
+		int cells = mColumns * mRows;
+		int[] heads = mCellHeads;
+		for (int i = 0; i < cells; i++) {
+			heads[i] = -1;
+		}
+		float radius = mRadius;
+		float radiusSquared = radius * radius;
+
+		for (int i = 0; i < mObjects.size(); i++) {
+			BeyondarObject beyondarObject = mObjects.get(i);
+			Point3 screen = beyondarObject.getScreenPositionCenter();
+			// The objects out of the screen are kept in the border cells. It
+			// still finds all the clusters inside the radius because the
+			// distance between the cells can only get smaller
+			int column = clamp((int) Math.floor(screen.x / radius), mColumns);
+			int row = clamp((int) Math.floor(screen.y / radius), mRows);
+
+			BeyondarObjectCluster closest = null;
+			float closestDistance = radiusSquared;
+			for (int r = Math.max(0, row - 1); r <= Math.min(mRows - 1, row + 1); r++) {
+				for (int c = Math.max(0, column - 1); c <= Math.min(mColumns - 1, column + 1); c++) {
+					int index = heads[r * mColumns + c];
+					while (index != -1) {
+						BeyondarObjectCluster cluster = mClusters.get(index);
+						float dx = cluster.seedX - screen.x;
+						float dy = cluster.seedY - screen.y;
+						float distance = dx * dx + dy * dy;
+						if (distance < closestDistance) {
+							closestDistance = distance;
+							closest = cluster;
+						}
+						index = cluster.nextInCell;
+					}
+				}
+			}
+
+			if (closest != null) {
+				closest.add(beyondarObject, mDefaultTextures.get(i));
+			} else {
+				BeyondarObjectCluster cluster = obtainCluster();
+				cluster.reset(beyondarObject, mDefaultTextures.get(i));
+				int cell = row * mColumns + column;
+				cluster.nextInCell = heads[cell];
+				heads[cell] = mClusterCount - 1;
+			}
+		}
+
+		for (int i = 0; i < mClusterCount; i++) {
+			BeyondarObjectCluster cluster = mClusters.get(i);
+			if (cluster.size() > 1) {
+				for (int j = 0; j < cluster.size(); j++) {
+					BeyondarObject beyondarObject = cluster.get(j);
+					beyondarObject.setCluster(cluster);
+					mClusteredObjects.add(beyondarObject);
+				}
+			}
+		}
+		mObjects.clear();
+		mDefaultTextures.clear();
+		return mClusterCount;
+	}
+
+	private BeyondarObjectCluster obtainCluster() {
+		if (mClusterCount == mClusters.size()) {
+			mClusters.add(new BeyondarObjectCluster());
+		}
+		return mClusters.get(mClusterCount++);
+	}
+
+	private static int clamp(int value, int size) {
+		return value < 0 ? 0 : (value >= size ? size - 1 : value);
+	}
+
+	/**
+	 * Get the amount of clusters of the last call to {@link #cluster()}.
+	 *
+	 * @return
+	 */
+	public int getClusterCount() {
+		return mClusterCount;
+	}
+
+	/**
+	 * Get a cluster of the last call to {@link #cluster()}.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public BeyondarObjectCluster getCluster(int index) {
+		return mClusters.get(index);
+	}
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.renderer;
+
+import java.util.ArrayList;
+
+import com.beyondar.android.opengl.texture.Texture;
+import com.beyondar.android.util.math.geom.Point3;
+import com.beyondar.android.world.BeyondarObject;
+
+/**
+ * Removes the overlaps between the {@link com.beyondar.android.world.BeyondarObject
+ * BeyondarObject}s on the screen. The objects are placed by priority (see
+ * {@link com.beyondar.android.world.BeyondarObject#getPriority()
+ * BeyondarObject.getPriority()}) and then from the closest to the farthest
+ * one into an occupancy grid of the screen. An object whose screen rectangle
+ * covers an occupied cell is suppressed (see
+ * {@link com.beyondar.android.world.BeyondarObject#isSuppressed()
+ * BeyondarObject.isSuppressed()}), so the cost only depends on the amount of
+ * objects and their size instead of checking every pair of objects.<br>
+ * The screen corners of the objects must be filled (see
+ * {@link ARRenderer#fillBeyondarObjectScreenPositions(BeyondarObject)})
+ * before adding them. The buffers are reused between frames, so after the
+ * first frames no memory is allocated. The class is not thread safe, it is
+ * used in the GL thread.
+ */
+public class ScreenDeclutterer {
+
+	/** Default size of the cells of the occupancy grid (pixels). */
+	public static final int DEFAULT_CELL_SIZE = 8;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final ArrayList<BeyondarObject> mSuppressedObjects;
+	private BeyondarObject[] mObjects;
+	private Texture[] mDefaultTextures;
+	private float[] mPriorities;
+	private double[] mDistances;
+	private int[] mOrder;
+	private int[] mTmpOrder;
+	private int mSize;
+
+	private final int mCellSize;
+	private float mMargin;
+	private int mColumns, mRows;
+	private int[] mCells;
+	/** Value of the occupied cells in this frame, so they are not cleared. */
+	private int mFrameStamp;
+
+	/**
+	 * Create a declutterer with the {@link #DEFAULT_CELL_SIZE}.
+	 */
+	public ScreenDeclutterer() {
+		this(DEFAULT_CELL_SIZE);
+	}
+
+	/**
+	 * Create a declutterer with the specified cell size.
+	 *
+	 * @param cellSize
+	 *            Size of the cells of the grid (pixels). Smaller cells are more
+	 *            precise but slower.
+	 */
+	public ScreenDeclutterer(int cellSize) {
+		if (cellSize <= 0) {
+			throw new IllegalArgumentException("cellSize <= 0");
+		}
+		mCellSize = cellSize;
+		mSuppressedObjects = new ArrayList<BeyondarObject>();
+		mCells = new int[0];
+		ensureCapacity(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Set the extra space (pixels) around each object that must be free.
+	 *
+	 * @param margin
+	 */
+	public void setMargin(float margin) {
+		mMargin = Math.max(0, margin);
+	}
+
+	public float getMargin() {
+		return mMargin;
+	}
+
+	/**
+	 * Start a new frame. The objects suppressed in the previous frame are
+	 * visible again.
+	 *
+	 * @param width
+	 *            Width of the screen (pixels).
+	 * @param height
+	 *            Height of the screen (pixels).
+	 */
+	public void begin(int width, int height) {
+		for (int i = 0; i < mSuppressedObjects.size(); i++) {
+			mSuppressedObjects.get(i).setSuppressed(false);
+		}
+		mSuppressedObjects.clear();
+		for (int i = 0; i < mSize; i++) {
+			mObjects[i] = null;
+			mDefaultTextures[i] = null;
+		}
+		mSize = 0;
+
+		mColumns = Math.max(1, (width + mCellSize - 1) / mCellSize);
+		mRows = Math.max(1, (height + mCellSize - 1) / mCellSize);
+		int cells = mColumns * mRows;
+		if (mCells.length < cells) {
+			mCells = new int[cells];
+			mFrameStamp = 0;
+		}
+		mFrameStamp++;
+		if (mFrameStamp == 0) {
+			// Overflow, the old stamps could be taken as occupied
+			for (int i = 0; i < mCells.length; i++) {
+				mCells[i] = 0;
+			}
+			mFrameStamp = 1;
+		}
+	}
+
+	/**
+	 * Add an object to be placed.
+	 *
+	 * @param beyondarObject
+	 * @param defaultTexture
+	 *            Texture to draw the object if its own is not loaded.
+	 */
+	public void add(BeyondarObject beyondarObject, Texture defaultTexture) {
+		ensureCapacity(mSize + 1);
+		mObjects[mSize] = beyondarObject;
+		mDefaultTextures[mSize] = defaultTexture;
+		mPriorities[mSize] = beyondarObject.getPriority();
+		mDistances[mSize] = beyondarObject.getDistanceFromUser();
+		mOrder[mSize] = mSize;
+		mSize++;
+	}
+
+	/**
+	 * Place the objects added since {@link #begin(int, int)}, marking the ones
+	 * that collide with others as suppressed.
+	 *
+	 * @return The amount of suppressed objects.
+	 */
+	public int declutter() {
+		sortByPriority();
+		int suppressed = 0;
+		for (int i = 0; i < mSize; i++) {
+			BeyondarObject beyondarObject = mObjects[mOrder[i]];
+			if (!place(beyondarObject)) {
+				beyondarObject.setSuppressed(true);
+				mSuppressedObjects.add(beyondarObject);
+				suppressed++;
+			}
+		}
+		return suppressed;
+	}
+
+	/**
+	 * Get the amount of objects added in this frame.
+	 *
+	 * @return
+	 */
+	public int getObjectCount() {
+		return mSize;
+	}
+
+	/**
+	 * Get an object in placement order, after calling {@link #declutter()}.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public BeyondarObject getObject(int index) {
+		return mObjects[mOrder[index]];
+	}
+
+	/**
+	 * Get the default texture of an object in placement order.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public Texture getDefaultTexture(int index) {
+		return mDefaultTextures[mOrder[index]];
+	}
+
+	private boolean place(BeyondarObject beyondarObject) {
+		Point3 topLeft = beyondarObject.getScreenPositionTopLeft();
+		Point3 topRight = beyondarObject.getScreenPositionTopRight();
+		Point3 bottomLeft = beyondarObject.getScreenPositionBottomLeft();
+		Point3 bottomRight = beyondarObject.getScreenPositionBottomRight();
+		float margin = mMargin;
+		float left = min(topLeft.x, topRight.x, bottomLeft.x, bottomRight.x) - margin;
+		float right = max(topLeft.x, topRight.x, bottomLeft.x, bottomRight.x) + margin;
+		float top = min(topLeft.y, topRight.y, bottomLeft.y, bottomRight.y) - margin;
+		float bottom = max(topLeft.y, topRight.y, bottomLeft.y, bottomRight.y) + margin;
+
+		// Only the visible part of the object is checked
+		int column0 = Math.max(0, (int) Math.floor(left / mCellSize));
+		int column1 = Math.min(mColumns - 1, (int) Math.floor(right / mCellSize));
+		int row0 = Math.max(0, (int) Math.floor(top / mCellSize));
+		int row1 = Math.min(mRows - 1, (int) Math.floor(bottom / mCellSize));
+		if (column0 > column1 || row0 > row1) {
+			return true;
+		}
+
+		int[] cells = mCells;
+		int stamp = mFrameStamp;
+		for (int row = row0; row <= row1; row++) {
+			int offset = row * mColumns;
+			for (int column = column0; column <= column1; column++) {
+				if (cells[offset + column] == stamp) {
+					return false;
+				}
+			}
+		}
+		for (int row = row0; row <= row1; row++) {
+			int offset = row * mColumns;
+			for (int column = column0; column <= column1; column++) {
+				cells[offset + column] = stamp;
+			}
+		}
+		return true;
+	}
+
+	private static float min(float a, float b, float c, float d) {
+		return Math.min(Math.min(a, b), Math.min(c, d));
+	}
+
+	private static float max(float a, float b, float c, float d) {
+		return Math.max(Math.max(a, b), Math.max(c, d));
+	}
+
+	/** Compare using the priority, the distance and then the order added. */
+	private boolean isBefore(int a, int b) {
+		if (mPriorities[a] != mPriorities[b]) {
+			return mPriorities[a] > mPriorities[b];
+		}
+		if (mDistances[a] != mDistances[b]) {
+			return mDistances[a] < mDistances[b];
+		}
+		return a < b;
+	}
+
+	/** Bottom-up merge sort of mOrder, it does not allocate memory. */
+	private void sortByPriority() {
+		int size = mSize;
+		int[] order = mOrder;
+		int[] tmp = mTmpOrder;
+		for (int width = 1; width < size; width *= 2) {
+			for (int left = 0; left < size; left += width * 2) {
+				int mid = Math.min(left + width, size);
+				int right = Math.min(left + width * 2, size);
+				int i = left, j = mid, k = left;
+				while (i < mid && j < right) {
+					tmp[k++] = isBefore(order[j], order[i]) ? order[j++] : order[i++];
+				}
+				while (i < mid) {
+					tmp[k++] = order[i++];
+				}
+				while (j < right) {
+					tmp[k++] = order[j++];
+				}
+			}
+			int[] swap = order;
+			order = tmp;
+			tmp = swap;
+		}
+		if (order != mOrder) {
+			System.arraycopy(order, 0, mOrder, 0, size);
+		}
+	}
+
+	private void ensureCapacity(int size) {
+		if (mObjects != null && mObjects.length >= size) {
+			return;
+		}
+		int capacity = Math.max(size, mObjects == null ? 0 : mObjects.length * 2);
+		BeyondarObject[] objects = new BeyondarObject[capacity];
+		Texture[] textures = new Texture[capacity];
+		float[] priorities = new float[capacity];
+		double[] distances = new double[capacity];
+		int[] order = new int[capacity];
+		if (mObjects != null) {
+			System.arraycopy(mObjects, 0, objects, 0, mSize);
+			System.arraycopy(mDefaultTextures, 0, textures, 0, mSize);
+			System.arraycopy(mPriorities, 0, priorities, 0, mSize);
+			System.arraycopy(mDistances, 0, distances, 0, mSize);
+			System.arraycopy(mOrder, 0, order, 0, mSize);
+		}
+		mObjects = objects;
+		mDefaultTextures = textures;
+		mPriorities = priorities;
+		mDistances = distances;
+		mOrder = order;
+		mTmpOrder = new int[capacity];
+	}
+}
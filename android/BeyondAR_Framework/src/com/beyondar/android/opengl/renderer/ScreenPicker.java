@@ -0,0 +1,412 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.renderer;
+
+import java.util.List;
+
+import com.beyondar.android.util.math.geom.Point3;
+import com.beyondar.android.world.BeyondarObject;
+
+/**
+ * Picks the {@link com.beyondar.android.world.BeyondarObject BeyondarObject}s
+ * using the screen quads drawn in the last frame, instead of intersecting a
+ * ray with the 3D world. The GL thread adds the objects while drawing them,
+ * and when the frame is finished their quads are indexed in a grid of the
+ * screen and published. The queries only check the objects of the cells
+ * around the point, so they take O(1) in average and they return exactly what
+ * was drawn in that frame (clusters and decluttering included).<br>
+ * The objects are stored in two frames: the GL thread fills one while the
+ * other one is queried, so the queries can be done from any thread. After the
+ * first frames no memory is allocated.
+ */
+public class ScreenPicker {
+
+	/** Default size of the cells of the grid (pixels). */
+	public static final int DEFAULT_CELL_SIZE = 64;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final int mCellSize;
+	/** Frame being filled by the GL thread. */
+	private Frame mBackFrame;
+	/** Last published frame, guarded by this. */
+	private Frame mFrontFrame;
+
+	// Scratch buffers of the queries, guarded by this
+	private int[] mStamps;
+	private int mQueryStamp;
+	private int[] mCandidates;
+
+	/**
+	 * Create a picker with the {@link #DEFAULT_CELL_SIZE}.
+	 */
+	public ScreenPicker() {
+		this(DEFAULT_CELL_SIZE);
+	}
+
+	/**
+	 * Create a picker with the specified cell size.
+	 *
+	 * @param cellSize
+	 *            Size of the cells of the grid (pixels).
+	 */
+	public ScreenPicker(int cellSize) {
+		if (cellSize <= 0) {
+			throw new IllegalArgumentException("cellSize <= 0");
+		}
+		mCellSize = cellSize;
+		mBackFrame = new Frame();
+		mFrontFrame = new Frame();
+		mStamps = new int[INITIAL_CAPACITY];
+		mCandidates = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Start a new frame. The last published frame is still used by the
+	 * queries until {@link #publish()} is called.
+	 *
+	 * @param width
+	 *            Width of the screen (pixels).
+	 * @param height
+	 *            Height of the screen (pixels).
+	 */
+	public void begin(int width, int height) {
+		mBackFrame.clear();
+		mBackFrame.width = width;
+		mBackFrame.height = height;
+	}
+
+	/**
+	 * Add an object drawn in this frame. Its screen corners must be filled
+	 * (see {@link ARRenderer#fillBeyondarObjectScreenPositions(BeyondarObject)}
+	 * ). The objects that are partially behind the camera are ignored.
+	 *
+	 * @param beyondarObject
+	 */
+	public void add(BeyondarObject beyondarObject) {
+		mBackFrame.add(beyondarObject);
+	}
+
+	/**
+	 * Index the objects added since {@link #begin(int, int)} and make them
+	 * available to the queries.
+	 */
+	public void publish() {
+		Frame frame = mBackFrame;
+		frame.index(mCellSize);
+		synchronized (this) {
+			mBackFrame = mFrontFrame;
+			mFrontFrame = frame;
+			if (mStamps.length < frame.size) {
+				mStamps = new int[frame.objects.length];
+				mCandidates = new int[frame.objects.length];
+				mQueryStamp = 0;
+			}
+		}
+	}
+
+	/**
+	 * Get the amount of objects of the last published frame.
+	 *
+	 * @return
+	 */
+	public synchronized int getObjectCount() {
+		return mFrontFrame.size;
+	}
+
+	/**
+	 * Get the objects drawn in the last frame that are closer than the radius
+	 * to the screen point.
+	 *
+	 * @param x
+	 * @param y
+	 * @param radius
+	 *            Distance (pixels) from the point to the objects, use it as
+	 *            touch tolerance. 0 to only get the objects under the point.
+	 * @param beyondarObjects
+	 *            The output list, sorted from the closest to the farthest
+	 *            object. This list will be cleaned before.
+	 */
+	public synchronized void getBeyondarObjects(float x, float y, float radius,
+			List<BeyondarObject> beyondarObjects) {
+		beyondarObjects.clear();
+		Frame frame = mFrontFrame;
+		int count = findCandidates(frame, x, y, radius);
+		for (int i = 0; i < count; i++) {
+			beyondarObjects.add(frame.objects[mCandidates[i]]);
+		}
+	}
+
+	/**
+	 * Get the closest object drawn in the last frame that is closer than the
+	 * radius to the screen point.
+	 *
+	 * @param x
+	 * @param y
+	 * @param radius
+	 *            Distance (pixels) from the point to the object, use it as
+	 *            touch tolerance. 0 to only get the objects under the point.
+	 * @return The object or null if there is none.
+	 */
+	public synchronized BeyondarObject getBeyondarObject(float x, float y, float radius) {
+		Frame frame = mFrontFrame;
+		int count = findCandidates(frame, x, y, radius);
+		return count == 0 ? null : frame.objects[mCandidates[0]];
+	}
+
+	/**
+	 * Store in mCandidates the objects close to the point, sorted by depth.
+	 *
+	 * @return The amount of objects found.
+	 */
+	private int findCandidates(Frame frame, float x, float y, float radius) {
+		if (frame.size == 0) {
+			return 0;
+		}
+		radius = Math.max(0, radius);
+		int column0 = Math.max(0, (int) Math.floor((x - radius) / mCellSize));
+		int column1 = Math.min(frame.columns - 1, (int) Math.floor((x + radius) / mCellSize));
+		int row0 = Math.max(0, (int) Math.floor((y - radius) / mCellSize));
+		int row1 = Math.min(frame.rows - 1, (int) Math.floor((y + radius) / mCellSize));
+		if (column0 > column1 || row0 > row1) {
+			return 0;
+		}
+
+		mQueryStamp++;
+		if (mQueryStamp == 0) {
+			// Overflow, the old stamps could be taken as visited
+			for (int i = 0; i < mStamps.length; i++) {
+				mStamps[i] = 0;
+			}
+			mQueryStamp = 1;
+		}
+		int stamp = mQueryStamp;
+		int count = 0;
+		for (int row = row0; row <= row1; row++) {
+			for (int column = column0; column <= column1; column++) {
+				int cell = row * frame.columns + column;
+				for (int i = frame.cellStarts[cell]; i < frame.cellStarts[cell + 1]; i++) {
+					int index = frame.cellEntries[i];
+					if (mStamps[index] == stamp) {
+						continue;
+					}
+					mStamps[index] = stamp;
+					if (frame.isClose(index, x, y, radius)) {
+						// Insertion sort, only a few objects are found
+						int position = count++;
+						float depth = frame.depths[index];
+						while (position > 0 && frame.depths[mCandidates[position - 1]] > depth) {
+							mCandidates[position] = mCandidates[position - 1];
+							position--;
+						}
+						mCandidates[position] = index;
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Screen quads of the objects of a frame and the grid that indexes them.
+	 */
+	private static class Frame {
+
+		int width, height;
+		int size;
+		BeyondarObject[] objects = new BeyondarObject[INITIAL_CAPACITY];
+		/** Corners in perimeter order: top left, top right, bottom right, bottom left. */
+		float[] quads = new float[INITIAL_CAPACITY * 8];
+		/** Bounding rectangles: left, top, right, bottom. */
+		float[] bounds = new float[INITIAL_CAPACITY * 4];
+		float[] depths = new float[INITIAL_CAPACITY];
+
+		int columns, rows;
+		/** Start of the entries of each cell in cellEntries, one extra at the end. */
+		int[] cellStarts = new int[1];
+		int[] cellEntries = new int[INITIAL_CAPACITY];
+
+		void clear() {
+			for (int i = 0; i < size; i++) {
+				objects[i] = null;
+			}
+			size = 0;
+		}
+
+		void add(BeyondarObject beyondarObject) {
+			Point3 topLeft = beyondarObject.getScreenPositionTopLeft();
+			Point3 topRight = beyondarObject.getScreenPositionTopRight();
+			Point3 bottomRight = beyondarObject.getScreenPositionBottomRight();
+			Point3 bottomLeft = beyondarObject.getScreenPositionBottomLeft();
+			if (!isInDepthRange(topLeft) || !isInDepthRange(topRight) || !isInDepthRange(bottomRight)
+					|| !isInDepthRange(bottomLeft)) {
+				// The projection of the points behind the camera is not valid
+				return;
+			}
+			if (size == objects.length) {
+				grow();
+			}
+			objects[size] = beyondarObject;
+			int q = size * 8;
+			quads[q] = topLeft.x;
+			quads[q + 1] = topLeft.y;
+			quads[q + 2] = topRight.x;
+			quads[q + 3] = topRight.y;
+			quads[q + 4] = bottomRight.x;
+			quads[q + 5] = bottomRight.y;
+			quads[q + 6] = bottomLeft.x;
+			quads[q + 7] = bottomLeft.y;
+			int b = size * 4;
+			bounds[b] = Math.min(Math.min(topLeft.x, topRight.x), Math.min(bottomRight.x, bottomLeft.x));
+			bounds[b + 1] = Math.min(Math.min(topLeft.y, topRight.y), Math.min(bottomRight.y, bottomLeft.y));
+			bounds[b + 2] = Math.max(Math.max(topLeft.x, topRight.x), Math.max(bottomRight.x, bottomLeft.x));
+			bounds[b + 3] = Math.max(Math.max(topLeft.y, topRight.y), Math.max(bottomRight.y, bottomLeft.y));
+			depths[size] = (topLeft.z + topRight.z + bottomRight.z + bottomLeft.z) / 4;
+			size++;
+		}
+
+		private static boolean isInDepthRange(Point3 point) {
+			return point.z >= 0 && point.z <= 1;
+		}
+
+		private void grow() {
+			int capacity = objects.length * 2;
+			BeyondarObject[] newObjects = new BeyondarObject[capacity];
+			float[] newQuads = new float[capacity * 8];
+			float[] newBounds = new float[capacity * 4];
+			float[] newDepths = new float[capacity];
+			System.arraycopy(objects, 0, newObjects, 0, size);
+			System.arraycopy(quads, 0, newQuads, 0, size * 8);
+			System.arraycopy(bounds, 0, newBounds, 0, size * 4);
+			System.arraycopy(depths, 0, newDepths, 0, size);
+			objects = newObjects;
+			quads = newQuads;
+			bounds = newBounds;
+			depths = newDepths;
+		}
+
+		/** Build the grid with a counting sort of the objects by cell. */
+		void index(int cellSize) {
+			columns = Math.max(1, (width + cellSize - 1) / cellSize);
+			rows = Math.max(1, (height + cellSize - 1) / cellSize);
+			int cells = columns * rows;
+			if (cellStarts.length < cells + 1) {
+				cellStarts = new int[cells + 1];
+			}
+			for (int i = 0; i <= cells; i++) {
+				cellStarts[i] = 0;
+			}
+
+			// Count the entries of each cell, shifted by one
+			int entries = 0;
+			for (int i = 0; i < size; i++) {
+				int b = i * 4;
+				int column0 = clamp((int) Math.floor(bounds[b] / cellSize), columns);
+				int row0 = clamp((int) Math.floor(bounds[b + 1] / cellSize), rows);
+				int column1 = clamp((int) Math.floor(bounds[b + 2] / cellSize), columns);
+				int row1 = clamp((int) Math.floor(bounds[b + 3] / cellSize), rows);
+				for (int row = row0; row <= row1; row++) {
+					for (int column = column0; column <= column1; column++) {
+						cellStarts[row * columns + column + 1]++;
+					}
+				}
+				entries += (column1 - column0 + 1) * (row1 - row0 + 1);
+			}
+			for (int i = 0; i < cells; i++) {
+				cellStarts[i + 1] += cellStarts[i];
+			}
+			if (cellEntries.length < entries) {
+				cellEntries = new int[Math.max(entries, cellEntries.length * 2)];
+			}
+
+			// Fill the cells, moving the starts one cell forward while doing
+			// it, so they end up in the right place
+			for (int i = 0; i < size; i++) {
+				int b = i * 4;
+				int column0 = clamp((int) Math.floor(bounds[b] / cellSize), columns);
+				int row0 = clamp((int) Math.floor(bounds[b + 1] / cellSize), rows);
+				int column1 = clamp((int) Math.floor(bounds[b + 2] / cellSize), columns);
+				int row1 = clamp((int) Math.floor(bounds[b + 3] / cellSize), rows);
+				for (int row = row0; row <= row1; row++) {
+					for (int column = column0; column <= column1; column++) {
+						cellEntries[cellStarts[row * columns + column]++] = i;
+					}
+				}
+			}
+			for (int i = cells; i > 0; i--) {
+				cellStarts[i] = cellStarts[i - 1];
+			}
+			cellStarts[0] = 0;
+		}
+
+		/**
+		 * The objects out of the screen are kept in the border cells, so the
+		 * queries close to the border find them.
+		 */
+		private static int clamp(int value, int size) {
+			return value < 0 ? 0 : (value >= size ? size - 1 : value);
+		}
+
+		/** Check if the point is inside the quad or closer than the radius. */
+		boolean isClose(int index, float x, float y, float radius) {
+			int b = index * 4;
+			if (x < bounds[b] - radius || x > bounds[b + 2] + radius || y < bounds[b + 1] - radius
+					|| y > bounds[b + 3] + radius) {
+				return false;
+			}
+			int q = index * 8;
+			// The quad is convex, the point is inside if it is on the same side
+			// of all the edges
+			boolean positive = false, negative = false;
+			for (int i = 0; i < 8; i += 2) {
+				int next = (i + 2) & 7;
+				float cross = (quads[q + next] - quads[q + i]) * (y - quads[q + i + 1])
+						- (quads[q + next + 1] - quads[q + i + 1]) * (x - quads[q + i]);
+				if (cross > 0) {
+					positive = true;
+				} else if (cross < 0) {
+					negative = true;
+				}
+			}
+			if (!(positive && negative)) {
+				return true;
+			}
+			if (radius == 0) {
+				return false;
+			}
+			float radiusSquared = radius * radius;
+			for (int i = 0; i < 8; i += 2) {
+				int next = (i + 2) & 7;
+				if (distanceToSegmentSquared(x, y, quads[q + i], quads[q + i + 1], quads[q + next],
+						quads[q + next + 1]) <= radiusSquared) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private static float distanceToSegmentSquared(float x, float y, float x1, float y1, float x2, float y2) {
+			float dx = x2 - x1;
+			float dy = y2 - y1;
+			float length = dx * dx + dy * dy;
+			float t = length == 0 ? 0 : ((x - x1) * dx + (y - y1) * dy) / length;
+			t = Math.max(0, Math.min(1, t));
+			float px = x1 + dx * t - x;
+			float py = y1 + dy * t - y;
+			return px * px + py * py;
+		}
+	}
+}
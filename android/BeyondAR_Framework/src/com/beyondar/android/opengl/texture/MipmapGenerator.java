@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.texture;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Generates the mipmap levels of an image with a 2x2 box filter. The pixels
+ * are ARGB ints, like {@link android.graphics.Bitmap#getPixels}. The colors
+ * are filtered premultiplied by the alpha, so the transparent pixels do not
+ * darken the edges of the images.<br>
+ * It does not depend on Android, so it can be used in the JVM.
+ */
+public final class MipmapGenerator {
+
+	private MipmapGenerator() {
+	}
+
+	/**
+	 * Get the size of a level.
+	 *
+	 * @param size
+	 *            Width or height of the image.
+	 * @param level
+	 *            0 is the image.
+	 * @return The size, at least 1.
+	 */
+	public static int getLevelSize(int size, int level) {
+		return Math.max(1, size >> level);
+	}
+
+	/**
+	 * Get the amount of levels down to 1x1, including the image.
+	 *
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public static int getLevelCount(int width, int height) {
+		int levels = 1;
+		int size = Math.max(width, height);
+		while (size > 1) {
+			size >>= 1;
+			levels++;
+		}
+		return levels;
+	}
+
+	/**
+	 * Get the amount of pixels of a level, adding the smaller levels when
+	 * they are uploaded as mipmaps (about a third more).
+	 *
+	 * @param width
+	 * @param height
+	 * @param level
+	 *            0 is the image.
+	 * @param mipmaps
+	 *            True to count the smaller levels too.
+	 * @return
+	 */
+	public static int getPixelCount(int width, int height, int level, boolean mipmaps) {
+		int count = getLevelSize(width, level) * getLevelSize(height, level);
+		if (mipmaps) {
+			int levelCount = getLevelCount(width, height);
+			for (int i = level + 1; i < levelCount; i++) {
+				count += getLevelSize(width, i) * getLevelSize(height, i);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Multiply the colors by the alpha.
+	 *
+	 * @param pixels
+	 *            ARGB pixels, modified in place.
+	 * @param count
+	 *            Amount of pixels.
+	 */
+	public static void premultiply(int[] pixels, int count) {
+		for (int i = 0; i < count; i++) {
+			int color = pixels[i];
+			int a = color >>> 24;
+			if (a == 255) {
+				continue;
+			}
+			int r = ((color >> 16) & 0xff) * a / 255;
+			int g = ((color >> 8) & 0xff) * a / 255;
+			int b = (color & 0xff) * a / 255;
+			pixels[i] = (a << 24) | (r << 16) | (g << 8) | b;
+		}
+	}
+
+	/**
+	 * Calculate the next level of an image, averaging each 2x2 block of
+	 * pixels. The last row or column of odd sizes is ignored.
+	 *
+	 * @param src
+	 *            Premultiplied ARGB pixels of the image.
+	 * @param width
+	 * @param height
+	 * @param dst
+	 *            Where the level is stored, with size
+	 *            {@link #getLevelSize(int, int)} of level 1. It can be src.
+	 */
+	public static void downsample(int[] src, int width, int height, int[] dst) {
+		int dstWidth = getLevelSize(width, 1);
+		int dstHeight = getLevelSize(height, 1);
+		// The pixels of each row are written before the pixels that they are
+		// read from, so src and dst can be the same array
+		for (int y = 0; y < dstHeight; y++) {
+			int row0 = Math.min(y * 2, height - 1) * width;
+			int row1 = Math.min(y * 2 + 1, height - 1) * width;
+			for (int x = 0; x < dstWidth; x++) {
+				int x0 = Math.min(x * 2, width - 1);
+				int x1 = Math.min(x * 2 + 1, width - 1);
+				int c0 = src[row0 + x0];
+				int c1 = src[row0 + x1];
+				int c2 = src[row1 + x0];
+				int c3 = src[row1 + x1];
+				int a = ((c0 >>> 24) + (c1 >>> 24) + (c2 >>> 24) + (c3 >>> 24) + 2) >> 2;
+				int r = (((c0 >> 16) & 0xff) + ((c1 >> 16) & 0xff) + ((c2 >> 16) & 0xff)
+						+ ((c3 >> 16) & 0xff) + 2) >> 2;
+				int g = (((c0 >> 8) & 0xff) + ((c1 >> 8) & 0xff) + ((c2 >> 8) & 0xff) + ((c3 >> 8) & 0xff) + 2) >> 2;
+				int b = ((c0 & 0xff) + (c1 & 0xff) + (c2 & 0xff) + (c3 & 0xff) + 2) >> 2;
+				dst[y * dstWidth + x] = (a << 24) | (r << 16) | (g << 8) | b;
+			}
+		}
+	}
+
+	/**
+	 * Write the ARGB pixels as RGBA bytes, the format used by
+	 * glTexImage2D with GL_RGBA and GL_UNSIGNED_BYTE.
+	 *
+	 * @param pixels
+	 * @param count
+	 *            Amount of pixels.
+	 * @param out
+	 *            Buffer with at least count * 4 bytes remaining. Its position
+	 *            is reset to 0.
+	 */
+	public static void toRGBA(int[] pixels, int count, ByteBuffer out) {
+		out.clear();
+		for (int i = 0; i < count; i++) {
+			int color = pixels[i];
+			out.put((byte) (color >> 16));
+			out.put((byte) (color >> 8));
+			out.put((byte) color);
+			out.put((byte) (color >>> 24));
+		}
+		out.position(0);
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.texture;
+
+import java.util.ArrayList;
+
+/**
+ * Packs rectangles into a fixed size area using horizontal shelves. Each
+ * rectangle is placed in the shelf that wastes less height, and a new shelf is
+ * opened when none of them fits. It works well when most of the rectangles
+ * have a similar height, like the icons used in the augmented reality view.
+ */
+public class ShelfPacker {
+
+	private final int mWidth, mHeight;
+	private final int mPadding;
+	private final ArrayList<Shelf> mShelves;
+	private int mUsedHeight;
+	private long mUsedArea;
+
+	/**
+	 * Create a new packer.
+	 * 
+	 * @param width
+	 *            Width of the area.
+	 * @param height
+	 *            Height of the area.
+	 * @param padding
+	 *            Empty pixels to leave around each rectangle.
+	 */
+	public ShelfPacker(int width, int height, int padding) {
+		mWidth = width;
+		mHeight = height;
+		mPadding = padding;
+		mShelves = new ArrayList<Shelf>();
+	}
+
+	/**
+	 * Find a place for a rectangle.
+	 * 
+	 * @param width
+	 *            Width of the rectangle.
+	 * @param height
+	 *            Height of the rectangle.
+	 * @param out
+	 *            Array where the x and y position of the rectangle will be
+	 *            stored.
+	 * @return true if the rectangle has been placed, false if there is no
+	 *         space.
+	 */
+	public boolean pack(int width, int height, int[] out) {
+		int w = width + mPadding * 2;
+		int h = height + mPadding * 2;
+		if (w > mWidth || h > mHeight) {
+			return false;
+		}
+
+		Shelf best = null;
+		for (int i = 0; i < mShelves.size(); i++) {
+			Shelf shelf = mShelves.get(i);
+			if (shelf.height >= h && mWidth - shelf.usedWidth >= w
+					&& (best == null || shelf.height < best.height)) {
+				best = shelf;
+			}
+		}
+
+		// Avoid wasting a tall shelf with a small rectangle if there is still
+		// space for a new shelf
+		boolean fitsNewShelf = mHeight - mUsedHeight >= h;
+		if (best == null || (best.height > h * 2 && fitsNewShelf)) {
+			if (!fitsNewShelf) {
+				return false;
+			}
+			best = new Shelf(mUsedHeight, h);
+			mShelves.add(best);
+			mUsedHeight += h;
+		}
+
+		out[0] = best.usedWidth + mPadding;
+		out[1] = best.y + mPadding;
+		best.usedWidth += w;
+		mUsedArea += (long) w * h;
+		return true;
+	}
+
+	/**
+	 * Remove all the rectangles.
+	 */
+	public void reset() {
+		mShelves.clear();
+		mUsedHeight = 0;
+		mUsedArea = 0;
+	}
+
+	/**
+	 * Get the rate of the area used by the rectangles (including the padding).
+	 * 
+	 * @return A value between 0 and 1.
+	 */
+	public float getOccupancy() {
+		return (float) mUsedArea / ((long) mWidth * mHeight);
+	}
+
+	public int getWidth() {
+		return mWidth;
+	}
+
+	public int getHeight() {
+		return mHeight;
+	}
+
+	private static class Shelf {
+		final int y;
+		final int height;
+		int usedWidth;
+
+		Shelf(int y, int height) {
+			this.y = y;
+			this.height = height;
+		}
+	}
+}
@@ -15,12 +15,13 @@
  */
 package com.beyondar.android.opengl.texture;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 
 /**
- * Texture object for rendering using OpenGL.
+ * Texture object for rendering using OpenGL. The vertices and the texture
+ * coordinates are kept in a {@link TextureGeometry} shared by all the
+ * textures with the same aspect ratio and region, so each texture only holds
+ * the GL pointer and its load state.
  * 
  */
 public class Texture {
@@ -41,19 +42,15 @@ public class Texture {
 			1.0f, 0.0f // bottom right (V3)
 	};
 
-	// buffer holding the texture coordinates
-	private FloatBuffer mTextureBuffer;
-	// buffer holding the vertices
-	private FloatBuffer mVertexBuffer;
-
+	private TextureGeometry mGeometry;
 	private int mWidth, mHeight;
-	private float mWidthRate, mHeightRate;
 	private int mTexture;
 	private boolean mIsLoaded;
 	private double mTimeStamp;
 	private int mCounterLoaded;
-	private float[] mTextureMap;
-	private float[] mVertices;
+	private boolean mHasRegion;
+	private int mLevel;
+	private boolean mMipmaps;
 
 	/**
 	 * Constructor of a texture with a defined texture reference.
@@ -63,12 +60,7 @@ public class Texture {
 	 */
 	public Texture(int textureReference) {
 		setTexturePointer(textureReference);
-
-		mVertices = new float[TEMPLATE_VERTICES.length];
-		System.arraycopy(TEMPLATE_VERTICES, 0, mVertices, 0, TEMPLATE_VERTICES.length);
-
-		mTextureMap = new float[TEMPLATE_TEXTURE.length];
-		System.arraycopy(TEMPLATE_TEXTURE, 0, mTextureMap, 0, TEMPLATE_TEXTURE.length);
+		mGeometry = TextureGeometry.DEFAULT;
 	}
 
 	/**
@@ -94,62 +86,78 @@ public class Texture {
 	}
 
 	private void calculateImageSizeRate() {
+		float widthRate, heightRate;
 		if (mWidth < mHeight) {
-			mWidthRate = ((float) mWidth / (float) mHeight);
-			mHeightRate = 1;
+			widthRate = ((float) mWidth / (float) mHeight);
+			heightRate = 1;
 		} else {
-			mHeightRate = ((float) mHeight / (float) mWidth);
-			mWidthRate = 1;
+			heightRate = ((float) mHeight / (float) mWidth);
+			widthRate = 1;
 		}
+		mGeometry = mGeometry.withSizeRate(widthRate, heightRate);
+	}
 
-		for (int i = 0; i < mVertices.length; i++) {
-			if ((i + 1) % 3 == 0) {
-				mVertices[i] = mVertices[i] * mHeightRate;
-			} else {
-				mVertices[i] = mVertices[i] * mWidthRate;
-			}
-		}
-
-		// a float has 4 bytes so we allocate for each coordinate 4 bytes
-		ByteBuffer byteBuffer = ByteBuffer.allocateDirect(mVertices.length * 4);
-		byteBuffer.order(ByteOrder.nativeOrder());
-		// allocates the memory from the byte buffer
-		mVertexBuffer = byteBuffer.asFloatBuffer();
-		// fill the vertexBuffer with the vertices
-		mVertexBuffer.put(mVertices);
-		// set the cursor position to the beginning of the buffer
-		mVertexBuffer.position(0);
-
-		ByteBuffer byteBuffer2 = ByteBuffer.allocateDirect(mTextureMap.length * 4);
-		byteBuffer2.order(ByteOrder.nativeOrder());
-		mTextureBuffer = byteBuffer2.asFloatBuffer();
-		mTextureBuffer.put(mTextureMap);
-		mTextureBuffer.position(0);
-
+	/**
+	 * Get the shared geometry of the texture. It must not be modified.
+	 * 
+	 * @return
+	 */
+	public TextureGeometry getGeometry() {
+		return mGeometry;
 	}
 
 	public FloatBuffer getTextureBuffer() {
-		return mTextureBuffer;
+		return mGeometry.getTextureBuffer();
 	}
 
 	public FloatBuffer getVerticesBuffer() {
-		return mVertexBuffer;
+		return mGeometry.getVerticesBuffer();
 	}
 
 	public float[] getVertices() {
-		return mVertices;
+		return mGeometry.getVertices();
 	}
 
 	public float[] getTextureMap() {
-		return mTextureMap;
+		return mGeometry.getTextureMap();
+	}
+
+	/**
+	 * Use only a sub rectangle of the GL texture, for instance when the image
+	 * is stored in a {@link TextureAtlas}. The values are texture coordinates
+	 * (from 0 to 1).
+	 * 
+	 * @param u0
+	 *            Left.
+	 * @param v0
+	 *            Top.
+	 * @param u1
+	 *            Right.
+	 * @param v1
+	 *            Bottom.
+	 * @return
+	 */
+	public Texture setTextureRegion(float u0, float v0, float u1, float v1) {
+		mHasRegion = true;
+		mGeometry = mGeometry.withTextureRegion(u0, v0, u1, v1);
+		return this;
+	}
+
+	/**
+	 * Check if the texture uses a sub rectangle of the GL texture.
+	 * 
+	 * @return
+	 */
+	public boolean hasTextureRegion() {
+		return mHasRegion;
 	}
 
 	public float getWithRate() {
-		return mWidthRate;
+		return mGeometry.getWidthRate();
 	}
 
 	public float getHeightRate() {
-		return mHeightRate;
+		return mGeometry.getHeightRate();
 	}
 
 	public int getImageWidth() {
@@ -160,6 +168,40 @@ public class Texture {
 		return mHeight;
 	}
 
+	/**
+	 * Set the level of detail of the image uploaded to the GPU, see
+	 * {@link TextureLod}.
+	 * 
+	 * @param level
+	 *            0 if it is the full image, each level halves its size.
+	 * @param mipmaps
+	 *            True if the smaller levels have been uploaded as mipmaps.
+	 * @return
+	 */
+	public Texture setLevel(int level, boolean mipmaps) {
+		mLevel = level;
+		mMipmaps = mipmaps;
+		return this;
+	}
+
+	/**
+	 * Get the level of detail of the image uploaded to the GPU.
+	 * 
+	 * @return 0 if it is the full image, each level halves its size.
+	 */
+	public int getLevel() {
+		return mLevel;
+	}
+
+	/**
+	 * Check if the texture has mipmaps.
+	 * 
+	 * @return
+	 */
+	public boolean hasMipmaps() {
+		return mMipmaps;
+	}
+
 	public int getTexturePointer() {
 		return mTexture;
 	}
@@ -204,9 +246,16 @@ public class Texture {
 
 	public Texture clone() {
 		Texture clone = new Texture();
-		return clone.setLoaded(isLoaded()).setTexturePointer(getTexturePointer())
-				.setTimeStamp(getTimeStamp()).setLoadTryCounter(getLoadTryCounter())
-				.setImageSize(mWidth, mHeight);
+		clone.setLoaded(isLoaded()).setTexturePointer(getTexturePointer())
+				.setTimeStamp(getTimeStamp()).setLoadTryCounter(getLoadTryCounter());
+		// The geometry is immutable, so the clone shares it
+		clone.mWidth = mWidth;
+		clone.mHeight = mHeight;
+		clone.mHasRegion = mHasRegion;
+		clone.mLevel = mLevel;
+		clone.mMipmaps = mMipmaps;
+		clone.mGeometry = mGeometry;
+		return clone;
 	}
 
 	@Override
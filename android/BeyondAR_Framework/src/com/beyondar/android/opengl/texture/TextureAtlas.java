@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.texture;
+
+import java.util.ArrayList;
+
+import javax.microedition.khronos.opengles.GL10;
+
+import android.graphics.Bitmap;
+import android.opengl.GLUtils;
+
+/**
+ * Packs small bitmaps into shared power of two GL textures (pages). Each
+ * packed bitmap gets a {@link Texture} that points to the page and uses the
+ * texture coordinates of its sub rectangle, so all the objects using the same
+ * page can be drawn without changing the bound texture and the images do not
+ * need to be resized to a power of two.<br>
+ * The space of a page is not reused, but a page is deleted once all its
+ * textures have been released (see {@link #release(GL10, Texture)}).<br>
+ * The atlas must be used from the GL thread.
+ */
+public class TextureAtlas {
+
+	/** Default size of each page (pixels). */
+	public static final int DEFAULT_PAGE_SIZE = 1024;
+	/** Default max size of the bitmaps that are packed (pixels). */
+	public static final int DEFAULT_MAX_REGION_SIZE = 256;
+	/** Default amount of pixels left around each bitmap. */
+	public static final int DEFAULT_PADDING = 1;
+
+	private final int mPageSize;
+	private final int mMaxRegionSize;
+	private final int mPadding;
+	private final ArrayList<Page> mPages;
+	private final int[] mTmpPosition = new int[2];
+	private final int[] mTmpPointer = new int[1];
+
+	/**
+	 * Create an atlas using the default values.
+	 */
+	public TextureAtlas() {
+		this(DEFAULT_PAGE_SIZE, DEFAULT_MAX_REGION_SIZE, DEFAULT_PADDING);
+	}
+
+	/**
+	 * Create an atlas.
+	 *
+	 * @param pageSize
+	 *            Size of the pages, it must be a power of two.
+	 * @param maxRegionSize
+	 *            Bitmaps wider or taller than this size are not packed.
+	 * @param padding
+	 *            Empty pixels left around each bitmap to avoid bleeding when
+	 *            the texture is filtered.
+	 */
+	public TextureAtlas(int pageSize, int maxRegionSize, int padding) {
+		if (pageSize <= 0 || (pageSize & (pageSize - 1)) != 0) {
+			throw new IllegalArgumentException("The page size must be a power of two");
+		}
+		mPageSize = pageSize;
+		mMaxRegionSize = Math.min(maxRegionSize, pageSize - padding * 2);
+		mPadding = padding;
+		mPages = new ArrayList<Page>();
+	}
+
+	/**
+	 * Check if the bitmap can be stored in the atlas.
+	 *
+	 * @param bitmap
+	 * @return
+	 */
+	public boolean accepts(Bitmap bitmap) {
+		return bitmap != null && bitmap.getWidth() <= mMaxRegionSize
+				&& bitmap.getHeight() <= mMaxRegionSize;
+	}
+
+	/**
+	 * Upload the bitmap to one of the pages. If none of the pages has space a
+	 * new page is created.<br>
+	 * __Important__ The method will recycle the bitmap if it has been added.
+	 *
+	 * @param gl
+	 * @param bitmap
+	 *            The bitmap to add.
+	 * @return The texture for the bitmap or null if the bitmap is not accepted
+	 *         by the atlas.
+	 */
+	public Texture add(GL10 gl, Bitmap bitmap) {
+		if (!accepts(bitmap)) {
+			return null;
+		}
+		int width = bitmap.getWidth();
+		int height = bitmap.getHeight();
+
+		Page page = null;
+		for (int i = 0; i < mPages.size(); i++) {
+			if (mPages.get(i).packer.pack(width, height, mTmpPosition)) {
+				page = mPages.get(i);
+				break;
+			}
+		}
+		if (page == null) {
+			page = createPage(gl);
+			if (!page.packer.pack(width, height, mTmpPosition)) {
+				return null;
+			}
+		}
+		int x = mTmpPosition[0];
+		int y = mTmpPosition[1];
+
+		Bitmap upload = bitmap;
+		if (bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+			upload = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+		}
+		gl.glBindTexture(GL10.GL_TEXTURE_2D, page.texturePointer);
+		GLUtils.texSubImage2D(GL10.GL_TEXTURE_2D, 0, x, y, upload, GL10.GL_RGBA, GL10.GL_UNSIGNED_BYTE);
+		if (upload != bitmap) {
+			upload.recycle();
+		}
+		bitmap.recycle();
+		page.regions++;
+
+		Texture texture = new Texture(page.texturePointer).setImageSize(width, height);
+		texture.setTextureRegion((float) x / mPageSize, (float) y / mPageSize, (float) (x + width)
+				/ mPageSize, (float) (y + height) / mPageSize);
+		return texture;
+	}
+
+	private Page createPage(GL10 gl) {
+		int[] tmpTexture = new int[1];
+		gl.glGenTextures(1, tmpTexture, 0);
+		gl.glBindTexture(GL10.GL_TEXTURE_2D, tmpTexture[0]);
+
+		gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER, GL10.GL_NEAREST);
+		gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MAG_FILTER, GL10.GL_LINEAR);
+		gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_S, GL10.GL_CLAMP_TO_EDGE);
+		gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_T, GL10.GL_CLAMP_TO_EDGE);
+
+		// Empty (transparent) page
+		Bitmap empty = Bitmap.createBitmap(mPageSize, mPageSize, Bitmap.Config.ARGB_8888);
+		GLUtils.texImage2D(GL10.GL_TEXTURE_2D, 0, empty, 0);
+		empty.recycle();
+
+		Page page = new Page(tmpTexture[0], new ShelfPacker(mPageSize, mPageSize, mPadding));
+		mPages.add(page);
+		return page;
+	}
+
+	/**
+	 * Check if the texture pointer belongs to one of the pages.
+	 *
+	 * @param texturePointer
+	 * @return
+	 */
+	public boolean isPage(int texturePointer) {
+		for (int i = 0; i < mPages.size(); i++) {
+			if (mPages.get(i).texturePointer == texturePointer) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Notify that a texture returned by {@link #add(GL10, Bitmap)} is not used
+	 * anymore. When all the textures of a page are released the page is
+	 * deleted.
+	 *
+	 * @param gl
+	 * @param texture
+	 * @return true if the texture belongs to a page of this atlas.
+	 */
+	public boolean release(GL10 gl, Texture texture) {
+		for (int i = 0; i < mPages.size(); i++) {
+			Page page = mPages.get(i);
+			if (page.texturePointer == texture.getTexturePointer()) {
+				page.regions--;
+				if (page.regions <= 0) {
+					mTmpPointer[0] = page.texturePointer;
+					gl.glDeleteTextures(1, mTmpPointer, 0);
+					mPages.remove(i);
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Delete all the pages from the GL context.
+	 *
+	 * @param gl
+	 */
+	public void release(GL10 gl) {
+		int[] pointers = new int[mPages.size()];
+		for (int i = 0; i < pointers.length; i++) {
+			pointers[i] = mPages.get(i).texturePointer;
+		}
+		if (pointers.length > 0) {
+			gl.glDeleteTextures(pointers.length, pointers, 0);
+		}
+		mPages.clear();
+	}
+
+	/**
+	 * Forget all the pages without deleting them. Use it when the GL context
+	 * has been lost.
+	 */
+	public void reset() {
+		mPages.clear();
+	}
+
+	public int getPageCount() {
+		return mPages.size();
+	}
+
+	public int getPageSize() {
+		return mPageSize;
+	}
+
+	/**
+	 * Get the memory used by the pages in the GPU (bytes).
+	 *
+	 * @return
+	 */
+	public long getMemorySize() {
+		return (long) mPages.size() * mPageSize * mPageSize * 4;
+	}
+
+	private static class Page {
+		final int texturePointer;
+		final ShelfPacker packer;
+		/** Amount of textures of the page that have not been released. */
+		int regions;
+
+		Page(int texturePointer, ShelfPacker packer) {
+			this.texturePointer = texturePointer;
+			this.packer = packer;
+		}
+	}
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.texture;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.HashMap;
+
+/**
+ * Vertices and texture coordinates of the quad used to draw a
+ * {@link Texture}. The geometry only depends on the aspect ratio of the image
+ * and the region of the GL texture that is used, so the instances are shared
+ * by all the textures with the same values (see
+ * {@link #obtain(float, float, float, float, float, float)}) instead of
+ * allocating the arrays and the direct buffers for each object. The pool
+ * only keeps weak references, so a geometry is released when no
+ * {@link Texture} uses it anymore.<br>
+ * The instances are immutable: the arrays and the buffers returned must not
+ * be modified.
+ */
+public final class TextureGeometry {
+
+	/** Geometry of a square image using the whole GL texture. */
+	public static final TextureGeometry DEFAULT;
+
+	private static final HashMap<Key, PoolReference> sPool = new HashMap<Key, PoolReference>();
+	/** Geometries released by the garbage collector, guarded by sPool. */
+	private static final ReferenceQueue<TextureGeometry> sReleased = new ReferenceQueue<TextureGeometry>();
+	/** Reused to look up the pool without allocating, guarded by sPool. */
+	private static final Key sLookupKey = new Key();
+
+	static {
+		DEFAULT = obtain(1, 1, 0, 0, 1, 1);
+	}
+
+	private final float mWidthRate, mHeightRate;
+	private final float mU0, mV0, mU1, mV1;
+	private final float[] mVertices;
+	private final float[] mTextureMap;
+	private final FloatBuffer mVertexBuffer;
+	private final FloatBuffer mTextureBuffer;
+
+	private TextureGeometry(float widthRate, float heightRate, float u0, float v0, float u1, float v1) {
+		mWidthRate = widthRate;
+		mHeightRate = heightRate;
+		mU0 = u0;
+		mV0 = v0;
+		mU1 = u1;
+		mV1 = v1;
+
+		float[] template = Texture.TEMPLATE_VERTICES;
+		mVertices = new float[template.length];
+		for (int i = 0; i < template.length; i++) {
+			if ((i + 1) % 3 == 0) {
+				mVertices[i] = template[i] * heightRate;
+			} else {
+				mVertices[i] = template[i] * widthRate;
+			}
+		}
+
+		mTextureMap = new float[] {
+				//
+				u0, v1, // top left (V2)
+				u0, v0, // bottom left (V1)
+				u1, v1, // top right (V4)
+				u1, v0 // bottom right (V3)
+		};
+
+		mVertexBuffer = createBuffer(mVertices);
+		mTextureBuffer = createBuffer(mTextureMap);
+	}
+
+	private static FloatBuffer createBuffer(float[] values) {
+		// a float has 4 bytes so we allocate for each coordinate 4 bytes
+		ByteBuffer byteBuffer = ByteBuffer.allocateDirect(values.length * 4);
+		byteBuffer.order(ByteOrder.nativeOrder());
+		FloatBuffer buffer = byteBuffer.asFloatBuffer();
+		buffer.put(values);
+		buffer.position(0);
+		return buffer;
+	}
+
+	/**
+	 * Get the shared geometry for the given values. It can be called from any
+	 * thread.
+	 *
+	 * @param widthRate
+	 *            Width of the quad (from 0 to 1).
+	 * @param heightRate
+	 *            Height of the quad (from 0 to 1).
+	 * @param u0
+	 *            Left texture coordinate.
+	 * @param v0
+	 *            Top texture coordinate.
+	 * @param u1
+	 *            Right texture coordinate.
+	 * @param v1
+	 *            Bottom texture coordinate.
+	 * @return
+	 */
+	public static TextureGeometry obtain(float widthRate, float heightRate, float u0, float v0, float u1,
+			float v1) {
+		synchronized (sPool) {
+			removeReleased();
+			sLookupKey.set(widthRate, heightRate, u0, v0, u1, v1);
+			PoolReference reference = sPool.get(sLookupKey);
+			TextureGeometry geometry = reference == null ? null : reference.get();
+			if (geometry == null) {
+				geometry = new TextureGeometry(widthRate, heightRate, u0, v0, u1, v1);
+				Key key = new Key();
+				key.set(widthRate, heightRate, u0, v0, u1, v1);
+				sPool.put(key, new PoolReference(geometry, key));
+			}
+			return geometry;
+		}
+	}
+
+	/** Remove the entries of the released geometries. Hold sPool. */
+	private static void removeReleased() {
+		PoolReference reference;
+		while ((reference = (PoolReference) sReleased.poll()) != null) {
+			// The entry could have been replaced by a new geometry
+			if (sPool.get(reference.key) == reference) {
+				sPool.remove(reference.key);
+			}
+		}
+	}
+
+	/**
+	 * Get the geometry with the same texture region and the given size rates.
+	 *
+	 * @param widthRate
+	 * @param heightRate
+	 * @return
+	 */
+	public TextureGeometry withSizeRate(float widthRate, float heightRate) {
+		if (widthRate == mWidthRate && heightRate == mHeightRate) {
+			return this;
+		}
+		return obtain(widthRate, heightRate, mU0, mV0, mU1, mV1);
+	}
+
+	/**
+	 * Get the geometry with the same size rates and the given texture region.
+	 *
+	 * @param u0
+	 * @param v0
+	 * @param u1
+	 * @param v1
+	 * @return
+	 */
+	public TextureGeometry withTextureRegion(float u0, float v0, float u1, float v1) {
+		if (u0 == mU0 && v0 == mV0 && u1 == mU1 && v1 == mV1) {
+			return this;
+		}
+		return obtain(mWidthRate, mHeightRate, u0, v0, u1, v1);
+	}
+
+	/**
+	 * Get the amount of geometries in the pool.
+	 *
+	 * @return
+	 */
+	public static int getPoolSize() {
+		synchronized (sPool) {
+			removeReleased();
+			return sPool.size();
+		}
+	}
+
+	public FloatBuffer getVerticesBuffer() {
+		return mVertexBuffer;
+	}
+
+	public FloatBuffer getTextureBuffer() {
+		return mTextureBuffer;
+	}
+
+	public float[] getVertices() {
+		return mVertices;
+	}
+
+	public float[] getTextureMap() {
+		return mTextureMap;
+	}
+
+	public float getWidthRate() {
+		return mWidthRate;
+	}
+
+	public float getHeightRate() {
+		return mHeightRate;
+	}
+
+	private static final class PoolReference extends WeakReference<TextureGeometry> {
+		final Key key;
+
+		PoolReference(TextureGeometry geometry, Key key) {
+			super(geometry, sReleased);
+			this.key = key;
+		}
+	}
+
+	private static final class Key {
+		float widthRate, heightRate, u0, v0, u1, v1;
+
+		void set(float widthRate, float heightRate, float u0, float v0, float u1, float v1) {
+			this.widthRate = widthRate;
+			this.heightRate = heightRate;
+			this.u0 = u0;
+			this.v0 = v0;
+			this.u1 = u1;
+			this.v1 = v1;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = Float.floatToIntBits(widthRate);
+			result = 31 * result + Float.floatToIntBits(heightRate);
+			result = 31 * result + Float.floatToIntBits(u0);
+			result = 31 * result + Float.floatToIntBits(v0);
+			result = 31 * result + Float.floatToIntBits(u1);
+			result = 31 * result + Float.floatToIntBits(v1);
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return Float.floatToIntBits(widthRate) == Float.floatToIntBits(other.widthRate)
+					&& Float.floatToIntBits(heightRate) == Float.floatToIntBits(other.heightRate)
+					&& Float.floatToIntBits(u0) == Float.floatToIntBits(other.u0)
+					&& Float.floatToIntBits(v0) == Float.floatToIntBits(other.v0)
+					&& Float.floatToIntBits(u1) == Float.floatToIntBits(other.u1)
+					&& Float.floatToIntBits(v1) == Float.floatToIntBits(other.v1);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.texture;
+
+/**
+ * Chooses the resolution of the textures depending on the distance to the
+ * objects that use them. Each band of distances uses a level: level 0 is the
+ * full image and each level halves its size, so the far objects only keep
+ * small textures in the GPU and the bigger ones are loaded when they
+ * approach.
+ */
+public class TextureLod {
+
+	/**
+	 * Default bands (meters): full size closer than 100 m, half size up to
+	 * 300 m, a quarter up to 1 km and an eighth beyond.
+	 */
+	public static final float[] DEFAULT_BANDS = { 100, 300, 1000 };
+
+	private final float[] mBands;
+
+	public TextureLod() {
+		this(DEFAULT_BANDS);
+	}
+
+	/**
+	 * Create the level of detail.
+	 *
+	 * @param bands
+	 *            Max distances (meters) of each level in ascending order. The
+	 *            objects further than the last one use the level
+	 *            bands.length.
+	 */
+	public TextureLod(float[] bands) {
+		for (int i = 1; i < bands.length; i++) {
+			if (bands[i] < bands[i - 1]) {
+				throw new IllegalArgumentException("The bands must be in ascending order");
+			}
+		}
+		mBands = bands.clone();
+	}
+
+	/**
+	 * Get the level to use for an object.
+	 *
+	 * @param distance
+	 *            Distance to the object in meters.
+	 * @return The level, 0 for the full image.
+	 */
+	public int getLevel(double distance) {
+		for (int i = 0; i < mBands.length; i++) {
+			if (distance < mBands[i]) {
+				return i;
+			}
+		}
+		return mBands.length;
+	}
+
+	/**
+	 * Get the amount of levels used.
+	 *
+	 * @return
+	 */
+	public int getLevelCount() {
+		return mBands.length + 1;
+	}
+}
@@ -0,0 +1,403 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.texture;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import javax.microedition.khronos.opengles.GL10;
+
+import com.beyondar.android.world.BeyondarObject;
+import com.beyondar.android.world.WorldSnapshot;
+
+/**
+ * Keeps the {@link Texture}s loaded in a GL context by image uri. It counts
+ * the {@link BeyondarObject}s that use each texture, deletes the textures
+ * that are not used anymore and, when the estimated GPU memory is over the
+ * budget, deletes the textures that have not been drawn for longer. The
+ * objects whose texture is deleted get an empty texture, so the renderer
+ * loads it again the next time that they are drawn.<br>
+ * Only the textures used by objects (see
+ * {@link #acquire(String, BeyondarObject)}) are deleted automatically. The
+ * pinned textures are never deleted. The ones packed in a
+ * {@link TextureAtlas} are not deleted to stay under the budget, but they are
+ * released from the atlas (see {@link #setTextureAtlas(TextureAtlas)}) when
+ * no object uses them.<br>
+ * The registry belongs to one GL context and has to be used in its thread.
+ */
+public class TextureRegistry {
+
+	/** Default GPU memory budget. 32 MB */
+	public static final int DEFAULT_MEMORY_BUDGET = 32 * 1024 * 1024;
+
+	private static final int BYTES_PER_PIXEL = 4;
+
+	private static class Entry {
+		final String uri;
+		final Texture texture;
+		final int bytes;
+		final boolean pinned;
+		final boolean shared;
+		final ArrayList<BeyondarObject> holders;
+		boolean managed;
+		long lastDrawnFrame;
+
+		Entry(String uri, Texture texture, boolean pinned) {
+			this.uri = uri;
+			this.texture = texture;
+			this.pinned = pinned;
+			// The regions of an atlas share the page
+			this.shared = texture.hasTextureRegion();
+			// The mipmaps are counted too, they add about a third
+			this.bytes = shared ? 0 : MipmapGenerator.getPixelCount(texture.getImageWidth(),
+					texture.getImageHeight(), texture.getLevel(), texture.hasMipmaps()) * BYTES_PER_PIXEL;
+			this.holders = new ArrayList<BeyondarObject>();
+		}
+
+		boolean isHeldBy(BeyondarObject object) {
+			Texture objectTexture = object.getTexture();
+			return objectTexture.isLoaded() && objectTexture.getTexturePointer() == texture.getTexturePointer()
+					&& uri.equals(object.getImageUri());
+		}
+	}
+
+	private final HashMap<String, Entry> mEntries;
+	private final int[] mTmpPointer = new int[1];
+	private TextureAtlas mTextureAtlas;
+	private long mFrame;
+	private long mMemorySize;
+	private volatile int mMemoryBudget;
+	private int mEvictionCount;
+
+	public TextureRegistry() {
+		mEntries = new HashMap<String, Entry>();
+		mMemoryBudget = DEFAULT_MEMORY_BUDGET;
+	}
+
+	/**
+	 * Set the atlas where the shared textures are released when they are
+	 * deleted.
+	 *
+	 * @param textureAtlas
+	 *            The atlas or null.
+	 */
+	public void setTextureAtlas(TextureAtlas textureAtlas) {
+		mTextureAtlas = textureAtlas;
+	}
+
+	/**
+	 * Remove all the textures packed in the atlas, for instance before
+	 * deleting it. The objects that use them get an empty texture, so the
+	 * renderer loads it again.
+	 *
+	 * @param textureAtlas
+	 * @return The amount of removed textures.
+	 */
+	public int removeTextureAtlas(TextureAtlas textureAtlas) {
+		int removed = 0;
+		Iterator<Entry> iterator = mEntries.values().iterator();
+		while (iterator.hasNext()) {
+			Entry entry = iterator.next();
+			if (!entry.shared || !textureAtlas.isPage(entry.texture.getTexturePointer())) {
+				continue;
+			}
+			iterator.remove();
+			for (int i = 0; i < entry.holders.size(); i++) {
+				BeyondarObject object = entry.holders.get(i);
+				if (entry.isHeldBy(object)) {
+					object.setTexture(null);
+				}
+			}
+			entry.holders.clear();
+			removed++;
+		}
+		return removed;
+	}
+
+	/**
+	 * Get the texture registered for the uri. Use a clone of it to assign it
+	 * to an object.
+	 *
+	 * @param uri
+	 * @return The texture or null.
+	 */
+	public Texture get(String uri) {
+		if (uri == null) {
+			return null;
+		}
+		Entry entry = mEntries.get(uri);
+		return entry == null ? null : entry.texture;
+	}
+
+	/**
+	 * Check if there is a texture for the uri.
+	 *
+	 * @param uri
+	 * @return
+	 */
+	public boolean contains(String uri) {
+		return uri != null && mEntries.containsKey(uri);
+	}
+
+	/**
+	 * Register a loaded texture.
+	 *
+	 * @param uri
+	 * @param texture
+	 * @param pinned
+	 *            If true the texture is never deleted by the registry.
+	 */
+	public void put(String uri, Texture texture, boolean pinned) {
+		Entry old = mEntries.remove(uri);
+		if (old != null) {
+			mMemorySize -= old.bytes;
+		}
+		Entry entry = new Entry(uri, texture, pinned);
+		entry.lastDrawnFrame = mFrame;
+		mEntries.put(uri, entry);
+		mMemorySize += entry.bytes;
+	}
+
+	/**
+	 * Replace the texture of the uri, for instance with a different
+	 * resolution. The objects that use the old texture get the new one and the
+	 * old one is deleted.
+	 *
+	 * @param gl
+	 * @param uri
+	 * @param texture
+	 * @return false if there was no texture for the uri, then it is not
+	 *         registered.
+	 */
+	public boolean replace(GL10 gl, String uri, Texture texture) {
+		Entry old = uri == null ? null : mEntries.get(uri);
+		if (old == null) {
+			return false;
+		}
+		Entry entry = new Entry(uri, texture, old.pinned);
+		entry.managed = old.managed;
+		entry.lastDrawnFrame = old.lastDrawnFrame;
+		for (int i = 0; i < old.holders.size(); i++) {
+			BeyondarObject object = old.holders.get(i);
+			if (old.isHeldBy(object)) {
+				object.setTexture(texture.clone());
+				entry.holders.add(object);
+			}
+		}
+		mEntries.put(uri, entry);
+		deleteTexture(gl, old);
+		mMemorySize += entry.bytes;
+		return true;
+	}
+
+	/**
+	 * Notify that an object is using the texture of the uri.
+	 *
+	 * @param uri
+	 * @param object
+	 */
+	public void acquire(String uri, BeyondarObject object) {
+		Entry entry = uri == null ? null : mEntries.get(uri);
+		if (entry != null) {
+			entry.holders.add(object);
+			entry.managed = true;
+		}
+	}
+
+	/**
+	 * Start a new frame. Used to know which textures have been drawn
+	 * recently.
+	 */
+	public void beginFrame() {
+		mFrame++;
+	}
+
+	/**
+	 * Notify that the texture of the uri has been drawn in the current frame.
+	 *
+	 * @param uri
+	 */
+	public void markDrawn(String uri) {
+		Entry entry = uri == null ? null : mEntries.get(uri);
+		if (entry != null) {
+			entry.lastDrawnFrame = mFrame;
+		}
+	}
+
+	/**
+	 * Count again the objects that use each texture and delete the textures
+	 * that are not used by any object of the world anymore. Call it when the
+	 * objects of the world change.
+	 *
+	 * @param gl
+	 * @param snapshot
+	 *            The objects of the world.
+	 * @return The amount of deleted textures.
+	 */
+	public int updateReferences(GL10 gl, WorldSnapshot snapshot) {
+		for (Entry entry : mEntries.values()) {
+			entry.holders.clear();
+		}
+		for (int i = 0; i < snapshot.getListCount(); i++) {
+			for (int j = 0; j < snapshot.getObjectCount(i); j++) {
+				BeyondarObject object = snapshot.getObject(i, j);
+				String uri = object.getImageUri();
+				Entry entry = uri == null ? null : mEntries.get(uri);
+				if (entry != null && entry.isHeldBy(object)) {
+					entry.holders.add(object);
+				}
+			}
+		}
+
+		int deleted = 0;
+		Iterator<Entry> iterator = mEntries.values().iterator();
+		while (iterator.hasNext()) {
+			Entry entry = iterator.next();
+			if (entry.managed && !entry.pinned && entry.holders.isEmpty()) {
+				iterator.remove();
+				deleteTexture(gl, entry);
+				deleted++;
+			}
+		}
+		return deleted;
+	}
+
+	/**
+	 * Delete the least recently drawn textures until the estimated memory is
+	 * under the budget. The textures drawn in the current or the previous
+	 * frame are kept, so the visible objects do not flicker.
+	 *
+	 * @param gl
+	 * @return The amount of deleted textures.
+	 */
+	public int trimToBudget(GL10 gl) {
+		int deleted = 0;
+		while (mMemorySize > mMemoryBudget) {
+			Entry eldest = null;
+			for (Entry entry : mEntries.values()) {
+				if (!entry.managed || entry.pinned || entry.shared || entry.lastDrawnFrame >= mFrame - 1) {
+					continue;
+				}
+				if (eldest == null || entry.lastDrawnFrame < eldest.lastDrawnFrame
+						|| (entry.lastDrawnFrame == eldest.lastDrawnFrame && entry.holders.size() < eldest.holders
+								.size())) {
+					eldest = entry;
+				}
+			}
+			if (eldest == null) {
+				break;
+			}
+			mEntries.remove(eldest.uri);
+			for (int i = 0; i < eldest.holders.size(); i++) {
+				BeyondarObject object = eldest.holders.get(i);
+				if (eldest.isHeldBy(object)) {
+					// It will be loaded again when it is drawn
+					object.setTexture(null);
+				}
+			}
+			deleteTexture(gl, eldest);
+			mEvictionCount++;
+			deleted++;
+		}
+		return deleted;
+	}
+
+	private void deleteTexture(GL10 gl, Entry entry) {
+		mMemorySize -= entry.bytes;
+		entry.holders.clear();
+		if (!entry.texture.isLoaded()) {
+			return;
+		}
+		if (!entry.shared) {
+			mTmpPointer[0] = entry.texture.getTexturePointer();
+			gl.glDeleteTextures(1, mTmpPointer, 0);
+		} else if (mTextureAtlas != null) {
+			mTextureAtlas.release(gl, entry.texture);
+		}
+	}
+
+	/**
+	 * Delete all the textures. The ones packed in an atlas are released from
+	 * it.
+	 *
+	 * @param gl
+	 */
+	public void clear(GL10 gl) {
+		for (Entry entry : mEntries.values()) {
+			deleteTexture(gl, entry);
+		}
+		reset();
+	}
+
+	/**
+	 * Forget all the textures without deleting them. Use it when the GL
+	 * context has been lost.
+	 */
+	public void reset() {
+		mEntries.clear();
+		mMemorySize = 0;
+	}
+
+	/**
+	 * Get the amount of objects that used the texture of the uri the last
+	 * time that they were counted.
+	 *
+	 * @param uri
+	 * @return
+	 */
+	public int getReferenceCount(String uri) {
+		Entry entry = uri == null ? null : mEntries.get(uri);
+		return entry == null ? 0 : entry.holders.size();
+	}
+
+	/**
+	 * Set the max GPU memory (estimated from the image size of the textures)
+	 * used by the textures.
+	 *
+	 * @param bytes
+	 */
+	public void setMemoryBudget(int bytes) {
+		mMemoryBudget = bytes;
+	}
+
+	public int getMemoryBudget() {
+		return mMemoryBudget;
+	}
+
+	/**
+	 * Get the estimated GPU memory used by the registered textures (the atlas
+	 * pages are not included).
+	 *
+	 * @return Bytes.
+	 */
+	public long getMemorySize() {
+		return mMemorySize;
+	}
+
+	public int getTextureCount() {
+		return mEntries.size();
+	}
+
+	/**
+	 * Get the amount of textures deleted to keep the memory under the budget.
+	 *
+	 * @return
+	 */
+	public int getEvictionCount() {
+		return mEvictionCount;
+	}
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.texture;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.microedition.khronos.opengles.GL10;
+
+import android.graphics.Bitmap;
+
+/**
+ * Queue of images waiting to be uploaded to the GPU. The images can be added
+ * from any thread, and they are uploaded in the GL thread by
+ * {@link #process(GL10, Uploader)} in priority order until the time or the
+ * bytes budget of the frame is consumed. The rest of the images wait for the
+ * next frames, so a burst of images does not stall a single frame.
+ */
+public class TextureUploadQueue {
+
+	/** Default max time (ms) spent uploading images in a frame. */
+	public static final float DEFAULT_TIME_BUDGET = 4;
+	/** Default max amount of bytes uploaded in a frame. 1 MB */
+	public static final int DEFAULT_BYTE_BUDGET = 1024 * 1024;
+
+	/**
+	 * Decides the order of the uploads and uploads the images.
+	 */
+	public static interface Uploader {
+
+		/**
+		 * Get the priority of an image. The images with lower values are
+		 * uploaded first.
+		 *
+		 * @param uri
+		 * @return
+		 */
+		public double getPriority(String uri);
+
+		/**
+		 * Upload the image.
+		 *
+		 * @param gl
+		 * @param uri
+		 * @param bitmap
+		 * @return true if the image has been uploaded to the GPU, false if it
+		 *         was not needed anymore.
+		 */
+		public boolean upload(GL10 gl, String uri, Bitmap bitmap);
+	}
+
+	private static class Upload {
+		final String uri;
+		Bitmap bitmap;
+		double priority;
+
+		Upload(String uri, Bitmap bitmap) {
+			this.uri = uri;
+			this.bitmap = bitmap;
+		}
+	}
+
+	private final ConcurrentLinkedQueue<Upload> mIncoming;
+	/** Only used in the GL thread. */
+	private final ArrayList<Upload> mPending;
+	/** The same uploads as mPending by uri, to replace them quickly. */
+	private final HashMap<String, Upload> mPendingByUri;
+	/** Size of mPending, readable from other threads. */
+	private volatile int mPendingSize;
+
+	private volatile long mTimeBudgetNanos;
+	private volatile int mByteBudget;
+
+	private int mLastUploadCount;
+	private int mLastUploadBytes;
+
+	public TextureUploadQueue() {
+		mIncoming = new ConcurrentLinkedQueue<Upload>();
+		mPending = new ArrayList<Upload>();
+		mPendingByUri = new HashMap<String, Upload>();
+		setTimeBudget(DEFAULT_TIME_BUDGET);
+		mByteBudget = DEFAULT_BYTE_BUDGET;
+	}
+
+	/**
+	 * Add an image to be uploaded. It can be called from any thread.
+	 *
+	 * @param uri
+	 * @param bitmap
+	 */
+	public void add(String uri, Bitmap bitmap) {
+		if (uri == null) {
+			return;
+		}
+		mIncoming.add(new Upload(uri, bitmap));
+	}
+
+	/**
+	 * Upload the images with higher priority until the budget of the frame is
+	 * consumed. At least one image is uploaded in each call, so the queue
+	 * always advances. It has to be called in the GL thread.
+	 *
+	 * @param gl
+	 * @param uploader
+	 * @return The amount of images uploaded.
+	 */
+	public int process(GL10 gl, Uploader uploader) {
+		drainIncoming();
+		mLastUploadCount = 0;
+		mLastUploadBytes = 0;
+		int size = mPending.size();
+		mPendingSize = size;
+		if (size == 0) {
+			return 0;
+		}
+
+		for (int i = 0; i < size; i++) {
+			Upload upload = mPending.get(i);
+			upload.priority = uploader.getPriority(upload.uri);
+		}
+		sortByPriority(mPending);
+
+		long timeBudget = mTimeBudgetNanos;
+		int byteBudget = mByteBudget;
+		long start = System.nanoTime();
+		int processed = 0;
+		while (processed < size) {
+			Upload upload = mPending.get(processed);
+			int bytes = getByteCount(upload.bitmap);
+			if (mLastUploadCount > 0) {
+				if (timeBudget > 0 && System.nanoTime() - start >= timeBudget) {
+					break;
+				}
+				if (byteBudget > 0 && mLastUploadBytes + bytes > byteBudget) {
+					break;
+				}
+			}
+			processed++;
+			mPendingByUri.remove(upload.uri);
+			if (uploader.upload(gl, upload.uri, upload.bitmap)) {
+				mLastUploadCount++;
+				mLastUploadBytes += bytes;
+			}
+		}
+
+		// Keep the rest for the next frames
+		int remaining = size - processed;
+		for (int i = 0; i < remaining; i++) {
+			mPending.set(i, mPending.get(processed + i));
+		}
+		for (int i = size - 1; i >= remaining; i--) {
+			mPending.remove(i);
+		}
+		mPendingSize = remaining;
+		return mLastUploadCount;
+	}
+
+	private void drainIncoming() {
+		Upload upload;
+		while ((upload = mIncoming.poll()) != null) {
+			Upload pending = mPendingByUri.get(upload.uri);
+			if (pending != null) {
+				// Use the newest image
+				pending.bitmap = upload.bitmap;
+			} else {
+				mPending.add(upload);
+				mPendingByUri.put(upload.uri, upload);
+			}
+		}
+	}
+
+	/** Stable insertion sort, the list is almost sorted between frames. */
+	private static void sortByPriority(ArrayList<Upload> list) {
+		for (int i = 1; i < list.size(); i++) {
+			Upload upload = list.get(i);
+			int j = i - 1;
+			while (j >= 0 && list.get(j).priority > upload.priority) {
+				list.set(j + 1, list.get(j));
+				j--;
+			}
+			list.set(j + 1, upload);
+		}
+	}
+
+	private static int getByteCount(Bitmap bitmap) {
+		if (bitmap == null || bitmap.isRecycled()) {
+			return 0;
+		}
+		return bitmap.getRowBytes() * bitmap.getHeight();
+	}
+
+	/**
+	 * Set the max time spent uploading images in each frame.
+	 *
+	 * @param milliseconds
+	 *            Time in ms. Use 0 for no time limit.
+	 */
+	public void setTimeBudget(float milliseconds) {
+		mTimeBudgetNanos = (long) (milliseconds * 1000000);
+	}
+
+	public float getTimeBudget() {
+		return mTimeBudgetNanos / 1000000f;
+	}
+
+	/**
+	 * Set the max amount of bytes uploaded in each frame.
+	 *
+	 * @param bytes
+	 *            Use 0 for no limit.
+	 */
+	public void setByteBudget(int bytes) {
+		mByteBudget = bytes;
+	}
+
+	public int getByteBudget() {
+		return mByteBudget;
+	}
+
+	/**
+	 * Get the amount of images waiting to be uploaded. It has to be called in
+	 * the GL thread.
+	 *
+	 * @return
+	 */
+	public int getPendingCount() {
+		return mPending.size() + mIncoming.size();
+	}
+
+	/**
+	 * Check if there are images waiting to be uploaded. It can be called from
+	 * any thread.
+	 *
+	 * @return
+	 */
+	public boolean hasPendingUploads() {
+		return mPendingSize > 0 || !mIncoming.isEmpty();
+	}
+
+	/**
+	 * Get the amount of images uploaded in the last call to
+	 * {@link #process(GL10, Uploader)}.
+	 *
+	 * @return
+	 */
+	public int getLastUploadCount() {
+		return mLastUploadCount;
+	}
+
+	/**
+	 * Get the amount of bytes uploaded in the last call to
+	 * {@link #process(GL10, Uploader)}.
+	 *
+	 * @return
+	 */
+	public int getLastUploadBytes() {
+		return mLastUploadBytes;
+	}
+
+	/**
+	 * Remove all the images waiting to be uploaded. It has to be called in the
+	 * GL thread.
+	 */
+	public void clear() {
+		mIncoming.clear();
+		mPending.clear();
+		mPendingByUri.clear();
+		mPendingSize = 0;
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.opengl.util;
+
+import com.beyondar.android.util.math.geom.Point3;
+
+/**
+ * Checks if a point or a sphere is inside the view frustum defined by the
+ * projection and model view matrices (as stored by {@link MatrixGrabber}).
+ * The planes are extracted from the combined matrix, so {@link #update(float[], float[])}
+ * needs to be called every time that the matrices change.
+ */
+public class FrustumCuller {
+
+	private static final int PLANES = 6;
+
+	private final float[] mClip = new float[16];
+	// a, b, c, d for each plane. The normals point to the inside
+	private final float[] mPlanes = new float[PLANES * 4];
+	private boolean mValid;
+	private float mMargin;
+
+	/**
+	 * Create a culler without margin.
+	 */
+	public FrustumCuller() {
+		mMargin = 0;
+	}
+
+	/**
+	 * Set the extra distance (GL units) added to the radius of the spheres.
+	 * Use it to keep rendering objects that are slightly out of the screen.
+	 *
+	 * @param margin
+	 */
+	public void setMargin(float margin) {
+		mMargin = margin;
+	}
+
+	public float getMargin() {
+		return mMargin;
+	}
+
+	/**
+	 * Recalculate the frustum planes.
+	 *
+	 * @param projection
+	 *            Projection matrix (column major).
+	 * @param modelView
+	 *            Model view matrix (column major).
+	 * @return false if the matrices are not valid (for instance they have not
+	 *         been captured yet). In that case nothing will be culled.
+	 */
+	public boolean update(float[] projection, float[] modelView) {
+		float[] clip = mClip;
+		for (int col = 0; col < 4; col++) {
+			for (int row = 0; row < 4; row++) {
+				clip[col * 4 + row] = projection[row] * modelView[col * 4]
+						+ projection[4 + row] * modelView[col * 4 + 1]
+						+ projection[8 + row] * modelView[col * 4 + 2]
+						+ projection[12 + row] * modelView[col * 4 + 3];
+			}
+		}
+
+		// Left, right, bottom, top, near, far
+		mValid = true;
+		for (int i = 0; i < PLANES; i++) {
+			int row = i / 2;
+			float sign = i % 2 == 0 ? 1 : -1;
+			float a = clip[3] + sign * clip[row];
+			float b = clip[7] + sign * clip[4 + row];
+			float c = clip[11] + sign * clip[8 + row];
+			float d = clip[15] + sign * clip[12 + row];
+			float length = (float) Math.sqrt(a * a + b * b + c * c);
+			if (length == 0 || Float.isNaN(length)) {
+				mValid = false;
+				return false;
+			}
+			mPlanes[i * 4] = a / length;
+			mPlanes[i * 4 + 1] = b / length;
+			mPlanes[i * 4 + 2] = c / length;
+			mPlanes[i * 4 + 3] = d / length;
+		}
+		return true;
+	}
+
+	/**
+	 * Check if the last matrices were valid.
+	 *
+	 * @return
+	 */
+	public boolean isValid() {
+		return mValid;
+	}
+
+	/**
+	 * Check if a sphere is (at least partially) inside the frustum. The
+	 * margin is added to the radius.
+	 *
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @param radius
+	 * @return true if the sphere could be visible, false otherwise.
+	 */
+	public boolean isSphereVisible(float x, float y, float z, float radius) {
+		if (!mValid) {
+			return true;
+		}
+		float minDistance = -(radius + mMargin);
+		float[] planes = mPlanes;
+		for (int i = 0; i < PLANES * 4; i += 4) {
+			if (planes[i] * x + planes[i + 1] * y + planes[i + 2] * z + planes[i + 3] < minDistance) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Check if a sphere is (at least partially) inside the frustum. The
+	 * margin is added to the radius.
+	 *
+	 * @param center
+	 * @param radius
+	 * @return true if the sphere could be visible, false otherwise.
+	 */
+	public boolean isSphereVisible(Point3 center, float radius) {
+		return isSphereVisible(center.x, center.y, center.z, radius);
+	}
+}
@@ -50,6 +50,9 @@ public class MatrixTrackingGL implements GL, GL10, GL10Ext, GL11, GL11Ext {
 	private MatrixStack mTexture;
 	private MatrixStack mProjection;
 
+	private int mTextureBindCount;
+	private int mDrawCallCount;
+
 	private final static boolean _check = false;
 	ByteBuffer mByteBuffer;
 	FloatBuffer mFloatBuffer;
@@ -74,6 +77,34 @@ public class MatrixTrackingGL implements GL, GL10, GL10Ext, GL11, GL11Ext {
 		mMatrixMode = GL10.GL_MODELVIEW;
 	}
 
+	/**
+	 * Get the amount of calls to glBindTexture since the last call to
+	 * {@link #resetCounters()}.
+	 * 
+	 * @return
+	 */
+	public int getTextureBindCount() {
+		return mTextureBindCount;
+	}
+
+	/**
+	 * Get the amount of glDrawArrays, glDrawElements and glDrawTex*OES calls
+	 * since the last call to {@link #resetCounters()}.
+	 * 
+	 * @return
+	 */
+	public int getDrawCallCount() {
+		return mDrawCallCount;
+	}
+
+	/**
+	 * Reset the texture bind and draw call counters.
+	 */
+	public void resetCounters() {
+		mTextureBindCount = 0;
+		mDrawCallCount = 0;
+	}
+
 	// ---------------------------------------------------------------------
 	// GL10 methods:
 
@@ -90,6 +121,7 @@ public class MatrixTrackingGL implements GL, GL10, GL10Ext, GL11, GL11Ext {
 	}
 
 	public void glBindTexture(int target, int texture) {
+		mTextureBindCount++;
 		mgl.glBindTexture(target, texture);
 	}
 
@@ -205,10 +237,12 @@ public class MatrixTrackingGL implements GL, GL10, GL10Ext, GL11, GL11Ext {
 	}
 
 	public void glDrawArrays(int mode, int first, int count) {
+		mDrawCallCount++;
 		mgl.glDrawArrays(mode, first, count);
 	}
 
 	public void glDrawElements(int mode, int count, int type, Buffer indices) {
+		mDrawCallCount++;
 		mgl.glDrawElements(mode, count, type, indices);
 	}
 
@@ -708,51 +742,63 @@ public class MatrixTrackingGL implements GL, GL10, GL10Ext, GL11, GL11Ext {
 
 	public void glDrawTexfOES(float x, float y, float z, float width,
 			float height) {
+		mDrawCallCount++;
 		mgl11Ext.glDrawTexfOES(x, y, z, width, height);
 	}
 
 	public void glDrawTexfvOES(float[] coords, int offset) {
+		mDrawCallCount++;
 		mgl11Ext.glDrawTexfvOES(coords, offset);
 	}
 
 	public void glDrawTexfvOES(FloatBuffer coords) {
+		mDrawCallCount++;
 		mgl11Ext.glDrawTexfvOES(coords);
 	}
 
 	public void glDrawTexiOES(int x, int y, int z, int width, int height) {
+		mDrawCallCount++;
 		mgl11Ext.glDrawTexiOES(x, y, z, width, height);
 	}
 
 	public void glDrawTexivOES(int[] coords, int offset) {
+		mDrawCallCount++;
 		mgl11Ext.glDrawTexivOES(coords, offset);
 	}
 
 	public void glDrawTexivOES(IntBuffer coords) {
+		mDrawCallCount++;
 		mgl11Ext.glDrawTexivOES(coords);
 	}
 
 	public void glDrawTexsOES(short x, short y, short z, short width,
 			short height) {
+		mDrawCallCount++;
 		mgl11Ext.glDrawTexsOES(x, y, z, width, height);
 	}
 
 	public void glDrawTexsvOES(short[] coords, int offset) {
+		mDrawCallCount++;
 		mgl11Ext.glDrawTexsvOES(coords, offset);
 	}
 
 	public void glDrawTexsvOES(ShortBuffer coords) {
+		mDrawCallCount++;
 		mgl11Ext.glDrawTexsvOES(coords);
 	}
 
 	public void glDrawTexxOES(int x, int y, int z, int width, int height) {
+		mDrawCallCount++;
 		mgl11Ext.glDrawTexxOES(x, y, z, width, height);
 	}
 
 	public void glDrawTexxvOES(int[] coords, int offset) {
+		mDrawCallCount++;
 		mgl11Ext.glDrawTexxvOES(coords, offset);
 	}
 
 	public void glDrawTexxvOES(IntBuffer coords) {
+		mDrawCallCount++;
 		mgl11Ext.glDrawTexxvOES(coords);
 	}
 
@@ -1002,7 +1048,8 @@ public class MatrixTrackingGL implements GL, GL10, GL10Ext, GL11, GL11Ext {
 	}
 
 	public void glDrawElements(int mode, int count, int type, int offset) {
-		throw new UnsupportedOperationException();
+		mDrawCallCount++;
+		mgl11.glDrawElements(mode, count, type, offset);
 	}
 
 	public void glGetPointerv(int pname, Buffer[] params) {
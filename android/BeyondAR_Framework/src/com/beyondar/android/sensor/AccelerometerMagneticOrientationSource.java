@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.sensor;
+
+import android.hardware.Sensor;
+
+import com.beyondar.android.opengl.util.LowPassFilter;
+
+/**
+ * {@link OrientationSource} that uses the accelerometer and the magnetic field
+ * filtered with a {@link LowPassFilter}. It works in all the devices, but the
+ * filter adds some lag to the movements.
+ */
+public class AccelerometerMagneticOrientationSource implements OrientationSource {
+
+	private static final int[] SENSOR_TYPES = { Sensor.TYPE_ACCELEROMETER, Sensor.TYPE_MAGNETIC_FIELD };
+
+	private final float[] mAccelerometerValues = new float[3];
+	private final float[] mMagneticValues = new float[3];
+	private boolean mHasAccelerometer, mHasMagnetic;
+	private float mAlpha;
+
+	public AccelerometerMagneticOrientationSource() {
+		this(LowPassFilter.ALPHA);
+	}
+
+	/**
+	 * Create the source.
+	 * 
+	 * @param alpha
+	 *            Smoothing constant of the {@link LowPassFilter}, from 0 to 1.
+	 *            A smaller value means more smoothing.
+	 */
+	public AccelerometerMagneticOrientationSource(float alpha) {
+		mAlpha = alpha;
+	}
+
+	@Override
+	public int[] getSensorTypes() {
+		return SENSOR_TYPES;
+	}
+
+	@Override
+	public synchronized boolean onSensorChanged(int sensorType, float[] values, long timestamp) {
+		switch (sensorType) {
+		case Sensor.TYPE_ACCELEROMETER:
+			LowPassFilter.filter(values, mAccelerometerValues, mAlpha);
+			mHasAccelerometer = true;
+			return mHasMagnetic;
+		case Sensor.TYPE_MAGNETIC_FIELD:
+			LowPassFilter.filter(values, mMagneticValues, mAlpha);
+			mHasMagnetic = true;
+			return mHasAccelerometer;
+		default:
+			return false;
+		}
+	}
+
+	@Override
+	public synchronized boolean getRotationMatrix(float[] R) {
+		if (!mHasAccelerometer || !mHasMagnetic) {
+			return false;
+		}
+		return SensorMath.getRotationMatrix(R, mAccelerometerValues, mMagneticValues);
+	}
+
+	@Override
+	public synchronized void reset() {
+		// The filtered values are kept as the starting point of the filter
+		mHasAccelerometer = mHasMagnetic = false;
+	}
+}
@@ -17,6 +17,7 @@ package com.beyondar.android.sensor;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.beyondar.android.opengl.util.LowPassFilter;
 
@@ -27,7 +28,12 @@ import android.hardware.SensorManager;
 
 /**
  * This class controls and filter the sensor data provided by the magnetic and
- * the accelerometer sensors.
+ * the accelerometer sensors. It also calculates the orientation of the device
+ * using an {@link OrientationSource}: by default the gyroscope is fused with
+ * the accelerometer and the magnetic field when the device has one, otherwise
+ * the rotation vector or the filtered accelerometer and magnetic field are
+ * used. The orientation is calculated once per sensor update and published as
+ * an {@link OrientationSnapshot}, see {@link #getOrientationSnapshot()}.
  */
 public class BeyondarSensorManager {
 
@@ -44,16 +50,26 @@ public class BeyondarSensorManager {
 
 		private Object mLock;
 		private ArrayList<BeyondarSensorListener> mSensorsListener;
+		/** Copy of mSensorsListener used to notify them without locking. */
+		private volatile BeyondarSensorListener[] mSensorsListenerArray;
 		private SensorManager mSensorManager;
 
 		private float mAccelerometerValues[] = new float[3];
 		private float mMagneticValues[] = new float[3];
 
+		private volatile OrientationSource mOrientationSource;
+		private final AtomicReference<OrientationSnapshot> mOrientationSnapshot;
+		/** Only used in the sensor thread. */
+		private final float[] mTmpRotationMatrix = new float[16];
+		private long mOrientationVersion;
+
 		private boolean isListenerRegistered;
 
 		BeyondarSensorManagerSingleton() {
 			mLock = new Object();
 			mSensorsListener = new ArrayList<BeyondarSensorListener>();
+			mSensorsListenerArray = new BeyondarSensorListener[0];
+			mOrientationSnapshot = new AtomicReference<OrientationSnapshot>();
 			isListenerRegistered = false;
 		}
 
@@ -65,45 +81,80 @@ public class BeyondarSensorManager {
 		}
 
 		void registerSensor() {
-			if (isListenerRegistered || mSensorManager == null)
-				return;
-			List<Sensor> listSensors = mSensorManager.getSensorList(Sensor.TYPE_ACCELEROMETER);
-			if (listSensors.size() > 0) {
-				mSensorManager.registerListener(INSTANCE, listSensors.get(0), SENSOR_DELAY);
+			synchronized (mLock) {
+				if (isListenerRegistered || mSensorManager == null)
+					return;
+				if (mOrientationSource == null) {
+					mOrientationSource = createDefaultOrientationSource(mSensorManager);
+				}
+				// The filtered values are always sent to the listeners
+				registerSensorType(Sensor.TYPE_ACCELEROMETER);
+				registerSensorType(Sensor.TYPE_MAGNETIC_FIELD);
+				int[] types = mOrientationSource.getSensorTypes();
+				for (int i = 0; i < types.length; i++) {
+					if (types[i] != Sensor.TYPE_ACCELEROMETER && types[i] != Sensor.TYPE_MAGNETIC_FIELD) {
+						registerSensorType(types[i]);
+					}
+				}
+				isListenerRegistered = true;
 			}
+		}
 
-			listSensors = mSensorManager.getSensorList(Sensor.TYPE_MAGNETIC_FIELD);
+		private void registerSensorType(int type) {
+			List<Sensor> listSensors = mSensorManager.getSensorList(type);
 			if (listSensors.size() > 0) {
 				mSensorManager.registerListener(INSTANCE, listSensors.get(0), SENSOR_DELAY);
 			}
 		}
 
 		void unregisterSensor() {
-			if (!isListenerRegistered)
-				return;
-			List<Sensor> listSensors = mSensorManager.getSensorList(Sensor.TYPE_ACCELEROMETER);
-			if (listSensors.size() > 0) {
-				mSensorManager.unregisterListener(INSTANCE, listSensors.get(0));
+			synchronized (mLock) {
+				if (!isListenerRegistered || mSensorManager == null)
+					return;
+				mSensorManager.unregisterListener(INSTANCE);
+				isListenerRegistered = false;
+				OrientationSource source = mOrientationSource;
+				if (source != null) {
+					source.reset();
+				}
 			}
+		}
 
-			listSensors = mSensorManager.getSensorList(Sensor.TYPE_MAGNETIC_FIELD);
-			if (listSensors.size() > 0) {
-				mSensorManager.unregisterListener(INSTANCE, listSensors.get(0));
+		void setOrientationSource(OrientationSource source) {
+			synchronized (mLock) {
+				boolean registered = isListenerRegistered;
+				unregisterSensor();
+				mOrientationSource = source;
+				if (registered) {
+					registerSensor();
+				}
 			}
 		}
 
+		OrientationSource getOrientationSource() {
+			return mOrientationSource;
+		}
+
+		OrientationSnapshot getOrientationSnapshot() {
+			return mOrientationSnapshot.get();
+		}
+
 		void registerSensorListener(BeyondarSensorListener sensorEventListener) {
 			synchronized (mLock) {
 				if (mSensorsListener.size() == 0) {
 					registerSensor();
 				}
 				mSensorsListener.add(sensorEventListener);
+				mSensorsListenerArray = mSensorsListener
+						.toArray(new BeyondarSensorListener[mSensorsListener.size()]);
 			}
 		}
 
 		void unregisterSensorListener(BeyondarSensorListener sensorEventListener) {
 			synchronized (mLock) {
 				mSensorsListener.remove(sensorEventListener);
+				mSensorsListenerArray = mSensorsListener
+						.toArray(new BeyondarSensorListener[mSensorsListener.size()]);
 				if (mSensorsListener.size() == 0) {
 					unregisterSensor();
 				}
@@ -119,6 +170,13 @@ public class BeyondarSensorManager {
 			int type = event.sensor.getType();
 			float[] values = null;
 
+			OrientationSource source = mOrientationSource;
+			if (source != null && source.onSensorChanged(type, event.values, event.timestamp)
+					&& source.getRotationMatrix(mTmpRotationMatrix)) {
+				mOrientationSnapshot.set(new OrientationSnapshot(mTmpRotationMatrix, event.timestamp,
+						++mOrientationVersion));
+			}
+
 			switch (type) {
 			case Sensor.TYPE_ACCELEROMETER:
 				LowPassFilter.filter(event.values, mAccelerometerValues);
@@ -134,14 +192,82 @@ public class BeyondarSensorManager {
 			if (values == null)
 				return;
 
-			synchronized (mLock) {
-				for (int i = 0; i < mSensorsListener.size(); i++) {
-					mSensorsListener.get(i).onSensorChanged(values, event);
-				}
+			BeyondarSensorListener[] listeners = mSensorsListenerArray;
+			for (int i = 0; i < listeners.length; i++) {
+				listeners[i].onSensorChanged(values, event);
 			}
 		}
 	}
 
+	private static OrientationSource createDefaultOrientationSource(SensorManager sensorManager) {
+		boolean accelerometer = sensorManager.getSensorList(Sensor.TYPE_ACCELEROMETER).size() > 0;
+		boolean magnetic = sensorManager.getSensorList(Sensor.TYPE_MAGNETIC_FIELD).size() > 0;
+		if (accelerometer && magnetic && sensorManager.getSensorList(Sensor.TYPE_GYROSCOPE).size() > 0) {
+			return new GyroscopeOrientationSource();
+		}
+		if (sensorManager.getSensorList(Sensor.TYPE_ROTATION_VECTOR).size() > 0) {
+			return new RotationVectorOrientationSource();
+		}
+		return new AccelerometerMagneticOrientationSource();
+	}
+
+	/**
+	 * Set the {@link OrientationSource} used to calculate the orientation of
+	 * the device. If the sensors are registered they are registered again with
+	 * the sensors needed by the new source.
+	 * 
+	 * @param source
+	 *            The source, or null to choose it depending on the sensors of
+	 *            the device: {@link GyroscopeOrientationSource} if there is a
+	 *            gyroscope, {@link RotationVectorOrientationSource} if there is
+	 *            a rotation vector sensor and
+	 *            {@link AccelerometerMagneticOrientationSource} otherwise.
+	 */
+	public static void setOrientationSource(OrientationSource source) {
+		BeyondarSensorManagerSingleton.INSTANCE.setOrientationSource(source);
+	}
+
+	/**
+	 * Get the {@link OrientationSource} used to calculate the orientation of
+	 * the device.
+	 * 
+	 * @return The source, or null if the sensors have not been registered yet
+	 *         and no source has been set.
+	 */
+	public static OrientationSource getOrientationSource() {
+		return BeyondarSensorManagerSingleton.INSTANCE.getOrientationSource();
+	}
+
+	/**
+	 * Get the last orientation of the device calculated by the
+	 * {@link OrientationSource}. It can be called from any thread without
+	 * locking.
+	 * 
+	 * @return The orientation, or null if it is not known yet.
+	 */
+	public static OrientationSnapshot getOrientationSnapshot() {
+		return BeyondarSensorManagerSingleton.INSTANCE.getOrientationSnapshot();
+	}
+
+	/**
+	 * Get the last orientation of the device calculated by the
+	 * {@link OrientationSource}. It can be called from any thread.
+	 * 
+	 * @param R
+	 *            Rotation matrix (9 or 16 values) from the device coordinate
+	 *            system to the world, like
+	 *            {@link SensorManager#getRotationMatrix}.
+	 * @return false if the orientation is not known yet, R is not modified.
+	 */
+	public static boolean getRotationMatrix(float[] R) {
+		OrientationSnapshot snapshot = getOrientationSnapshot();
+		if (snapshot == null) {
+			return false;
+		}
+		snapshot.getRotationMatrix(R);
+		return true;
+	}
+
 	/**
 	 * Add a new {@link BeyondarSensorListener} to the sensor manager.
 	 * 
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.sensor;
+
+import android.hardware.Sensor;
+
+/**
+ * {@link OrientationSource} that fuses the gyroscope with the accelerometer
+ * and the magnetic field using an {@link OrientationFusion}. It follows the
+ * movements without the lag of the low pass filter, but it needs a
+ * gyroscope.
+ */
+public class GyroscopeOrientationSource implements OrientationSource {
+
+	private static final int[] SENSOR_TYPES = { Sensor.TYPE_ACCELEROMETER, Sensor.TYPE_MAGNETIC_FIELD,
+			Sensor.TYPE_GYROSCOPE };
+
+	private final OrientationFusion mFusion;
+
+	public GyroscopeOrientationSource() {
+		this(OrientationFusion.DEFAULT_TIME_CONSTANT);
+	}
+
+	/**
+	 * Create the source.
+	 * 
+	 * @param timeConstant
+	 *            Time constant of the filter in seconds, see
+	 *            {@link OrientationFusion#setTimeConstant(float)}.
+	 */
+	public GyroscopeOrientationSource(float timeConstant) {
+		mFusion = new OrientationFusion();
+		mFusion.setTimeConstant(timeConstant);
+	}
+
+	@Override
+	public int[] getSensorTypes() {
+		return SENSOR_TYPES;
+	}
+
+	@Override
+	public synchronized boolean onSensorChanged(int sensorType, float[] values, long timestamp) {
+		switch (sensorType) {
+		case Sensor.TYPE_ACCELEROMETER:
+			return mFusion.updateAccelerometer(values);
+		case Sensor.TYPE_MAGNETIC_FIELD:
+			return mFusion.updateMagneticField(values);
+		case Sensor.TYPE_GYROSCOPE:
+			return mFusion.updateGyroscope(values, timestamp);
+		default:
+			return false;
+		}
+	}
+
+	@Override
+	public synchronized boolean getRotationMatrix(float[] R) {
+		return mFusion.getRotationMatrix(R);
+	}
+
+	@Override
+	public synchronized void reset() {
+		mFusion.reset();
+	}
+}
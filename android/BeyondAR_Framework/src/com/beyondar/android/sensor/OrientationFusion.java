@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.sensor;
+
+/**
+ * Complementary filter that fuses the gyroscope with the accelerometer and
+ * the magnetic field. The gyroscope is integrated to follow fast movements
+ * without lag, and the result is slowly pulled towards the orientation
+ * given by the accelerometer and the magnetic field to remove the drift of
+ * the gyroscope. How fast it is pulled is defined by the time constant (see
+ * {@link #setTimeConstant(float)}).<br>
+ * It does not depend on Android and it is not thread safe, so it can be fed
+ * with recorded sensor values in the JVM.
+ */
+public class OrientationFusion {
+
+	/** Default time constant of the filter, in seconds. */
+	public static final float DEFAULT_TIME_CONSTANT = 0.5f;
+
+	/**
+	 * If there are no gyroscope values for longer than this (ns), for instance
+	 * after a pause, the orientation is taken again from the accelerometer and
+	 * the magnetic field.
+	 */
+	private static final long MAX_GYROSCOPE_GAP = 1000000000L;
+
+	private final float[] mGravity = new float[3];
+	private final float[] mGeomagnetic = new float[3];
+	private final float[] mTmpMatrix = new float[9];
+	private final float[] mQuaternion = new float[4];
+	private final float[] mReference = new float[4];
+
+	private boolean mHasGravity;
+	private boolean mHasGeomagnetic;
+	private boolean mInitialized;
+	private long mLastGyroscopeTimestamp;
+	private float mTimeConstant;
+
+	public OrientationFusion() {
+		mTimeConstant = DEFAULT_TIME_CONSTANT;
+		reset();
+	}
+
+	/**
+	 * Set the time constant of the filter. Higher values trust more the
+	 * gyroscope (smoother but slower to correct the drift), lower values trust
+	 * more the accelerometer and the magnetic field (noisier).
+	 *
+	 * @param seconds
+	 */
+	public void setTimeConstant(float seconds) {
+		if (seconds < 0) {
+			throw new IllegalArgumentException("seconds < 0");
+		}
+		mTimeConstant = seconds;
+	}
+
+	public float getTimeConstant() {
+		return mTimeConstant;
+	}
+
+	/**
+	 * Add accelerometer values (m/s^2). They are only used to correct the
+	 * gyroscope, so the orientation only changes if it was not known.
+	 *
+	 * @param values
+	 * @return true if the orientation has changed.
+	 */
+	public boolean updateAccelerometer(float[] values) {
+		mGravity[0] = values[0];
+		mGravity[1] = values[1];
+		mGravity[2] = values[2];
+		mHasGravity = true;
+		return !mInitialized && initialize();
+	}
+
+	/**
+	 * Add magnetic field values (uT). They are only used to correct the
+	 * gyroscope, so the orientation only changes if it was not known.
+	 *
+	 * @param values
+	 * @return true if the orientation has changed.
+	 */
+	public boolean updateMagneticField(float[] values) {
+		mGeomagnetic[0] = values[0];
+		mGeomagnetic[1] = values[1];
+		mGeomagnetic[2] = values[2];
+		mHasGeomagnetic = true;
+		return !mInitialized && initialize();
+	}
+
+	/**
+	 * Add gyroscope values (rad/s).
+	 *
+	 * @param values
+	 * @param timestamp
+	 *            Time of the values in ns, like
+	 *            {@link android.hardware.SensorEvent#timestamp}.
+	 * @return true if the orientation has changed.
+	 */
+	public boolean updateGyroscope(float[] values, long timestamp) {
+		long last = mLastGyroscopeTimestamp;
+		mLastGyroscopeTimestamp = timestamp;
+		if (!mInitialized || last == 0 || timestamp <= last || timestamp - last > MAX_GYROSCOPE_GAP) {
+			return initialize();
+		}
+		float dt = (timestamp - last) * 1e-9f;
+		SensorMath.integrateAngularVelocity(mQuaternion, values[0], values[1], values[2], dt);
+
+		if (computeReference()) {
+			float alpha = dt / (mTimeConstant + dt);
+			SensorMath.interpolateQuaternion(mQuaternion, mReference, alpha);
+		}
+		return true;
+	}
+
+	private boolean initialize() {
+		if (computeReference()) {
+			System.arraycopy(mReference, 0, mQuaternion, 0, 4);
+			mInitialized = true;
+			return true;
+		}
+		return false;
+	}
+
+	private boolean computeReference() {
+		if (!mHasGravity || !mHasGeomagnetic) {
+			return false;
+		}
+		if (!SensorMath.getRotationMatrix(mTmpMatrix, mGravity, mGeomagnetic)) {
+			return false;
+		}
+		SensorMath.rotationMatrixToQuaternion(mTmpMatrix, mReference);
+		return true;
+	}
+
+	/**
+	 * Check if there are enough values to know the orientation.
+	 *
+	 * @return
+	 */
+	public boolean isInitialized() {
+		return mInitialized;
+	}
+
+	/**
+	 * Get the fused orientation.
+	 *
+	 * @param R
+	 *            Rotation matrix (9 or 16 values), see {@link SensorMath}.
+	 * @return false if the orientation is not known yet.
+	 */
+	public boolean getRotationMatrix(float[] R) {
+		if (!mInitialized) {
+			return false;
+		}
+		SensorMath.quaternionToRotationMatrix(mQuaternion[0], mQuaternion[1], mQuaternion[2],
+				mQuaternion[3], R);
+		return true;
+	}
+
+	/**
+	 * Get the fused orientation as a quaternion.
+	 *
+	 * @param q
+	 *            Quaternion {w, x, y, z}.
+	 * @return false if the orientation is not known yet.
+	 */
+	public boolean getQuaternion(float[] q) {
+		if (!mInitialized) {
+			return false;
+		}
+		System.arraycopy(mQuaternion, 0, q, 0, 4);
+		return true;
+	}
+
+	/**
+	 * Forget all the values.
+	 */
+	public void reset() {
+		mHasGravity = false;
+		mHasGeomagnetic = false;
+		mInitialized = false;
+		mLastGyroscopeTimestamp = 0;
+		mQuaternion[0] = 1;
+		mQuaternion[1] = mQuaternion[2] = mQuaternion[3] = 0;
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.sensor;
+
+/**
+ * Extrapolates the orientation of the device to the time when a frame will be
+ * displayed, so the overlay does not lag behind the movements of the device.
+ * The angular velocity is estimated from the last timestamped orientations
+ * (see {@link #addSample(OrientationSnapshot)}) and the last orientation is
+ * rotated with it during the time between its sample and the display time.
+ * The extrapolated time and angle are clamped, so a wrong estimation can not
+ * move the overlay too much.<br>
+ * The timestamps of the samples should use the same clock than the time
+ * passed to {@link #predict(long, float[])}. Some devices use a different
+ * clock for the sensor events, in that case only the horizon is
+ * extrapolated.<br>
+ * It does not depend on Android and it is not thread safe.
+ */
+public class OrientationPredictor {
+
+	/**
+	 * Default time (seconds) from the moment that the frame is drawn to the
+	 * moment that it is displayed.
+	 */
+	public static final float DEFAULT_HORIZON = 0.016f;
+	/** Default max time (seconds) that the orientation is extrapolated. */
+	public static final float DEFAULT_MAX_PREDICTION = 0.1f;
+	/** Default max angle (radians) that the orientation is rotated. */
+	public static final float DEFAULT_MAX_ANGLE = (float) Math.toRadians(15);
+
+	/** Weight of the new angular velocity in the smoothed one. */
+	private static final float VELOCITY_SMOOTHING = 0.5f;
+	/** Samples further apart than this (ns) are not used for the velocity. */
+	private static final long MAX_SAMPLE_INTERVAL = 200000000L;
+	/**
+	 * Older samples (ns) are considered to use a different clock than the
+	 * time of the frame.
+	 */
+	private static final long MAX_SAMPLE_AGE = 1000000000L;
+
+	private final float[] mLastSample = new float[4];
+	private final float[] mSample = new float[4];
+	private final float[] mTmpMatrix = new float[16];
+	private final float[] mPrediction = new float[4];
+	private long mLastTimestamp;
+	private boolean mHasSample;
+	private boolean mHasVelocity;
+	private float mVelocityX, mVelocityY, mVelocityZ;
+
+	private long mHorizonNanos;
+	private long mMaxPredictionNanos;
+	private float mMaxAngle;
+	private long mLastPredictionNanos;
+
+	public OrientationPredictor() {
+		setHorizon(DEFAULT_HORIZON);
+		setMaxPrediction(DEFAULT_MAX_PREDICTION);
+		setMaxAngle(DEFAULT_MAX_ANGLE);
+	}
+
+	/**
+	 * Set the time from the moment that the frame is drawn to the moment that
+	 * it is displayed.
+	 * 
+	 * @param seconds
+	 */
+	public void setHorizon(float seconds) {
+		mHorizonNanos = (long) (seconds * 1e9);
+	}
+
+	public float getHorizon() {
+		return mHorizonNanos / 1e9f;
+	}
+
+	/**
+	 * Set the max time that the orientation is extrapolated.
+	 * 
+	 * @param seconds
+	 */
+	public void setMaxPrediction(float seconds) {
+		mMaxPredictionNanos = (long) (seconds * 1e9);
+	}
+
+	public float getMaxPrediction() {
+		return mMaxPredictionNanos / 1e9f;
+	}
+
+	/**
+	 * Set the max angle that the orientation is rotated.
+	 * 
+	 * @param radians
+	 */
+	public void setMaxAngle(float radians) {
+		mMaxAngle = radians;
+	}
+
+	public float getMaxAngle() {
+		return mMaxAngle;
+	}
+
+	/**
+	 * Add a new orientation.
+	 * 
+	 * @param snapshot
+	 */
+	public void addSample(OrientationSnapshot snapshot) {
+		snapshot.getRotationMatrix(mTmpMatrix);
+		addSample(mTmpMatrix, snapshot.getTimestamp());
+	}
+
+	/**
+	 * Add a new orientation.
+	 * 
+	 * @param R
+	 *            Rotation matrix (9 or 16 values), see {@link SensorMath}.
+	 * @param timestamp
+	 *            Time of the orientation in ns.
+	 */
+	public void addSample(float[] R, long timestamp) {
+		SensorMath.rotationMatrixToQuaternion(R, mSample);
+		if (mHasSample && timestamp > mLastTimestamp && timestamp - mLastTimestamp <= MAX_SAMPLE_INTERVAL) {
+			updateVelocity((timestamp - mLastTimestamp) * 1e-9f);
+		} else {
+			mHasVelocity = false;
+		}
+		System.arraycopy(mSample, 0, mLastSample, 0, 4);
+		mLastTimestamp = timestamp;
+		mHasSample = true;
+	}
+
+	private void updateVelocity(float dt) {
+		// Rotation from the last sample to the new one, relative to the device:
+		// delta = conjugate(last) * sample
+		float w0 = mLastSample[0], x0 = -mLastSample[1], y0 = -mLastSample[2], z0 = -mLastSample[3];
+		float w1 = mSample[0], x1 = mSample[1], y1 = mSample[2], z1 = mSample[3];
+		float w = w0 * w1 - x0 * x1 - y0 * y1 - z0 * z1;
+		float x = w0 * x1 + x0 * w1 + y0 * z1 - z0 * y1;
+		float y = w0 * y1 - x0 * z1 + y0 * w1 + z0 * x1;
+		float z = w0 * z1 + x0 * y1 - y0 * x1 + z0 * w1;
+		if (w < 0) {
+			// Shortest path
+			w = -w;
+			x = -x;
+			y = -y;
+			z = -z;
+		}
+		float sin = (float) Math.sqrt(x * x + y * y + z * z);
+		float vx = 0, vy = 0, vz = 0;
+		if (sin > 1e-6f) {
+			float angle = 2 * (float) Math.atan2(sin, w);
+			float scale = angle / (sin * dt);
+			vx = x * scale;
+			vy = y * scale;
+			vz = z * scale;
+		}
+		if (mHasVelocity) {
+			mVelocityX += VELOCITY_SMOOTHING * (vx - mVelocityX);
+			mVelocityY += VELOCITY_SMOOTHING * (vy - mVelocityY);
+			mVelocityZ += VELOCITY_SMOOTHING * (vz - mVelocityZ);
+		} else {
+			mVelocityX = vx;
+			mVelocityY = vy;
+			mVelocityZ = vz;
+			mHasVelocity = true;
+		}
+	}
+
+	/**
+	 * Get the orientation expected when the frame drawn now is displayed (now
+	 * plus the horizon).
+	 * 
+	 * @param now
+	 *            Current time in ns.
+	 * @param R
+	 *            Rotation matrix (9 or 16 values) where the orientation is
+	 *            stored.
+	 * @return false if there is no orientation yet, R is not modified.
+	 */
+	public boolean predict(long now, float[] R) {
+		if (!mHasSample) {
+			return false;
+		}
+		long age = now - mLastTimestamp;
+		if (age < 0 || age > MAX_SAMPLE_AGE) {
+			age = 0;
+		}
+		long prediction = age + mHorizonNanos;
+		if (prediction < 0 || !mHasVelocity) {
+			prediction = 0;
+		} else if (prediction > mMaxPredictionNanos) {
+			prediction = mMaxPredictionNanos;
+		}
+		System.arraycopy(mLastSample, 0, mPrediction, 0, 4);
+		if (prediction > 0) {
+			float dt = prediction * 1e-9f;
+			float speed = (float) Math.sqrt(mVelocityX * mVelocityX + mVelocityY * mVelocityY + mVelocityZ
+					* mVelocityZ);
+			if (speed * dt > mMaxAngle) {
+				dt = mMaxAngle / speed;
+				prediction = (long) (dt * 1e9);
+			}
+			SensorMath.integrateAngularVelocity(mPrediction, mVelocityX, mVelocityY, mVelocityZ, dt);
+		}
+		mLastPredictionNanos = prediction;
+		SensorMath.quaternionToRotationMatrix(mPrediction[0], mPrediction[1], mPrediction[2], mPrediction[3],
+				R);
+		return true;
+	}
+
+	/**
+	 * Get the time that the orientation was extrapolated in the last call to
+	 * {@link #predict(long, float[])}.
+	 * 
+	 * @return Time in ns.
+	 */
+	public long getLastPredictionNanos() {
+		return mLastPredictionNanos;
+	}
+
+	/**
+	 * Forget the previous orientations.
+	 */
+	public void reset() {
+		mHasSample = false;
+		mHasVelocity = false;
+		mLastPredictionNanos = 0;
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.sensor;
+
+/**
+ * Immutable orientation of the device calculated by the
+ * {@link BeyondarSensorManager} after a sensor update. The last one is
+ * available from {@link BeyondarSensorManager#getOrientationSnapshot()}
+ * without locking, so it can be read from any thread (for instance the GL
+ * thread) without calculating the orientation again.
+ */
+public final class OrientationSnapshot {
+
+	private final float[] mRotationMatrix = new float[16];
+	private final float mAzimuth, mPitch, mRoll;
+	private final long mTimestamp;
+	private final long mVersion;
+
+	/**
+	 * Create the snapshot.
+	 * 
+	 * @param rotationMatrix
+	 *            Rotation matrix (9 or 16 values) from the device coordinate
+	 *            system to the world, see {@link SensorMath}. The values are
+	 *            copied.
+	 * @param timestamp
+	 *            Time of the sensor values in ns.
+	 * @param version
+	 *            Number that increases with each snapshot.
+	 */
+	public OrientationSnapshot(float[] rotationMatrix, long timestamp, long version) {
+		if (rotationMatrix.length == 16) {
+			System.arraycopy(rotationMatrix, 0, mRotationMatrix, 0, 16);
+		} else if (rotationMatrix.length == 9) {
+			for (int row = 0; row < 3; row++) {
+				mRotationMatrix[row * 4] = rotationMatrix[row * 3];
+				mRotationMatrix[row * 4 + 1] = rotationMatrix[row * 3 + 1];
+				mRotationMatrix[row * 4 + 2] = rotationMatrix[row * 3 + 2];
+			}
+			mRotationMatrix[15] = 1;
+		} else {
+			throw new IllegalArgumentException("The rotation matrix needs 9 or 16 values");
+		}
+		// Same as SensorMath.getOrientation without the temporary array
+		mAzimuth = (float) Math.atan2(mRotationMatrix[1], mRotationMatrix[5]);
+		mPitch = (float) Math.asin(-mRotationMatrix[9]);
+		mRoll = (float) Math.atan2(-mRotationMatrix[8], mRotationMatrix[10]);
+		mTimestamp = timestamp;
+		mVersion = version;
+	}
+
+	/**
+	 * Copy the rotation matrix.
+	 * 
+	 * @param R
+	 *            Array of 9 or 16 values where the rotation matrix from the
+	 *            device coordinate system to the world is copied.
+	 */
+	public void getRotationMatrix(float[] R) {
+		if (R.length == 16) {
+			System.arraycopy(mRotationMatrix, 0, R, 0, 16);
+		} else if (R.length == 9) {
+			for (int row = 0; row < 3; row++) {
+				R[row * 3] = mRotationMatrix[row * 4];
+				R[row * 3 + 1] = mRotationMatrix[row * 4 + 1];
+				R[row * 3 + 2] = mRotationMatrix[row * 4 + 2];
+			}
+		} else {
+			throw new IllegalArgumentException("The rotation matrix needs 9 or 16 values");
+		}
+	}
+
+	/**
+	 * Get the rotation around the -Z axis (0 when the device points to the
+	 * magnetic north), like {@link android.hardware.SensorManager#getOrientation}
+	 * .
+	 * 
+	 * @return Radians from -PI to PI.
+	 */
+	public float getAzimuth() {
+		return mAzimuth;
+	}
+
+	/**
+	 * Get the rotation around the -X axis.
+	 * 
+	 * @return Radians from -PI/2 to PI/2.
+	 */
+	public float getPitch() {
+		return mPitch;
+	}
+
+	/**
+	 * Get the rotation around the Y axis.
+	 * 
+	 * @return Radians from -PI to PI.
+	 */
+	public float getRoll() {
+		return mRoll;
+	}
+
+	/**
+	 * Get the time of the sensor values used to calculate the orientation.
+	 * 
+	 * @return Time in ns, like {@link android.hardware.SensorEvent#timestamp}.
+	 */
+	public long getTimestamp() {
+		return mTimestamp;
+	}
+
+	/**
+	 * Get the version of the snapshot. It increases with each snapshot, so it
+	 * can be used to know if the orientation has changed.
+	 * 
+	 * @return
+	 */
+	public long getVersion() {
+		return mVersion;
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.sensor;
+
+/**
+ * Calculates the orientation of the device from the sensor values. The
+ * {@link BeyondarSensorManager} registers the sensors returned by
+ * {@link #getSensorTypes()} and sends their values to the source, see
+ * {@link BeyondarSensorManager#setOrientationSource(OrientationSource)}.<br>
+ * The manager reads the orientation after each sensor update that changes it
+ * and publishes it as an {@link OrientationSnapshot}, so the consumers do not
+ * use the source directly. The source can be reset from other threads, so the
+ * implementations have to be thread safe.
+ */
+public interface OrientationSource {
+
+	/**
+	 * Get the sensors needed by the source.
+	 * 
+	 * @return The {@link android.hardware.Sensor} types.
+	 */
+	public int[] getSensorTypes();
+
+	/**
+	 * Add the values of a sensor.
+	 * 
+	 * @param sensorType
+	 *            The {@link android.hardware.Sensor} type.
+	 * @param values
+	 *            The values of the sensor. They can be modified after the call,
+	 *            so they have to be copied if they are kept.
+	 * @param timestamp
+	 *            Time of the values in ns.
+	 * @return true if the orientation has changed.
+	 */
+	public boolean onSensorChanged(int sensorType, float[] values, long timestamp);
+
+	/**
+	 * Get the orientation of the device.
+	 * 
+	 * @param R
+	 *            Rotation matrix (9 or 16 values) from the device coordinate
+	 *            system to the world, like
+	 *            {@link android.hardware.SensorManager#getRotationMatrix}.
+	 * @return false if the orientation is not known yet, R is not modified.
+	 */
+	public boolean getRotationMatrix(float[] R);
+
+	/**
+	 * Forget the previous values, for instance when the sensors are
+	 * unregistered.
+	 */
+	public void reset();
+}
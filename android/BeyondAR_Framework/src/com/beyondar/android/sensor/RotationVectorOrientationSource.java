@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.sensor;
+
+import android.hardware.Sensor;
+
+/**
+ * {@link OrientationSource} that uses the rotation vector sensor, fused by the
+ * device.
+ */
+public class RotationVectorOrientationSource implements OrientationSource {
+
+	private static final int[] SENSOR_TYPES = { Sensor.TYPE_ROTATION_VECTOR };
+
+	private final float[] mRotationVector = new float[4];
+	private boolean mHasValues;
+
+	@Override
+	public int[] getSensorTypes() {
+		return SENSOR_TYPES;
+	}
+
+	@Override
+	public synchronized boolean onSensorChanged(int sensorType, float[] values, long timestamp) {
+		if (sensorType != Sensor.TYPE_ROTATION_VECTOR) {
+			return false;
+		}
+		mRotationVector[0] = values[0];
+		mRotationVector[1] = values[1];
+		mRotationVector[2] = values[2];
+		if (values.length >= 4) {
+			mRotationVector[3] = values[3];
+		} else {
+			// Before API 18 the scalar component is optional
+			float w = 1 - values[0] * values[0] - values[1] * values[1] - values[2] * values[2];
+			mRotationVector[3] = w > 0 ? (float) Math.sqrt(w) : 0;
+		}
+		mHasValues = true;
+		return true;
+	}
+
+	@Override
+	public synchronized boolean getRotationMatrix(float[] R) {
+		if (!mHasValues) {
+			return false;
+		}
+		SensorMath.getRotationMatrixFromVector(R, mRotationVector);
+		return true;
+	}
+
+	@Override
+	public synchronized void reset() {
+		mHasValues = false;
+	}
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.sensor;
+
+/**
+ * Pure Java rotation math used by the {@link OrientationSource}s. It follows
+ * the conventions of {@link android.hardware.SensorManager}: the rotation
+ * matrices transform a vector from the device coordinate system to the world
+ * coordinate system (East, North, Up) and can have 9 (3x3) or 16 (4x4) values
+ * in row-major order. The quaternions are stored as {w, x, y, z}.<br>
+ * It does not depend on Android, so it can be used in the JVM to process
+ * recorded sensor values.
+ */
+public final class SensorMath {
+
+	private SensorMath() {
+	}
+
+	/**
+	 * Same as {@link android.hardware.SensorManager#getRotationMatrix} without
+	 * the inclination matrix.
+	 *
+	 * @param R
+	 *            Rotation matrix (9 or 16 values).
+	 * @param gravity
+	 *            Accelerometer values.
+	 * @param geomagnetic
+	 *            Magnetic field values.
+	 * @return false if the values can not be used, for instance in free fall
+	 *         or close to the magnetic north pole.
+	 */
+	public static boolean getRotationMatrix(float[] R, float[] gravity, float[] geomagnetic) {
+		float ax = gravity[0];
+		float ay = gravity[1];
+		float az = gravity[2];
+		final float ex = geomagnetic[0];
+		final float ey = geomagnetic[1];
+		final float ez = geomagnetic[2];
+		float hx = ey * az - ez * ay;
+		float hy = ez * ax - ex * az;
+		float hz = ex * ay - ey * ax;
+		final float normH = (float) Math.sqrt(hx * hx + hy * hy + hz * hz);
+		if (normH < 0.1f) {
+			return false;
+		}
+		final float invH = 1.0f / normH;
+		hx *= invH;
+		hy *= invH;
+		hz *= invH;
+		final float invA = 1.0f / (float) Math.sqrt(ax * ax + ay * ay + az * az);
+		ax *= invA;
+		ay *= invA;
+		az *= invA;
+		final float mx = ay * hz - az * hy;
+		final float my = az * hx - ax * hz;
+		final float mz = ax * hy - ay * hx;
+		setMatrix(R, hx, hy, hz, mx, my, mz, ax, ay, az);
+		return true;
+	}
+
+	/**
+	 * Same as {@link android.hardware.SensorManager#getRotationMatrixFromVector}
+	 * .
+	 *
+	 * @param R
+	 *            Rotation matrix (9 or 16 values).
+	 * @param rotationVector
+	 *            Values of the rotation vector sensor.
+	 */
+	public static void getRotationMatrixFromVector(float[] R, float[] rotationVector) {
+		float x = rotationVector[0];
+		float y = rotationVector[1];
+		float z = rotationVector[2];
+		float w;
+		if (rotationVector.length >= 4) {
+			w = rotationVector[3];
+		} else {
+			w = 1 - x * x - y * y - z * z;
+			w = w > 0 ? (float) Math.sqrt(w) : 0;
+		}
+		quaternionToRotationMatrix(w, x, y, z, R);
+	}
+
+	/**
+	 * Same as {@link android.hardware.SensorManager#getOrientation}.
+	 *
+	 * @param R
+	 *            Rotation matrix (9 or 16 values).
+	 * @param values
+	 *            Array of 3 values where the azimuth, pitch and roll (radians)
+	 *            are stored.
+	 * @return values
+	 */
+	public static float[] getOrientation(float[] R, float[] values) {
+		if (R.length == 9) {
+			values[0] = (float) Math.atan2(R[1], R[4]);
+			values[1] = (float) Math.asin(-R[7]);
+			values[2] = (float) Math.atan2(-R[6], R[8]);
+		} else {
+			values[0] = (float) Math.atan2(R[1], R[5]);
+			values[1] = (float) Math.asin(-R[9]);
+			values[2] = (float) Math.atan2(-R[8], R[10]);
+		}
+		return values;
+	}
+
+	/**
+	 * Convert a unit quaternion to a rotation matrix.
+	 *
+	 * @param w
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @param R
+	 *            Rotation matrix (9 or 16 values).
+	 */
+	public static void quaternionToRotationMatrix(float w, float x, float y, float z, float[] R) {
+		final float sqX = 2 * x * x;
+		final float sqY = 2 * y * y;
+		final float sqZ = 2 * z * z;
+		final float xy = 2 * x * y;
+		final float zw = 2 * z * w;
+		final float xz = 2 * x * z;
+		final float yw = 2 * y * w;
+		final float yz = 2 * y * z;
+		final float xw = 2 * x * w;
+		setMatrix(R, 1 - sqY - sqZ, xy - zw, xz + yw, xy + zw, 1 - sqX - sqZ, yz - xw, xz - yw, yz + xw, 1
+				- sqX - sqY);
+	}
+
+	/**
+	 * Convert a rotation matrix to a unit quaternion.
+	 *
+	 * @param R
+	 *            Rotation matrix (9 or 16 values).
+	 * @param q
+	 *            Quaternion {w, x, y, z}.
+	 */
+	public static void rotationMatrixToQuaternion(float[] R, float[] q) {
+		final int stride = R.length == 16 ? 4 : 3;
+		final float m00 = R[0];
+		final float m01 = R[1];
+		final float m02 = R[2];
+		final float m10 = R[stride];
+		final float m11 = R[stride + 1];
+		final float m12 = R[stride + 2];
+		final float m20 = R[2 * stride];
+		final float m21 = R[2 * stride + 1];
+		final float m22 = R[2 * stride + 2];
+		final float trace = m00 + m11 + m22;
+		float w, x, y, z;
+		if (trace > 0) {
+			float s = (float) Math.sqrt(trace + 1) * 2;
+			w = 0.25f * s;
+			x = (m21 - m12) / s;
+			y = (m02 - m20) / s;
+			z = (m10 - m01) / s;
+		} else if (m00 > m11 && m00 > m22) {
+			float s = (float) Math.sqrt(1 + m00 - m11 - m22) * 2;
+			w = (m21 - m12) / s;
+			x = 0.25f * s;
+			y = (m01 + m10) / s;
+			z = (m02 + m20) / s;
+		} else if (m11 > m22) {
+			float s = (float) Math.sqrt(1 + m11 - m00 - m22) * 2;
+			w = (m02 - m20) / s;
+			x = (m01 + m10) / s;
+			y = 0.25f * s;
+			z = (m12 + m21) / s;
+		} else {
+			float s = (float) Math.sqrt(1 + m22 - m00 - m11) * 2;
+			w = (m10 - m01) / s;
+			x = (m02 + m20) / s;
+			y = (m12 + m21) / s;
+			z = 0.25f * s;
+		}
+		q[0] = w;
+		q[1] = x;
+		q[2] = y;
+		q[3] = z;
+		normalizeQuaternion(q);
+	}
+
+	/**
+	 * Normalize a quaternion {w, x, y, z}.
+	 *
+	 * @param q
+	 */
+	public static void normalizeQuaternion(float[] q) {
+		float norm = (float) Math.sqrt(q[0] * q[0] + q[1] * q[1] + q[2] * q[2] + q[3] * q[3]);
+		if (norm == 0) {
+			q[0] = 1;
+			q[1] = q[2] = q[3] = 0;
+			return;
+		}
+		float inv = 1 / norm;
+		q[0] *= inv;
+		q[1] *= inv;
+		q[2] *= inv;
+		q[3] *= inv;
+	}
+
+	/**
+	 * Rotate the quaternion by the angular velocity measured in the device
+	 * coordinate system (gyroscope values) during the given time. The result is
+	 * normalized.
+	 *
+	 * @param q
+	 *            Quaternion {w, x, y, z} updated in place.
+	 * @param wx
+	 *            Angular velocity around x (rad/s).
+	 * @param wy
+	 *            Angular velocity around y (rad/s).
+	 * @param wz
+	 *            Angular velocity around z (rad/s).
+	 * @param dt
+	 *            Time in seconds.
+	 */
+	public static void integrateAngularVelocity(float[] q, float wx, float wy, float wz, float dt) {
+		float magnitude = (float) Math.sqrt(wx * wx + wy * wy + wz * wz);
+		if (magnitude * dt < 1e-9f) {
+			return;
+		}
+		float halfAngle = magnitude * dt * 0.5f;
+		float sin = (float) Math.sin(halfAngle) / magnitude;
+		float dw = (float) Math.cos(halfAngle);
+		float dx = wx * sin;
+		float dy = wy * sin;
+		float dz = wz * sin;
+		// q = q * dq, the rotation is relative to the device
+		float w = q[0], x = q[1], y = q[2], z = q[3];
+		q[0] = w * dw - x * dx - y * dy - z * dz;
+		q[1] = w * dx + x * dw + y * dz - z * dy;
+		q[2] = w * dy - x * dz + y * dw + z * dx;
+		q[3] = w * dz + x * dy - y * dx + z * dw;
+		normalizeQuaternion(q);
+	}
+
+	/**
+	 * Interpolate from the quaternion q towards the target following the
+	 * shortest path. The result is normalized and stored in q.
+	 *
+	 * @param q
+	 *            Quaternion {w, x, y, z} updated in place.
+	 * @param target
+	 *            Quaternion {w, x, y, z}.
+	 * @param t
+	 *            From 0 (q) to 1 (target).
+	 */
+	public static void interpolateQuaternion(float[] q, float[] target, float t) {
+		float dot = q[0] * target[0] + q[1] * target[1] + q[2] * target[2] + q[3] * target[3];
+		float sign = dot < 0 ? -1 : 1;
+		for (int i = 0; i < 4; i++) {
+			q[i] = q[i] + t * (sign * target[i] - q[i]);
+		}
+		normalizeQuaternion(q);
+	}
+
+	private static void setMatrix(float[] R, float m00, float m01, float m02, float m10, float m11,
+			float m12, float m20, float m21, float m22) {
+		if (R.length == 9) {
+			R[0] = m00;
+			R[1] = m01;
+			R[2] = m02;
+			R[3] = m10;
+			R[4] = m11;
+			R[5] = m12;
+			R[6] = m20;
+			R[7] = m21;
+			R[8] = m22;
+		} else if (R.length == 16) {
+			R[0] = m00;
+			R[1] = m01;
+			R[2] = m02;
+			R[3] = 0;
+			R[4] = m10;
+			R[5] = m11;
+			R[6] = m12;
+			R[7] = 0;
+			R[8] = m20;
+			R[9] = m21;
+			R[10] = m22;
+			R[11] = 0;
+			R[12] = R[13] = R[14] = 0;
+			R[15] = 1;
+		} else {
+			throw new IllegalArgumentException("The rotation matrix needs 9 or 16 values");
+		}
+	}
+}
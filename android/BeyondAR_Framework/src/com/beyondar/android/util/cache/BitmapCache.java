@@ -15,18 +15,28 @@
  */
 package com.beyondar.android.util.cache;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.Map;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import android.content.res.AssetManager;
 import android.content.res.Resources;
@@ -44,10 +54,17 @@ public class BitmapCache {
 	public static final int IMAGE_IN_PROGRESS = 2;
 	public static final int ERROR_LOADING_IMAGE = 3;
 	
-	private static final int MAXIMUM_POOL_SIZE = 10;
-	private static final int CORE_POOL_SIZE = 4;
+	/** Max amount of images loaded at the same time. */
+	private static final int POOL_SIZE = 4;
 	private static final int KEEP_ALIVE_THREAD = 5000;
 
+	private static final int BUFFER_SIZE = 16 * 1024;
+	/**
+	 * Bytes that can be read to decode the image bounds before resetting the
+	 * stream.
+	 */
+	private static final int MARK_LIMIT = 64 * 1024;
+
 	private static final String TAG = "bitmapHolder";
 
 	/** Default cache size. 6 MB */
@@ -55,6 +72,12 @@ public class BitmapCache {
 
 	public static final int DEFAULT_TIME_OUT = 30000;
 
+	/**
+	 * Default time (ms) that an image stored in the {@link DiskCache} is used
+	 * without asking the server if it has changed. 24 hours
+	 */
+	public static final long DEFAULT_REVALIDATE_TIME = 24 * 60 * 60 * 1000;
+
 	public static final int DEFAULT_MAX_WIDTH = 256;
 	public static final int DEFAULT_MAX_HEIGHT = 256;
 
@@ -78,10 +101,16 @@ public class BitmapCache {
 
 	private BitmapCacheContainer mBitmapContainer;
 
-	private ArrayList<OnExternalBitmapLoadedCacheListener> mOnLoadBitmapListener;
-	
+	private CopyOnWriteArrayList<OnExternalBitmapLoadedCacheListener> mOnLoadBitmapListener;
+
 	private ThreadPoolExecutor mThreadPool;
-	private BlockingQueue<Runnable> mBlockingQueue;
+	private ConcurrentHashMap<String, LoadBitmapTask> mInFlightTasks;
+
+	private volatile DiskCache mDiskCache;
+	// Used to create mDiskCache the first time that it is needed
+	private File mDiskCacheDirectory;
+	private long mDiskCacheMaxSize;
+	private volatile long mRevalidateTime = DEFAULT_REVALIDATE_TIME;
 
 
 	private class BitmapCacheContainer extends LruCache<String, Bitmap> {
@@ -202,8 +231,11 @@ public class BitmapCache {
 		mBitmapContainer = new BitmapCacheContainer(cacheSize, alwaysPurge);
 		mLoadingResources = new Hashtable<String, Integer>();
 		
-		mBlockingQueue = new ArrayBlockingQueue<Runnable>(MAXIMUM_POOL_SIZE);
-		mThreadPool = new ThreadPoolExecutor(CORE_POOL_SIZE, MAXIMUM_POOL_SIZE, KEEP_ALIVE_THREAD, TimeUnit.MILLISECONDS, mBlockingQueue);
+		mOnLoadBitmapListener = new CopyOnWriteArrayList<OnExternalBitmapLoadedCacheListener>();
+		mInFlightTasks = new ConcurrentHashMap<String, LoadBitmapTask>();
+		mThreadPool = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, KEEP_ALIVE_THREAD,
+				TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+		mThreadPool.allowCoreThreadTimeOut(true);
 	}
 
 	public BitmapFactory.Options getOptimizedBitmapOption() {
@@ -233,8 +265,85 @@ public class BitmapCache {
 	}
 
 	public BitmapCache newCache(int cacheSize, String id, boolean alwaysPurge) {
-		return new BitmapCache(mRes, DEFAULT_MAX_WIDTH, DEFAULT_MAX_HEIGHT, cacheSize, id,
+		BitmapCache cache = new BitmapCache(mRes, DEFAULT_MAX_WIDTH, DEFAULT_MAX_HEIGHT, cacheSize, id,
 				alwaysPurge);
+		synchronized (this) {
+			cache.mDiskCache = mDiskCache;
+			cache.mDiskCacheDirectory = mDiskCacheDirectory;
+			cache.mDiskCacheMaxSize = mDiskCacheMaxSize;
+		}
+		cache.setRevalidateTime(mRevalidateTime);
+		return cache;
+	}
+
+	/**
+	 * Set the {@link DiskCache} used to store the images downloaded from the
+	 * network, so they do not need to be downloaded again when the
+	 * application is restarted or when they are removed from the memory
+	 * cache.
+	 * 
+	 * @param diskCache
+	 *            The disk cache or null to disable it.
+	 */
+	public synchronized void setDiskCache(DiskCache diskCache) {
+		mDiskCache = diskCache;
+		mDiskCacheDirectory = null;
+	}
+
+	/**
+	 * Set the directory of the {@link DiskCache} used to store the images
+	 * downloaded from the network. The cache is got with
+	 * {@link DiskCache#getInstance(File, long)} the first time that an image
+	 * is downloaded, so the caches that never download an image do not
+	 * create it.
+	 * 
+	 * @param directory
+	 *            Directory of the disk cache.
+	 * @param maxSize
+	 *            Max amount of bytes to store.
+	 */
+	public synchronized void setDiskCache(File directory, long maxSize) {
+		mDiskCache = null;
+		mDiskCacheDirectory = directory;
+		mDiskCacheMaxSize = maxSize;
+	}
+
+	/**
+	 * Get the {@link DiskCache}, creating it if only its directory has been
+	 * set.
+	 * 
+	 * @return The disk cache or null if it is disabled.
+	 */
+	public DiskCache getDiskCache() {
+		DiskCache diskCache = mDiskCache;
+		if (diskCache != null) {
+			return diskCache;
+		}
+		synchronized (this) {
+			if (mDiskCache == null && mDiskCacheDirectory != null) {
+				mDiskCache = DiskCache.getInstance(mDiskCacheDirectory, mDiskCacheMaxSize);
+			}
+			return mDiskCache;
+		}
+	}
+
+	/**
+	 * Set the time (ms) that an image stored in the {@link DiskCache} is used
+	 * without asking the server if it has changed. After that time the
+	 * ETag/Last-Modified of the stored image are sent to the server and the
+	 * image is only downloaded again if it has changed. If the server can not
+	 * be reached the stored image is used.
+	 * 
+	 * @param revalidateTime
+	 *            Time in ms. Use 0 to check it every time that the image is
+	 *            not in the memory cache.
+	 */
+	public void setRevalidateTime(long revalidateTime) {
+		mRevalidateTime = revalidateTime;
+	}
+
+	public long getRevalidateTime() {
+		return mRevalidateTime;
 	}
 
 	/**
@@ -244,9 +353,9 @@ public class BitmapCache {
 		if (DEBUG_CACHE) {
 			cacheLogD(mIdCache + "  --- Cleaning the images");
 		}
+		cancelPendingTasks();
 		mBitmapContainer.evictAll();
 		mLoadingResources.clear();
-		mBlockingQueue.clear();
 		System.gc();
 	}
 
@@ -266,12 +375,19 @@ public class BitmapCache {
 		if (DEBUG_CACHE) {
 			cacheLogD(mIdCache + "  --- Purging all the images");
 		}
+		cancelPendingTasks();
 		mBitmapContainer.purge();
 		mLoadingResources.clear();
-		mBlockingQueue.clear();
 		System.gc();
 	}
 
+	private void cancelPendingTasks() {
+		for (LoadBitmapTask task : mInFlightTasks.values()) {
+			task.cancel(false);
+		}
+		mThreadPool.purge();
+	}
+
 	public static int calculateInSampleSize(BitmapFactory.Options options, int reqWidth,
 			int reqHeight) {
 		// Raw height and width of image
@@ -336,9 +452,9 @@ public class BitmapCache {
 		mLoadingResources.remove(uri);
 	}
 
-	// TODO: Comment it in a properly way
 	/**
-	 * Load the bitmap according form the specified URI.
+	 * Load the bitmap according form the specified URI. The network images
+	 * are loaded asynchronously, so null is returned for them.
 	 * 
 	 * @param uri
 	 * @return
@@ -347,7 +463,24 @@ public class BitmapCache {
 		if (null == uri) {
 			return null;
 		}
+		if (isNetworkUri(uri)) {
+			return requestDownloadBitmap(uri);
+		}
+		return loadAndStoreBitmap(uri);
+	}
 
+	private static boolean isNetworkUri(String uri) {
+		return uri.startsWith(HEADER_HTTP) || uri.startsWith(HEADER_HTTPS);
+	}
+
+	/**
+	 * Load the bitmap from its source (including the network) in the current
+	 * thread and store it.
+	 * 
+	 * @param uri
+	 * @return
+	 */
+	private Bitmap loadAndStoreBitmap(String uri) {
 		if (DEBUG_CACHE) {
 			cacheLogD(mIdCache + "  +++ loading new bitmap: " + uri);
 		}
@@ -363,28 +496,9 @@ public class BitmapCache {
 				btm = null;
 			}
 		} else if (uri.startsWith(HEADER_ASSETS)) {
-			String path = uri.replace(HEADER_ASSETS, "");
-			AssetManager assets = mRes.getAssets();
-			try {
-				InputStream is = assets.open(path);
-
-				Options options = getOptimizedBitmapOption();
-				if (options.inJustDecodeBounds) {
-					DebugBitmap.decodeStream(is, null, options, path);
-					options.inSampleSize = calculateInSampleSize(options, mMaxWidth, mMaxHeight);
-					options.inJustDecodeBounds = false;
-				}
-
-				is.close();
-				is = assets.open(path);
-				btm = DebugBitmap.decodeStream(is, null, options, path);
-
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
-
-		} else if (uri.startsWith(HEADER_HTTP) || uri.startsWith(HEADER_HTTPS)) {
-			btm = requestDownloadBitmap(uri);
+			btm = loadImageFromAssets(uri.replace(HEADER_ASSETS, ""));
+		} else if (isNetworkUri(uri)) {
+			btm = loadImageFromNetwork(uri);
 		} else if (uri.startsWith(HEADER_FILE) || uri.startsWith(HEADER_FILE_)) {
 			String sRes = uri.replaceFirst(HEADER_FILE, "");
 			btm = loadImageFromFile(sRes);
@@ -400,6 +514,141 @@ public class BitmapCache {
 		return btm;
 	}
 
+	private Bitmap loadImageFromAssets(String path) {
+		AssetManager assets = mRes.getAssets();
+		InputStream is = null;
+		try {
+			is = new BufferedInputStream(assets.open(path), BUFFER_SIZE);
+			Options options = getOptimizedBitmapOption();
+			if (options.inJustDecodeBounds) {
+				is.mark(MARK_LIMIT);
+				DebugBitmap.decodeStream(is, null, options, path);
+				options.inSampleSize = calculateInSampleSize(options, mMaxWidth, mMaxHeight);
+				options.inJustDecodeBounds = false;
+				try {
+					is.reset();
+				} catch (IOException e) {
+					// The header was bigger than the mark limit
+					is.close();
+					is = new BufferedInputStream(assets.open(path), BUFFER_SIZE);
+				}
+			}
+			return DebugBitmap.decodeStream(is, null, options, path);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		} finally {
+			closeQuietly(is);
+		}
+	}
+
+	private Bitmap loadImageFromNetwork(String uri) {
+		DiskCache diskCache = getDiskCache();
+		DiskCache.Entry entry = diskCache == null ? null : diskCache.getEntry(uri);
+		if (entry != null
+				&& System.currentTimeMillis() - entry.getValidatedTime() < mRevalidateTime) {
+			Bitmap btm = decodeByteArray(diskCache.get(uri));
+			if (btm != null) {
+				return btm;
+			}
+			entry = null;
+		}
+
+		if (DEBUG_CACHE) {
+			cacheLogD(mIdCache + " ||||||||||   Obtaining the image from internet: " + uri);
+		}
+		InputStream is = null;
+		try {
+			URLConnection urlConn = new URL(uri).openConnection();
+			urlConn.setConnectTimeout(DEFAULT_TIME_OUT);
+			urlConn.setReadTimeout(DEFAULT_TIME_OUT);
+			urlConn.setAllowUserInteraction(false);
+			if (entry != null) {
+				if (entry.getETag() != null) {
+					urlConn.setRequestProperty("If-None-Match", entry.getETag());
+				}
+				if (entry.getLastModified() != null) {
+					urlConn.setRequestProperty("If-Modified-Since", entry.getLastModified());
+				}
+			}
+			if (entry != null && urlConn instanceof HttpURLConnection
+					&& ((HttpURLConnection) urlConn).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+				diskCache.markValidated(uri);
+				Bitmap btm = decodeByteArray(diskCache.get(uri));
+				if (btm != null) {
+					return btm;
+				}
+				// The stored image is not valid anymore, download it again
+				((HttpURLConnection) urlConn).disconnect();
+				diskCache.remove(uri);
+				return loadImageFromNetwork(uri);
+			}
+			is = urlConn.getInputStream();
+			byte[] data = readFully(is);
+			Bitmap btm = decodeByteArray(data);
+			if (btm != null && diskCache != null) {
+				diskCache.put(uri, data, urlConn.getHeaderField("ETag"),
+						urlConn.getHeaderField("Last-Modified"));
+			}
+			return btm;
+		} catch (MalformedURLException e) {
+			String strData = mIdCache + " Error getting the image form internet: " + e;
+			cacheLogE(strData);
+			Logger.e(TAG, strData);
+		} catch (IOException e) {
+			String strData = mIdCache + " Error getting the image form internet: " + e;
+			cacheLogE(strData);
+			Logger.e(TAG, strData);
+			if (entry != null) {
+				// Use the stored image while the server can not be reached
+				return decodeByteArray(diskCache.get(uri));
+			}
+		} finally {
+			closeQuietly(is);
+		}
+		return null;
+	}
+
+	/**
+	 * Decode an image that is already in memory, so its source is only read
+	 * once.
+	 * 
+	 * @param data
+	 * @return
+	 */
+	private Bitmap decodeByteArray(byte[] data) {
+		if (data == null || data.length == 0) {
+			return null;
+		}
+		Options options = getOptimizedBitmapOption();
+		if (options.inJustDecodeBounds) {
+			BitmapFactory.decodeByteArray(data, 0, data.length, options);
+			options.inSampleSize = calculateInSampleSize(options, mMaxWidth, mMaxHeight);
+			options.inJustDecodeBounds = false;
+		}
+		return DebugBitmap.decodeByteArray(data, 0, data.length, options);
+	}
+
+	private static byte[] readFully(InputStream is) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int read;
+		while ((read = is.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	private static void closeQuietly(InputStream is) {
+		if (is == null) {
+			return;
+		}
+		try {
+			is.close();
+		} catch (IOException e) {
+		}
+	}
+
 	private Bitmap loadBitmap(int id) {
 		String key = normalizeURI(id);
 		Bitmap btm = mBitmapContainer.get(key);
@@ -477,6 +726,64 @@ public class BitmapCache {
 		return btm;
 	}
 
+	/**
+	 * Get the Bitmap only if it is already stored in the cache. It never
+	 * blocks the calling thread.
+	 * 
+	 * @param uri
+	 * @return The Bitmap or null if it is not loaded.
+	 */
+	public Bitmap getCachedBitmap(String uri) {
+		if (uri == null) {
+			return null;
+		}
+		Bitmap btm = mBitmapContainer.get(uri);
+		if (btm == null || btm.isRecycled()) {
+			return null;
+		}
+		return btm;
+	}
+
+	/**
+	 * Load the Bitmap in a background thread. If the same URI is already
+	 * being loaded the same {@link Future} is returned, so each image is only
+	 * decoded once. When the image is loaded the
+	 * {@link OnExternalBitmapLoadedCacheListener}s are notified.<br>
+	 * Use this method from threads that can not be blocked, like the GL
+	 * thread.
+	 * 
+	 * @param uri
+	 * @return A {@link Future} with the Bitmap (null if it can not be loaded).
+	 */
+	public Future<Bitmap> loadBitmapAsync(String uri) {
+		Bitmap btm = getCachedBitmap(uri);
+		if (btm != null || uri == null) {
+			return new LoadedBitmap(btm);
+		}
+		LoadBitmapTask task = mInFlightTasks.get(uri);
+		if (task != null) {
+			return task;
+		}
+		task = new LoadBitmapTask(uri);
+		LoadBitmapTask existing = mInFlightTasks.putIfAbsent(uri, task);
+		if (existing != null) {
+			return existing;
+		}
+		mLoadingResources.put(uri, IMAGE_IN_PROGRESS);
+		mThreadPool.execute(task);
+		return task;
+	}
+
+	/**
+	 * Check if the image is being loaded in a background thread.
+	 * 
+	 * @param uri
+	 * @return
+	 */
+	public boolean isLoadingAsync(String uri) {
+		return uri != null && mInFlightTasks.containsKey(uri);
+	}
+
 	public boolean isImageLoaded(String uri) {
 		Bitmap btm = mBitmapContainer.get(uri);
 
@@ -493,12 +800,7 @@ public class BitmapCache {
 	 * @param listener
 	 */
 	public void addOnExternalBitmapLoadedCahceListener(OnExternalBitmapLoadedCacheListener listener) {
-		if (mOnLoadBitmapListener == null) {
-			mOnLoadBitmapListener = new ArrayList<OnExternalBitmapLoadedCacheListener>();
-		}
-		if (!mOnLoadBitmapListener.contains(listener)) {
-			mOnLoadBitmapListener.add(listener);
-		}
+		mOnLoadBitmapListener.addIfAbsent(listener);
 	}
 
 	/**
@@ -509,9 +811,6 @@ public class BitmapCache {
 	 */
 	public boolean removeOnExternalBitmapLoadedCacheListener(
             OnExternalBitmapLoadedCacheListener listener) {
-		if (mOnLoadBitmapListener == null) {
-			return true;
-		}
 		return mOnLoadBitmapListener.remove(listener);
 	}
 
@@ -525,12 +824,16 @@ public class BitmapCache {
 		return HEADER_RESOURCE + res;
 	}
 
+	/**
+	 * Request to download the image in a background thread. The
+	 * {@link OnExternalBitmapLoadedCacheListener}s are notified when it is
+	 * ready.
+	 * 
+	 * @param uri
+	 * @return null
+	 */
 	public Bitmap requestDownloadBitmap(String uri) {
-		Integer state = mLoadingResources.get(uri);
-		if (state == null || state == IMAGE_NOT_LOADED || state == ERROR_LOADING_IMAGE) {
-			mLoadingResources.put(uri, IMAGE_IN_PROGRESS);
-			mThreadPool.execute(new TaskLoadHttpBitmap(uri));
-		}
+		loadBitmapAsync(uri);
 		return null;
 	}
 
@@ -546,83 +849,98 @@ public class BitmapCache {
 		Logger.e(TAG, msg);
 	}
 
-	private class TaskLoadHttpBitmap implements Runnable {
-
-		private Bitmap mBtm;
-		private String mUri;
-
-		public TaskLoadHttpBitmap(String uri) {
-			super();
+	/**
+	 * Loads one URI in the thread pool. When it finishes it is removed from
+	 * the in flight tasks and the listeners are notified.
+	 */
+	private class LoadBitmapTask extends FutureTask<Bitmap> {
+
+		private final String mUri;
+
+		LoadBitmapTask(final String uri) {
+			super(new Callable<Bitmap>() {
+				@Override
+				public Bitmap call() throws Exception {
+					long time = System.currentTimeMillis();
+					Bitmap btm = loadAndStoreBitmap(uri);
+					if (btm != null) {
+						cacheLogD(mIdCache + " Image loaded (" + (System.currentTimeMillis() - time)
+								+ " ms): " + uri);
+					}
+					return btm;
+				}
+			});
 			mUri = uri;
 		}
 
 		@Override
-		public void run() {
-			long time = System.currentTimeMillis();
-			Bitmap btm = null;
-
-			if (DEBUG_CACHE) {
-				cacheLogD(mIdCache + " ||||||||||   Obtaining the image from internet: " + mUri);
+		protected void done() {
+			mInFlightTasks.remove(mUri, this);
+			if (isCancelled()) {
+				mLoadingResources.remove(mUri);
+				return;
 			}
-			URL url;
+			Bitmap btm = null;
 			try {
-				url = new URL(mUri);
-				URLConnection urlConn = url.openConnection();
-				urlConn.setConnectTimeout(DEFAULT_TIME_OUT);
-				urlConn.setAllowUserInteraction(false);
-				urlConn.setDoOutput(true);
-
-				InputStream is = url.openStream();// urlConn.getInputStream();
-				// Big image:
-				// http://ettugamer.com/wp-content/gallery/marvel-vs-capcom-3-3/marvel_vs_capcom_3_ironman.png
-
-				Options options = getOptimizedBitmapOption();
-				if (options.inJustDecodeBounds) {
-					DebugBitmap.decodeStream(is, null, options, mUri);
-					options.inSampleSize = calculateInSampleSize(options, mMaxWidth, mMaxHeight);
-					options.inJustDecodeBounds = false;
-				}
-
-				is.close();
-				is = url.openStream();
-				btm = DebugBitmap.decodeStream(is, null, options, mUri);
-
-			} catch (MalformedURLException e) {
-				String strData = mIdCache + " Error getting the image form internet: " + e;
-				cacheLogE(strData);
-				Logger.e(TAG, strData);
-			} catch (IOException e) {
-				String strData = mIdCache + " Error getting the image form internet: " + e;
-				cacheLogE(strData);
-				Logger.e(TAG, strData);
+				btm = get();
+			} catch (InterruptedException e) {
+			} catch (ExecutionException e) {
+				Logger.e(TAG, mIdCache + " Error loading the image " + mUri + ": " + e.getCause());
 			}
+			if (btm == null) {
+				mLoadingResources.put(mUri, ERROR_LOADING_IMAGE);
+				return;
+			}
+			for (OnExternalBitmapLoadedCacheListener listener : mOnLoadBitmapListener) {
+				listener.onExternalBitmapLoaded(BitmapCache.this, mUri, btm);
+			}
+		}
+	}
+
+	/**
+	 * {@link Future} for a Bitmap that is already available.
+	 */
+	private static class LoadedBitmap implements Future<Bitmap> {
+
+		private final Bitmap mBtm;
+
+		LoadedBitmap(Bitmap btm) {
 			mBtm = btm;
+		}
 
-			if (mBtm != null) {
-				storeBitmap(mUri, mBtm);
-				cacheLogD(mIdCache + " Image loaded form internet ("
-						+ (System.currentTimeMillis() - time) + " ms): " + mUri);
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			return false;
+		}
 
-				if (mOnLoadBitmapListener != null) {
-					for (int i = 0; i < mOnLoadBitmapListener.size(); i++) {
-						mOnLoadBitmapListener.get(i).onExternalBitmapLoaded(BitmapCache.this, mUri,
-								mBtm);
-					}
-				}
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
 
-			} else {
-				mLoadingResources.put(mUri, ERROR_LOADING_IMAGE);
-			}
+		@Override
+		public boolean isDone() {
+			return true;
+		}
 
+		@Override
+		public Bitmap get() {
+			return mBtm;
 		}
 
+		@Override
+		public Bitmap get(long timeout, TimeUnit unit) throws TimeoutException {
+			return mBtm;
+		}
 	}
 
 	public static interface OnExternalBitmapLoadedCacheListener {
 
 		/**
-		 * This method is called when an external image (such as a network
-		 * image) is loaded and stored in the cache.
+		 * This method is called when an image loaded in a background thread
+		 * (such as a network image or any image requested with
+		 * {@link BitmapCache#loadBitmapAsync(String)}) is loaded and stored in
+		 * the cache. It is called from the loading thread.
 		 * 
 		 * @param cache
 		 *            The cache that contains this bitmap.
@@ -0,0 +1,671 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.util.cache;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Size bounded cache that stores byte arrays (like downloaded images) in a
+ * directory. The least recently used entries are deleted when the size
+ * limit is reached.<br>
+ * The files are named with the SHA-1 of the key and they are written to a
+ * temporary file that is renamed when it is complete, so a crash never
+ * leaves a partial entry. The state of the cache (entries, access order and
+ * the HTTP validators ETag and Last-Modified) is kept in an append only
+ * journal that is compacted when it grows too much.<br>
+ * The directory is read the first time that the cache is used, so creating
+ * the cache does not access the disk. It has no Android dependencies.
+ */
+public class DiskCache {
+
+	/** Default max size of the cache. 10 MB */
+	public static final long DEFAULT_MAX_SIZE = 10 * 1024 * 1024;
+
+	static final String JOURNAL_FILE = "journal";
+	static final String JOURNAL_FILE_TMP = "journal.tmp";
+	static final String TMP_SUFFIX = ".tmp";
+
+	private static final String OP_PUT = "PUT";
+	private static final String OP_READ = "READ";
+	private static final String OP_VALID = "VALID";
+	private static final String OP_DEL = "DEL";
+	private static final String SEPARATOR = "\t";
+	private static final String ENCODING = "UTF-8";
+
+	private static final int COMPACT_THRESHOLD = 2000;
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	/** Caches created with {@link #getInstance(File, long)}, by directory. */
+	private static final HashMap<String, DiskCache> sInstances = new HashMap<String, DiskCache>();
+
+	private final File mDirectory;
+	private final long mMaxSize;
+
+	private LinkedHashMap<String, Entry> mEntries;
+	private Writer mJournalWriter;
+	private long mSize;
+	private int mRedundantOps;
+
+	/**
+	 * Information stored for each key.
+	 */
+	public static class Entry {
+		final String key;
+		final String fileName;
+		long length;
+		long validatedTime;
+		String eTag;
+		String lastModified;
+
+		Entry(String key, String fileName) {
+			this.key = key;
+			this.fileName = fileName;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		/**
+		 * Get the size of the data (bytes).
+		 *
+		 * @return
+		 */
+		public long getLength() {
+			return length;
+		}
+
+		/**
+		 * Get the last time (ms) that the data was stored or confirmed to be
+		 * valid.
+		 *
+		 * @return
+		 */
+		public long getValidatedTime() {
+			return validatedTime;
+		}
+
+		/**
+		 * Get the ETag header of the response that provided the data.
+		 *
+		 * @return The ETag or null.
+		 */
+		public String getETag() {
+			return eTag;
+		}
+
+		/**
+		 * Get the Last-Modified header of the response that provided the
+		 * data.
+		 *
+		 * @return The date or null.
+		 */
+		public String getLastModified() {
+			return lastModified;
+		}
+	}
+
+	/**
+	 * Create a cache. Two caches must never use the same directory, since
+	 * each one deletes the files it does not know and rewrites the journal.
+	 * Use {@link #getInstance(File, long)} to share the cache of a directory
+	 * in the process.
+	 *
+	 * @param directory
+	 *            Directory where the files will be stored. It should be only
+	 *            used by this cache.
+	 * @param maxSize
+	 *            Max amount of bytes to store.
+	 */
+	public DiskCache(File directory, long maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize <= 0");
+		}
+		mDirectory = directory;
+		mMaxSize = maxSize;
+	}
+
+	/**
+	 * Get the cache for the directory, creating it the first time. The same
+	 * instance is returned for the same directory during the whole life of
+	 * the process, so it can be shared by several
+	 * {@link com.beyondar.android.util.cache.BitmapCache BitmapCache}s.
+	 *
+	 * @param directory
+	 *            Directory where the files will be stored.
+	 * @param maxSize
+	 *            Max amount of bytes to store. Only used when the cache is
+	 *            created.
+	 * @return
+	 */
+	public static DiskCache getInstance(File directory, long maxSize) {
+		String key = directory.getAbsolutePath();
+		synchronized (sInstances) {
+			DiskCache cache = sInstances.get(key);
+			if (cache == null) {
+				cache = new DiskCache(directory, maxSize);
+				sInstances.put(key, cache);
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * Get the information of the entry for the key.
+	 *
+	 * @param key
+	 * @return The entry or null if the key is not stored.
+	 */
+	public synchronized Entry getEntry(String key) {
+		if (!open()) {
+			return null;
+		}
+		return mEntries.get(key);
+	}
+
+	/**
+	 * Read the data stored for the key. The entry becomes the most recently
+	 * used.
+	 *
+	 * @param key
+	 * @return The data or null if the key is not stored or it can not be read.
+	 */
+	public synchronized byte[] get(String key) {
+		if (!open()) {
+			return null;
+		}
+		Entry entry = mEntries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		byte[] data = readFile(new File(mDirectory, entry.fileName), entry.length);
+		if (data == null) {
+			removeEntry(entry);
+			return null;
+		}
+		appendJournal(OP_READ, entry.fileName);
+		mRedundantOps++;
+		compactIfNeeded();
+		return data;
+	}
+
+	/**
+	 * Store the data for the key. It replaces the previous data.
+	 *
+	 * @param key
+	 * @param data
+	 * @param eTag
+	 *            The ETag of the response, it can be null.
+	 * @param lastModified
+	 *            The Last-Modified header of the response, it can be null.
+	 * @return true if the data has been stored.
+	 */
+	public synchronized boolean put(String key, byte[] data, String eTag, String lastModified) {
+		if (!open() || data == null || data.length > mMaxSize) {
+			return false;
+		}
+		String fileName = hashKey(key);
+		File tmp = new File(mDirectory, fileName + TMP_SUFFIX);
+		File file = new File(mDirectory, fileName);
+		FileOutputStream out = null;
+		try {
+			out = new FileOutputStream(tmp);
+			out.write(data);
+			out.flush();
+			out.getFD().sync();
+			out.close();
+			out = null;
+			if (!tmp.renameTo(file)) {
+				tmp.delete();
+				return false;
+			}
+		} catch (IOException e) {
+			closeQuietly(out);
+			tmp.delete();
+			return false;
+		}
+
+		Entry entry = mEntries.get(key);
+		if (entry == null) {
+			entry = new Entry(key, fileName);
+			mEntries.put(key, entry);
+		} else {
+			mSize -= entry.length;
+			mRedundantOps++;
+		}
+		entry.length = data.length;
+		entry.validatedTime = System.currentTimeMillis();
+		entry.eTag = clean(eTag);
+		entry.lastModified = clean(lastModified);
+		mSize += entry.length;
+
+		appendJournal(OP_PUT, entry.fileName, Long.toString(entry.length),
+				Long.toString(entry.validatedTime), nullToEmpty(entry.eTag),
+				nullToEmpty(entry.lastModified), clean(key));
+		trimToSize();
+		compactIfNeeded();
+		return true;
+	}
+
+	/**
+	 * Mark the data of the key as still valid, for instance when the server
+	 * answers with a 304 (not modified) response.
+	 *
+	 * @param key
+	 */
+	public synchronized void markValidated(String key) {
+		if (!open()) {
+			return;
+		}
+		Entry entry = mEntries.get(key);
+		if (entry == null) {
+			return;
+		}
+		entry.validatedTime = System.currentTimeMillis();
+		appendJournal(OP_VALID, entry.fileName, Long.toString(entry.validatedTime));
+		mRedundantOps++;
+		compactIfNeeded();
+	}
+
+	/**
+	 * Remove the key from the cache.
+	 *
+	 * @param key
+	 * @return true if the key was stored.
+	 */
+	public synchronized boolean remove(String key) {
+		if (!open()) {
+			return false;
+		}
+		Entry entry = mEntries.get(key);
+		if (entry == null) {
+			return false;
+		}
+		removeEntry(entry);
+		compactIfNeeded();
+		return true;
+	}
+
+	/**
+	 * Remove all the entries.
+	 */
+	public synchronized void clear() {
+		if (!open()) {
+			return;
+		}
+		closeJournal();
+		File[] files = mDirectory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		mEntries.clear();
+		mSize = 0;
+		mRedundantOps = 0;
+		rewriteJournal();
+	}
+
+	/**
+	 * Get the amount of bytes stored.
+	 *
+	 * @return
+	 */
+	public synchronized long size() {
+		return open() ? mSize : 0;
+	}
+
+	/**
+	 * Get the amount of entries stored.
+	 *
+	 * @return
+	 */
+	public synchronized int getEntryCount() {
+		return open() ? mEntries.size() : 0;
+	}
+
+	public long getMaxSize() {
+		return mMaxSize;
+	}
+
+	public File getDirectory() {
+		return mDirectory;
+	}
+
+	/**
+	 * Close the journal. The cache will be opened again if it is used.
+	 */
+	public synchronized void close() {
+		closeJournal();
+		mEntries = null;
+	}
+
+	private boolean open() {
+		if (mEntries != null) {
+			return true;
+		}
+		if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+			return false;
+		}
+		mEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+		mSize = 0;
+		mRedundantOps = 0;
+		readJournal();
+		removeOrphanFiles();
+		rewriteJournal();
+		trimToSize();
+		return true;
+	}
+
+	private void readJournal() {
+		File journal = new File(mDirectory, JOURNAL_FILE);
+		if (!journal.exists()) {
+			return;
+		}
+		HashMap<String, Entry> byFile = new HashMap<String, Entry>();
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(journal), ENCODING));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] parts = line.split(SEPARATOR, -1);
+				try {
+					applyJournalLine(parts, byFile);
+				} catch (RuntimeException e) {
+					// Corrupted or truncated line
+				}
+			}
+		} catch (IOException e) {
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+
+		// Remove the entries whose file is missing or incomplete
+		Iterator<Entry> iterator = mEntries.values().iterator();
+		while (iterator.hasNext()) {
+			Entry entry = iterator.next();
+			File file = new File(mDirectory, entry.fileName);
+			if (!file.exists() || file.length() != entry.length) {
+				iterator.remove();
+				file.delete();
+			} else {
+				mSize += entry.length;
+			}
+		}
+	}
+
+	private void applyJournalLine(String[] parts, HashMap<String, Entry> byFile) {
+		String op = parts[0];
+		if (OP_PUT.equals(op) && parts.length == 7) {
+			Entry entry = byFile.get(parts[1]);
+			if (entry == null) {
+				entry = new Entry(parts[6], parts[1]);
+				byFile.put(entry.fileName, entry);
+			}
+			entry.length = Long.parseLong(parts[2]);
+			entry.validatedTime = Long.parseLong(parts[3]);
+			entry.eTag = emptyToNull(parts[4]);
+			entry.lastModified = emptyToNull(parts[5]);
+			// Move it to the end of the access order
+			mEntries.remove(entry.key);
+			mEntries.put(entry.key, entry);
+		} else if (OP_READ.equals(op) && parts.length == 2) {
+			Entry entry = byFile.get(parts[1]);
+			if (entry != null) {
+				mEntries.get(entry.key);
+			}
+			mRedundantOps++;
+		} else if (OP_VALID.equals(op) && parts.length == 3) {
+			Entry entry = byFile.get(parts[1]);
+			if (entry != null) {
+				entry.validatedTime = Long.parseLong(parts[2]);
+			}
+			mRedundantOps++;
+		} else if (OP_DEL.equals(op) && parts.length == 2) {
+			Entry entry = byFile.remove(parts[1]);
+			if (entry != null) {
+				mEntries.remove(entry.key);
+			}
+			mRedundantOps++;
+		}
+	}
+
+	private void removeOrphanFiles() {
+		File[] files = mDirectory.listFiles();
+		if (files == null) {
+			return;
+		}
+		HashMap<String, Entry> byFile = new HashMap<String, Entry>();
+		for (Entry entry : mEntries.values()) {
+			byFile.put(entry.fileName, entry);
+		}
+		for (File file : files) {
+			String name = file.getName();
+			if (!name.equals(JOURNAL_FILE) && !byFile.containsKey(name)) {
+				file.delete();
+			}
+		}
+	}
+
+	private void trimToSize() {
+		if (mSize <= mMaxSize) {
+			return;
+		}
+		ArrayList<Entry> toRemove = new ArrayList<Entry>();
+		long size = mSize;
+		for (Entry entry : mEntries.values()) {
+			if (size <= mMaxSize) {
+				break;
+			}
+			toRemove.add(entry);
+			size -= entry.length;
+		}
+		for (int i = 0; i < toRemove.size(); i++) {
+			removeEntry(toRemove.get(i));
+		}
+	}
+
+	private void removeEntry(Entry entry) {
+		mEntries.remove(entry.key);
+		mSize -= entry.length;
+		new File(mDirectory, entry.fileName).delete();
+		appendJournal(OP_DEL, entry.fileName);
+		mRedundantOps++;
+	}
+
+	private void compactIfNeeded() {
+		if (mRedundantOps >= COMPACT_THRESHOLD && mRedundantOps >= mEntries.size()) {
+			rewriteJournal();
+		}
+	}
+
+	/**
+	 * Write a new journal with only the current entries (in access order) and
+	 * replace the old one.
+	 */
+	private void rewriteJournal() {
+		closeJournal();
+		File tmp = new File(mDirectory, JOURNAL_FILE_TMP);
+		Writer writer = null;
+		try {
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), ENCODING),
+					BUFFER_SIZE);
+			for (Entry entry : mEntries.values()) {
+				writer.write(journalLine(OP_PUT, entry.fileName, Long.toString(entry.length),
+						Long.toString(entry.validatedTime), nullToEmpty(entry.eTag),
+						nullToEmpty(entry.lastModified), clean(entry.key)));
+			}
+			writer.close();
+			writer = null;
+			if (!tmp.renameTo(new File(mDirectory, JOURNAL_FILE))) {
+				tmp.delete();
+			}
+			mRedundantOps = 0;
+		} catch (IOException e) {
+			if (writer != null) {
+				try {
+					writer.close();
+				} catch (IOException e1) {
+				}
+			}
+			tmp.delete();
+		}
+	}
+
+	private void appendJournal(String... parts) {
+		try {
+			if (mJournalWriter == null) {
+				mJournalWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(
+						new File(mDirectory, JOURNAL_FILE), true), ENCODING), BUFFER_SIZE);
+			}
+			mJournalWriter.write(journalLine(parts));
+			mJournalWriter.flush();
+		} catch (IOException e) {
+			closeJournal();
+		}
+	}
+
+	private void closeJournal() {
+		if (mJournalWriter != null) {
+			try {
+				mJournalWriter.close();
+			} catch (IOException e) {
+			}
+			mJournalWriter = null;
+		}
+	}
+
+	private static String journalLine(String... parts) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < parts.length; i++) {
+			if (i > 0) {
+				sb.append(SEPARATOR);
+			}
+			sb.append(parts[i]);
+		}
+		sb.append('\n');
+		return sb.toString();
+	}
+
+	private static byte[] readFile(File file, long length) {
+		if (!file.exists() || file.length() != length) {
+			return null;
+		}
+		byte[] data = new byte[(int) length];
+		InputStream in = null;
+		try {
+			in = new FileInputStream(file);
+			int offset = 0;
+			while (offset < data.length) {
+				int read = in.read(data, offset, data.length - offset);
+				if (read == -1) {
+					return null;
+				}
+				offset += read;
+			}
+			return data;
+		} catch (IOException e) {
+			return null;
+		} finally {
+			closeQuietly(in);
+		}
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		if (closeable == null) {
+			return;
+		}
+		try {
+			closeable.close();
+		} catch (IOException e) {
+		}
+	}
+
+	/**
+	 * Generate the file name used for a key.
+	 *
+	 * @param key
+	 * @return The SHA-1 of the key in hexadecimal.
+	 */
+	static String hashKey(String key) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			byte[] hash = digest.digest(key.getBytes(ENCODING));
+			StringBuilder sb = new StringBuilder(hash.length * 2);
+			for (int i = 0; i < hash.length; i++) {
+				int value = hash[i] & 0xff;
+				if (value < 0x10) {
+					sb.append('0');
+				}
+				sb.append(Integer.toHexString(value));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			return Integer.toHexString(key.hashCode());
+		} catch (UnsupportedEncodingException e) {
+			return Integer.toHexString(key.hashCode());
+		}
+	}
+
+	/** Remove the characters used by the journal format. */
+	private static String clean(String value) {
+		if (value == null) {
+			return null;
+		}
+		return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+	}
+
+	private static String nullToEmpty(String value) {
+		return value == null ? "" : value;
+	}
+
+	private static String emptyToNull(String value) {
+		return value.length() == 0 ? null : value;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("DiskCache ").append(mDirectory).append(" ");
+		synchronized (this) {
+			sb.append(mEntries == null ? 0 : mEntries.size()).append(" entries, ").append(mSize)
+					.append("/").append(mMaxSize).append(" bytes");
+		}
+		return sb.toString();
+	}
+}
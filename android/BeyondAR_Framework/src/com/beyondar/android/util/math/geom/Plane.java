@@ -52,6 +52,13 @@ public class Plane {
 		this(p1, Vector3.normalVector(p1, p2, p3));
 	}
 
+	/**
+	 * Updates the plane after its point or its normal have been modified
+	 */
+	public void update() {
+		d = -(point.x * normal.x + point.y * normal.y + point.z * normal.z);
+	}
+
 	/**
 	 * Returns the plane's normal vector
 	 * 
@@ -81,6 +81,23 @@ public class Ray {
 		return p;
 	}
 
+	/**
+	 * Stores the point in the ray that corresponds to the given t parameter,
+	 * without creating a new object
+	 * 
+	 * @param t
+	 *            t parameter
+	 * @param out
+	 *            the point where the result is stored
+	 * @return out
+	 */
+	public Point3 getPoint(float t, Point3 out) {
+		out.x = point.x + t * vector.x;
+		out.y = point.y + t * vector.y;
+		out.z = point.z + t * vector.z;
+		return out;
+	}
+
 	/**
 	 * Returns the starting point for this ray
 	 * 
@@ -24,6 +24,8 @@ public class Triangle {
 
 	private Vector3 normal;
 
+	private int greatestComponent;
+
 	/**
 	 * Constructs a triangle from 3 points
 	 * 
@@ -39,6 +41,15 @@ public class Triangle {
 		this.p2 = p2;
 		this.p3 = p3;
 		this.normal = Vector3.normalVector(p1, p2, p3);
+		greatestComponent = normal.getGreatestComponent();
+	}
+
+	/**
+	 * Update the triangle after its points have been modified
+	 */
+	public void update() {
+		Vector3.normalVector(p1, p2, p3, normal);
+		greatestComponent = normal.getGreatestComponent();
 	}
 
 	/**
@@ -60,19 +71,28 @@ public class Triangle {
 	 *         <b>false</b> otherwise
 	 */
 	public boolean contains(Point3 p) {
-		int max = normal.getGreatestComponent();
-		Point2 p1 = new Point2(this.p1, max);
-		Point2 p2 = new Point2(this.p2, max);
-		Point2 p3 = new Point2(this.p3, max);
-		Point2 i = new Point2(p, max);
+		// The triangle is projected removing the greatest component of the
+		// normal, see Point2(Point3, int)
+		int max = greatestComponent;
+		float x1 = projectX(this.p1, max), y1 = projectY(this.p1, max);
+		float x2 = projectX(this.p2, max), y2 = projectY(this.p2, max);
+		float x3 = projectX(this.p3, max), y3 = projectY(this.p3, max);
+		float x = projectX(p, max), y = projectY(p, max);
+
+		int side = checkSide(x1, y1, x2, y2, x, y);
+		return side == checkSide(x2, y2, x3, y3, x, y) && side == checkSide(x3, y3, x1, y1, x, y);
+	}
+
+	private static float projectX(Point3 p, int remove) {
+		return remove == 0 ? p.y : p.x;
+	}
 
-		return (checkSide(p1, p2, i) == checkSide(p2, p3, i))
-				&& (checkSide(p1, p2, i) == checkSide(p3, p1, i));
+	private static float projectY(Point3 p, int remove) {
+		return remove == 0 || remove == 1 ? p.z : p.y;
 	}
 
-	private int checkSide(Point2 o, Point2 d, Point2 p) {
-		return (int) Math.signum(-(d.y - o.y) * (p.x - o.x) + (d.x - o.x)
-				* (p.y - o.y));
+	private static int checkSide(float ox, float oy, float dx, float dy, float px, float py) {
+		return (int) Math.signum(-(dy - oy) * (px - ox) + (dx - ox) * (py - oy));
 	}
 
 	/**
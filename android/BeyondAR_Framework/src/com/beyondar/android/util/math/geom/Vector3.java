@@ -159,9 +159,28 @@ public class Vector3 extends Point3 {
 	 * @return the normal vector to the plane formed by the 3 given points
 	 */
 	public static Vector3 normalVector(Point3 p1, Point3 p2, Point3 p3) {
-		Vector3 v1 = new Vector3(p1, p2);
-		Vector3 v2 = new Vector3(p1, p3);
-		return v1.crossProduct(v2);
+		return normalVector(p1, p2, p3, new Vector3());
+	}
+
+	/**
+	 * Stores the normal vector to the plane formed by the 3 given points,
+	 * without creating new objects
+	 * 
+	 * @param p1
+	 *            point 1
+	 * @param p2
+	 *            point 2
+	 * @param p3
+	 *            point 3
+	 * @param out
+	 *            the vector where the result is stored
+	 * @return out
+	 */
+	public static Vector3 normalVector(Point3 p1, Point3 p2, Point3 p3, Vector3 out) {
+		float v1x = p2.x - p1.x, v1y = p2.y - p1.y, v1z = p2.z - p1.z;
+		float v2x = p3.x - p1.x, v2y = p3.y - p1.y, v2z = p3.z - p1.z;
+		out.set(v1y * v2z - v1z * v2y, v1z * v2x - v1x * v2z, v1x * v2y - v1y * v2x);
+		return out;
 	}
 
 	/**
@@ -27,18 +27,25 @@ import android.opengl.GLSurfaceView;
 import android.util.AttributeSet;
 import android.view.Display;
 import android.view.MotionEvent;
+import android.view.ViewConfiguration;
 import android.view.ViewGroup;
 import android.view.WindowManager;
 
 import com.beyondar.android.opengl.renderer.ARRenderer;
 import com.beyondar.android.opengl.renderer.ARRenderer.FpsUpdatable;
+import com.beyondar.android.opengl.renderer.FrameStats;
+import com.beyondar.android.opengl.renderer.GazeSelector;
 import com.beyondar.android.opengl.renderer.ARRenderer.GLSnapshotCallback;
 import com.beyondar.android.opengl.renderer.OnBeyondarObjectRenderedListener;
+import com.beyondar.android.opengl.texture.TextureLod;
 import com.beyondar.android.opengl.util.MatrixTrackingGL;
 import com.beyondar.android.sensor.BeyondarSensorManager;
+import com.beyondar.android.sensor.OrientationPredictor;
 import com.beyondar.android.util.Logger;
 import com.beyondar.android.util.math.geom.Ray;
 import com.beyondar.android.world.BeyondarObject;
+import com.beyondar.android.world.DistanceSorter;
+import com.beyondar.android.world.RayHitBuffer;
 import com.beyondar.android.world.World;
 
 /**
@@ -51,9 +58,40 @@ public class BeyondarGLSurfaceView extends GLSurfaceView implements OnBeyondarOb
 
 	private BeyondarViewAdapter mViewAdapter;
 	private ViewGroup mParent;
+	private DistanceSorter mDistanceSorter;
+	private List<BeyondarObject> mAdapterCandidates;
+	/**
+	 * Lists for the adapter: filled by the GL thread, waiting for the UI
+	 * thread and used by the UI thread. They are swapped under
+	 * mAdapterLock, so each thread always works with its own list.
+	 */
+	private List<BeyondarObject> mAdapterObjects, mPendingAdapterObjects, mUiAdapterObjects;
+	private final Object mAdapterLock = new Object();
+	private boolean mAdapterUpdatePosted;
+	private final Runnable mAdapterUpdate = new Runnable() {
+		@Override
+		public void run() {
+			List<BeyondarObject> objects;
+			synchronized (mAdapterLock) {
+				objects = mPendingAdapterObjects;
+				mPendingAdapterObjects = mUiAdapterObjects;
+				mUiAdapterObjects = objects;
+				mAdapterUpdatePosted = false;
+			}
+			BeyondarViewAdapter viewAdapter = mViewAdapter;
+			if (viewAdapter != null && mParent != null) {
+				viewAdapter.updateViews(objects, mParent, BeyondarGLSurfaceView.this);
+			}
+			objects.clear();
+		}
+	};
 
 	private World mWorld;
 	private int mSensorDelay;
+	private RenderOnDemandController mRenderOnDemandController;
+	private boolean mRenderOnDemand;
+	private boolean mPaused;
+	private float mTouchSlop;
 
 	public BeyondarGLSurfaceView(Context context) {
 		super(context);
@@ -68,6 +106,12 @@ public class BeyondarGLSurfaceView extends GLSurfaceView implements OnBeyondarOb
 
 	private void init(Context context) {
 		mSensorDelay = SensorManager.SENSOR_DELAY_UI;
+		mDistanceSorter = new DistanceSorter();
+		mAdapterCandidates = new ArrayList<BeyondarObject>();
+		mAdapterObjects = new ArrayList<BeyondarObject>();
+		mPendingAdapterObjects = new ArrayList<BeyondarObject>();
+		mUiAdapterObjects = new ArrayList<BeyondarObject>();
+		mTouchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
 
 		if (Logger.DEBUG_OPENGL) {
 			setDebugFlags(DEBUG_CHECK_GL_ERROR | DEBUG_LOG_GL_CALLS);
@@ -84,6 +128,7 @@ public class BeyondarGLSurfaceView extends GLSurfaceView implements OnBeyondarOb
 
 		mRenderer = createRenderer();
 		mRenderer.setOnBeyondarObjectRenderedListener(this);
+		mRenderOnDemandController = new RenderOnDemandController(this, mRenderer);
 
 		setEGLConfigChooser(8, 8, 8, 8, 16, 0);
 		getHolder().setFormat(PixelFormat.TRANSLUCENT);
@@ -200,6 +245,8 @@ public class BeyondarGLSurfaceView extends GLSurfaceView implements OnBeyondarOb
 
 	@Override
 	public void onPause() {
+		mPaused = true;
+		mRenderOnDemandController.stop();
 		unregisterSensorListener();
 		super.onPause();
 		mRenderer.onPause();
@@ -215,6 +262,84 @@ public class BeyondarGLSurfaceView extends GLSurfaceView implements OnBeyondarOb
 			mRenderer.rotateView(display.getRotation());
 			mRenderer.onResume();
 		}
+		mPaused = false;
+		if (mRenderOnDemand) {
+			mRenderOnDemandController.start();
+		}
+	}
+
+	/**
+	 * Render only when needed instead of continuously, saving battery when
+	 * the device is still. The view renders continuously while the device
+	 * moves (see {@link #setRenderOnDemandThreshold(float)}) or an animation
+	 * is running (see {@link #beginAnimation()}). Otherwise it only renders
+	 * when the world, the location or the textures change, and every idle
+	 * interval (see {@link #setRenderOnDemandIdleInterval(long)}) to show the
+	 * changes made to single objects. Call {@link #requestRender()} to show
+	 * them immediately.
+	 * 
+	 * @param enabled
+	 */
+	public void setRenderOnDemand(boolean enabled) {
+		mRenderOnDemand = enabled;
+		if (enabled && !mPaused) {
+			mRenderOnDemandController.start();
+		} else {
+			mRenderOnDemandController.stop();
+		}
+	}
+
+	public boolean isRenderOnDemand() {
+		return mRenderOnDemand;
+	}
+
+	/**
+	 * Set the min rotation of the device considered a movement when rendering
+	 * on demand.
+	 * 
+	 * @param degrees
+	 *            Default 0.5 degrees.
+	 */
+	public void setRenderOnDemandThreshold(float degrees) {
+		mRenderOnDemandController.setThreshold(degrees);
+	}
+
+	public float getRenderOnDemandThreshold() {
+		return mRenderOnDemandController.getThreshold();
+	}
+
+	/**
+	 * Set the max time without rendering while the device is still, when
+	 * rendering on demand.
+	 * 
+	 * @param milliseconds
+	 *            Default 1000 ms. Use 0 to render only when a change is
+	 *            detected.
+	 */
+	public void setRenderOnDemandIdleInterval(long milliseconds) {
+		mRenderOnDemandController.setIdleInterval(milliseconds);
+	}
+
+	public long getRenderOnDemandIdleInterval() {
+		return mRenderOnDemandController.getIdleInterval();
+	}
+
+	/**
+	 * Notify that an animation has started, so the view renders continuously
+	 * until {@link #endAnimation()} is called. Only needed when rendering on
+	 * demand. Each call has to be paired with a call to
+	 * {@link #endAnimation()}.
+	 */
+	public void beginAnimation() {
+		mRenderOnDemandController.beginAnimation();
+	}
+
+	/**
+	 * Notify that an animation started with {@link #beginAnimation()} has
+	 * finished.
+	 */
+	public void endAnimation() {
+		mRenderOnDemandController.endAnimation();
 	}
 
 	@Override
@@ -229,7 +354,10 @@ public class BeyondarGLSurfaceView extends GLSurfaceView implements OnBeyondarOb
 	private static final Ray sRay = new Ray(0, 0, 0);
 
 	/**
-	 * Get the GeoObject that intersect with the coordinates x, y on the screen
+	 * Get the GeoObject that intersect with the coordinates x, y on the screen.
+	 * If the screen picking is enabled (see
+	 * {@link #setScreenPickingEnabled(boolean)}) the objects drawn in the last
+	 * frame around the point are returned.
 	 * 
 	 * @param x
 	 * @param y
@@ -241,6 +369,10 @@ public class BeyondarGLSurfaceView extends GLSurfaceView implements OnBeyondarOb
 	 */
 	public synchronized void getBeyondarObjectsOnScreenCoordinates(float x, float y,
 			ArrayList<BeyondarObject> beyondarObjects) {
+		if (mRenderer.isScreenPickingEnabled()) {
+			mRenderer.getScreenPicker().getBeyondarObjects(x, y, mTouchSlop, beyondarObjects);
+			return;
+		}
 		getBeyondarObjectsOnScreenCoordinates(x, y, beyondarObjects, sRay);
 
 	}
@@ -262,6 +394,79 @@ public class BeyondarGLSurfaceView extends GLSurfaceView implements OnBeyondarOb
 			ArrayList<BeyondarObject> beyondarObjects, Ray ray) {
 		mRenderer.getViewRay(x, y, ray);
 		mWorld.getBeyondarObjectsCollideRay(ray, beyondarObjects, getMaxDistanceToRender());
+		if (mRenderer.getClusterRadius() > 0) {
+			replaceClusteredObjects(beyondarObjects);
+		}
+	}
+
+	/**
+	 * Get the objects that intersect with the coordinates x, y on the screen
+	 * without allocating memory. Use one buffer for each thread.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param hits
+	 *            The buffer where the hits are stored, sorted from the
+	 *            closest to the farthest one.
+	 * @param ray
+	 *            The ray that will hold the direction of the screen coordinate
+	 */
+	public void getBeyondarObjectsOnScreenCoordinates(float x, float y, RayHitBuffer hits, Ray ray) {
+		mRenderer.getViewRay(x, y, ray);
+		mWorld.getBeyondarObjectsCollideRay(ray, getMaxDistanceToRender(), hits);
+		if (mRenderer.getClusterRadius() > 0) {
+			hits.replaceClusteredObjects();
+		}
+	}
+
+	/**
+	 * Get the closest object that intersects with the coordinates x, y on the
+	 * screen without allocating memory. It is faster than getting all the
+	 * objects.
+	 *
+	 * @param x
+	 * @param y
+	 * @param hits
+	 *            The buffer where the hit is stored.
+	 * @param ray
+	 *            The ray that will hold the direction of the screen coordinate
+	 * @return The closest object or null if there is none.
+	 */
+	public BeyondarObject getNearestBeyondarObjectOnScreenCoordinates(float x, float y, RayHitBuffer hits,
+			Ray ray) {
+		mRenderer.getViewRay(x, y, ray);
+		BeyondarObject beyondarObject = mWorld.getNearestBeyondarObjectCollideRay(ray,
+				getMaxDistanceToRender(), hits);
+		if (beyondarObject != null && mRenderer.getClusterRadius() > 0) {
+			hits.replaceClusteredObjects();
+			beyondarObject = hits.getObject(0);
+		}
+		return beyondarObject;
+	}
+
+	/**
+	 * The clusters are picked as a unit: the objects merged in a cluster are
+	 * replaced by its representative, that is only added once.
+	 */
+	private static void replaceClusteredObjects(ArrayList<BeyondarObject> beyondarObjects) {
+		int size = 0;
+		for (int i = 0; i < beyondarObjects.size(); i++) {
+			BeyondarObject beyondarObject = beyondarObjects.get(i);
+			BeyondarObject representative = beyondarObject.getClusterRepresentative();
+			if (representative != null) {
+				beyondarObject = representative;
+			}
+			boolean duplicated = false;
+			for (int j = 0; j < size && !duplicated; j++) {
+				duplicated = beyondarObjects.get(j) == beyondarObject;
+			}
+			if (!duplicated) {
+				beyondarObjects.set(size++, beyondarObject);
+			}
+		}
+		while (beyondarObjects.size() > size) {
+			beyondarObjects.remove(beyondarObjects.size() - 1);
+		}
 	}
 
 	/**
@@ -328,6 +533,7 @@ public class BeyondarGLSurfaceView extends GLSurfaceView implements OnBeyondarOb
 	 */
 	public void setMaxDistanceToRender(float meters) {
 		mRenderer.setMaxDistanceToRender(meters);
+		requestRender();
 	}
 
 	/**
@@ -361,6 +567,254 @@ public class BeyondarGLSurfaceView extends GLSurfaceView implements OnBeyondarOb
 		return mRenderer.getDistanceFactor();
 	}
 
+	/**
+	 * Use the {@link com.beyondar.android.world.GeoSpatialIndex
+	 * GeoSpatialIndex} of the {@link com.beyondar.android.world.World World}
+	 * to render only the {@link com.beyondar.android.world.GeoObject
+	 * GeoObject}s that are closer than the max distance to render. Far objects
+	 * will not be updated while this option is enabled, so it is disabled by
+	 * default (the radar needs the distance of all the objects).
+	 * 
+	 * @param enabled
+	 */
+	public void setSpatialIndexEnabled(boolean enabled) {
+		mRenderer.setSpatialIndexEnabled(enabled);
+		requestRender();
+	}
+
+	/**
+	 * Draw all the objects that share a texture with a single draw call.
+	 * 
+	 * @param enabled
+	 */
+	public void setBatchRenderingEnabled(boolean enabled) {
+		mRenderer.setBatchRenderingEnabled(enabled);
+		requestRender();
+	}
+
+	/**
+	 * Pack the images of the objects into shared textures instead of creating
+	 * one texture for each image.
+	 * 
+	 * @param enabled
+	 */
+	public void setTextureAtlasEnabled(boolean enabled) {
+		mRenderer.setTextureAtlasEnabled(enabled);
+		requestRender();
+	}
+
+	/**
+	 * Skip the objects that are outside of the view frustum. Enabled by
+	 * default.
+	 * 
+	 * @param enabled
+	 */
+	public void setFrustumCullingEnabled(boolean enabled) {
+		mRenderer.setFrustumCullingEnabled(enabled);
+		requestRender();
+	}
+
+	/**
+	 * Set the extra distance (in GL units) around the view frustum where the
+	 * objects are still rendered.
+	 * 
+	 * @param margin
+	 */
+	public void setFrustumCullingMargin(float margin) {
+		mRenderer.setFrustumCullingMargin(margin);
+		requestRender();
+	}
+
+	/**
+	 * Set the listener notified (in the GL thread) after each frame with the
+	 * timing and counters of the frame.
+	 * 
+	 * @param listener
+	 */
+	public void setOnFrameStatsListener(FrameStats.OnFrameStatsListener listener) {
+		mRenderer.setOnFrameStatsListener(listener);
+	}
+
+	/**
+	 * Set the max time (ms) spent uploading new images to the GPU in each
+	 * frame. The rest of the images are uploaded in the next frames.
+	 * 
+	 * @param milliseconds
+	 */
+	public void setTextureUploadTimeBudget(float milliseconds) {
+		mRenderer.setTextureUploadTimeBudget(milliseconds);
+	}
+
+	/**
+	 * Set the max amount of bytes of new images uploaded to the GPU in each
+	 * frame.
+	 * 
+	 * @param bytes
+	 */
+	public void setTextureUploadByteBudget(int bytes) {
+		mRenderer.setTextureUploadByteBudget(bytes);
+	}
+
+	/**
+	 * Set the max GPU memory (bytes) used by the textures of the objects. The
+	 * textures that have not been drawn for longer are deleted when it is
+	 * exceeded.
+	 * 
+	 * @param bytes
+	 */
+	public void setTextureMemoryBudget(int bytes) {
+		mRenderer.setTextureMemoryBudget(bytes);
+		requestRender();
+	}
+
+	/**
+	 * Set the {@link OrientationPredictor} used to extrapolate the orientation
+	 * of the device to the time when each frame is displayed, reducing the lag
+	 * of the objects when the device moves.
+	 * 
+	 * @param predictor
+	 *            The predictor, or null to use the last orientation (default).
+	 */
+	public void setOrientationPredictor(OrientationPredictor predictor) {
+		mRenderer.setOrientationPredictor(predictor);
+		requestRender();
+	}
+
+	/**
+	 * Set the {@link TextureLod} used to choose the resolution of the textures
+	 * depending on the distance to the objects.
+	 * 
+	 * @param lod
+	 *            The level of detail, or null to always use the full images.
+	 */
+	public void setTextureLod(TextureLod lod) {
+		mRenderer.setTextureLod(lod);
+		requestRender();
+	}
+
+	/**
+	 * Generate mipmaps for the textures loaded from now on. Disabled by
+	 * default, see
+	 * {@link com.beyondar.android.opengl.renderer.ARRenderer#setMipmapsEnabled(boolean)
+	 * ARRenderer.setMipmapsEnabled(boolean)}.
+	 * 
+	 * @param enabled
+	 */
+	public void setMipmapsEnabled(boolean enabled) {
+		mRenderer.setMipmapsEnabled(enabled);
+	}
+
+	/**
+	 * Merge the objects that are closer than the radius on the screen into a
+	 * single one, the closest to the user. The clusters are picked as a unit
+	 * (see {@link #getBeyondarObjectsOnScreenCoordinates(float, float, ArrayList)}
+	 * ) and
+	 * {@link com.beyondar.android.world.BeyondarObject#getClusterSize()
+	 * BeyondarObject.getClusterSize()} returns how many objects they contain.
+	 * 
+	 * @param radius
+	 *            Radius in pixels, 0 to disable the clustering (default).
+	 */
+	public void setClusterRadius(float radius) {
+		mRenderer.setClusterRadius(radius);
+		requestRender();
+	}
+
+	public float getClusterRadius() {
+		return mRenderer.getClusterRadius();
+	}
+
+	/**
+	 * Hide the objects that overlap on the screen with closer objects or
+	 * objects with more priority (see
+	 * {@link com.beyondar.android.world.BeyondarObject#setPriority(float)
+	 * BeyondarObject.setPriority(float)}). The hidden objects are not drawn
+	 * nor shown by the {@link BeyondarViewAdapter}.
+	 * 
+	 * @param enabled
+	 */
+	public void setDeclutterEnabled(boolean enabled) {
+		mRenderer.setDeclutterEnabled(enabled);
+		requestRender();
+	}
+
+	public boolean isDeclutterEnabled() {
+		return mRenderer.isDeclutterEnabled();
+	}
+
+	/**
+	 * Pick the objects using their quads drawn in the last frame instead of
+	 * intersecting a ray with the world (see
+	 * {@link #getBeyondarObjectsOnScreenCoordinates(float, float, ArrayList)}
+	 * ). It is faster and it returns exactly what is on the screen, but the
+	 * screen positions of all the drawn objects are filled in each frame.
+	 * 
+	 * @param enabled
+	 *            Disabled by default.
+	 */
+	public void setScreenPickingEnabled(boolean enabled) {
+		mRenderer.setScreenPickingEnabled(enabled);
+		requestRender();
+	}
+
+	public boolean isScreenPickingEnabled() {
+		return mRenderer.isScreenPickingEnabled();
+	}
+
+	/**
+	 * Set the distance (pixels) from the touched point at which the objects
+	 * are still picked when the screen picking is enabled. By default it is
+	 * the touch slop of the system.
+	 * 
+	 * @param touchSlop
+	 */
+	public void setTouchSlop(float touchSlop) {
+		mTouchSlop = Math.max(0, touchSlop);
+	}
+
+	public float getTouchSlop() {
+		return mTouchSlop;
+	}
+
+	/**
+	 * Select the object under the center of the screen in every frame, for
+	 * head mounted displays (see
+	 * {@link com.beyondar.android.util.GoogleGlassUtils GoogleGlassUtils})
+	 * and crosshair interfaces. It is done while drawing the frame, so there is
+	 * no need to pick the objects from other threads.
+	 * 
+	 * @param enabled
+	 *            Disabled by default.
+	 */
+	public void setGazeSelectionEnabled(boolean enabled) {
+		mRenderer.setGazeSelectionEnabled(enabled);
+		requestRender();
+	}
+
+	public boolean isGazeSelectionEnabled() {
+		return mRenderer.isGazeSelectionEnabled();
+	}
+
+	/**
+	 * Set the listener notified when the gaze dwells on an object and when it
+	 * leaves it. It is called from the GL thread.
+	 * 
+	 * @param listener
+	 */
+	public void setOnGazeListener(GazeSelector.OnGazeListener listener) {
+		mRenderer.getGazeSelector().setOnGazeListener(listener);
+	}
+
+	/**
+	 * Get the {@link com.beyondar.android.opengl.renderer.GazeSelector
+	 * GazeSelector} to configure the gaze selection.
+	 * 
+	 * @return
+	 */
+	public GazeSelector getGazeSelector() {
+		return mRenderer.getGazeSelector();
+	}
+
 	public void setBeyondarViewAdapter(BeyondarViewAdapter beyondarViewAdapter, ViewGroup parent) {
 		mViewAdapter = beyondarViewAdapter;
 		mParent = parent;
@@ -370,9 +824,33 @@ public class BeyondarGLSurfaceView extends GLSurfaceView implements OnBeyondarOb
 	public void onBeyondarObjectsRendered(List<BeyondarObject> renderedBeyondarObjects) {
 		BeyondarViewAdapter tmpView = mViewAdapter;
 		if (tmpView != null) {
-			List<BeyondarObject> elements = World
-					.sortGeoObjectByDistanceFromCenter(new ArrayList<BeyondarObject>(renderedBeyondarObjects));
-			tmpView.processList(elements, mParent, this);
+			int maxViews = tmpView.getMaxViews();
+			// Objects behind the camera are not shown, so they should not
+			// take any of the places
+			mAdapterCandidates.clear();
+			for (int i = 0; i < renderedBeyondarObjects.size(); i++) {
+				BeyondarObject beyondarObject = renderedBeyondarObjects.get(i);
+				if (beyondarObject.getScreenPositionCenter().z <= 1) {
+					mAdapterCandidates.add(beyondarObject);
+				}
+			}
+			mDistanceSorter.selectNearest(mAdapterCandidates, maxViews, mAdapterObjects);
+			mAdapterCandidates.clear();
+
+			// Hand the list to the UI thread. If the previous one has not been
+			// processed yet it is replaced, only the latest frame is shown
+			boolean post;
+			synchronized (mAdapterLock) {
+				List<BeyondarObject> tmp = mPendingAdapterObjects;
+				mPendingAdapterObjects = mAdapterObjects;
+				mAdapterObjects = tmp;
+				post = !mAdapterUpdatePosted;
+				mAdapterUpdatePosted = true;
+			}
+			mAdapterObjects.clear();
+			if (post) {
+				mParent.post(mAdapterUpdate);
+			}
 		}
 	}
 
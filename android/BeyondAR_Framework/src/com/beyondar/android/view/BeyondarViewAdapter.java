@@ -72,69 +72,94 @@ public abstract class BeyondarViewAdapter {
 
 	final LayoutParams mLayoutParams;
 
+	private volatile int mMaxViews;
+
 	public BeyondarViewAdapter(Context context) {
 		mReusedViews = new LinkedList<ViewGroup>();
 		mNewViews = new LinkedList<ViewGroup>();
 		mContext = context;
 		mLayoutParams = new LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT);
+		mMaxViews = Integer.MAX_VALUE;
 	}
 
-	void processList(final List<BeyondarObject> list, ViewGroup parent, final BeyondarGLSurfaceView glSurface) {
+	/**
+	 * Set the max amount of {@link com.beyondar.android.world.BeyondarObject
+	 * BeyondarObject}s that will be processed by the adapter. Only the closest
+	 * ones will be passed to
+	 * {@link #getView(BeyondarObject, View, ViewGroup)}. By default all the
+	 * rendered objects are processed.
+	 * 
+	 * @param maxViews
+	 */
+	public void setMaxViews(int maxViews) {
+		mMaxViews = maxViews;
+	}
+
+	/**
+	 * Get the max amount of {@link com.beyondar.android.world.BeyondarObject
+	 * BeyondarObject}s that will be processed by the adapter.
+	 * 
+	 * @return
+	 */
+	public int getMaxViews() {
+		return mMaxViews;
+	}
+
+	/**
+	 * Create or recycle the views of the objects. It has to be called in the
+	 * UI thread.
+	 */
+	void updateViews(List<BeyondarObject> list, ViewGroup parent, BeyondarGLSurfaceView glSurface) {
 		mParentView = parent;
+		for (int i = 0; i < list.size(); i++) {
+			BeyondarObject beyondarObject = list.get(i);
+
+			if (beyondarObject.getScreenPositionCenter().z > 1 || beyondarObject.isSuppressed()) {
+				continue;
+			}
+			CustomLayout recycledParent = (CustomLayout) mReusedViews.poll();
+			glSurface.fillBeyondarObjectPositions(beyondarObject);
+			View toRecycle = null;
+
+			if (recycledParent != null && recycledParent.getChildCount() > 0) {
+				toRecycle = recycledParent.getChildAt(0);
+			}
+
+			View view = getView(beyondarObject, toRecycle, mParentView);
 
-		mParentView.post(new Runnable() {
-			@Override
-			public void run() {
-				for (BeyondarObject beyondarObject : list) {
-
-					if (beyondarObject.getScreenPositionCenter().z > 1) {
-						continue;
-					}
-					CustomLayout recycledParent = (CustomLayout) mReusedViews.poll();
-					glSurface.fillBeyondarObjectPositions(beyondarObject);
-					View toRecycle = null;
-
-					if (recycledParent != null && recycledParent.getChildCount() > 0) {
-						toRecycle = recycledParent.getChildAt(0);
-					}
-
-					View view = getView(beyondarObject, toRecycle, mParentView);
-
-					boolean added = false;
-					// Check if the recyclable view has been used, otherwise add
-					// it to the queue to recycle it
-					if ((toRecycle != view || view == null) && toRecycle != null) {
-						// Store it again to recycle it
-						mReusedViews.add(recycledParent);
-						added = true;
-					}
-
-					// Check if the view has a parent, if not create it
-					if (view != null && (recycledParent == null || view.getParent() != recycledParent)) {
-						CustomLayout parentLayout = new CustomLayout(mContext);
-						parentLayout.addView(view, mLayoutParams);
-						if (!added) {
-							mReusedViews.add(recycledParent);
-						}
-						recycledParent = parentLayout;
-					}
-
-					if (view != null) {
-						mNewViews.add(recycledParent);
-						if (recycledParent.getParent() == null) {
-							mParentView.addView(recycledParent, mLayoutParams);
-						}
-						recycledParent.setPosition((int) mNewPosition.x, (int) mNewPosition.y);
-					}
+			boolean added = false;
+			// Check if the recyclable view has been used, otherwise add
+			// it to the queue to recycle it
+			if ((toRecycle != view || view == null) && toRecycle != null) {
+				// Store it again to recycle it
+				mReusedViews.add(recycledParent);
+				added = true;
+			}
+
+			// Check if the view has a parent, if not create it
+			if (view != null && (recycledParent == null || view.getParent() != recycledParent)) {
+				CustomLayout parentLayout = new CustomLayout(mContext);
+				parentLayout.addView(view, mLayoutParams);
+				if (!added) {
+					mReusedViews.add(recycledParent);
 				}
+				recycledParent = parentLayout;
+			}
 
-				removeUnusedViews();
-				Queue<ViewGroup> tmp = mNewViews;
-				mNewViews = mReusedViews;
-				mReusedViews = tmp;
-				mNewPosition = null;
+			if (view != null) {
+				mNewViews.add(recycledParent);
+				if (recycledParent.getParent() == null) {
+					mParentView.addView(recycledParent, mLayoutParams);
+				}
+				recycledParent.setPosition((int) mNewPosition.x, (int) mNewPosition.y);
 			}
-		});
+		}
+
+		removeUnusedViews();
+		Queue<ViewGroup> tmp = mNewViews;
+		mNewViews = mReusedViews;
+		mReusedViews = tmp;
+		mNewPosition = null;
 	}
 
 	/**
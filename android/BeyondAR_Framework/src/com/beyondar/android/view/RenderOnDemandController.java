@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.view;
+
+import android.hardware.SensorEvent;
+import android.opengl.GLSurfaceView;
+import android.os.SystemClock;
+
+import com.beyondar.android.opengl.renderer.ARRenderer;
+import com.beyondar.android.sensor.BeyondarSensorListener;
+import com.beyondar.android.sensor.BeyondarSensorManager;
+import com.beyondar.android.sensor.OrientationSnapshot;
+
+/**
+ * Renders the {@link BeyondarGLSurfaceView} only when needed. It is checked
+ * with each sensor update: while the device moves (the orientation changes
+ * more than the threshold) or an animation is running the view renders
+ * continuously, otherwise it only renders when the {@link ARRenderer} has
+ * changes to show (see {@link ARRenderer#isRenderNeeded()}) and, as the
+ * changes of single objects are not detected, every idle interval.
+ */
+class RenderOnDemandController implements BeyondarSensorListener {
+
+	/** Default min rotation (degrees) considered a movement. */
+	static final float DEFAULT_THRESHOLD = 0.5f;
+	/** Default max time (ms) without rendering while the device is still. */
+	static final long DEFAULT_IDLE_INTERVAL = 1000;
+	/** Time (ms) without movement before stopping the continuous rendering. */
+	private static final long STILL_TIME = 500;
+
+	private final GLSurfaceView mView;
+	private final ARRenderer mRenderer;
+	private final float[] mReference = new float[9];
+	private final float[] mTmpMatrix = new float[9];
+
+	private volatile float mCosThreshold;
+	private volatile long mIdleInterval;
+	private volatile int mAnimationCount;
+	private boolean mHasReference;
+	private long mOrientationVersion = -1;
+	private long mLastMotionTime;
+	private long mLastRenderRequestTime;
+	private boolean mContinuous;
+	private boolean mRegistered;
+
+	RenderOnDemandController(GLSurfaceView view, ARRenderer renderer) {
+		mView = view;
+		mRenderer = renderer;
+		setThreshold(DEFAULT_THRESHOLD);
+		mIdleInterval = DEFAULT_IDLE_INTERVAL;
+	}
+
+	void setThreshold(float degrees) {
+		mCosThreshold = (float) Math.cos(Math.toRadians(degrees));
+	}
+
+	float getThreshold() {
+		return (float) Math.toDegrees(Math.acos(mCosThreshold));
+	}
+
+	void setIdleInterval(long milliseconds) {
+		mIdleInterval = milliseconds;
+	}
+
+	long getIdleInterval() {
+		return mIdleInterval;
+	}
+
+	synchronized void beginAnimation() {
+		mAnimationCount++;
+		if (mRegistered) {
+			setContinuous(true);
+		}
+	}
+
+	synchronized void endAnimation() {
+		if (mAnimationCount > 0) {
+			mAnimationCount--;
+		}
+	}
+
+	synchronized void start() {
+		if (mRegistered) {
+			return;
+		}
+		mRegistered = true;
+		mHasReference = false;
+		mLastMotionTime = SystemClock.uptimeMillis();
+		mContinuous = true;
+		mView.setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);
+		BeyondarSensorManager.registerSensorListener(this);
+	}
+
+	synchronized void stop() {
+		if (!mRegistered) {
+			return;
+		}
+		mRegistered = false;
+		BeyondarSensorManager.unregisterSensorListener(this);
+		mView.setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);
+	}
+
+	@Override
+	public void onSensorChanged(float[] filteredValues, SensorEvent event) {
+		update(SystemClock.uptimeMillis());
+	}
+
+	private synchronized void update(long now) {
+		if (!mRegistered) {
+			return;
+		}
+		OrientationSnapshot orientation = BeyondarSensorManager.getOrientationSnapshot();
+		if (orientation != null && orientation.getVersion() != mOrientationVersion) {
+			mOrientationVersion = orientation.getVersion();
+			orientation.getRotationMatrix(mTmpMatrix);
+			if (!mHasReference || isRotated(mReference, mTmpMatrix)) {
+				System.arraycopy(mTmpMatrix, 0, mReference, 0, 9);
+				mHasReference = true;
+				mLastMotionTime = now;
+			}
+		}
+
+		if (mAnimationCount > 0 || now - mLastMotionTime < STILL_TIME) {
+			setContinuous(true);
+			return;
+		}
+		setContinuous(false);
+		long idleInterval = mIdleInterval;
+		if (mRenderer.isRenderNeeded() || (idleInterval > 0 && now - mLastRenderRequestTime >= idleInterval)) {
+			requestRender(now);
+		}
+	}
+
+	private boolean isRotated(float[] a, float[] b) {
+		// The trace of a^T * b is 1 + 2cos(angle) of the rotation between them
+		float trace = 0;
+		for (int i = 0; i < 9; i++) {
+			trace += a[i] * b[i];
+		}
+		float cos = (trace - 1) * 0.5f;
+		return cos < mCosThreshold;
+	}
+
+	private void setContinuous(boolean continuous) {
+		if (mContinuous == continuous) {
+			return;
+		}
+		mContinuous = continuous;
+		if (continuous) {
+			mView.setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);
+		} else {
+			mView.setRenderMode(GLSurfaceView.RENDERMODE_WHEN_DIRTY);
+			// Draw the last orientation
+			requestRender(SystemClock.uptimeMillis());
+		}
+	}
+
+	private void requestRender(long now) {
+		mLastRenderRequestTime = now;
+		mView.requestRender();
+	}
+}
@@ -23,7 +23,9 @@ import com.beyondar.android.opengl.colision.SquareMeshCollider;
 import com.beyondar.android.opengl.renderable.Renderable;
 import com.beyondar.android.opengl.renderable.SquareRenderable;
 import com.beyondar.android.opengl.renderer.ARRenderer;
+import com.beyondar.android.opengl.renderer.BeyondarObjectCluster;
 import com.beyondar.android.opengl.texture.Texture;
+import com.beyondar.android.opengl.texture.TextureGeometry;
 import com.beyondar.android.plugin.BeyondarObjectPlugin;
 import com.beyondar.android.plugin.Plugable;
 import com.beyondar.android.util.cache.BitmapCache;
@@ -45,11 +47,21 @@ public class BeyondarObject implements Plugable<BeyondarObjectPlugin> {
 	private Point3 mPosition;
 	private Point3 mAngle;
 	private boolean mFaceToCamera;
-	private MeshCollider mMeshCollider;
+	private SquareMeshCollider mMeshCollider;
+	/** Values used to build the mesh collider, to know when it changes. */
+	private float mColliderX, mColliderY, mColliderZ, mColliderAngleX, mColliderAngleY, mColliderAngleZ;
+	private TextureGeometry mColliderGeometry;
+	/** Corners used to build the mesh collider. */
+	private Point3[] mColliderCorners;
 	private double mDistanceFromUser;
 	private Point3 mScreenPositionTopLeft, mScreenPositionTopRight, mScreenPositionBottomLeft,
 			mScreenPositionBottomRight, mScreenPositionCenter;
 	private Point3 mTopLeft, mBottomLeft, mBottomRight, mTopRight;
+	private volatile BeyondarObjectCluster mCluster;
+	private volatile BeyondarObject mClusterRepresentative;
+	private volatile int mClusterSize = 1;
+	private volatile boolean mSuppressed;
+	private float mPriority;
 
 	/** This fields contains all the loaded plugins. */
 	protected List<BeyondarObjectPlugin> plugins;
@@ -568,6 +580,103 @@ public class BeyondarObject implements Plugable<BeyondarObjectPlugin> {
 		mDistanceFromUser = distance;
 	}
 
+	/**
+	 * Set the priority of the object when the overlaps are removed (see
+	 * {@link ARRenderer#setDeclutterEnabled(boolean)}). The objects with
+	 * higher priority are placed first, and the objects with the same priority
+	 * from the closest to the farthest one.
+	 * 
+	 * @param priority
+	 *            Default 0.
+	 */
+	public void setPriority(float priority) {
+		mPriority = priority;
+	}
+
+	public float getPriority() {
+		return mPriority;
+	}
+
+	/**
+	 * Check if the object has been hidden in the last frame because it
+	 * overlaps with another object with more priority (see
+	 * {@link ARRenderer#setDeclutterEnabled(boolean)}). It can be used from
+	 * any thread.
+	 * 
+	 * @return
+	 */
+	public boolean isSuppressed() {
+		return mSuppressed;
+	}
+
+	/**
+	 * Set if the object is hidden because it overlaps with others.
+	 * 
+	 * This method is used by the {@link ARRenderer} to set this value.
+	 * 
+	 * @param suppressed
+	 */
+	public void setSuppressed(boolean suppressed) {
+		mSuppressed = suppressed;
+	}
+
+	/**
+	 * Get the screen cluster that contains this object in the last frame, if
+	 * the clustering is enabled (see
+	 * {@link ARRenderer#setClusterRadius(float)}). The cluster is reused by
+	 * the GL thread in each frame, so only use it in the GL thread (for
+	 * instance in
+	 * {@link com.beyondar.android.opengl.renderer.OnBeyondarObjectRenderedListener
+	 * OnBeyondarObjectRenderedListener}).
+	 * 
+	 * @return The cluster or null if the object is not merged with others.
+	 */
+	public BeyondarObjectCluster getCluster() {
+		return mCluster;
+	}
+
+	/**
+	 * Get the amount of objects in the screen cluster of this object. It can
+	 * be used from any thread, for instance to show the count in the views of
+	 * a {@link com.beyondar.android.view.BeyondarViewAdapter
+	 * BeyondarViewAdapter}.
+	 * 
+	 * @return 1 if the object is not merged with others.
+	 */
+	public int getClusterSize() {
+		return mClusterSize;
+	}
+
+	/**
+	 * Get the object drawn for the screen cluster of this object. It can be
+	 * used from any thread.
+	 * 
+	 * @return The representative or null if the object is not merged with
+	 *         others.
+	 */
+	public BeyondarObject getClusterRepresentative() {
+		return mClusterRepresentative;
+	}
+
+	/**
+	 * Set the screen cluster of the object.
+	 * 
+	 * This method is used by the {@link ARRenderer} to set this value.
+	 * 
+	 * @param cluster
+	 *            The cluster or null.
+	 */
+	public void setCluster(BeyondarObjectCluster cluster) {
+		mCluster = cluster;
+		if (cluster == null) {
+			mClusterRepresentative = null;
+			mClusterSize = 1;
+		} else {
+			mClusterRepresentative = cluster.getRepresentative();
+			mClusterSize = cluster.size();
+		}
+	}
+
 	/**
 	 * Get the bottom left screen position of the
 	 * {@link com.beyondar.android.world.BeyondarObject BeyondarObject} on the
@@ -628,6 +737,28 @@ public class BeyondarObject implements Plugable<BeyondarObjectPlugin> {
 		return mScreenPositionCenter;
 	}
 
+	/**
+	 * Calculate a corner of the object in the 3D world.
+	 * 
+	 * @param vertices
+	 *            Vertices of the texture.
+	 * @param offset
+	 *            Position of the corner in the vertices.
+	 * @param corner
+	 *            Point to store the result.
+	 * @return corner
+	 */
+	private Point3 fillCorner(float[] vertices, int offset, Point3 corner) {
+		corner.x = mPosition.x + vertices[offset];
+		corner.y = mPosition.y + vertices[offset + 1];
+		corner.z = mPosition.z + vertices[offset + 2];
+
+		corner.rotatePointDegrees_x(mAngle.x, mPosition);
+		corner.rotatePointDegrees_y(mAngle.y, mPosition);
+		corner.rotatePointDegrees_z(mAngle.z, mPosition);
+		return corner;
+	}
+
 	/**
 	 * Get the top left of the {@link com.beyondar.android.world.BeyondarObject
 	 * BeyondarObject} on the 3D world.
@@ -635,14 +766,7 @@ public class BeyondarObject implements Plugable<BeyondarObjectPlugin> {
 	 * @return Top left 3D.
 	 */
 	public Point3 getTopLeft() {
-		mTopLeft.x = mPosition.x + mTexture.getVertices()[3];
-		mTopLeft.y = mPosition.y + mTexture.getVertices()[4];
-		mTopLeft.z = mPosition.z + mTexture.getVertices()[5];
-
-		mTopLeft.rotatePointDegrees_x(mAngle.x, mPosition);
-		mTopLeft.rotatePointDegrees_y(mAngle.y, mPosition);
-		mTopLeft.rotatePointDegrees_z(mAngle.z, mPosition);
-		return mTopLeft;
+		return fillCorner(mTexture.getVertices(), 3, mTopLeft);
 	}
 
 	/**
@@ -653,14 +777,7 @@ public class BeyondarObject implements Plugable<BeyondarObjectPlugin> {
 	 * @return bottom left 3D.
 	 */
 	public Point3 getBottomLeft() {
-		mBottomLeft.x = mPosition.x + mTexture.getVertices()[0];
-		mBottomLeft.y = mPosition.y + mTexture.getVertices()[1];
-		mBottomLeft.z = mPosition.z + mTexture.getVertices()[2];
-
-		mBottomLeft.rotatePointDegrees_x(mAngle.x, mPosition);
-		mBottomLeft.rotatePointDegrees_y(mAngle.y, mPosition);
-		mBottomLeft.rotatePointDegrees_z(mAngle.z, mPosition);
-		return mBottomLeft;
+		return fillCorner(mTexture.getVertices(), 0, mBottomLeft);
 	}
 
 	/**
@@ -671,14 +788,7 @@ public class BeyondarObject implements Plugable<BeyondarObjectPlugin> {
 	 * @return Bottom right 3D.
 	 */
 	public Point3 getBottomRight() {
-		mBottomRight.x = mPosition.x + mTexture.getVertices()[6];
-		mBottomRight.y = mPosition.y + mTexture.getVertices()[7];
-		mBottomRight.z = mPosition.z + mTexture.getVertices()[8];
-
-		mBottomRight.rotatePointDegrees_x(mAngle.x, mPosition);
-		mBottomRight.rotatePointDegrees_y(mAngle.y, mPosition);
-		mBottomRight.rotatePointDegrees_z(mAngle.z, mPosition);
-		return mBottomRight;
+		return fillCorner(mTexture.getVertices(), 6, mBottomRight);
 	}
 
 	/**
@@ -689,31 +799,47 @@ public class BeyondarObject implements Plugable<BeyondarObjectPlugin> {
 	 * @return Top right 3D.
 	 */
 	public Point3 getTopRight() {
-		mTopRight.x = mPosition.x + mTexture.getVertices()[9];
-		mTopRight.y = mPosition.y + mTexture.getVertices()[10];
-		mTopRight.z = mPosition.z + mTexture.getVertices()[11];
-
-		mTopRight.rotatePointDegrees_x(mAngle.x, mPosition);
-		mTopRight.rotatePointDegrees_y(mAngle.y, mPosition);
-		mTopRight.rotatePointDegrees_z(mAngle.z, mPosition);
-		return mTopRight;
+		return fillCorner(mTexture.getVertices(), 9, mTopRight);
 	}
 
 	/**
 	 * Get the {@link com.beyondar.android.opengl.colision.MeshCollider
 	 * MeshCollider} of the {@link com.beyondar.android.world.GeoObject GeoObject}.
+	 * The same instance is reused and only updated when the position, the
+	 * angle or the size of the object change, so do not keep it.
 	 * 
 	 * @return Mesh collider.
 	 */
 	public MeshCollider getMeshCollider() {
-		// TODO: Improve the mesh collider!!
-		Point3 topLeft = getTopLeft();
-		Point3 bottomLeft = getBottomLeft();
-		Point3 bottomRight = getBottomRight();
-		Point3 topRight = getTopRight();
+		TextureGeometry geometry = mTexture.getGeometry();
+		if (mMeshCollider != null && mColliderGeometry == geometry && mColliderX == mPosition.x
+				&& mColliderY == mPosition.y && mColliderZ == mPosition.z && mColliderAngleX == mAngle.x
+				&& mColliderAngleY == mAngle.y && mColliderAngleZ == mAngle.z) {
+			return mMeshCollider;
+		}
+		// The corners are calculated in their own points, the ones returned by
+		// getTopLeft() and the rest are also written by the GL thread
+		if (mColliderCorners == null) {
+			mColliderCorners = new Point3[] { new Point3(), new Point3(), new Point3(), new Point3() };
+		}
+		Point3 topLeft = fillCorner(geometry.getVertices(), 3, mColliderCorners[0]);
+		Point3 bottomLeft = fillCorner(geometry.getVertices(), 0, mColliderCorners[1]);
+		Point3 bottomRight = fillCorner(geometry.getVertices(), 6, mColliderCorners[2]);
+		Point3 topRight = fillCorner(geometry.getVertices(), 9, mColliderCorners[3]);
 
 		// Generate the collision detector
-		mMeshCollider = new SquareMeshCollider(topLeft, bottomLeft, bottomRight, topRight);
+		if (mMeshCollider == null) {
+			mMeshCollider = new SquareMeshCollider(topLeft, bottomLeft, bottomRight, topRight);
+		} else {
+			mMeshCollider.set(topLeft, bottomLeft, bottomRight, topRight);
+		}
+		mColliderGeometry = geometry;
+		mColliderX = mPosition.x;
+		mColliderY = mPosition.y;
+		mColliderZ = mPosition.z;
+		mColliderAngleX = mAngle.x;
+		mColliderAngleY = mAngle.y;
+		mColliderAngleZ = mAngle.z;
 		return mMeshCollider;
 	}
 }
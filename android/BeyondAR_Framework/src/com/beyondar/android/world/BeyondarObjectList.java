@@ -16,6 +16,7 @@
 package com.beyondar.android.world;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 
 import com.beyondar.android.opengl.texture.Texture;
@@ -26,6 +27,8 @@ import com.beyondar.android.opengl.texture.Texture;
  */
 public class BeyondarObjectList implements Iterable<BeyondarObject> {
 
+	private static final BeyondarObject[] EMPTY = new BeyondarObject[0];
+
 	private int mType;
 
 	private Texture mTexture;
@@ -33,7 +36,13 @@ public class BeyondarObjectList implements Iterable<BeyondarObject> {
 	private boolean mVisibility;
 
 	private ArrayList<BeyondarObject> mContainer;
+	// Same content as mContainer, to check if an object is already added
+	private HashSet<BeyondarObject> mContainerSet;
 	private ArrayList<BeyondarObject> mToRemoveQueue;
+	// Copies of the content, replaced when they are requested after a change
+	private BeyondarObject[] mArray;
+	private BeyondarObject[] mNonGeoArray;
+	private boolean mArraysDirty;
 
 	private String mDefaultImageUri;
 
@@ -45,7 +54,10 @@ public class BeyondarObjectList implements Iterable<BeyondarObject> {
 		mType = type;
 		mVisibility = true;
 		mContainer = new ArrayList<BeyondarObject>();
+		mContainerSet = new HashSet<BeyondarObject>();
 		mToRemoveQueue = new ArrayList<BeyondarObject>();
+		mArray = EMPTY;
+		mNonGeoArray = EMPTY;
 		mWorld = world;
 		mTexture = new Texture();
 		mLock = new Object();
@@ -80,11 +92,14 @@ public class BeyondarObjectList implements Iterable<BeyondarObject> {
 	 *         otherwise
 	 */
 	boolean add(BeyondarObject object) {
-		if (!mContainer.contains(object)) {
-			mContainer.add(object);
-			return true;
-		} else {
-			return false;
+		synchronized (mLock) {
+			if (mContainerSet.add(object)) {
+				mContainer.add(object);
+				mArraysDirty = true;
+				return true;
+			} else {
+				return false;
+			}
 		}
 	}
 
@@ -199,12 +214,72 @@ public class BeyondarObjectList implements Iterable<BeyondarObject> {
 	 * This method force to remove all the elements that are queued to be
 	 * removed.
 	 */
-	public synchronized void forceRemoveObjectsInQueue() {
+	public void forceRemoveObjectsInQueue() {
 		synchronized (mLock) {
+			if (mToRemoveQueue.isEmpty()) {
+				return;
+			}
 			for (int i = 0; i < mToRemoveQueue.size(); i++) {
-				mContainer.remove(mToRemoveQueue.get(i));
+				mContainerSet.remove(mToRemoveQueue.get(i));
 			}
 			mToRemoveQueue.clear();
+			// Keep the objects that are still in the set, in the same order
+			int size = mContainer.size();
+			int kept = 0;
+			for (int i = 0; i < size; i++) {
+				BeyondarObject object = mContainer.get(i);
+				if (mContainerSet.contains(object)) {
+					mContainer.set(kept++, object);
+				}
+			}
+			mContainer.subList(kept, size).clear();
+			mArraysDirty = true;
+		}
+		mWorld.onListModified();
+	}
+
+	/**
+	 * Create new copies of the content. The old ones are never modified, so
+	 * they can be shared with the {@link WorldSnapshot}s. It must be called
+	 * holding mLock.
+	 */
+	private void updateArrays() {
+		int size = mContainer.size();
+		BeyondarObject[] array = mContainer.toArray(new BeyondarObject[size]);
+		int nonGeoCount = 0;
+		for (int i = 0; i < size; i++) {
+			if (!(array[i] instanceof GeoObject)) {
+				nonGeoCount++;
+			}
+		}
+		BeyondarObject[] nonGeoArray = nonGeoCount == 0 ? EMPTY : new BeyondarObject[nonGeoCount];
+		for (int i = 0, j = 0; j < nonGeoCount; i++) {
+			if (!(array[i] instanceof GeoObject)) {
+				nonGeoArray[j++] = array[i];
+			}
+		}
+		mArray = array;
+		mNonGeoArray = nonGeoArray;
+	}
+
+	/**
+	 * Store the current copies of the content at the specified position of
+	 * the arrays. The copies are created here if the content has changed, so
+	 * adding a lot of objects only copies them once. The copies must not be
+	 * modified.
+	 * 
+	 * @param objects
+	 * @param nonGeoObjects
+	 * @param index
+	 */
+	void getArrays(BeyondarObject[][] objects, BeyondarObject[][] nonGeoObjects, int index) {
+		synchronized (mLock) {
+			if (mArraysDirty) {
+				updateArrays();
+				mArraysDirty = false;
+			}
+			objects[index] = mArray;
+			nonGeoObjects[index] = mNonGeoArray;
 		}
 	}
 
@@ -0,0 +1,439 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.world;
+
+import com.beyondar.android.opengl.colision.SphericalMeshCollider;
+import com.beyondar.android.opengl.texture.TextureGeometry;
+import com.beyondar.android.util.math.geom.Point3;
+import com.beyondar.android.util.math.geom.Ray;
+
+/**
+ * Bounding volume hierarchy of the {@link BeyondarObject}s of a {@link World}
+ * in GL coordinates, used as broad phase to pick the objects with a ray. Each
+ * node is a {@link SphericalMeshCollider} that contains the bounding spheres
+ * of the objects below it, so only the objects whose spheres are crossed by
+ * the ray are checked with their exact collider.<br>
+ * The tree is built again when the objects of the world change or when most
+ * of them have moved (for instance when the user moves), otherwise only the
+ * nodes above the objects that moved are refitted. The nodes are visited from
+ * the closest to the farthest one, so the hits are found almost sorted and the
+ * search for the closest hit stops as soon as no closer hit is possible.<br>
+ * The buffers are reused between calls. The methods are synchronized, so it
+ * can be used from several threads.
+ */
+class BoundingVolumeHierarchy {
+
+	private static final int MAX_LEAF_SIZE = 4;
+
+	private long mVersion = -1;
+
+	// Objects, indexed in the order of the snapshot
+	private int mObjectCount;
+	private BeyondarObject[] mObjects = new BeyondarObject[0];
+	private float[] mCenters = new float[0];
+	private float[] mRadii = new float[0];
+	private TextureGeometry[] mGeometries = new TextureGeometry[0];
+	private int[] mObjectLeaf = new int[0];
+	/** Object indices sorted so the objects of each leaf are consecutive. */
+	private int[] mOrder = new int[0];
+
+	// Nodes, the children always have bigger indices than their parent
+	private int mNodeCount;
+	private SphericalMeshCollider[] mBounds = new SphericalMeshCollider[0];
+	private int[] mLeft = new int[0];
+	private int[] mRight = new int[0];
+	private int[] mParent = new int[0];
+	private int[] mStart = new int[0];
+	private int[] mCount = new int[0];
+	private boolean[] mDirty = new boolean[0];
+
+	// Min heap of the nodes to visit, sorted by the distance to the ray
+	private int[] mHeapNodes = new int[0];
+	private float[] mHeapDistances = new float[0];
+
+	private final Point3 mTmpPoint = new Point3();
+
+	/**
+	 * Update the tree with the objects of the snapshot and their current GL
+	 * positions.
+	 */
+	synchronized void update(WorldSnapshot snapshot) {
+		if (snapshot.getVersion() != mVersion) {
+			load(snapshot);
+			mVersion = snapshot.getVersion();
+			build();
+			return;
+		}
+
+		int moved = 0;
+		for (int i = 0; i < mObjectCount; i++) {
+			if (updateObject(i)) {
+				mDirty[mObjectLeaf[i]] = true;
+				moved++;
+			}
+		}
+		if (moved == 0) {
+			return;
+		}
+		if (moved > mObjectCount / 2) {
+			// A refitted tree gets loose, it is faster to build it again
+			build();
+		} else {
+			refit();
+		}
+	}
+
+	/**
+	 * Get the objects that collide with the ray.
+	 *
+	 * @param ray
+	 * @param maxDistance
+	 *            Max distance (meters) from the user of the
+	 *            {@link GeoObject}s, the rest of objects are always checked.
+	 * @param latitude
+	 *            Latitude of the user.
+	 * @param longitude
+	 *            Longitude of the user.
+	 * @param hits
+	 *            Where the hits are added.
+	 * @param nearestOnly
+	 *            true to only get the closest hit.
+	 */
+	synchronized void pick(Ray ray, double maxDistance, double latitude, double longitude,
+			RayHitBuffer hits, boolean nearestOnly) {
+		if (mNodeCount == 0) {
+			return;
+		}
+		float rootDistance = mBounds[0].getIntersectionDistance(ray);
+		if (rootDistance < 0) {
+			return;
+		}
+		int heapSize = push(0, 0, rootDistance);
+		Point3 point = mTmpPoint;
+		float nearest = Float.MAX_VALUE;
+		while (heapSize > 0) {
+			int node = mHeapNodes[0];
+			float nodeDistance = mHeapDistances[0];
+			heapSize = pop(heapSize);
+			if (nearestOnly && nodeDistance > nearest) {
+				// The rest of the nodes are farther than the closest hit
+				break;
+			}
+			if (mLeft[node] == -1) {
+				for (int i = mStart[node]; i < mStart[node] + mCount[node]; i++) {
+					BeyondarObject beyondarObject = mObjects[mOrder[i]];
+					if (beyondarObject instanceof GeoObject
+							&& ((GeoObject) beyondarObject).calculateDistanceMeters(longitude, latitude) > maxDistance) {
+						continue;
+					}
+					float distance = World.getIntersectionDistance(ray, beyondarObject, point);
+					if (distance < 0) {
+						continue;
+					}
+					if (!nearestOnly) {
+						hits.add(beyondarObject, distance, point);
+					} else if (distance < nearest) {
+						nearest = distance;
+						hits.clear();
+						hits.add(beyondarObject, distance, point);
+					}
+				}
+			} else {
+				float leftDistance = mBounds[mLeft[node]].getIntersectionDistance(ray);
+				if (leftDistance >= 0) {
+					heapSize = push(heapSize, mLeft[node], leftDistance);
+				}
+				float rightDistance = mBounds[mRight[node]].getIntersectionDistance(ray);
+				if (rightDistance >= 0) {
+					heapSize = push(heapSize, mRight[node], rightDistance);
+				}
+			}
+		}
+	}
+
+	private int push(int size, int node, float distance) {
+		int index = size;
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (mHeapDistances[parent] <= distance) {
+				break;
+			}
+			mHeapNodes[index] = mHeapNodes[parent];
+			mHeapDistances[index] = mHeapDistances[parent];
+			index = parent;
+		}
+		mHeapNodes[index] = node;
+		mHeapDistances[index] = distance;
+		return size + 1;
+	}
+
+	private int pop(int size) {
+		size--;
+		int node = mHeapNodes[size];
+		float distance = mHeapDistances[size];
+		int index = 0;
+		while (true) {
+			int child = index * 2 + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && mHeapDistances[child + 1] < mHeapDistances[child]) {
+				child++;
+			}
+			if (distance <= mHeapDistances[child]) {
+				break;
+			}
+			mHeapNodes[index] = mHeapNodes[child];
+			mHeapDistances[index] = mHeapDistances[child];
+			index = child;
+		}
+		mHeapNodes[index] = node;
+		mHeapDistances[index] = distance;
+		return size;
+	}
+
+	private void load(WorldSnapshot snapshot) {
+		int count = 0;
+		for (int i = 0; i < snapshot.getListCount(); i++) {
+			count += snapshot.getObjectCount(i);
+		}
+		if (mObjects.length < count) {
+			mObjects = new BeyondarObject[count];
+			mCenters = new float[count * 3];
+			mRadii = new float[count];
+			mGeometries = new TextureGeometry[count];
+			mObjectLeaf = new int[count];
+			mOrder = new int[count];
+			// A binary tree with leaves of at least one object
+			int nodes = Math.max(1, count * 2);
+			mBounds = new SphericalMeshCollider[nodes];
+			for (int i = 0; i < nodes; i++) {
+				mBounds[i] = new SphericalMeshCollider(new Point3(), 0);
+			}
+			mLeft = new int[nodes];
+			mRight = new int[nodes];
+			mParent = new int[nodes];
+			mStart = new int[nodes];
+			mCount = new int[nodes];
+			mDirty = new boolean[nodes];
+			mHeapNodes = new int[nodes];
+			mHeapDistances = new float[nodes];
+		}
+		for (int i = count; i < mObjectCount; i++) {
+			mObjects[i] = null;
+			mGeometries[i] = null;
+		}
+		int index = 0;
+		for (int i = 0; i < snapshot.getListCount(); i++) {
+			for (int j = 0; j < snapshot.getObjectCount(i); j++) {
+				mObjects[index] = snapshot.getObject(i, j);
+				mGeometries[index] = null;
+				updateObject(index);
+				index++;
+			}
+		}
+		mObjectCount = count;
+	}
+
+	/**
+	 * Read the position and the size of the object.
+	 *
+	 * @return true if they have changed.
+	 */
+	private boolean updateObject(int index) {
+		BeyondarObject beyondarObject = mObjects[index];
+		Point3 position = beyondarObject.getPosition();
+		TextureGeometry geometry = beyondarObject.getTexture().getGeometry();
+		int c = index * 3;
+		if (geometry == mGeometries[index] && mCenters[c] == position.x && mCenters[c + 1] == position.y
+				&& mCenters[c + 2] == position.z) {
+			return false;
+		}
+		mCenters[c] = position.x;
+		mCenters[c + 1] = position.y;
+		mCenters[c + 2] = position.z;
+		if (geometry != mGeometries[index]) {
+			// The corners are rotated around the position, so the sphere
+			// contains them whatever the angle is
+			float[] vertices = geometry.getVertices();
+			float max = 0;
+			for (int i = 0; i < vertices.length; i += 3) {
+				max = Math.max(max, vertices[i] * vertices[i] + vertices[i + 1] * vertices[i + 1]
+						+ vertices[i + 2] * vertices[i + 2]);
+			}
+			mRadii[index] = (float) Math.sqrt(max);
+			mGeometries[index] = geometry;
+		}
+		return true;
+	}
+
+	private void build() {
+		mNodeCount = 0;
+		for (int i = 0; i < mObjectCount; i++) {
+			mOrder[i] = i;
+		}
+		if (mObjectCount > 0) {
+			build(-1, 0, mObjectCount);
+		}
+	}
+
+	private int build(int parent, int start, int end) {
+		int node = mNodeCount++;
+		mParent[node] = parent;
+		mDirty[node] = false;
+		if (end - start <= MAX_LEAF_SIZE) {
+			mLeft[node] = mRight[node] = -1;
+			mStart[node] = start;
+			mCount[node] = end - start;
+			for (int i = start; i < end; i++) {
+				mObjectLeaf[mOrder[i]] = node;
+			}
+			fitLeaf(node);
+			return node;
+		}
+
+		// Split by the median of the longest axis of the centers
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+		for (int i = start; i < end; i++) {
+			int c = mOrder[i] * 3;
+			minX = Math.min(minX, mCenters[c]);
+			maxX = Math.max(maxX, mCenters[c]);
+			minY = Math.min(minY, mCenters[c + 1]);
+			maxY = Math.max(maxY, mCenters[c + 1]);
+			minZ = Math.min(minZ, mCenters[c + 2]);
+			maxZ = Math.max(maxZ, mCenters[c + 2]);
+		}
+		int axis = 0;
+		if (maxY - minY > maxX - minX && maxY - minY > maxZ - minZ) {
+			axis = 1;
+		} else if (maxZ - minZ > maxX - minX) {
+			axis = 2;
+		}
+		int mid = (start + end) >>> 1;
+		select(start, end - 1, mid, axis);
+
+		mStart[node] = start;
+		mCount[node] = end - start;
+		mLeft[node] = build(node, start, mid);
+		mRight[node] = build(node, mid, end);
+		fitNode(node);
+		return node;
+	}
+
+	/** Move the k-th object of the range by the axis to its place (quickselect). */
+	private void select(int left, int right, int k, int axis) {
+		int[] order = mOrder;
+		while (left < right) {
+			float pivot = mCenters[order[(left + right) >>> 1] * 3 + axis];
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (mCenters[order[i] * 3 + axis] < pivot) {
+					i++;
+				}
+				while (mCenters[order[j] * 3 + axis] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					int tmp = order[i];
+					order[i] = order[j];
+					order[j] = tmp;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) {
+				right = j;
+			} else if (k >= i) {
+				left = i;
+			} else {
+				break;
+			}
+		}
+	}
+
+	private void refit() {
+		// The children have bigger indices, so they are fitted first
+		for (int node = mNodeCount - 1; node >= 0; node--) {
+			if (!mDirty[node]) {
+				continue;
+			}
+			mDirty[node] = false;
+			if (mLeft[node] == -1) {
+				fitLeaf(node);
+			} else {
+				fitNode(node);
+			}
+			if (mParent[node] != -1) {
+				mDirty[mParent[node]] = true;
+			}
+		}
+	}
+
+	private void fitLeaf(int node) {
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+		int end = mStart[node] + mCount[node];
+		for (int i = mStart[node]; i < end; i++) {
+			int object = mOrder[i];
+			int c = object * 3;
+			float r = mRadii[object];
+			minX = Math.min(minX, mCenters[c] - r);
+			maxX = Math.max(maxX, mCenters[c] + r);
+			minY = Math.min(minY, mCenters[c + 1] - r);
+			maxY = Math.max(maxY, mCenters[c + 1] + r);
+			minZ = Math.min(minZ, mCenters[c + 2] - r);
+			maxZ = Math.max(maxZ, mCenters[c + 2] + r);
+		}
+		float x = (minX + maxX) / 2;
+		float y = (minY + maxY) / 2;
+		float z = (minZ + maxZ) / 2;
+		float radius = 0;
+		for (int i = mStart[node]; i < end; i++) {
+			int object = mOrder[i];
+			int c = object * 3;
+			float dx = mCenters[c] - x;
+			float dy = mCenters[c + 1] - y;
+			float dz = mCenters[c + 2] - z;
+			radius = Math.max(radius, (float) Math.sqrt(dx * dx + dy * dy + dz * dz) + mRadii[object]);
+		}
+		mBounds[node].set(x, y, z, radius);
+	}
+
+	/** Fit the smallest sphere that contains the spheres of both children. */
+	private void fitNode(int node) {
+		SphericalMeshCollider a = mBounds[mLeft[node]];
+		SphericalMeshCollider b = mBounds[mRight[node]];
+		Point3 ca = a.getCenter();
+		Point3 cb = b.getCenter();
+		float dx = cb.x - ca.x;
+		float dy = cb.y - ca.y;
+		float dz = cb.z - ca.z;
+		float d = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+		float ra = a.getRadius();
+		float rb = b.getRadius();
+		if (d + rb <= ra) {
+			mBounds[node].set(ca.x, ca.y, ca.z, ra);
+		} else if (d + ra <= rb) {
+			mBounds[node].set(cb.x, cb.y, cb.z, rb);
+		} else {
+			float radius = (d + ra + rb) / 2;
+			float t = (radius - ra) / d;
+			mBounds[node].set(ca.x + dx * t, ca.y + dy * t, ca.z + dz * t, radius);
+		}
+	}
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.world;
+
+import java.util.List;
+
+/**
+ * Sorts {@link BeyondarObject}s by their distance from the user (see
+ * {@link BeyondarObject#getDistanceFromUser()}). The distances are read once
+ * at the beginning of each operation, so the result is consistent even if
+ * they are updated meanwhile. The sort is stable: objects at the same
+ * distance keep their relative order.<br>
+ * The internal buffers are reused between calls, so after the first calls no
+ * memory is allocated. The class is not thread safe, use one instance for
+ * each thread.
+ */
+public class DistanceSorter {
+
+	private static final int INSERTION_SORT_THRESHOLD = 16;
+
+	private BeyondarObject[] mObjects;
+	private BeyondarObject[] mTmpObjects;
+	private double[] mKeys;
+	private double[] mTmpKeys;
+	private int[] mHeap;
+
+	public DistanceSorter() {
+		ensureCapacity(INSERTION_SORT_THRESHOLD);
+	}
+
+	/**
+	 * Sort the list from the closest to the farthest object.
+	 *
+	 * @param list
+	 *            The list to sort.
+	 * @return The same list.
+	 */
+	public <T extends BeyondarObject> List<T> sort(List<T> list) {
+		int size = list.size();
+		if (size < 2) {
+			return list;
+		}
+		load(list);
+		if (size <= INSERTION_SORT_THRESHOLD) {
+			insertionSort(mObjects, mKeys, 0, size);
+		} else {
+			mergeSort(size);
+		}
+		for (int i = 0; i < size; i++) {
+			@SuppressWarnings("unchecked")
+			T object = (T) mObjects[i];
+			list.set(i, object);
+			mObjects[i] = null;
+		}
+		return list;
+	}
+
+	/**
+	 * Get the k closest objects of the list sorted from the closest to the
+	 * farthest one. It is faster than sorting the whole list when k is small.
+	 *
+	 * @param source
+	 *            The objects to check. The list is not modified.
+	 * @param k
+	 *            Max amount of objects to get.
+	 * @param out
+	 *            The list where the result will be stored. The list is cleaned
+	 *            before adding the objects.
+	 * @return The out list.
+	 */
+	public <T extends BeyondarObject> List<T> selectNearest(List<? extends T> source, int k, List<T> out) {
+		out.clear();
+		int size = source.size();
+		if (k <= 0 || size == 0) {
+			return out;
+		}
+		if (k >= size) {
+			// Copied one by one, addAll would create a temporary array
+			for (int i = 0; i < size; i++) {
+				out.add(source.get(i));
+			}
+			return sort(out);
+		}
+		load(source);
+
+		// Max heap with the k closest objects found so far
+		int[] heap = mHeap;
+		int heapSize = 0;
+		for (int i = 0; i < size; i++) {
+			if (heapSize < k) {
+				heap[heapSize] = i;
+				siftUp(heap, heapSize);
+				heapSize++;
+			} else if (isBefore(i, heap[0])) {
+				heap[0] = i;
+				siftDown(heap, 0, heapSize);
+			}
+		}
+
+		// Sort the heap (the farthest objects are moved to the end)
+		for (int end = heapSize - 1; end > 0; end--) {
+			int tmp = heap[0];
+			heap[0] = heap[end];
+			heap[end] = tmp;
+			siftDown(heap, 0, end);
+		}
+
+		for (int i = 0; i < heapSize; i++) {
+			@SuppressWarnings("unchecked")
+			T object = (T) mObjects[heap[i]];
+			out.add(object);
+		}
+		for (int i = 0; i < size; i++) {
+			mObjects[i] = null;
+		}
+		return out;
+	}
+
+	private void load(List<? extends BeyondarObject> list) {
+		int size = list.size();
+		ensureCapacity(size);
+		for (int i = 0; i < size; i++) {
+			BeyondarObject object = list.get(i);
+			mObjects[i] = object;
+			mKeys[i] = object.getDistanceFromUser();
+		}
+	}
+
+	private void ensureCapacity(int size) {
+		if (mObjects != null && mObjects.length >= size) {
+			return;
+		}
+		int capacity = Math.max(size, mObjects == null ? 0 : mObjects.length * 2);
+		mObjects = new BeyondarObject[capacity];
+		mTmpObjects = new BeyondarObject[capacity];
+		mKeys = new double[capacity];
+		mTmpKeys = new double[capacity];
+		mHeap = new int[capacity];
+	}
+
+	/** Compare using the distance and then the original position. */
+	private boolean isBefore(int a, int b) {
+		double ka = mKeys[a];
+		double kb = mKeys[b];
+		return ka < kb || (ka == kb && a < b);
+	}
+
+	private void siftUp(int[] heap, int index) {
+		int item = heap[index];
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (!isBefore(heap[parent], item)) {
+				break;
+			}
+			heap[index] = heap[parent];
+			index = parent;
+		}
+		heap[index] = item;
+	}
+
+	private void siftDown(int[] heap, int index, int size) {
+		int item = heap[index];
+		while (true) {
+			int child = index * 2 + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && isBefore(heap[child], heap[child + 1])) {
+				child++;
+			}
+			if (!isBefore(item, heap[child])) {
+				break;
+			}
+			heap[index] = heap[child];
+			index = child;
+		}
+		heap[index] = item;
+	}
+
+	private void mergeSort(int size) {
+		BeyondarObject[] objects = mObjects;
+		double[] keys = mKeys;
+		BeyondarObject[] tmpObjects = mTmpObjects;
+		double[] tmpKeys = mTmpKeys;
+
+		for (int start = 0; start < size; start += INSERTION_SORT_THRESHOLD) {
+			insertionSort(objects, keys, start, Math.min(start + INSERTION_SORT_THRESHOLD, size));
+		}
+
+		for (int width = INSERTION_SORT_THRESHOLD; width < size; width *= 2) {
+			for (int left = 0; left < size; left += width * 2) {
+				int mid = Math.min(left + width, size);
+				int right = Math.min(left + width * 2, size);
+				int i = left, j = mid, k = left;
+				while (i < mid && j < right) {
+					if (keys[j] < keys[i]) {
+						tmpObjects[k] = objects[j];
+						tmpKeys[k++] = keys[j++];
+					} else {
+						tmpObjects[k] = objects[i];
+						tmpKeys[k++] = keys[i++];
+					}
+				}
+				while (i < mid) {
+					tmpObjects[k] = objects[i];
+					tmpKeys[k++] = keys[i++];
+				}
+				while (j < right) {
+					tmpObjects[k] = objects[j];
+					tmpKeys[k++] = keys[j++];
+				}
+			}
+			BeyondarObject[] swapObjects = objects;
+			objects = tmpObjects;
+			tmpObjects = swapObjects;
+			double[] swapKeys = keys;
+			keys = tmpKeys;
+			tmpKeys = swapKeys;
+		}
+
+		if (objects != mObjects) {
+			System.arraycopy(objects, 0, mObjects, 0, size);
+			System.arraycopy(keys, 0, mKeys, 0, size);
+		}
+		for (int i = 0; i < size; i++) {
+			mTmpObjects[i] = null;
+		}
+	}
+
+	private static void insertionSort(BeyondarObject[] objects, double[] keys, int from, int to) {
+		for (int i = from + 1; i < to; i++) {
+			BeyondarObject object = objects[i];
+			double key = keys[i];
+			int j = i - 1;
+			while (j >= from && keys[j] > key) {
+				objects[j + 1] = objects[j];
+				keys[j + 1] = keys[j];
+				j--;
+			}
+			objects[j + 1] = object;
+			keys[j + 1] = key;
+		}
+	}
+}
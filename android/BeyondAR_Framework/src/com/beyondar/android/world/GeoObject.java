@@ -20,6 +20,7 @@ import android.location.Location;
 import com.beyondar.android.plugin.BeyondarObjectPlugin;
 import com.beyondar.android.plugin.GeoObjectPlugin;
 import com.beyondar.android.util.math.Distance;
+import com.beyondar.android.util.math.geom.Point3;
 
 /**
  * Extension of the {@link com.beyondar.android.world.BeyondarObject BeyondarObject} to make easier the usage of geo
@@ -32,6 +33,13 @@ public class GeoObject extends BeyondarObject {
 	private double mLatitude;
 	private double mAltitude;
 
+	/** Index that holds this object, maintained by the {@link GeoSpatialIndex}. */
+	GeoSpatialIndex mSpatialIndex;
+	long mSpatialIndexCell;
+
+	private volatile long mGeoPositionVersion;
+	private long mCachedWorldVersion, mCachedGeoVersion, mCachedRendererVersion;
+
 	/**
 	 * Create an instance of a {@link com.beyondar.android.world.GeoObject
 	 * GeoObject} with an unique ID.
@@ -72,9 +80,16 @@ public class GeoObject extends BeyondarObject {
 	 * @param altitude
 	 */
 	public void setGeoPosition(double latitude, double longitude, double altitude) {
-		mLatitude = latitude;
-		mLongitude = longitude;
-		mAltitude = altitude;
+		if (mLatitude != latitude || mLongitude != longitude || mAltitude != altitude) {
+			mLatitude = latitude;
+			mLongitude = longitude;
+			mAltitude = altitude;
+			mGeoPositionVersion = World.nextVersion();
+			GeoSpatialIndex spatialIndex = mSpatialIndex;
+			if (spatialIndex != null) {
+				spatialIndex.update(this);
+			}
+		}
 		synchronized (lockPlugins) {
 			for (BeyondarObjectPlugin plugin : plugins) {
 				if (plugin instanceof GeoObjectPlugin) {
@@ -84,6 +99,76 @@ public class GeoObject extends BeyondarObject {
 		}
 	}
 
+	/**
+	 * Get the version of the geo position. It changes every time that the geo
+	 * position of the object changes.
+	 * 
+	 * @return The geo position version.
+	 */
+	public long getGeoPositionVersion() {
+		return mGeoPositionVersion;
+	}
+
+	/**
+	 * Check if the position and the distance from the user calculated by the
+	 * {@link com.beyondar.android.opengl.renderer.ARRenderer ARRenderer} are
+	 * still valid.
+	 * 
+	 * This method is used by the
+	 * {@link com.beyondar.android.opengl.renderer.ARRenderer ARRenderer}.
+	 * 
+	 * @param worldVersion
+	 *            The geo position version of the {@link World}.
+	 * @param rendererVersion
+	 *            The version of the renderer configuration.
+	 * @return True if the cached values can be used.
+	 */
+	public boolean isRenderCacheValid(long worldVersion, long rendererVersion) {
+		return mCachedGeoVersion == mGeoPositionVersion && mCachedWorldVersion == worldVersion
+				&& mCachedRendererVersion == rendererVersion;
+	}
+
+	/**
+	 * Store the versions used to calculate the position and the distance from
+	 * the user.
+	 * 
+	 * This method is used by the
+	 * {@link com.beyondar.android.opengl.renderer.ARRenderer ARRenderer}.
+	 * 
+	 * @param worldVersion
+	 *            The geo position version of the {@link World}.
+	 * @param geoVersion
+	 *            The geo position version of this object used for the
+	 *            calculation.
+	 * @param rendererVersion
+	 *            The version of the renderer configuration.
+	 */
+	public void setRenderCacheVersion(long worldVersion, long geoVersion, long rendererVersion) {
+		mCachedWorldVersion = worldVersion;
+		mCachedGeoVersion = geoVersion;
+		mCachedRendererVersion = rendererVersion;
+	}
+
+	/**
+	 * Invalidate the position and the distance calculated by the
+	 * {@link com.beyondar.android.opengl.renderer.ARRenderer ARRenderer}.
+	 */
+	public void invalidateRenderCache() {
+		mCachedGeoVersion = -1;
+	}
+
+	@Override
+	public void setPosition(Point3 newPos) {
+		invalidateRenderCache();
+		super.setPosition(newPos);
+	}
+
+	@Override
+	public void setPosition(float x, float y, float z) {
+		invalidateRenderCache();
+		super.setPosition(x, y, z);
+	}
+
 	/**
 	 * Get the longitude.
 	 * 
@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.world;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.beyondar.android.util.math.Distance;
+
+/**
+ * Latitude/longitude cell grid that holds all the
+ * {@link com.beyondar.android.world.GeoObject GeoObject}s of a {@link World}.
+ * It is used to get the objects that are around a geo position without
+ * checking the distance of every single object in the world.<br>
+ * The index is maintained by the {@link World} when the objects are added or
+ * removed and by the {@link com.beyondar.android.world.GeoObject GeoObject}
+ * when its geo position changes.
+ */
+public class GeoSpatialIndex {
+
+	/** Default size of each cell of the grid (meters). */
+	public static final double DEFAULT_CELL_SIZE_METERS = 250;
+
+	private static final double METERS_PER_DEGREE = Distance.EARTH_RADIUS_KM * 1000 * Math.PI / 180;
+
+	private final double mCellSizeDegrees;
+	/** Amount of longitude cells around the earth, the last one can be smaller. */
+	private final long mLongitudeCells;
+	// Cells by key (see toKey), the keys are not boxed to look them up
+	private final LongHashMap<ArrayList<GeoObject>> mCells;
+	private int mSize;
+	private long mModificationCount;
+
+	/**
+	 * Create an index using the {@link #DEFAULT_CELL_SIZE_METERS}.
+	 */
+	public GeoSpatialIndex() {
+		this(DEFAULT_CELL_SIZE_METERS);
+	}
+
+	/**
+	 * Create an index with the specified cell size.
+	 *
+	 * @param cellSizeMeters
+	 *            Size of the cells in meters. Use values close to the usual
+	 *            query radius.
+	 */
+	public GeoSpatialIndex(double cellSizeMeters) {
+		if (cellSizeMeters <= 0) {
+			throw new IllegalArgumentException("cellSizeMeters <= 0");
+		}
+		mCellSizeDegrees = cellSizeMeters / METERS_PER_DEGREE;
+		mLongitudeCells = (long) Math.ceil(360 / mCellSizeDegrees);
+		mCells = new LongHashMap<ArrayList<GeoObject>>();
+	}
+
+	synchronized void add(GeoObject geoObject) {
+		if (geoObject.mSpatialIndex == this) {
+			return;
+		}
+		if (geoObject.mSpatialIndex != null) {
+			geoObject.mSpatialIndex.remove(geoObject);
+		}
+		long key = cellKey(geoObject.getLatitude(), geoObject.getLongitude());
+		getOrCreateCell(key).add(geoObject);
+		geoObject.mSpatialIndex = this;
+		geoObject.mSpatialIndexCell = key;
+		mSize++;
+		mModificationCount++;
+	}
+
+	synchronized void remove(GeoObject geoObject) {
+		if (geoObject.mSpatialIndex != this) {
+			return;
+		}
+		ArrayList<GeoObject> cell = mCells.get(geoObject.mSpatialIndexCell);
+		if (cell != null && cell.remove(geoObject)) {
+			mSize--;
+			if (cell.isEmpty()) {
+				mCells.remove(geoObject.mSpatialIndexCell);
+			}
+		}
+		geoObject.mSpatialIndex = null;
+		mModificationCount++;
+	}
+
+	/**
+	 * Called by the {@link com.beyondar.android.world.GeoObject GeoObject}
+	 * when its geo position changes.
+	 */
+	synchronized void update(GeoObject geoObject) {
+		if (geoObject.mSpatialIndex != this) {
+			return;
+		}
+		mModificationCount++;
+		long key = cellKey(geoObject.getLatitude(), geoObject.getLongitude());
+		if (key == geoObject.mSpatialIndexCell) {
+			return;
+		}
+		ArrayList<GeoObject> cell = mCells.get(geoObject.mSpatialIndexCell);
+		if (cell != null) {
+			cell.remove(geoObject);
+			if (cell.isEmpty()) {
+				mCells.remove(geoObject.mSpatialIndexCell);
+			}
+		}
+		getOrCreateCell(key).add(geoObject);
+		geoObject.mSpatialIndexCell = key;
+	}
+
+	synchronized void clear() {
+		for (int i = 0; i < mCells.getCapacity(); i++) {
+			ArrayList<GeoObject> cell = mCells.getValueAt(i);
+			if (cell != null) {
+				for (int j = 0; j < cell.size(); j++) {
+					cell.get(j).mSpatialIndex = null;
+				}
+			}
+		}
+		mCells.clear();
+		mSize = 0;
+		mModificationCount++;
+	}
+
+	/**
+	 * Get the amount of {@link com.beyondar.android.world.GeoObject GeoObject}
+	 * stored in the index.
+	 *
+	 * @return
+	 */
+	public synchronized int size() {
+		return mSize;
+	}
+
+	/**
+	 * Get a counter that changes every time that the index is modified (an
+	 * object is added, removed or moved).
+	 *
+	 * @return
+	 */
+	public synchronized long getModificationCount() {
+		return mModificationCount;
+	}
+
+	/**
+	 * Get all the {@link com.beyondar.android.world.GeoObject GeoObject}
+	 * closer than the specified radius from the given geo position. The
+	 * distance is approximated using an equirectangular projection, so it is
+	 * accurate enough for the distances used in the augmented reality view.
+	 * The area can cross the antimeridian (+/-180 degrees of longitude).
+	 *
+	 * @param latitude
+	 *            Latitude of the center.
+	 * @param longitude
+	 *            Longitude of the center.
+	 * @param radiusMeters
+	 *            Max distance (meters).
+	 * @param out
+	 *            The list where the result will be stored. This list will
+	 *            not be cleaned.
+	 * @return The list with the result.
+	 */
+	public synchronized List<GeoObject> getGeoObjectsInRadius(double latitude, double longitude,
+			double radiusMeters, List<GeoObject> out) {
+		if (mSize == 0 || radiusMeters < 0) {
+			return out;
+		}
+		double cosLat = Math.cos(Math.toRadians(latitude));
+		double radiusLat = radiusMeters / METERS_PER_DEGREE;
+		double radiusLon = cosLat > 1e-6 ? radiusLat / cosLat : 180;
+		double radius2 = radiusMeters * radiusMeters;
+
+		long minLat = cellIndex(latitude - radiusLat);
+		long maxLat = cellIndex(latitude + radiusLat);
+
+		// The longitude range is split in two when it crosses the
+		// antimeridian
+		long minLon = 0, maxLon = -1, minLonWrapped = 0, maxLonWrapped = -1;
+		if (radiusLon < 180) {
+			double from = normalizeLongitude(longitude) - radiusLon;
+			double to = normalizeLongitude(longitude) + radiusLon;
+			if (from < 0) {
+				minLon = 0;
+				maxLon = cellIndex(to);
+				minLonWrapped = cellIndex(from + 360);
+				maxLonWrapped = mLongitudeCells - 1;
+			} else if (to >= 360) {
+				minLon = cellIndex(from);
+				maxLon = mLongitudeCells - 1;
+				minLonWrapped = 0;
+				maxLonWrapped = cellIndex(to - 360);
+			} else {
+				minLon = cellIndex(from);
+				maxLon = cellIndex(to);
+			}
+		}
+		long lonCells = (maxLon - minLon + 1) + (maxLonWrapped - minLonWrapped + 1);
+
+		// If the area is bigger than the amount of populated cells it is
+		// cheaper to check all the cells
+		if (radiusLon >= 180 || (maxLat - minLat + 1) * lonCells > mCells.size()) {
+			for (int i = 0; i < mCells.getCapacity(); i++) {
+				ArrayList<GeoObject> cell = mCells.getValueAt(i);
+				if (cell != null) {
+					addInRadius(cell, latitude, longitude, cosLat, radius2, out);
+				}
+			}
+			return out;
+		}
+
+		for (long i = minLat; i <= maxLat; i++) {
+			addCellsInRadius(i, minLon, maxLon, latitude, longitude, cosLat, radius2, out);
+			addCellsInRadius(i, minLonWrapped, maxLonWrapped, latitude, longitude, cosLat, radius2, out);
+		}
+		return out;
+	}
+
+	private void addCellsInRadius(long latIndex, long minLon, long maxLon, double latitude,
+			double longitude, double cosLat, double radius2, List<GeoObject> out) {
+		for (long j = minLon; j <= maxLon; j++) {
+			ArrayList<GeoObject> cell = mCells.get(toKey(latIndex, j));
+			if (cell != null) {
+				addInRadius(cell, latitude, longitude, cosLat, radius2, out);
+			}
+		}
+	}
+
+	private static void addInRadius(ArrayList<GeoObject> cell, double latitude, double longitude,
+			double cosLat, double radius2, List<GeoObject> out) {
+		for (int i = 0; i < cell.size(); i++) {
+			GeoObject geoObject = cell.get(i);
+			double dy = (geoObject.getLatitude() - latitude) * METERS_PER_DEGREE;
+			double dLon = geoObject.getLongitude() - longitude;
+			if (dLon > 180) {
+				dLon -= 360;
+			} else if (dLon < -180) {
+				dLon += 360;
+			}
+			double dx = dLon * METERS_PER_DEGREE * cosLat;
+			if (dx * dx + dy * dy <= radius2) {
+				out.add(geoObject);
+			}
+		}
+	}
+
+	private ArrayList<GeoObject> getOrCreateCell(long key) {
+		ArrayList<GeoObject> cell = mCells.get(key);
+		if (cell == null) {
+			cell = new ArrayList<GeoObject>();
+			mCells.put(key, cell);
+		}
+		return cell;
+	}
+
+	private long cellIndex(double degrees) {
+		return (long) Math.floor(degrees / mCellSizeDegrees);
+	}
+
+	private long cellKey(double latitude, double longitude) {
+		return toKey(cellIndex(latitude), cellIndex(normalizeLongitude(longitude)));
+	}
+
+	/** Get the longitude from 0 to 360 degrees, so the cells do not overlap. */
+	private static double normalizeLongitude(double longitude) {
+		double normalized = (longitude + 180) % 360;
+		return normalized < 0 ? normalized + 360 : normalized;
+	}
+
+	private static long toKey(long latIndex, long lonIndex) {
+		return (latIndex << 32) | (lonIndex & 0xffffffffL);
+	}
+}
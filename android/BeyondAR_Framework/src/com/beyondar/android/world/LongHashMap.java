@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.world;
+
+/**
+ * Hash map with primitive long keys, so the keys are not boxed to look them
+ * up. It uses open addressing with linear probing. The values can not be
+ * null. The class is not thread safe.
+ * 
+ * @param <V>
+ *            Type of the values.
+ */
+class LongHashMap<V> {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private long[] mKeys;
+	private Object[] mValues;
+	private int mSize;
+	private int mMask;
+
+	LongHashMap() {
+		allocate(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Get the value of a key.
+	 * 
+	 * @param key
+	 * @return The value or null if the key is not in the map.
+	 */
+	@SuppressWarnings("unchecked")
+	V get(long key) {
+		for (int i = slot(key);; i = (i + 1) & mMask) {
+			Object value = mValues[i];
+			if (value == null) {
+				return null;
+			}
+			if (mKeys[i] == key) {
+				return (V) value;
+			}
+		}
+	}
+
+	/**
+	 * Set the value of a key.
+	 * 
+	 * @param key
+	 * @param value
+	 *            The value, it can not be null.
+	 */
+	void put(long key, V value) {
+		if (value == null) {
+			throw new NullPointerException("value");
+		}
+		int i = slot(key);
+		while (mValues[i] != null) {
+			if (mKeys[i] == key) {
+				mValues[i] = value;
+				return;
+			}
+			i = (i + 1) & mMask;
+		}
+		mKeys[i] = key;
+		mValues[i] = value;
+		mSize++;
+		// Keep the load factor under 0.5
+		if (mSize * 2 > mValues.length) {
+			rehash(mValues.length * 2);
+		}
+	}
+
+	/**
+	 * Remove a key.
+	 * 
+	 * @param key
+	 * @return The removed value or null if the key was not in the map.
+	 */
+	@SuppressWarnings("unchecked")
+	V remove(long key) {
+		int i = slot(key);
+		while (mValues[i] != null) {
+			if (mKeys[i] == key) {
+				Object value = mValues[i];
+				shiftBack(i);
+				mSize--;
+				return (V) value;
+			}
+			i = (i + 1) & mMask;
+		}
+		return null;
+	}
+
+	void clear() {
+		for (int i = 0; i < mValues.length; i++) {
+			mValues[i] = null;
+		}
+		mSize = 0;
+	}
+
+	int size() {
+		return mSize;
+	}
+
+	/**
+	 * Get the amount of slots, to iterate the values with
+	 * {@link #getValueAt(int)}.
+	 * 
+	 * @return
+	 */
+	int getCapacity() {
+		return mValues.length;
+	}
+
+	/**
+	 * Get the value stored in a slot.
+	 * 
+	 * @param slot
+	 *            From 0 to {@link #getCapacity()} - 1.
+	 * @return The value or null if the slot is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	V getValueAt(int slot) {
+		return (V) mValues[slot];
+	}
+
+	private int slot(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mMask;
+	}
+
+	/**
+	 * Empty a slot, moving back the following entries of the same run so they
+	 * can still be found without tombstones.
+	 */
+	private void shiftBack(int empty) {
+		int i = empty;
+		while (true) {
+			i = (i + 1) & mMask;
+			if (mValues[i] == null) {
+				break;
+			}
+			int home = slot(mKeys[i]);
+			// Move the entry if its home slot is not between the empty slot
+			// and its current slot
+			if (((i - home) & mMask) >= ((i - empty) & mMask)) {
+				mKeys[empty] = mKeys[i];
+				mValues[empty] = mValues[i];
+				empty = i;
+			}
+		}
+		mValues[empty] = null;
+	}
+
+	private void rehash(int capacity) {
+		long[] keys = mKeys;
+		Object[] values = mValues;
+		allocate(capacity);
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				int j = slot(keys[i]);
+				while (mValues[j] != null) {
+					j = (j + 1) & mMask;
+				}
+				mKeys[j] = keys[i];
+				mValues[j] = values[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		mKeys = new long[capacity];
+		mValues = new Object[capacity];
+		mMask = capacity - 1;
+	}
+}
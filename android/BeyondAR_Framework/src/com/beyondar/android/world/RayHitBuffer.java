@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.world;
+
+import com.beyondar.android.util.math.geom.Point3;
+
+/**
+ * Reusable result of picking the {@link BeyondarObject}s that collide with a
+ * ray (see {@link World#getBeyondarObjectsCollideRay(com.beyondar.android.util.math.geom.Ray, float, RayHitBuffer)}
+ * ). For each hit it stores the object, the distance from the start of the
+ * ray and the intersection point, sorted from the closest to the farthest
+ * hit.<br>
+ * The buffer is reused between calls, so after the first calls no memory is
+ * allocated. The class is not thread safe, use one instance for each thread.
+ */
+public class RayHitBuffer {
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	private BeyondarObject[] mObjects;
+	private float[] mDistances;
+	private float[] mPoints;
+	private int mSize;
+
+	public RayHitBuffer() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Create a buffer with the specified capacity. It grows if needed.
+	 *
+	 * @param capacity
+	 */
+	public RayHitBuffer(int capacity) {
+		capacity = Math.max(1, capacity);
+		mObjects = new BeyondarObject[capacity];
+		mDistances = new float[capacity];
+		mPoints = new float[capacity * 3];
+	}
+
+	/**
+	 * Remove all the hits.
+	 */
+	public void clear() {
+		for (int i = 0; i < mSize; i++) {
+			mObjects[i] = null;
+		}
+		mSize = 0;
+	}
+
+	/**
+	 * Add a hit keeping the buffer sorted by distance.
+	 *
+	 * @param beyondarObject
+	 * @param distance
+	 *            Distance from the start of the ray (GL units).
+	 * @param point
+	 *            Intersection point, it is copied.
+	 */
+	public void add(BeyondarObject beyondarObject, float distance, Point3 point) {
+		if (mSize == mObjects.length) {
+			grow();
+		}
+		// Insertion sort, the hits of a ray are usually few
+		int index = mSize;
+		while (index > 0 && mDistances[index - 1] > distance) {
+			mObjects[index] = mObjects[index - 1];
+			mDistances[index] = mDistances[index - 1];
+			System.arraycopy(mPoints, (index - 1) * 3, mPoints, index * 3, 3);
+			index--;
+		}
+		mObjects[index] = beyondarObject;
+		mDistances[index] = distance;
+		mPoints[index * 3] = point.x;
+		mPoints[index * 3 + 1] = point.y;
+		mPoints[index * 3 + 2] = point.z;
+		mSize++;
+	}
+
+	private void grow() {
+		int capacity = mObjects.length * 2;
+		BeyondarObject[] objects = new BeyondarObject[capacity];
+		float[] distances = new float[capacity];
+		float[] points = new float[capacity * 3];
+		System.arraycopy(mObjects, 0, objects, 0, mSize);
+		System.arraycopy(mDistances, 0, distances, 0, mSize);
+		System.arraycopy(mPoints, 0, points, 0, mSize * 3);
+		mObjects = objects;
+		mDistances = distances;
+		mPoints = points;
+	}
+
+	/**
+	 * Get the amount of hits.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * Get the object of a hit.
+	 *
+	 * @param index
+	 *            From 0 (the closest hit) to {@link #size()} - 1.
+	 * @return
+	 */
+	public BeyondarObject getObject(int index) {
+		checkIndex(index);
+		return mObjects[index];
+	}
+
+	/**
+	 * Get the distance from the start of the ray to a hit.
+	 *
+	 * @param index
+	 * @return Distance in GL units.
+	 */
+	public float getDistance(int index) {
+		checkIndex(index);
+		return mDistances[index];
+	}
+
+	/**
+	 * Get the intersection point of a hit.
+	 *
+	 * @param index
+	 * @param out
+	 *            The point where the result is stored.
+	 * @return out
+	 */
+	public Point3 getPoint(int index, Point3 out) {
+		checkIndex(index);
+		out.x = mPoints[index * 3];
+		out.y = mPoints[index * 3 + 1];
+		out.z = mPoints[index * 3 + 2];
+		return out;
+	}
+
+	/**
+	 * Replace the objects merged in a screen cluster by the cluster
+	 * representative (see {@link BeyondarObject#getClusterRepresentative()}),
+	 * keeping only the closest hit of each representative.
+	 */
+	public void replaceClusteredObjects() {
+		int size = 0;
+		for (int i = 0; i < mSize; i++) {
+			BeyondarObject beyondarObject = mObjects[i];
+			BeyondarObject representative = beyondarObject.getClusterRepresentative();
+			if (representative != null) {
+				beyondarObject = representative;
+			}
+			boolean duplicated = false;
+			for (int j = 0; j < size && !duplicated; j++) {
+				duplicated = mObjects[j] == beyondarObject;
+			}
+			if (!duplicated) {
+				mObjects[size] = beyondarObject;
+				mDistances[size] = mDistances[i];
+				System.arraycopy(mPoints, i * 3, mPoints, size * 3, 3);
+				size++;
+			}
+		}
+		for (int i = size; i < mSize; i++) {
+			mObjects[i] = null;
+		}
+		mSize = size;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= mSize) {
+			throw new IndexOutOfBoundsException("index: " + index + ", size: " + mSize);
+		}
+	}
+}
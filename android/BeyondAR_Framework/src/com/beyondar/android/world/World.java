@@ -15,17 +15,21 @@
  */
 package com.beyondar.android.world;
 
+import java.io.File;
 import java.util.ArrayList;
-import java.util.ConcurrentModificationException;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import android.content.Context;
 import android.location.Location;
 
 import com.beyondar.android.opengl.colision.MeshCollider;
+import com.beyondar.android.opengl.colision.SquareMeshCollider;
 import com.beyondar.android.plugin.Plugable;
 import com.beyondar.android.plugin.WorldPlugin;
 import com.beyondar.android.util.cache.BitmapCache;
+import com.beyondar.android.util.cache.DiskCache;
 import com.beyondar.android.util.math.Distance;
 import com.beyondar.android.util.math.geom.Plane;
 import com.beyondar.android.util.math.geom.Point3;
@@ -47,11 +51,43 @@ public class World implements Plugable<WorldPlugin> {
 	/** Image uri prefix for the default images */
 	public static final String URI_PREFIX_DEFAULT_IMAGE = "com.beyondar_default_type";
 
+	/**
+	 * Directory (inside the application cache directory) where the downloaded
+	 * images are stored.
+	 */
+	public static final String DISK_CACHE_DIR = "beyondar_images";
+
+	/**
+	 * Source of the versions used to know when a position has changed. It is
+	 * shared by all the instances so two different worlds never use the same
+	 * version.
+	 */
+	private static final AtomicLong sVersionGenerator = new AtomicLong();
+
+	private static final ThreadLocal<DistanceSorter> sDistanceSorter = new ThreadLocal<DistanceSorter>() {
+		@Override
+		protected DistanceSorter initialValue() {
+			return new DistanceSorter();
+		}
+	};
+
+	private static final ThreadLocal<RayHitBuffer> sRayHitBuffer = new ThreadLocal<RayHitBuffer>() {
+		@Override
+		protected RayHitBuffer initialValue() {
+			return new RayHitBuffer();
+		}
+	};
+
 	private float ZERO = 1e-8f;
 	private Object mLock = new Object();
 
 	private List<BeyondarObjectList> mBeyondarObjectLists;
+	private GeoSpatialIndex mSpatialIndex;
 	private double mLongitude, mLatitude, mAltitude;
+	private volatile long mGeoPositionVersion;
+	private volatile long mModificationVersion;
+	private volatile WorldSnapshot mSnapshot;
+	private final BoundingVolumeHierarchy mBoundingVolumes = new BoundingVolumeHierarchy();
 
 	private Context mContext;
 	private BitmapCache mBitmapHolder;
@@ -68,7 +104,16 @@ public class World implements Plugable<WorldPlugin> {
 	public World(Context context) {
 		mContext = context;
 		mBitmapHolder = BitmapCache.initialize(mContext.getResources(), getClass().getName(), true);
+		File cacheDir = mContext.getCacheDir();
+		if (cacheDir != null) {
+			// All the worlds share the same directory, so they share the cache
+			// too. It is created the first time that an image is downloaded
+			mBitmapHolder.setDiskCache(new File(cacheDir, DISK_CACHE_DIR), DiskCache.DEFAULT_MAX_SIZE);
+		}
+		mSpatialIndex = new GeoSpatialIndex();
 		createBeyondarObjectListArray();
+		publishSnapshot();
+		mGeoPositionVersion = nextVersion();
 		plugins = new ArrayList<WorldPlugin>(DEFAULT_PLUGINS_CAPACITY);
 	}
 
@@ -224,24 +269,71 @@ public class World implements Plugable<WorldPlugin> {
 			return;
 		}
 		synchronized (mLock) {
-			BeyondarObjectList listTmp = getBeyondarObjectList(worldListType);
-			if (listTmp == null) {
-				listTmp = new BeyondarObjectList(worldListType, this);
-				mBeyondarObjectLists.add(listTmp);
-				synchronized (lockplugins) {
-					for (WorldPlugin plugin : plugins) {
-						plugin.onBeyondarObjectListCreated(listTmp);
-					}
+			addToList(beyondarObject, worldListType);
+		}
+	}
+
+	/**
+	 * Add several {@link com.beyondar.android.world.BeyondarObject
+	 * BeyondarObject}s to the default list in the world. Use it to load a lot
+	 * of objects, the world is locked only once.
+	 * 
+	 * @param beyondarObjects
+	 */
+	public final synchronized void addBeyondarObjects(Collection<? extends BeyondarObject> beyondarObjects) {
+		addBeyondarObjects(beyondarObjects, LIST_TYPE_DEFAULT);
+	}
+
+	/**
+	 * Add several {@link com.beyondar.android.world.BeyondarObject
+	 * BeyondarObject}s to the specified list in the world. Use it to load a
+	 * lot of objects, the world is locked only once.
+	 * 
+	 * @param beyondarObjects
+	 * @param worldListType
+	 */
+	public synchronized void addBeyondarObjects(Collection<? extends BeyondarObject> beyondarObjects,
+			int worldListType) {
+		if (beyondarObjects == null) {
+			return;
+		}
+		synchronized (mLock) {
+			for (BeyondarObject beyondarObject : beyondarObjects) {
+				if (beyondarObject != null) {
+					addToList(beyondarObject, worldListType);
 				}
 			}
-			beyondarObject.setWorldListType(worldListType);
-			listTmp.add(beyondarObject);
+		}
+	}
+
+	/**
+	 * Add the object to its list, creating the list if needed. It must be
+	 * called holding mLock.
+	 */
+	private void addToList(BeyondarObject beyondarObject, int worldListType) {
+		BeyondarObjectList listTmp = getBeyondarObjectList(worldListType);
+		if (listTmp == null) {
+			listTmp = new BeyondarObjectList(worldListType, this);
+			mBeyondarObjectLists.add(listTmp);
+			mModificationVersion++;
 			synchronized (lockplugins) {
 				for (WorldPlugin plugin : plugins) {
-					plugin.onBeyondarObjectAdded(beyondarObject, listTmp);
+					plugin.onBeyondarObjectListCreated(listTmp);
 				}
 			}
 		}
+		beyondarObject.setWorldListType(worldListType);
+		if (listTmp.add(beyondarObject)) {
+			mModificationVersion++;
+			if (beyondarObject instanceof GeoObject) {
+				mSpatialIndex.add((GeoObject) beyondarObject);
+			}
+		}
+		synchronized (lockplugins) {
+			for (WorldPlugin plugin : plugins) {
+				plugin.onBeyondarObjectAdded(beyondarObject, listTmp);
+			}
+		}
 	}
 
 	/**
@@ -257,6 +349,9 @@ public class World implements Plugable<WorldPlugin> {
 			BeyondarObjectList listTmp = getBeyondarObjectList(beyondarObject.getWorldListType());
 			if (listTmp != null) {
 				listTmp.remove(beyondarObject);
+				if (beyondarObject instanceof GeoObject) {
+					mSpatialIndex.remove((GeoObject) beyondarObject);
+				}
 				synchronized (lockplugins) {
 					for (WorldPlugin plugin : plugins) {
 						plugin.onBeyondarObjectRemoved(beyondarObject, listTmp);
@@ -289,6 +384,8 @@ public class World implements Plugable<WorldPlugin> {
 	public synchronized void clearWorld() {
 		synchronized (mLock) {
 			mBeyondarObjectLists.clear();
+			mModificationVersion++;
+			mSpatialIndex.clear();
 			mBitmapHolder.clean();
 		}
 	}
@@ -328,9 +425,12 @@ public class World implements Plugable<WorldPlugin> {
 	 * @param altitude
 	 */
 	public void setGeoPosition(double latitude, double longitude, double altitude) {
-		this.mLatitude = latitude;
-		this.mLongitude = longitude;
-		this.mAltitude = altitude;
+		if (mLatitude != latitude || mLongitude != longitude || mAltitude != altitude) {
+			this.mLatitude = latitude;
+			this.mLongitude = longitude;
+			this.mAltitude = altitude;
+			mGeoPositionVersion = nextVersion();
+		}
 		synchronized (lockplugins) {
 			for (WorldPlugin plugin : plugins) {
 				plugin.onGeoPositionChanged(latitude, longitude, altitude);
@@ -338,6 +438,27 @@ public class World implements Plugable<WorldPlugin> {
 		}
 	}
 
+	/**
+	 * Get the version of the user's geo position. The version changes every
+	 * time that the position changes, so it can be used to know if any value
+	 * calculated with the position is still valid.
+	 * 
+	 * @return The version of the user's geo position.
+	 */
+	public long getGeoPositionVersion() {
+		return mGeoPositionVersion;
+	}
+
+	/**
+	 * Generate a new version number. The numbers are unique for all the
+	 * worlds, objects and renderers.
+	 * 
+	 * @return New version.
+	 */
+	public static long nextVersion() {
+		return sVersionGenerator.incrementAndGet();
+	}
+
 	/**
 	 * Set user geo position.
 	 * 
@@ -464,9 +585,11 @@ public class World implements Plugable<WorldPlugin> {
 		if ((DotProduct < ZERO) && (DotProduct > -ZERO))
 			return 0;
 
-		Vector3 substract = new Vector3(plane.getPoint());
-		substract.subtract(position);
-		l2 = (plane.getNormal().dotProduct(substract)) / DotProduct;
+		Point3 point = plane.getPoint();
+		Vector3 normal = plane.getNormal();
+		l2 = (normal.x * (point.x - position.x) + normal.y * (point.y - position.y) + normal.z
+				* (point.z - position.z))
+				/ DotProduct;
 
 		if (l2 < -ZERO)
 			return 0;
@@ -494,6 +617,86 @@ public class World implements Plugable<WorldPlugin> {
 
 	}
 
+	/**
+	 * Get the {@link GeoSpatialIndex} that holds all the
+	 * {@link com.beyondar.android.world.GeoObject GeoObject} of the world.
+	 * 
+	 * @return The spatial index of the world.
+	 */
+	public GeoSpatialIndex getGeoSpatialIndex() {
+		return mSpatialIndex;
+	}
+
+	/**
+	 * Get all the {@link com.beyondar.android.world.GeoObject GeoObject} that
+	 * are closer to the user than the specified distance.
+	 * 
+	 * @param radiusMeters
+	 *            Max distance from the user (meters).
+	 * @param out
+	 *            The list where the result will be stored. This list will
+	 *            not be cleaned.
+	 * @return The list with the result.
+	 */
+	public List<GeoObject> getGeoObjectsInRadius(double radiusMeters, List<GeoObject> out) {
+		return mSpatialIndex.getGeoObjectsInRadius(mLatitude, mLongitude, radiusMeters, out);
+	}
+
+	/**
+	 * Called by the {@link BeyondarObjectList} when its content changes
+	 * without using the world.
+	 */
+	void onListModified() {
+		synchronized (mLock) {
+			mModificationVersion++;
+		}
+	}
+
+	/**
+	 * Create the snapshot for the current content if it has changed. It must
+	 * be called holding mLock. The modifications only change the version, so
+	 * loading a lot of objects does not create a snapshot for each one.
+	 */
+	private void publishSnapshot() {
+		if (mSnapshot == null || mSnapshot.getVersion() != mModificationVersion) {
+			mSnapshot = new WorldSnapshot(mModificationVersion, mBeyondarObjectLists);
+		}
+	}
+
+	/**
+	 * Get a counter that changes every time that a
+	 * {@link com.beyondar.android.world.BeyondarObject BeyondarObject} or a
+	 * {@link com.beyondar.android.world.BeyondarObjectList BeyondarObjectList}
+	 * is added to or removed from the world.
+	 * 
+	 * @return
+	 */
+	public long getModificationVersion() {
+		return mModificationVersion;
+	}
+
+	/**
+	 * Get an immutable copy of all the
+	 * {@link com.beyondar.android.world.BeyondarObjectList BeyondarObjectList}
+	 * s of the world. The snapshot is reused until the world changes, so it
+	 * is cheap to call this method every frame; it only waits for the thread
+	 * that modifies the world when a new snapshot must be created. Use it to
+	 * iterate the objects from a different thread than the one that modifies
+	 * the world.
+	 * 
+	 * @return The latest snapshot of the world.
+	 */
+	public WorldSnapshot getSnapshot() {
+		WorldSnapshot snapshot = mSnapshot;
+		if (snapshot.getVersion() != mModificationVersion) {
+			synchronized (mLock) {
+				publishSnapshot();
+				snapshot = mSnapshot;
+			}
+		}
+		return snapshot;
+	}
+
 	/**
 	 * Get the container that holds all the
 	 * {@link com.beyondar.android.world.BeyondarObjectList BeyondarObjectList}
@@ -523,69 +726,111 @@ public class World implements Plugable<WorldPlugin> {
 			float maxDistance) {
 
 		beyondarObjectsOutput.clear();
-		BeyondarObjectList beyondarList = null;
-
-		try {
-			for (int i = 0; i < mBeyondarObjectLists.size(); i++) {
-				beyondarList = mBeyondarObjectLists.get(i);
-				if (beyondarList != null) {
-					for (int j = 0; j < beyondarList.size(); j++) {
-
-						BeyondarObject beyondarObject = beyondarList.get(j);
-						if (beyondarObject == null) {
-							continue;
-						}
-
-						if (beyondarObject instanceof GeoObject) {
-							GeoObject go = (GeoObject) beyondarObject;
-							double dst = Distance.calculateDistanceMeters(go.getLongitude(),
-									go.getLatitude(), getLongitude(), getLatitude());
-							if (dst > maxDistance) {
-								continue;
-							}
-						}
 
-						MeshCollider collisionDetector = beyondarObject.getMeshCollider();
+		RayHitBuffer hits = sRayHitBuffer.get();
+		getBeyondarObjectsCollideRay(ray, maxDistance, hits);
+		for (int i = 0; i < hits.size(); i++) {
+			beyondarObjectsOutput.add(hits.getObject(i));
+		}
+		hits.clear();
+		if (beyondarObjectsOutput.size() != 0) {
+			sortGeoObjectByDistanceFromCenter(beyondarObjectsOutput);
+		}
+	}
 
-						Point3 point = collisionDetector.getIntersectionPoint(ray);
+	/**
+	 * Get all the {@link com.beyondar.android.world.BeyondarObject
+	 * BeyondarObject} that collide with the
+	 * {@link com.beyondar.android.util.math.geom.Ray} without allocating
+	 * memory. A bounding volume hierarchy of the objects is used to only check
+	 * the colliders (see {@link BeyondarObject#getMeshCollider()}) of the
+	 * objects close to the ray, and the hits are found almost sorted.
+	 * 
+	 * @param ray
+	 *            The ray to use for the collision calculus
+	 * @param maxDistance
+	 *            Max distance to consider if a
+	 *            {@link com.beyondar.android.world.BeyondarObject} can collide
+	 *            (in meters).
+	 * @param hits
+	 *            The buffer that will store the hits sorted by their distance
+	 *            to the start of the ray. It will be cleaned before.
+	 */
+	public void getBeyondarObjectsCollideRay(Ray ray, float maxDistance, RayHitBuffer hits) {
+		hits.clear();
+		mBoundingVolumes.update(getSnapshot());
+		mBoundingVolumes.pick(ray, maxDistance, mLatitude, mLongitude, hits, false);
+	}
 
-						if (point != null) {
-							beyondarObjectsOutput.add(beyondarObject);
-						}
+	/**
+	 * Get the closest {@link com.beyondar.android.world.BeyondarObject
+	 * BeyondarObject} to the start of the
+	 * {@link com.beyondar.android.util.math.geom.Ray} that collides with it.
+	 * The search stops as soon as no closer object can be hit, so it is faster
+	 * than getting all the objects.
+	 * 
+	 * @param ray
+	 *            The ray to use for the collision calculus
+	 * @param maxDistance
+	 *            Max distance to consider if a
+	 *            {@link com.beyondar.android.world.BeyondarObject} can collide
+	 *            (in meters).
+	 * @param hits
+	 *            The buffer that will store the hit. It will be cleaned
+	 *            before.
+	 * @return The closest object or null if there is no collision.
+	 */
+	public BeyondarObject getNearestBeyondarObjectCollideRay(Ray ray, float maxDistance, RayHitBuffer hits) {
+		hits.clear();
+		mBoundingVolumes.update(getSnapshot());
+		mBoundingVolumes.pick(ray, maxDistance, mLatitude, mLongitude, hits, true);
+		return hits.size() == 0 ? null : hits.getObject(0);
+	}
 
-					}
-				}
-			}
-			if (beyondarObjectsOutput.size() != 0) {
-				sortGeoObjectByDistanceFromCenter(beyondarObjectsOutput);
-			}
-		} catch (ConcurrentModificationException e) {
-			getBeyondarObjectsCollideRay(ray, beyondarObjectsOutput, maxDistance);
+	/**
+	 * Check if the ray collides with the object.
+	 * 
+	 * @param ray
+	 * @param beyondarObject
+	 * @param point
+	 *            Where the intersection point is stored.
+	 * @return The distance from the start of the ray to the intersection or
+	 *         <b>-1</b> if there is no collision.
+	 */
+	static float getIntersectionDistance(Ray ray, BeyondarObject beyondarObject, Point3 point) {
+		MeshCollider collisionDetector = beyondarObject.getMeshCollider();
+		if (collisionDetector instanceof SquareMeshCollider) {
+			return ((SquareMeshCollider) collisionDetector).getIntersectionDistance(ray, point);
+		}
+		Point3 intersection = collisionDetector.getIntersectionPoint(ray);
+		if (intersection == null) {
+			return -1;
 		}
+		point.set(intersection);
+		Point3 origin = ray.getPoint();
+		return (float) Distance.calculateDistanceCoordinates(origin.x, origin.y, origin.z, point.x,
+				point.y, point.z);
 	}
 
+	/**
+	 * Sort the list from the closest to the farthest object using a
+	 * {@link DistanceSorter}. Each thread uses its own sorter, so the buffers
+	 * are reused between calls.
+	 * 
+	 * @param vec
+	 *            The list to sort.
+	 * @return The same list.
+	 */
 	public static List<BeyondarObject> sortGeoObjectByDistanceFromCenter(List<BeyondarObject> vec) {
-		boolean sorted = false;
-		while (!sorted) {
-			sorted = true;
-			for (int i = 0; i < vec.size() - 1; i++) {
-				BeyondarObject go1 = vec.get(i);
-				BeyondarObject go2 = vec.get(i + 1);
-				if (go2.getDistanceFromUser() < go1.getDistanceFromUser()) {
-					sorted = false;
-					vec.set(i, go2);
-					vec.set(i + 1, go1);
-				}
-				// Vector3 vec1 = new Vector3(go1.getPosition());
-				// Vector3 vec2 = new Vector3(go2.getPosition());
-				//
-				// if (vec2.module() < vec1.module()) {
-				// sorted = false;
-				// vec.set(i, go2);
-				// vec.set(i + 1, go1);
-				// }
-			}
-		}
-		return vec;
+		return getDistanceSorter().sort(vec);
+	}
+
+	/**
+	 * Get the {@link DistanceSorter} of the current thread.
+	 * 
+	 * @return
+	 */
+	public static DistanceSorter getDistanceSorter() {
+		return sDistanceSorter.get();
 	}
 }
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2014 BeyondAR
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.beyondar.android.world;
+
+import java.util.List;
+
+/**
+ * Immutable copy of the {@link BeyondarObjectList}s of a {@link World} and
+ * their {@link BeyondarObject}s. It can be iterated from any thread while the
+ * world is modified. Use {@link World#getSnapshot()} to get the latest one;
+ * a new snapshot is created by the thread that modifies the world.
+ */
+public final class WorldSnapshot {
+
+	private final long mVersion;
+	private final BeyondarObjectList[] mLists;
+	private final BeyondarObject[][] mObjects;
+	private final BeyondarObject[][] mNonGeoObjects;
+	private final int mObjectCount;
+
+	WorldSnapshot(long version, List<BeyondarObjectList> lists) {
+		mVersion = version;
+		int size = lists.size();
+		mLists = new BeyondarObjectList[size];
+		mObjects = new BeyondarObject[size][];
+		mNonGeoObjects = new BeyondarObject[size][];
+
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			BeyondarObjectList list = lists.get(i);
+			// The lists keep their own immutable copies, so they are shared
+			// instead of copied
+			list.getArrays(mObjects, mNonGeoObjects, i);
+			mLists[i] = list;
+			count += mObjects[i].length;
+		}
+		mObjectCount = count;
+	}
+
+	/**
+	 * Get the modification version of the {@link World} when the snapshot was
+	 * created.
+	 *
+	 * @return
+	 */
+	public long getVersion() {
+		return mVersion;
+	}
+
+	/**
+	 * Get the amount of {@link BeyondarObjectList}s.
+	 *
+	 * @return
+	 */
+	public int getListCount() {
+		return mLists.length;
+	}
+
+	/**
+	 * Get the {@link BeyondarObjectList} at the specified position.
+	 *
+	 * @param listIndex
+	 * @return
+	 */
+	public BeyondarObjectList getList(int listIndex) {
+		return mLists[listIndex];
+	}
+
+	/**
+	 * Get the position of the {@link BeyondarObjectList} in the snapshot.
+	 *
+	 * @param list
+	 * @return The position or -1 if it is not in the snapshot.
+	 */
+	public int indexOf(BeyondarObjectList list) {
+		for (int i = 0; i < mLists.length; i++) {
+			if (mLists[i] == list) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the {@link BeyondarObjectList} for the specified type.
+	 *
+	 * @param type
+	 * @return The list or null if it does not exist in the snapshot.
+	 */
+	public BeyondarObjectList getListByType(int type) {
+		for (int i = 0; i < mLists.length; i++) {
+			if (mLists[i].getType() == type) {
+				return mLists[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get the amount of objects in the specified list.
+	 *
+	 * @param listIndex
+	 * @return
+	 */
+	public int getObjectCount(int listIndex) {
+		return mObjects[listIndex].length;
+	}
+
+	/**
+	 * Get an object of the specified list.
+	 *
+	 * @param listIndex
+	 * @param index
+	 * @return
+	 */
+	public BeyondarObject getObject(int listIndex, int index) {
+		return mObjects[listIndex][index];
+	}
+
+	/**
+	 * Get the amount of objects in the specified list that are not
+	 * {@link GeoObject}s.
+	 *
+	 * @param listIndex
+	 * @return
+	 */
+	public int getNonGeoObjectCount(int listIndex) {
+		return mNonGeoObjects[listIndex].length;
+	}
+
+	/**
+	 * Get an object of the specified list that is not a {@link GeoObject}.
+	 *
+	 * @param listIndex
+	 * @param index
+	 * @return
+	 */
+	public BeyondarObject getNonGeoObject(int listIndex, int index) {
+		return mNonGeoObjects[listIndex][index];
+	}
+
+	/**
+	 * Get the amount of objects in all the lists.
+	 *
+	 * @return
+	 */
+	public int getObjectCount() {
+		return mObjectCount;
+	}
+}